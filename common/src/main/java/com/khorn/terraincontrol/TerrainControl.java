@@ -80,6 +80,14 @@ public class TerrainControl
         return engine.fireResourceProcessEvent(resource, world, random, villageInChunk, chunkX, chunkZ);
     }
 
+    /**
+     * @see TerrainControlEngine#hasEventHandlers()
+     */
+    public static boolean hasEventHandlers()
+    {
+        return engine.hasEventHandlers();
+    }
+
     /**
      * Returns the biome managers. Register your own biome manager here.
      * <p>
@@ -115,6 +115,16 @@ public abstract class TerrainControlEngine
         return success;
     }
 
+    /**
+     * Gets whether any event handlers are registered. If not, firing events
+     * can be skipped.
+     * @return True if there are event handlers, false otherwise.
+     */
+    public boolean hasEventHandlers()
+    {
+        return !cancelableEventHandlers.isEmpty() || !monitoringEventHandlers.isEmpty();
+    }
+
     /**
      * Returns the biome managers. Register your own biome manager here.
      * <p/>
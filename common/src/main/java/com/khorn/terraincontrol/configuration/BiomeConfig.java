@@ -88,6 +88,7 @@ public class BiomeConfig extends ConfigFile
     public boolean foliageColorIsMultiplier;
 
     public List<ConfigFunction<BiomeConfig>> resourceSequence = new ArrayList<ConfigFunction<BiomeConfig>>();
+    private PopulationPlan populationPlan;
 
     private Map<SaplingType, SaplingGen> saplingGrowers = new EnumMap<SaplingType, SaplingGen>(SaplingType.class);
 
@@ -189,6 +190,18 @@ public class BiomeConfig extends ConfigFile
             this.riverWaterLevel = this.configRiverWaterLevel;
         }
 
+        this.populationPlan = new PopulationPlan(this.resourceSequence);
+    }
+
+    /**
+     * Gets the resources of this biome, in the order they must be spawned
+     * in. Based on the {@link #resourceSequence} as it was when this config
+     * was loaded.
+     * @return The plan.
+     */
+    public PopulationPlan getPopulationPlan()
+    {
+        return this.populationPlan;
     }
 
     /**
@@ -7,6 +7,8 @@ import com.khorn.terraincontrol.TerrainControl;
 import com.khorn.terraincontrol.configuration.BiomeConfigFinder.BiomeConfigStub;
 import com.khorn.terraincontrol.configuration.io.FileSettingsReader;
 import com.khorn.terraincontrol.configuration.io.FileSettingsWriter;
+import com.khorn.terraincontrol.configuration.io.RawSettingValue;
+import com.khorn.terraincontrol.configuration.io.RawSettingValue.ValueType;
 import com.khorn.terraincontrol.configuration.io.SettingsMap;
 import com.khorn.terraincontrol.configuration.standard.BiomeStandardValues;
 import com.khorn.terraincontrol.configuration.standard.PluginStandardValues;
@@ -16,6 +18,7 @@ import com.khorn.terraincontrol.customobjects.CustomObjectCollection;
 import com.khorn.terraincontrol.customobjects.CustomObjectLoader;
 import com.khorn.terraincontrol.logging.LogMarker;
 import com.khorn.terraincontrol.util.helpers.FileHelper;
+import com.khorn.terraincontrol.util.helpers.StringHelper;
 import com.khorn.terraincontrol.util.minecraftTypes.DefaultBiome;
 
 import java.io.File;
@@ -113,7 +116,7 @@ public final class ServerConfigProvider implements ConfigProvider
 
         customObjects = new CustomObjectCollection(objectLoaders, worldObjectsDir);
         customObjects.setFallback(TerrainControl.getCustomObjectManager().getGlobalObjects());
-        TerrainControl.log(LogMarker.INFO, "{} world custom objects loaded.", customObjects.getAll().size());
+        TerrainControl.log(LogMarker.INFO, "{} world custom objects loaded.", customObjects.size());
     }
 
     private SettingsMap loadWorldConfig()
@@ -197,6 +200,10 @@ public final class ServerConfigProvider implements ConfigProvider
     {
         Map<String, BiomeConfig> loadedBiomes = new HashMap<String, BiomeConfig>();
 
+        // Start loading the objects used by the biomes in the background,
+        // reading the resources of the biomes below needs them
+        customObjects.warmUp(getUsedCustomObjectNames(biomeConfigStubs.values()));
+
         for (BiomeConfigStub biomeConfigStub : biomeConfigStubs.values())
         {
             // Inheritance
@@ -218,6 +225,48 @@ public final class ServerConfigProvider implements ConfigProvider
         return loadedBiomes;
     }
 
+    /**
+     * Gets the names of all custom objects that may be used by the
+     * CustomObject, CustomStructure, Tree and Sapling resources of the given
+     * biomes. The other parameters of those resources (like the chances of
+     * trees) are included too, they just won't match an object.
+     * @param biomeConfigStubs The biomes.
+     * @return The names.
+     */
+    private Collection<String> getUsedCustomObjectNames(Collection<BiomeConfigStub> biomeConfigStubs)
+    {
+        Set<String> names = new HashSet<String>();
+        for (BiomeConfigStub biomeConfigStub : biomeConfigStubs)
+        {
+            for (RawSettingValue setting : biomeConfigStub.getSettings().getRawSettings())
+            {
+                if (setting.getType() != ValueType.FUNCTION)
+                {
+                    continue;
+                }
+                String value = setting.getRawValue();
+                int bracketIndex = value.indexOf('(');
+                if (bracketIndex == -1 || !value.endsWith(")"))
+                {
+                    continue;
+                }
+                String functionName = value.substring(0, bracketIndex);
+                if (!functionName.equalsIgnoreCase("CustomObject") && !functionName.equalsIgnoreCase("CustomStructure")
+                        && !functionName.equalsIgnoreCase("Tree") && !functionName.equalsIgnoreCase("Sapling"))
+                {
+                    continue;
+                }
+                for (String arg : StringHelper.readCommaSeperatedString(value.substring(bracketIndex + 1, value.length() - 1)))
+                {
+                    // Strip extra settings, like in Name(Setting=Value)
+                    int argBracketIndex = arg.indexOf('(');
+                    names.add(argBracketIndex == -1 ? arg : arg.substring(0, argBracketIndex));
+                }
+            }
+        }
+        return names;
+    }
+
     /**
      * Gets the generation id that the given biome should have, based on
      * {@link DefaultBiome the default biomes} and
@@ -10,6 +10,7 @@ import com.khorn.terraincontrol.configuration.standard.PluginStandardValues;
 import com.khorn.terraincontrol.configuration.standard.WorldStandardValues;
 import com.khorn.terraincontrol.customobjects.CustomObjectCollection;
 import com.khorn.terraincontrol.generator.biome.BiomeGenerator;
+import com.khorn.terraincontrol.generator.biome.layers.TiledBiomeImage;
 import com.khorn.terraincontrol.logging.LogMarker;
 import com.khorn.terraincontrol.util.minecraftTypes.DefaultBiome;
 
@@ -79,6 +80,7 @@ public class WorldConfig extends ConfigFile
     public String imageFillBiome;
     public int imageXOffset;
     public int imageZOffset;
+    public boolean imageTileCache;
 
     public HashMap<Integer, Integer> biomeColorMap;
 
@@ -106,6 +108,9 @@ public class WorldConfig extends ConfigFile
     public int caveSystemPocketMinSize;
     public int caveSystemPocketMaxSize;
     public boolean evenCaveDistribution;
+    public CaveMode caveMode;
+    public double noiseCaveThreshold;
+    public double noiseCaveSize;
 
     // Ravines
     public int ravineRarity;
@@ -402,6 +407,7 @@ public class WorldConfig extends ConfigFile
         this.imageFillBiome = reader.getSetting(WorldStandardValues.IMAGE_FILL_BIOME);
         this.imageXOffset = reader.getSetting(WorldStandardValues.IMAGE_X_OFFSET);
         this.imageZOffset = reader.getSetting(WorldStandardValues.IMAGE_Z_OFFSET);
+        this.imageTileCache = reader.getSetting(WorldStandardValues.IMAGE_TILE_CACHE);
 
         // Old biomes
         this.oldBiomeSize = reader.getSetting(WorldStandardValues.OLD_BIOME_SIZE);
@@ -459,6 +465,9 @@ public class WorldConfig extends ConfigFile
         this.caveSystemPocketMinSize = reader.getSetting(WorldStandardValues.CAVE_SYSTEM_POCKET_MIN_SIZE);
         this.caveSystemPocketMaxSize = reader.getSetting(WorldStandardValues.CAVE_SYSTEM_POCKET_MAX_SIZE);
         this.evenCaveDistribution = reader.getSetting(WorldStandardValues.EVEN_CAVE_DISTRIBUTION);
+        this.caveMode = reader.getSetting(WorldStandardValues.CAVE_MODE);
+        this.noiseCaveThreshold = reader.getSetting(WorldStandardValues.NOISE_CAVE_THRESHOLD);
+        this.noiseCaveSize = reader.getSetting(WorldStandardValues.NOISE_CAVE_SIZE);
 
         // Ravines
         this.ravineRarity = reader.getSetting(WorldStandardValues.RAVINE_RARITY);
@@ -751,6 +760,12 @@ public class WorldConfig extends ConfigFile
                 "Shifts map position from x=0 and z=0 coordinates.");
         writer.putSetting(WorldStandardValues.IMAGE_Z_OFFSET, this.imageZOffset);
 
+        writer.putSetting(WorldStandardValues.IMAGE_TILE_CACHE, this.imageTileCache,
+                "Set this to true for very large images. The image is then converted once to a",
+                "\"<ImageFile>" + TiledBiomeImage.FILE_EXTENSION + "\" file next to it, which is read from disk",
+                "when needed instead of keeping the whole image in memory.",
+                "Only works for images with at most 256 different biomes.");
+
         // Terrain height and volatility
         writer.bigTitle("Terrain height and volatility");
 
@@ -1005,6 +1020,19 @@ public class WorldConfig extends ConfigFile
                 "if you turn this on you will probably want to adjust the cave frequency down to avoid long",
                 "load times at world creation.");
 
+        writer.putSetting(WorldStandardValues.CAVE_MODE, this.caveMode,
+                "Possible cave modes:",
+                "   Tunnels - default, caves are tunnels carved by the settings above",
+                "   Noise - caves are carved from a 3D noise field. Only CaveMinAltitude, CaveMaxAltitude and the",
+                "           noise cave settings below are used. Faster, but the caves look very different.");
+
+        writer.putSetting(WorldStandardValues.NOISE_CAVE_THRESHOLD, this.noiseCaveThreshold,
+                "Only used when CaveMode is set to Noise. Blocks are removed where the noise is higher than this",
+                "value. Lower values create more and wider caves, 0 removes about half of the underground.");
+
+        writer.putSetting(WorldStandardValues.NOISE_CAVE_SIZE, this.noiseCaveSize,
+                "Only used when CaveMode is set to Noise. Higher values make the caves larger and further apart.");
+
         // Ravine settings
         writer.bigTitle("Ravine settings");
         writer.putSetting(WorldStandardValues.RAVINE_RARITY, this.ravineRarity);
@@ -1074,6 +1102,12 @@ public class WorldConfig extends ConfigFile
         Default
     }
 
+    public enum CaveMode
+    {
+        Tunnels,
+        Noise
+    }
+
     public enum ImageMode
     {
         Repeat,
@@ -4,6 +4,7 @@ import static com.khorn.terraincontrol.TerrainControl.WORLD_DEPTH;
 import static com.khorn.terraincontrol.TerrainControl.WORLD_HEIGHT;
 
 import com.khorn.terraincontrol.LocalMaterialData;
+import com.khorn.terraincontrol.configuration.WorldConfig.CaveMode;
 import com.khorn.terraincontrol.configuration.WorldConfig.ConfigMode;
 import com.khorn.terraincontrol.configuration.WorldConfig.ImageMode;
 import com.khorn.terraincontrol.configuration.WorldConfig.ImageOrientation;
@@ -44,6 +45,7 @@ public class WorldStandardValues extends Settings
     public static final Setting<TerrainMode> TERRAIN_MODE = enumSetting("TerrainMode", TerrainMode.Normal);
     public static final Setting<ImageMode> IMAGE_MODE = enumSetting("ImageMode", ImageMode.Mirror);
     public static final Setting<ImageOrientation> IMAGE_ORIENTATION = enumSetting("ImageOrientation", ImageOrientation.West);
+    public static final Setting<CaveMode> CAVE_MODE = enumSetting("CaveMode", CaveMode.Tunnels);
 
     public static final Setting<String>
             BIOME_MODE = stringSetting("BiomeMode", "Normal"),
@@ -117,7 +119,8 @@ public class WorldStandardValues extends Settings
             RARE_BUILDINGS_ENABLED = booleanSetting("RareBuildingsEnabled", true),
             OCEAN_MONUMENTS_ENABLED = booleanSetting("OceanMonumentsEnabled", true),
             MANSIONS_ENABLED = booleanSetting("MansionsEnabled", true),
-            POPULATE_USING_SAVED_BIOMES = booleanSetting("PopulateUsingSavedBiomes", false);
+            POPULATE_USING_SAVED_BIOMES = booleanSetting("PopulateUsingSavedBiomes", false),
+            IMAGE_TILE_CACHE = booleanSetting("ImageTileCache", false);
 
     public static final Setting<LocalMaterialData>
             WATER_BLOCK = new MaterialSetting("WaterBlock", DefaultMaterial.STATIONARY_WATER),
@@ -146,7 +149,9 @@ public class WorldStandardValues extends Settings
             CANYON_DEPTH = doubleSetting("CanyonDepth", 3, 0.1, 15),
             FRACTURE_HORIZONTAL = doubleSetting("FractureHorizontal", 0, -500, 500),
             FRACTURE_VERTICAL = doubleSetting("FractureVertical", 0, -500, 500),
-            STRONGHOLD_DISTANCE = doubleSetting("StrongholdDistance", 32, 1, 1000);
+            STRONGHOLD_DISTANCE = doubleSetting("StrongholdDistance", 32, 1, 1000),
+            NOISE_CAVE_THRESHOLD = doubleSetting("NoiseCaveThreshold", 0.4, 0, 1),
+            NOISE_CAVE_SIZE = doubleSetting("NoiseCaveSize", 1, 0.1, 10);
 
     public static final Setting<Integer>
             WORLD_FOG = colorSetting("WorldFog", "0xC0D8FF"),
@@ -1,24 +1,126 @@
 package com.khorn.terraincontrol.customobjects;
 
+import com.khorn.terraincontrol.TerrainControl;
 import com.khorn.terraincontrol.configuration.io.BracketSettingsReader;
 import com.khorn.terraincontrol.configuration.io.SettingsMap;
 import com.khorn.terraincontrol.configuration.io.SimpleSettingsMap;
+import com.khorn.terraincontrol.logging.LogMarker;
 import com.khorn.terraincontrol.util.helpers.FileHelper;
 
 import java.io.File;
 import java.util.*;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Represents a collection of custom objects. Those objects can be loaded from
  * a directory, or can be loaded manually and then added to this collection.
  *
+ * <p>Objects loaded from a directory are only enabled (see
+ * {@link CustomObject#onEnable(Map)}) once they are needed: when they are
+ * looked up by name, when all objects are requested, or when an enabled
+ * object that references them (for example as a branch) is looked up. Objects
+ * that are known to be needed soon can be enabled on background threads
+ * using {@link #warmUp(Collection)}.
+ *
+ * <p>Objects that fail to enable are logged and removed from this
+ * collection, just like objects that use such an object.
+ *
  */
 public class CustomObjectCollection implements Iterable<CustomObject>
 {
+    /**
+     * Enabling state of an object that was loaded from a directory.
+     */
+    private static final class LazyObject
+    {
+        final Map<String, CustomObject> otherObjects;
+        /**
+         * Objects looked up while enabling this object that were not
+         * fully enabled yet. They must be enabled before this object is used.
+         */
+        final List<CustomObject> dependencies = new ArrayList<CustomObject>();
+        Thread enablingThread;
+        boolean enabled;
+        boolean failed;
+
+        LazyObject(Map<String, CustomObject> otherObjects)
+        {
+            this.otherObjects = otherObjects;
+        }
+    }
+
+    /**
+     * The map of other objects given to {@link CustomObject#onEnable(Map)}.
+     * Remembers which objects that are not enabled yet are looked up.
+     */
+    private final class DependencyTrackingMap extends AbstractMap<String, CustomObject>
+    {
+        private final Map<String, CustomObject> objects;
+
+        DependencyTrackingMap(Map<String, CustomObject> objects)
+        {
+            this.objects = Collections.unmodifiableMap(objects);
+        }
+
+        @Override
+        public CustomObject get(Object key)
+        {
+            CustomObject object = objects.get(key);
+            LazyObject enabling = currentlyEnabling.get();
+            if (object != null && enabling != null)
+            {
+                synchronized (lazyObjects)
+                {
+                    LazyObject lazyObject = lazyObjects.get(object);
+                    // Also objects that are enabled already: their own
+                    // dependencies may not be enabled yet
+                    if ((lazyObject != null && lazyObject != enabling) || failedObjects.contains(object))
+                    {
+                        enabling.dependencies.add(object);
+                    }
+                }
+            }
+            return object;
+        }
+
+        @Override
+        public boolean containsKey(Object key)
+        {
+            return objects.containsKey(key);
+        }
+
+        @Override
+        public Set<Entry<String, CustomObject>> entrySet()
+        {
+            return objects.entrySet();
+        }
+    }
+
+    /**
+     * Enables objects for {@link #warmUp(Collection)}, shared by all
+     * collections. Its threads stop when there is nothing left to enable.
+     */
+    private static final ThreadPoolExecutor LOADER = createLoader();
+
     private final List<CustomObject> objects;
     private final Map<String, CustomObject> objectsByName;
     private CustomObjectCollection fallback;
 
+    /**
+     * Objects that are not enabled yet, or whose dependencies are not
+     * enabled yet. Also used as the lock for all enabling state.
+     */
+    private final Map<CustomObject, LazyObject> lazyObjects = new IdentityHashMap<CustomObject, LazyObject>();
+    /**
+     * Objects that could not be enabled. They are no longer part of this
+     * collection, but other objects may still refer to them.
+     */
+    private final Set<CustomObject> failedObjects = Collections.newSetFromMap(new IdentityHashMap<CustomObject, Boolean>());
+    private final ThreadLocal<LazyObject> currentlyEnabling = new ThreadLocal<LazyObject>();
+
     /**
      * Creates a new {@link CustomObjectCollection} instance with no loaded objects.
      */
@@ -44,7 +146,8 @@ public class CustomObjectCollection implements Iterable<CustomObject>
     /**
      * Loads all custom objects from the given directory and its
      * subdirectories. Any objects that were already loaded will be unloaded.
-     * If the directory does not exist it will be created.
+     * If the directory does not exist it will be created. The objects are
+     * not enabled yet, this happens once they are needed.
      * @param loaders   Map of all custom object loaders, indexed by lowercase
      *                  extension without the dot, like "bo3".
      * @param directory The directory to load from. Subdirectories will be
@@ -58,10 +161,16 @@ public class CustomObjectCollection implements Iterable<CustomObject>
         }
 
         Map<String, CustomObject> objects = loadObjectsRecursive(loaders, directory);
-        for (CustomObject object : objects.values())
+        Map<String, CustomObject> otherObjects = new DependencyTrackingMap(objects);
+        synchronized (lazyObjects)
         {
-            object.onEnable(objects);
-            addLoadedObject(object);
+            for (CustomObject object : objects.values())
+            {
+                if (addLoadedObject(object))
+                {
+                    lazyObjects.put(object, new LazyObject(otherObjects));
+                }
+            }
         }
     }
 
@@ -69,17 +178,261 @@ public class CustomObjectCollection implements Iterable<CustomObject>
      * Adds an object to the list of loaded objects. If an object with the
      * same name (case insensitive) already exists, nothing happens.
      * @param object The object to add to the list of loaded objects.
+     * @return True if the object was added, false otherwise.
      */
-    public void addLoadedObject(CustomObject object)
+    public boolean addLoadedObject(CustomObject object)
     {
         String lowerCaseName = object.getName().toLowerCase();
         if (!objectsByName.containsKey(lowerCaseName))
         {
             objectsByName.put(lowerCaseName, object);
             objects.add(object);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Enables the given object, if it isn't enabled yet. If another thread
+     * is already enabling the object, this method waits for that thread.
+     * If enabling fails, the object is removed from this collection.
+     * @param object The object.
+     * @return The enabling state of the object, or null if the object was
+     * already fully enabled or has failed before.
+     */
+    private LazyObject enable(CustomObject object)
+    {
+        LazyObject lazyObject;
+        synchronized (lazyObjects)
+        {
+            lazyObject = lazyObjects.get(object);
+            if (lazyObject == null)
+            {
+                return null;
+            }
+            boolean interrupted = false;
+            while (lazyObject.enablingThread != null && lazyObject.enablingThread != Thread.currentThread())
+            {
+                // Enabling never waits for other objects, so this always
+                // finishes
+                try
+                {
+                    lazyObjects.wait();
+                } catch (InterruptedException e)
+                {
+                    interrupted = true;
+                }
+            }
+            if (interrupted)
+            {
+                Thread.currentThread().interrupt();
+            }
+            if (lazyObject.enabled || lazyObject.failed || lazyObject.enablingThread != null)
+            {
+                // Enabled, or being enabled by this thread further up in
+                // the stack
+                return lazyObject;
+            }
+            lazyObject.enablingThread = Thread.currentThread();
+        }
+
+        LazyObject previous = currentlyEnabling.get();
+        currentlyEnabling.set(lazyObject);
+        boolean enabled = false;
+        try
+        {
+            object.onEnable(lazyObject.otherObjects);
+            enabled = true;
+        } catch (RuntimeException e)
+        {
+            TerrainControl.log(LogMarker.WARN, "Failed to load custom object {}, it will be ignored", object.getName());
+            TerrainControl.printStackTrace(LogMarker.WARN, e);
+        } finally
+        {
+            currentlyEnabling.set(previous);
+            synchronized (lazyObjects)
+            {
+                lazyObject.enabled = enabled;
+                lazyObject.failed = !enabled;
+                lazyObject.enablingThread = null;
+                if (!enabled)
+                {
+                    remove(object);
+                }
+                lazyObjects.notifyAll();
+            }
+        }
+        return lazyObject;
+    }
+
+    /**
+     * Removes an object that could not be enabled. Must be called while
+     * holding the lock on {@link #lazyObjects}.
+     * @param object The object.
+     */
+    private void remove(CustomObject object)
+    {
+        objects.remove(object);
+        String lowerCaseName = object.getName().toLowerCase();
+        if (objectsByName.get(lowerCaseName) == object)
+        {
+            objectsByName.remove(lowerCaseName);
+        }
+        lazyObjects.remove(object);
+        failedObjects.add(object);
+    }
+
+    /**
+     * Makes sure that the given object and all objects it depends on are
+     * enabled, so that the object can be used. If the object or one of the
+     * objects it depends on could not be enabled, the object is removed
+     * from this collection.
+     * @param object The object.
+     * @return True if the object can be used, false otherwise.
+     */
+    private boolean enableWithDependencies(CustomObject object)
+    {
+        List<LazyObject> visited = new ArrayList<LazyObject>();
+        Set<CustomObject> seen = Collections.newSetFromMap(new IdentityHashMap<CustomObject, Boolean>());
+        Deque<CustomObject> toEnable = new ArrayDeque<CustomObject>();
+        toEnable.push(object);
+        while (!toEnable.isEmpty())
+        {
+            CustomObject next = toEnable.pop();
+            if (!seen.add(next))
+            {
+                continue;
+            }
+            LazyObject lazyObject = enable(next);
+            synchronized (lazyObjects)
+            {
+                if (failedObjects.contains(next))
+                {
+                    if (next != object && failedObjects.add(object))
+                    {
+                        TerrainControl.log(LogMarker.WARN, "Custom object {} uses {}, which failed to load, so it will be ignored too",
+                                object.getName(), next.getName());
+                        remove(object);
+                    }
+                    return false;
+                }
+                if (lazyObject != null)
+                {
+                    visited.add(lazyObject);
+                    for (CustomObject dependency : lazyObject.dependencies)
+                    {
+                        toEnable.push(dependency);
+                    }
+                }
+            }
+        }
+
+        synchronized (lazyObjects)
+        {
+            // If everything was enabled, the dependencies of all visited
+            // objects are enabled too, so they no longer need to be checked
+            for (LazyObject lazyObject : visited)
+            {
+                if (!lazyObject.enabled)
+                {
+                    return true;
+                }
+            }
+            for (CustomObject enabledObject : seen)
+            {
+                lazyObjects.remove(enabledObject);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Makes sure that all objects in this collection are enabled.
+     */
+    private void enableAll()
+    {
+        List<CustomObject> toEnable;
+        synchronized (lazyObjects)
+        {
+            if (lazyObjects.isEmpty())
+            {
+                return;
+            }
+            // Copy, as objects that fail are removed
+            toEnable = new ArrayList<CustomObject>(objects);
+        }
+        for (CustomObject object : toEnable)
+        {
+            enableWithDependencies(object);
+        }
+    }
+
+    /**
+     * Starts enabling the objects with the given names on background
+     * threads, so that they are ready once they are looked up. Names that
+     * don't belong to an object are ignored.
+     * @param names The object names.
+     */
+    public void warmUp(Collection<String> names)
+    {
+        final List<CustomObject> toEnable = new ArrayList<CustomObject>();
+        List<String> notFound = new ArrayList<String>();
+        synchronized (lazyObjects)
+        {
+            for (String name : names)
+            {
+                CustomObject object = objectsByName.get(name.toLowerCase());
+                if (object == null)
+                {
+                    notFound.add(name);
+                } else if (lazyObjects.containsKey(object) && !toEnable.contains(object))
+                {
+                    toEnable.add(object);
+                }
+            }
+        }
+        if (fallback != null && !notFound.isEmpty())
+        {
+            fallback.warmUp(notFound);
+        }
+        for (final CustomObject object : toEnable)
+        {
+            LOADER.execute(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        enableWithDependencies(object);
+                    } catch (RuntimeException e)
+                    {
+                        TerrainControl.log(LogMarker.WARN, "Failed to load custom object {}", object.getName());
+                        TerrainControl.printStackTrace(LogMarker.WARN, e);
+                    }
+                }
+            });
         }
     }
 
+    private static ThreadPoolExecutor createLoader()
+    {
+        int threads = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory()
+                {
+                    @Override
+                    public Thread newThread(Runnable runnable)
+                    {
+                        Thread thread = new Thread(runnable, "TerrainControl custom object loader");
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
     /**
      * When a lookup by name fails, the given fallback is used instead to look
      * up by name.
@@ -143,11 +496,23 @@ public class CustomObjectCollection implements Iterable<CustomObject>
      */
     public CustomObject getRandomObject(Random random)
     {
-        if (objects.isEmpty())
+        while (true)
         {
-            return null;
+            CustomObject object;
+            synchronized (lazyObjects)
+            {
+                if (objects.isEmpty())
+                {
+                    return null;
+                }
+                object = objects.get(random.nextInt(objects.size()));
+            }
+            // Objects that fail are removed, so this always finishes
+            if (enableWithDependencies(object))
+            {
+                return object;
+            }
         }
-        return objects.get(random.nextInt(objects.size()));
     }
 
     /**
@@ -157,12 +522,20 @@ public class CustomObjectCollection implements Iterable<CustomObject>
      */
     public CustomObject getObjectByName(String name)
     {
-        CustomObject object = objectsByName.get(name.toLowerCase());
-        if (object == null && fallback != null)
+        CustomObject object;
+        synchronized (lazyObjects)
+        {
+            object = objectsByName.get(name.toLowerCase());
+        }
+        if (object != null && enableWithDependencies(object))
+        {
+            return object;
+        }
+        if (fallback != null)
         {
             return fallback.getObjectByName(name);
         }
-        return object;
+        return null;
     }
 
     /**
@@ -201,18 +574,41 @@ public class CustomObjectCollection implements Iterable<CustomObject>
     }
 
     /**
-     * Gets an unmodifiable view of all currently loaded objects.
-     * @return A view.
+     * Gets all currently loaded objects. Objects that fail to enable later
+     * on are not removed from the returned list.
+     * @return An unmodifiable copy of the objects.
      */
     public List<CustomObject> getAll()
     {
-        return Collections.unmodifiableList(objects);
+        enableAll();
+        synchronized (lazyObjects)
+        {
+            return Collections.unmodifiableList(new ArrayList<CustomObject>(objects));
+        }
     }
 
+    /**
+     * Iterates over a copy of all currently loaded objects, see
+     * {@link #getAll()}.
+     * @return The iterator.
+     */
     @Override
     public Iterator<CustomObject> iterator()
     {
-        return objects.iterator();
+        return getAll().iterator();
+    }
+
+    /**
+     * Gets the amount of objects in this collection. Unlike
+     * {@link #getAll()}, this doesn't enable the objects.
+     * @return The amount of objects.
+     */
+    public int size()
+    {
+        synchronized (lazyObjects)
+        {
+            return objects.size();
+        }
     }
 
     /**
@@ -221,7 +617,10 @@ public class CustomObjectCollection implements Iterable<CustomObject>
      */
     public boolean isEmpty()
     {
-        return objects.isEmpty();
+        synchronized (lazyObjects)
+        {
+            return objects.isEmpty();
+        }
     }
 
 }
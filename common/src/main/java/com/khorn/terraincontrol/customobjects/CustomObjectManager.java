@@ -70,7 +70,7 @@ public class CustomObjectManager
     {
         // Load all global objects (they can overwrite special objects)
         this.globalCustomObjects.load(this.loaders, TerrainControl.getEngine().getGlobalObjectsDirectory());
-        TerrainControl.log(LogMarker.INFO, "{} Global custom objects loaded", globalCustomObjects.getAll().size());
+        TerrainControl.log(LogMarker.INFO, "{} Global custom objects loaded", globalCustomObjects.size());
     }
 
     /**
@@ -9,6 +9,7 @@ import com.khorn.terraincontrol.configuration.io.SettingsMap;
 import com.khorn.terraincontrol.customobjects.*;
 import com.khorn.terraincontrol.customobjects.bo3.BO3Settings.OutsideSourceBlock;
 import com.khorn.terraincontrol.customobjects.bo3.BO3Settings.SpawnHeightEnum;
+import com.khorn.terraincontrol.generator.resource.ResourceStats;
 import com.khorn.terraincontrol.util.BoundingBox;
 import com.khorn.terraincontrol.util.ChunkCoordinate;
 import com.khorn.terraincontrol.util.Rotation;
@@ -53,8 +54,18 @@ public class BO3 implements CustomObject
     @Override
     public void onEnable(Map<String, CustomObject> otherObjectsInDirectory)
     {
+        BO3Cache cache = BO3Cache.open(file);
+        if (cache != null)
+        {
+            // File is unchanged since the cache was written, so it doesn't
+            // need to be parsed or rewritten
+            this.settings = new BO3Config(cache, name, file.getParentFile(), otherObjectsInDirectory);
+            return;
+        }
+
         this.settings = new BO3Config(FileSettingsReader.read(name, file), file.getParentFile(), otherObjectsInDirectory);
         FileSettingsWriter.writeToFile(this.settings.getSettingsAsMap(), file, this.settings.settingsMode);
+        BO3Cache.write(file, this.settings);
     }
 
     /**
@@ -116,7 +127,7 @@ public class BO3 implements CustomObject
     @Override
     public boolean canSpawnAt(LocalWorld world, Rotation rotation, int x, int y, int z)
     {
-        BO3PlaceableFunction[] blocks = settings.blocks[rotation.getRotationId()];
+        BO3PlaceableFunction[] blocks = settings.getBlocks(rotation.getRotationId());
         BO3Check[] checks = settings.bo3Checks[rotation.getRotationId()];
 
         // Height check
@@ -175,7 +186,7 @@ public class BO3 implements CustomObject
     @Override
     public boolean spawnForced(LocalWorld world, Random random, Rotation rotation, int x, int y, int z)
     {
-        BO3PlaceableFunction[] blocks = settings.blocks[rotation.getRotationId()];
+        BO3PlaceableFunction[] blocks = settings.getBlocks(rotation.getRotationId());
         ObjectExtrusionHelper oeh = new ObjectExtrusionHelper(settings.extrudeMode, settings.extrudeThroughBlocks);
         // Spawn
 
@@ -184,6 +195,9 @@ public class BO3 implements CustomObject
             if (settings.outsideSourceBlock == OutsideSourceBlock.placeAnyway || settings.sourceBlocks.contains(world.getMaterial(x + block.x, y + block.y, z + block.z)))
             {
                 block.spawn(world, random, x + block.x, y + block.y, z + block.z);
+            } else
+            {
+                ResourceStats.blockRejected();
             }
             if (block instanceof BlockFunction)
             {
@@ -0,0 +1,446 @@
+package com.khorn.terraincontrol.customobjects.bo3;
+
+import com.khorn.terraincontrol.LocalMaterialData;
+import com.khorn.terraincontrol.TerrainControl;
+import com.khorn.terraincontrol.configuration.io.RawSettingValue;
+import com.khorn.terraincontrol.configuration.io.RawSettingValue.ValueType;
+import com.khorn.terraincontrol.configuration.io.SettingsMap;
+import com.khorn.terraincontrol.configuration.io.SimpleSettingsMap;
+import com.khorn.terraincontrol.exception.InvalidConfigException;
+import com.khorn.terraincontrol.logging.LogMarker;
+import com.khorn.terraincontrol.util.BoundingBox;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Compiled copy of a BO3, stored in a binary file next to the BO3. Reading
+ * the settings from this file is a lot faster than parsing all the lines of
+ * the BO3 again, and the blocks of each rotation are only decoded when that
+ * rotation is first needed.
+ * <p>
+ * The file contains the settings of the BO3, its BO3 checks and branches
+ * as text, a palette of all materials and, for each of the four rotations,
+ * one {@code long} for every block: the palette index and the packed
+ * position. The blocks part is memory-mapped, so that it is only read from
+ * disk when it is decoded. The file is recreated whenever the BO3 changes,
+ * which is detected using the length, the modification date and, if the
+ * modification date changed, a checksum of the BO3.
+ * <p>
+ * Only BO3s that consist of plain {@link BlockFunction}s without NBT data
+ * are cached. All other BO3s are always read from the text file.
+ */
+final class BO3Cache
+{
+    private static final int MAGIC = 0x54434233; // "TCB3"
+    private static final int VERSION = 1;
+
+    /**
+     * Size of the header: magic, version, and the length, modification date
+     * and checksum of the BO3 file.
+     */
+    private static final int HEADER_SIZE = 4 + 4 + 8 + 8 + 4;
+
+    /**
+     * Extension of the cache file, appended to the BO3 file name.
+     */
+    static final String FILE_EXTENSION = ".cache";
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    // Limits for the packed positions. BlockFunction already limits x and
+    // z to -100..100 and y to -1000..1000
+    private static final int HORIZONTAL_OFFSET = 128;
+    private static final int HORIZONTAL_BITS = 8;
+    private static final int VERTICAL_OFFSET = 1024;
+    private static final int VERTICAL_BITS = 11;
+
+    private final List<String> settings;
+    private final List<String> functions;
+    private final BoundingBox boundingBox;
+    private final ByteBuffer blocksBuffer;
+    private final int blockCount;
+
+    private String[] paletteNames;
+    private LocalMaterialData[] palette;
+
+    private BO3Cache(ByteBuffer buffer) throws IOException
+    {
+        try
+        {
+            this.settings = readStrings(buffer);
+            this.functions = readStrings(buffer);
+
+            this.boundingBox = BoundingBox.newEmptyBox();
+            int minX = buffer.getInt();
+            int minY = buffer.getInt();
+            int minZ = buffer.getInt();
+            int width = buffer.getInt();
+            int height = buffer.getInt();
+            int depth = buffer.getInt();
+            if (width > 0 && height > 0 && depth > 0)
+            {
+                this.boundingBox.expandToFit(minX, minY, minZ);
+                this.boundingBox.expandToFit(minX + width - 1, minY + height - 1, minZ + depth - 1);
+            }
+
+            List<String> paletteNames = readStrings(buffer);
+            this.paletteNames = paletteNames.toArray(new String[paletteNames.size()]);
+            this.blockCount = buffer.getInt();
+            if (buffer.remaining() != this.blockCount * 8L * 4)
+            {
+                throw new IOException("Wrong file size");
+            }
+            this.blocksBuffer = buffer.slice();
+        } catch (BufferUnderflowException e)
+        {
+            throw new IOException("File is truncated");
+        }
+    }
+
+    /**
+     * Gets the cache file of the given BO3 file.
+     * @param bo3File The BO3 file.
+     * @return The cache file.
+     */
+    static File getCacheFile(File bo3File)
+    {
+        return new File(bo3File.getPath() + FILE_EXTENSION);
+    }
+
+    /**
+     * Opens the cache of the given BO3 file.
+     * @param bo3File The BO3 file.
+     * @return The cache, or null if there is no cache or if it is outdated.
+     */
+    static BO3Cache open(File bo3File)
+    {
+        File cacheFile = getCacheFile(bo3File);
+        if (!cacheFile.exists() || !bo3File.exists())
+        {
+            return null;
+        }
+
+        try
+        {
+            RandomAccessFile file = new RandomAccessFile(cacheFile, "r");
+            ByteBuffer buffer;
+            try
+            {
+                // Check the header before mapping the file: a mapped file
+                // cannot be deleted on some platforms until the mapping is
+                // garbage collected, and an outdated cache is replaced
+                FileChannel channel = file.getChannel();
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                while (header.hasRemaining())
+                {
+                    if (channel.read(header) == -1)
+                    {
+                        return null;
+                    }
+                }
+                header.flip();
+                if (header.getInt() != MAGIC
+                        || header.getInt() != VERSION
+                        || header.getLong() != bo3File.length())
+                {
+                    return null;
+                }
+                long lastModified = header.getLong();
+                int checksum = header.getInt();
+                if (lastModified != bo3File.lastModified() && checksum != getChecksum(bo3File))
+                {
+                    return null;
+                }
+
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE, channel.size() - HEADER_SIZE);
+            } finally
+            {
+                // The mapping stays valid after the file is closed
+                file.close();
+            }
+            return new BO3Cache(buffer);
+        } catch (IOException e)
+        {
+            TerrainControl.log(LogMarker.WARN, "Could not read {}, it will be recreated: {}", cacheFile, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Writes the cache of a BO3, if the BO3 can be cached. Must be called
+     * after the BO3 file was written, as the cache is only valid for the BO3
+     * file as it is now.
+     * @param bo3File The BO3 file.
+     * @param config  The settings of the BO3.
+     */
+    static void write(File bo3File, BO3Config config)
+    {
+        File cacheFile = getCacheFile(bo3File);
+        if (!bo3File.exists() || !canCache(config))
+        {
+            if (cacheFile.exists() && !cacheFile.delete())
+            {
+                TerrainControl.log(LogMarker.WARN, "Could not delete outdated {}", cacheFile);
+            }
+            return;
+        }
+
+        File tempFile = new File(cacheFile.getPath() + ".tmp");
+        try
+        {
+            DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+            try
+            {
+                writeCache(output, bo3File, config);
+            } finally
+            {
+                output.close();
+            }
+
+            if (cacheFile.exists() && !cacheFile.delete())
+            {
+                throw new IOException("Cannot replace " + cacheFile);
+            }
+            if (!tempFile.renameTo(cacheFile))
+            {
+                throw new IOException("Cannot rename " + tempFile + " to " + cacheFile);
+            }
+        } catch (IOException e)
+        {
+            TerrainControl.log(LogMarker.WARN, "Could not write {}: {}", cacheFile, e.getMessage());
+            tempFile.delete();
+        }
+    }
+
+    private static boolean canCache(BO3Config config)
+    {
+        for (BO3PlaceableFunction block : config.blocks[0])
+        {
+            if (block.getClass() != BlockFunction.class || ((BlockFunction) block).metaDataTag != null)
+            {
+                return false;
+            }
+            if (Math.abs(block.x) >= HORIZONTAL_OFFSET || Math.abs(block.z) >= HORIZONTAL_OFFSET
+                    || Math.abs(block.y) >= VERTICAL_OFFSET)
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void writeCache(DataOutputStream output, File bo3File, BO3Config config) throws IOException
+    {
+        output.writeInt(MAGIC);
+        output.writeInt(VERSION);
+        output.writeLong(bo3File.length());
+        output.writeLong(bo3File.lastModified());
+        output.writeInt(getChecksum(bo3File));
+
+        // Settings, without the blocks
+        List<String> settings = new ArrayList<String>();
+        for (RawSettingValue value : config.getSettingsAsMap().getRawSettings())
+        {
+            if (value.getType() == ValueType.PLAIN_SETTING)
+            {
+                settings.add(value.getRawValue());
+            }
+        }
+        writeStrings(output, settings);
+
+        List<String> functions = new ArrayList<String>();
+        for (BO3Check check : config.bo3Checks[0])
+        {
+            functions.add(check.toString());
+        }
+        for (BranchFunction branch : config.branches[0])
+        {
+            functions.add(branch.toString());
+        }
+        writeStrings(output, functions);
+
+        BoundingBox box = config.boundingBoxes[0];
+        output.writeInt(box.getMinX());
+        output.writeInt(box.getMinY());
+        output.writeInt(box.getMinZ());
+        output.writeInt(box.getWidth());
+        output.writeInt(box.getHeight());
+        output.writeInt(box.getDepth());
+
+        // Palette of the materials of all rotations
+        Map<LocalMaterialData, Integer> paletteIndexes = new HashMap<LocalMaterialData, Integer>();
+        List<String> paletteNames = new ArrayList<String>();
+        long[][] packedBlocks = new long[4][];
+        for (int rotation = 0; rotation < 4; rotation++)
+        {
+            BO3PlaceableFunction[] blocks = config.blocks[rotation];
+            packedBlocks[rotation] = new long[blocks.length];
+            for (int i = 0; i < blocks.length; i++)
+            {
+                BlockFunction block = (BlockFunction) blocks[i];
+                Integer paletteIndex = paletteIndexes.get(block.material);
+                if (paletteIndex == null)
+                {
+                    paletteIndex = paletteNames.size();
+                    paletteIndexes.put(block.material, paletteIndex);
+                    paletteNames.add(block.material.toString());
+                }
+                packedBlocks[rotation][i] = ((long) paletteIndex << 32) | (packPosition(block.x, block.y, block.z) & 0xFFFFFFFFL);
+            }
+        }
+        writeStrings(output, paletteNames);
+
+        output.writeInt(config.blocks[0].length);
+        for (long[] rotationBlocks : packedBlocks)
+        {
+            for (long packedBlock : rotationBlocks)
+            {
+                output.writeLong(packedBlock);
+            }
+        }
+    }
+
+    /**
+     * Gets the settings of the BO3, including the BO3 checks and branches,
+     * but without the blocks.
+     * @param name Name of the BO3.
+     * @return The settings.
+     */
+    SettingsMap getSettings(String name)
+    {
+        SettingsMap settingsMap = new SimpleSettingsMap(name, false);
+        for (String setting : this.settings)
+        {
+            settingsMap.addRawSetting(RawSettingValue.create(ValueType.PLAIN_SETTING, setting));
+        }
+        for (String function : this.functions)
+        {
+            settingsMap.addRawSetting(RawSettingValue.create(ValueType.FUNCTION, function));
+        }
+        return settingsMap;
+    }
+
+    /**
+     * Gets the bounding box of the unrotated BO3.
+     * @return The bounding box.
+     */
+    BoundingBox getBoundingBox()
+    {
+        return this.boundingBox.clone();
+    }
+
+    /**
+     * Decodes the blocks of the BO3 for the given rotation.
+     * @param holder     The BO3 the blocks belong to.
+     * @param rotationId Id of the rotation.
+     * @return The blocks.
+     * @throws InvalidConfigException If one of the materials no longer
+     *                                exists.
+     */
+    BO3PlaceableFunction[] getBlocks(BO3Config holder, int rotationId) throws InvalidConfigException
+    {
+        LocalMaterialData[] palette = getPalette();
+        BO3PlaceableFunction[] blocks = new BO3PlaceableFunction[this.blockCount];
+        int offset = rotationId * this.blockCount * 8;
+        for (int i = 0; i < this.blockCount; i++)
+        {
+            long packedBlock = this.blocksBuffer.getLong(offset + i * 8);
+            int position = (int) packedBlock;
+            int x = (position & ((1 << HORIZONTAL_BITS) - 1)) - HORIZONTAL_OFFSET;
+            int z = ((position >>> HORIZONTAL_BITS) & ((1 << HORIZONTAL_BITS) - 1)) - HORIZONTAL_OFFSET;
+            int y = ((position >>> (HORIZONTAL_BITS * 2)) & ((1 << VERTICAL_BITS) - 1)) - VERTICAL_OFFSET;
+            blocks[i] = new BlockFunction(holder, x, y, z, palette[(int) (packedBlock >>> 32)]);
+        }
+        return blocks;
+    }
+
+    private synchronized LocalMaterialData[] getPalette() throws InvalidConfigException
+    {
+        if (this.palette == null)
+        {
+            LocalMaterialData[] palette = new LocalMaterialData[this.paletteNames.length];
+            for (int i = 0; i < palette.length; i++)
+            {
+                palette[i] = TerrainControl.readMaterial(this.paletteNames[i]);
+            }
+            this.palette = palette;
+            this.paletteNames = null;
+        }
+        return this.palette;
+    }
+
+    private static int packPosition(int x, int y, int z)
+    {
+        return (x + HORIZONTAL_OFFSET)
+                | ((z + HORIZONTAL_OFFSET) << HORIZONTAL_BITS)
+                | ((y + VERTICAL_OFFSET) << (HORIZONTAL_BITS * 2));
+    }
+
+    private static int getChecksum(File file) throws IOException
+    {
+        CRC32 crc = new CRC32();
+        byte[] buffer = new byte[8192];
+        InputStream stream = new FileInputStream(file);
+        try
+        {
+            int read;
+            while ((read = stream.read(buffer)) != -1)
+            {
+                crc.update(buffer, 0, read);
+            }
+        } finally
+        {
+            stream.close();
+        }
+        return (int) crc.getValue();
+    }
+
+    private static void writeStrings(DataOutputStream output, List<String> strings) throws IOException
+    {
+        output.writeInt(strings.size());
+        for (String string : strings)
+        {
+            byte[] bytes = string.getBytes(UTF_8);
+            output.writeInt(bytes.length);
+            output.write(bytes);
+        }
+    }
+
+    private static List<String> readStrings(ByteBuffer buffer) throws IOException
+    {
+        int count = buffer.getInt();
+        if (count < 0 || count > buffer.remaining())
+        {
+            throw new IOException("Invalid string count");
+        }
+        List<String> strings = new ArrayList<String>(count);
+        for (int i = 0; i < count; i++)
+        {
+            int length = buffer.getInt();
+            if (length < 0 || length > buffer.remaining())
+            {
+                throw new IOException("Invalid string length");
+            }
+            byte[] bytes = new byte[length];
+            buffer.get(bytes);
+            strings.add(new String(bytes, UTF_8));
+        }
+        return strings;
+    }
+}
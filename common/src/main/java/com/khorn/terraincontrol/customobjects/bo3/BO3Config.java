@@ -1,5 +1,6 @@
 package com.khorn.terraincontrol.customobjects.bo3;
 
+import com.khorn.terraincontrol.TerrainControl;
 import com.khorn.terraincontrol.configuration.ConfigFile;
 import com.khorn.terraincontrol.configuration.ConfigFunction;
 import com.khorn.terraincontrol.configuration.WorldConfig.ConfigMode;
@@ -8,6 +9,8 @@ import com.khorn.terraincontrol.configuration.standard.WorldStandardValues;
 import com.khorn.terraincontrol.customobjects.CustomObject;
 import com.khorn.terraincontrol.customobjects.bo3.BO3Settings.OutsideSourceBlock;
 import com.khorn.terraincontrol.customobjects.bo3.BO3Settings.SpawnHeightEnum;
+import com.khorn.terraincontrol.exception.InvalidConfigException;
+import com.khorn.terraincontrol.logging.LogMarker;
 import com.khorn.terraincontrol.util.BoundingBox;
 import com.khorn.terraincontrol.util.MaterialSet;
 import com.khorn.terraincontrol.util.minecraftTypes.DefaultStructurePart;
@@ -52,14 +55,25 @@ public class BO3Config extends ConfigFile
     public MaterialSet sourceBlocks;
     public int maxPercentageOutsideSourceBlock;
     public OutsideSourceBlock outsideSourceBlock;
-    public BO3PlaceableFunction[][] blocks = new BO3PlaceableFunction[4][]; // four
-    // rotations
+    /**
+     * The blocks for all four rotations. When the BO3 was read from its
+     * cache, the blocks of a rotation are null until they are first needed;
+     * use {@link #getBlocks(int)} to get them. Decoded blocks are published
+     * by replacing this array, so that readers never need to lock.
+     */
+    public volatile BO3PlaceableFunction[][] blocks = new BO3PlaceableFunction[4][];
     public BO3Check[][] bo3Checks = new BO3Check[4][];
     public int maxBranchDepth;
     public BranchFunction[][] branches = new BranchFunction[4][];
 
     public BoundingBox[] boundingBoxes = new BoundingBox[4];
 
+    /**
+     * Where the blocks are decoded from, or null if the blocks were read
+     * from the BO3 file.
+     */
+    private final BO3Cache blockCache;
+
     /**
      * Creates a BO3Config from a file.
      *
@@ -73,12 +87,85 @@ public class BO3Config extends ConfigFile
 
         this.directory = directory;
         this.otherObjects = otherObjects;
+        this.blockCache = null;
 
         readConfigSettings(reader);
         correctSettings();
         rotateBlocksAndChecks();
     }
 
+    /**
+     * Creates a BO3Config from the cache of a BO3. The blocks are only
+     * decoded once they are needed.
+     *
+     * @param cache        The cache of the BO3.
+     * @param name         Name of the BO3.
+     * @param directory    The directory the BO3 is stored in.
+     * @param otherObjects All other loaded objects by their name.
+     */
+    BO3Config(BO3Cache cache, String name, File directory, Map<String, CustomObject> otherObjects)
+    {
+        super(name);
+
+        this.directory = directory;
+        this.otherObjects = otherObjects;
+        this.blockCache = cache;
+
+        readConfigSettings(cache.getSettings(name));
+        correctSettings();
+        boundingBoxes[0] = cache.getBoundingBox();
+        rotateBlocksAndChecks();
+    }
+
+    /**
+     * Gets the blocks of the given rotation, decoding them from the cache
+     * if needed.
+     *
+     * @param rotationId Id of the rotation.
+     * @return The blocks.
+     */
+    public BO3PlaceableFunction[] getBlocks(int rotationId)
+    {
+        BO3PlaceableFunction[] rotatedBlocks = blocks[rotationId];
+        if (rotatedBlocks == null)
+        {
+            rotatedBlocks = decodeBlocks(rotationId);
+        }
+        return rotatedBlocks;
+    }
+
+    /**
+     * Decodes the blocks of the given rotation from the cache, unless
+     * another thread already did so.
+     *
+     * @param rotationId Id of the rotation.
+     * @return The blocks.
+     */
+    private synchronized BO3PlaceableFunction[] decodeBlocks(int rotationId)
+    {
+        BO3PlaceableFunction[][] allBlocks = blocks;
+        BO3PlaceableFunction[] rotatedBlocks = allBlocks[rotationId];
+        if (rotatedBlocks != null)
+        {
+            return rotatedBlocks;
+        }
+
+        try
+        {
+            rotatedBlocks = blockCache.getBlocks(this, rotationId);
+        } catch (InvalidConfigException e)
+        {
+            TerrainControl.log(LogMarker.WARN, "Could not read the blocks of BO3 {}: {}", getName(), e.getMessage());
+            rotatedBlocks = new BO3PlaceableFunction[0];
+        }
+
+        // Publish a filled copy through the volatile field
+        BO3PlaceableFunction[][] newBlocks = allBlocks.clone();
+        newBlocks[rotationId] = rotatedBlocks;
+        blocks = newBlocks;
+        return rotatedBlocks;
+    }
+
     @Override
     protected void writeConfigSettings(SettingsMap writer)
     {
@@ -225,11 +312,14 @@ public class BO3Config extends ConfigFile
             }
         }
 
-        // Store the blocks
-        blocks[0] = tempBlocksList.toArray(new BO3PlaceableFunction[tempBlocksList.size()]);
+        // Store the blocks (cached blocks are decoded later)
+        if (blockCache == null)
+        {
+            blocks[0] = tempBlocksList.toArray(new BO3PlaceableFunction[tempBlocksList.size()]);
+            boundingBoxes[0] = box;
+        }
         bo3Checks[0] = tempChecksList.toArray(new BO3Check[tempChecksList.size()]);
         branches[0] = tempBranchesList.toArray(new BranchFunction[tempBranchesList.size()]);
-        boundingBoxes[0] = box;
     }
 
     public void writeResources(SettingsMap writer)
@@ -247,7 +337,7 @@ public class BO3Config extends ConfigFile
                 " MinecraftObject(0,0,0," + DefaultStructurePart.IGLOO_BOTTOM.getPath() + ")",
                 " spawns the bottom part of an igloo.");
 
-        writer.addConfigFunctions(Arrays.asList(blocks[0]));
+        writer.addConfigFunctions(Arrays.asList(getBlocks(0)));
 
         // BO3Checks
         writer.bigTitle("BO3 checks",
@@ -305,11 +395,15 @@ public class BO3Config extends ConfigFile
     {
         for (int i = 1; i < 4; i++)
         {
-            // Blocks (blocks[i - 1] is previous rotation)
-            blocks[i] = new BO3PlaceableFunction[blocks[i - 1].length];
-            for (int j = 0; j < blocks[i].length; j++)
+            // Blocks (blocks[i - 1] is previous rotation), cached blocks
+            // are already rotated
+            if (blockCache == null)
             {
-                blocks[i][j] = blocks[i - 1][j].rotate();
+                blocks[i] = new BO3PlaceableFunction[blocks[i - 1].length];
+                for (int j = 0; j < blocks[i].length; j++)
+                {
+                    blocks[i][j] = blocks[i - 1][j].rotate();
+                }
             }
             // BO3 checks
             bo3Checks[i] = new BO3Check[bo3Checks[i - 1].length];
@@ -0,0 +1,263 @@
+package com.khorn.terraincontrol.generator;
+
+import static com.khorn.terraincontrol.util.ChunkCoordinate.CHUNK_X_SIZE;
+import static com.khorn.terraincontrol.util.ChunkCoordinate.CHUNK_Z_SIZE;
+
+import com.khorn.terraincontrol.LocalMaterialData;
+import com.khorn.terraincontrol.LocalWorld;
+
+import java.util.Arrays;
+
+/**
+ * The highest solid and liquid blocks of a chunk, as they were when the
+ * chunk was generated. {@link LocalWorld#getSolidHeight(int, int)} and
+ * {@link LocalWorld#getLiquidHeight(int, int)} can use these during
+ * population, instead of scanning down the column block by block. Columns
+ * that had to be scanned anyway are stored again using
+ * {@link #columnScanned(int, int, int, int, int)}. In the same way, the
+ * result of {@link LocalWorld#getHighestBlockYAt(int, int)} is stored, as
+ * it depends on the light opacity of blocks, which is only known to the
+ * platforms.
+ *
+ * <p>Columns become unknown as soon as a block is placed that may change
+ * their heights, so the heights stored here are never outdated. Platforms
+ * must report all blocks they place using
+ * {@link #blockChanged(int, int, int)}, and must call
+ * {@link ChunkProviderTC#forgetHeightMaps(int, int, int, int)} for blocks
+ * placed by code outside Terrain Control. Instances are not thread safe,
+ * they must only be used by the thread that populates the world.
+ *
+ */
+public final class ChunkHeightMaps
+{
+    /**
+     * Returned by the height methods if the height is not known.
+     */
+    public static final int UNKNOWN = Integer.MIN_VALUE;
+
+    private static final short UNKNOWN_SHORT = Short.MIN_VALUE;
+
+    private final int chunkX;
+    private final int chunkZ;
+
+    /**
+     * Y of the highest solid block of each column, or -1.
+     */
+    private final short[] solidTops = new short[CHUNK_X_SIZE * CHUNK_Z_SIZE];
+
+    /**
+     * Y of the highest liquid block above {@link #solidTops}, or -1.
+     */
+    private final short[] liquidTops = new short[CHUNK_X_SIZE * CHUNK_Z_SIZE];
+
+    /**
+     * Y of the highest block that was looked at to find
+     * {@link #solidTops} and {@link #liquidTops}. Blocks above were never
+     * looked at, and may be anything.
+     */
+    private final short[] scanTops = new short[CHUNK_X_SIZE * CHUNK_Z_SIZE];
+
+    /**
+     * Result of {@link LocalWorld#getHighestBlockYAt(int, int)}.
+     */
+    private final short[] highestBlockYs = new short[CHUNK_X_SIZE * CHUNK_Z_SIZE];
+
+    /**
+     * Creates height maps for a chunk of which all heights are unknown.
+     * @param chunkX X of the chunk.
+     * @param chunkZ Z of the chunk.
+     */
+    ChunkHeightMaps(int chunkX, int chunkZ)
+    {
+        this.chunkX = chunkX;
+        this.chunkZ = chunkZ;
+        Arrays.fill(this.solidTops, UNKNOWN_SHORT);
+        Arrays.fill(this.liquidTops, UNKNOWN_SHORT);
+        Arrays.fill(this.scanTops, UNKNOWN_SHORT);
+        Arrays.fill(this.highestBlockYs, UNKNOWN_SHORT);
+    }
+
+    /**
+     * Finds the highest blocks of a generated chunk.
+     * @param chunkBuffer The generated chunk.
+     * @param highestY    For each column, the y of the highest block that
+     *                    may not be air, indexed by x + z * 16. Everything
+     *                    above must be air.
+     */
+    ChunkHeightMaps(ChunkBuffer chunkBuffer, int[] highestY)
+    {
+        this(chunkBuffer.getChunkCoordinate().getChunkX(), chunkBuffer.getChunkCoordinate().getChunkZ());
+
+        for (int x = 0; x < CHUNK_X_SIZE; x++)
+        {
+            for (int z = 0; z < CHUNK_Z_SIZE; z++)
+            {
+                int column = x + z * CHUNK_X_SIZE;
+                int solidTop = -1;
+                int liquidTop = -1;
+
+                // Like the scans of the platforms, y = 0 is never looked at
+                for (int y = highestY[column]; y > 0; y--)
+                {
+                    LocalMaterialData material = chunkBuffer.getBlock(x, y, z);
+                    if (liquidTop == -1 && material.isLiquid())
+                    {
+                        liquidTop = y;
+                    }
+                    if (material.isSolid())
+                    {
+                        solidTop = y;
+                        break;
+                    }
+                }
+
+                // Everything above highestY is air, so the whole column
+                // is known
+                this.solidTops[column] = (short) solidTop;
+                this.liquidTops[column] = (short) liquidTop;
+                this.scanTops[column] = Short.MAX_VALUE;
+            }
+        }
+    }
+
+    /**
+     * Gets the solid height, like {@link LocalWorld#getSolidHeight(int, int)}
+     * does when scanning down from the given height.
+     * @param x     X position in the world.
+     * @param z     Z position in the world.
+     * @param fromY Height the scan would start at.
+     * @return The solid height, or {@link #UNKNOWN}.
+     */
+    public int getSolidHeight(int x, int z, int fromY)
+    {
+        int column = column(x, z);
+        int solidTop = this.solidTops[column];
+        if (solidTop == UNKNOWN_SHORT || solidTop > fromY || fromY > this.scanTops[column])
+        {
+            // Not known, or the platform doesn't see the block from there
+            return UNKNOWN;
+        }
+        return solidTop == -1 ? -1 : solidTop + 1;
+    }
+
+    /**
+     * Gets the liquid height, like {@link LocalWorld#getLiquidHeight(int, int)}
+     * does when scanning down from the given height.
+     * @param x     X position in the world.
+     * @param z     Z position in the world.
+     * @param fromY Height the scan would start at.
+     * @return The liquid height, or {@link #UNKNOWN}.
+     */
+    public int getLiquidHeight(int x, int z, int fromY)
+    {
+        int column = column(x, z);
+        int solidTop = this.solidTops[column];
+        int liquidTop = this.liquidTops[column];
+        if (solidTop == UNKNOWN_SHORT || Math.max(solidTop, liquidTop) > fromY || fromY > this.scanTops[column])
+        {
+            return UNKNOWN;
+        }
+        return liquidTop == -1 ? -1 : liquidTop + 1;
+    }
+
+    /**
+     * Stores the result of a scan down a column, so that the column doesn't
+     * need to be scanned again.
+     * @param x      X position in the world.
+     * @param z      Z position in the world.
+     * @param fromY  Height the scan started at.
+     * @param solidY Y of the highest solid block at or below fromY, or -1
+     *               if there is none above y = 0.
+     * @param liquidY Y of the highest liquid block between solidY and
+     *               fromY, or -1 if there is none.
+     */
+    public void columnScanned(int x, int z, int fromY, int solidY, int liquidY)
+    {
+        int column = column(x, z);
+        this.solidTops[column] = (short) solidY;
+        this.liquidTops[column] = (short) liquidY;
+        this.scanTops[column] = (short) fromY;
+    }
+
+    /**
+     * Gets the stored result of
+     * {@link LocalWorld#getHighestBlockYAt(int, int)}.
+     * @param x X position in the world.
+     * @param z Z position in the world.
+     * @return The height, or {@link #UNKNOWN}.
+     */
+    public int getHighestBlockY(int x, int z)
+    {
+        int highestBlockY = this.highestBlockYs[column(x, z)];
+        return highestBlockY == UNKNOWN_SHORT ? UNKNOWN : highestBlockY;
+    }
+
+    /**
+     * Stores the result of {@link LocalWorld#getHighestBlockYAt(int, int)}.
+     * @param x             X position in the world.
+     * @param z             Z position in the world.
+     * @param highestBlockY The height.
+     */
+    public void setHighestBlockY(int x, int z, int highestBlockY)
+    {
+        this.highestBlockYs[column(x, z)] = (short) highestBlockY;
+    }
+
+    /**
+     * Must be called after a block in this chunk has been changed. Blocks
+     * below the highest solid block or above the scanned part of the column
+     * never change the solid and liquid heights, and blocks more than one
+     * block below the highest block never change that height. Everything
+     * else makes the heights of the column unknown.
+     * @param x X position in the world.
+     * @param y Y position in the world.
+     * @param z Z position in the world.
+     */
+    public void blockChanged(int x, int y, int z)
+    {
+        int column = column(x, z);
+        if (y >= this.highestBlockYs[column] - 1)
+        {
+            this.highestBlockYs[column] = UNKNOWN_SHORT;
+        }
+        if (y < this.solidTops[column] || y > this.scanTops[column])
+        {
+            return;
+        }
+        this.solidTops[column] = UNKNOWN_SHORT;
+        this.liquidTops[column] = UNKNOWN_SHORT;
+    }
+
+    /**
+     * Makes all columns in the given area unknown. The area may extend
+     * outside this chunk.
+     * @param minX Lowest x in the world, inclusive.
+     * @param minZ Lowest z in the world, inclusive.
+     * @param maxX Highest x in the world, inclusive.
+     * @param maxZ Highest z in the world, inclusive.
+     */
+    void forgetColumns(int minX, int minZ, int maxX, int maxZ)
+    {
+        int startX = Math.max(minX - this.chunkX * CHUNK_X_SIZE, 0);
+        int endX = Math.min(maxX - this.chunkX * CHUNK_X_SIZE, CHUNK_X_SIZE - 1);
+        int startZ = Math.max(minZ - this.chunkZ * CHUNK_Z_SIZE, 0);
+        int endZ = Math.min(maxZ - this.chunkZ * CHUNK_Z_SIZE, CHUNK_Z_SIZE - 1);
+        if (startX > endX)
+        {
+            return;
+        }
+        for (int z = startZ; z <= endZ; z++)
+        {
+            int from = startX + z * CHUNK_X_SIZE;
+            int to = endX + z * CHUNK_X_SIZE + 1;
+            Arrays.fill(this.solidTops, from, to, UNKNOWN_SHORT);
+            Arrays.fill(this.liquidTops, from, to, UNKNOWN_SHORT);
+            Arrays.fill(this.highestBlockYs, from, to, UNKNOWN_SHORT);
+        }
+    }
+
+    private static int column(int x, int z)
+    {
+        return (x & (CHUNK_X_SIZE - 1)) + (z & (CHUNK_Z_SIZE - 1)) * CHUNK_X_SIZE;
+    }
+}
@@ -3,6 +3,7 @@ package com.khorn.terraincontrol.generator;
 import static com.khorn.terraincontrol.util.ChunkCoordinate.CHUNK_X_SIZE;
 import static com.khorn.terraincontrol.util.ChunkCoordinate.CHUNK_Z_SIZE;
 
+import com.khorn.terraincontrol.LocalBiome;
 import com.khorn.terraincontrol.LocalMaterialData;
 import com.khorn.terraincontrol.LocalWorld;
 import com.khorn.terraincontrol.TerrainControl;
@@ -15,12 +16,16 @@ import com.khorn.terraincontrol.generator.biome.OutputType;
 import com.khorn.terraincontrol.generator.noise.NoiseGeneratorNewOctaves;
 import com.khorn.terraincontrol.generator.noise.NoiseGeneratorPerlinOctaves;
 import com.khorn.terraincontrol.generator.terrain.CavesGen;
+import com.khorn.terraincontrol.generator.terrain.NoiseCavesGen;
 import com.khorn.terraincontrol.generator.terrain.RavinesGen;
 import com.khorn.terraincontrol.generator.terrain.TerrainGenBase;
 import com.khorn.terraincontrol.util.ChunkCoordinate;
 import com.khorn.terraincontrol.util.helpers.MathHelper;
 import com.khorn.terraincontrol.util.minecraftTypes.DefaultMaterial;
 
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Random;
 
 // Please don`t remove this. This disable warnings about x+0 arithmetic
@@ -35,6 +40,13 @@ public class ChunkProviderTC
     public static final int HEIGHT_BITS = 8;
     public static final int HEIGHT_BITS_PLUS_FOUR = HEIGHT_BITS + 4;
 
+    /**
+     * Maximum amount of chunks of which the height maps are kept. Chunks
+     * are populated shortly after they are generated, so this only needs to
+     * cover the chunks around the players that are not populated yet.
+     */
+    private static final int MAX_CACHED_HEIGHT_MAPS = 1024;
+
     private final LocalMaterialData air = TerrainControl.toLocalMaterialData(DefaultMaterial.AIR, 0);
 
     private final Random random;
@@ -60,6 +72,7 @@ public class ChunkProviderTC
     private boolean riverFound = false;
 
     private final LocalWorld localWorld;
+    private final BiomeGenerator biomeGenerator;
     private double volatilityFactor;
     private double heightFactor;
 
@@ -74,6 +87,22 @@ public class ChunkProviderTC
     private final byte[] waterLevelRaw = new byte[25];
     // Water level for each column
     private final byte[] waterLevel = new byte[CHUNK_X_SIZE * CHUNK_Z_SIZE];
+    // Raw terrain of each column, for the surface generators
+    private final TerrainColumns terrainColumns = new TerrainColumns();
+    private final HighestBlockTracker highestBlockTracker = new HighestBlockTracker();
+    // Columns with water at the maximum water level, for the dry check
+    private int waterColumns;
+
+    private final Map<Long, ChunkHeightMaps> heightMapCache = Collections.synchronizedMap(new LinkedHashMap<Long, ChunkHeightMaps>(256, 0.75f, true)
+    {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, ChunkHeightMaps> eldest)
+        {
+            return size() > MAX_CACHED_HEIGHT_MAPS;
+        }
+    });
 
     private final int heightScale;
     private final int heightCap;
@@ -82,9 +111,25 @@ public class ChunkProviderTC
     private final int maxSmoothRadius;
 
     public ChunkProviderTC(ConfigProvider configs, LocalWorld world)
+    {
+        this(configs, world, null);
+    }
+
+    /**
+     * Creates a chunk provider that uses its own biome generator instead of
+     * the biome generator of the world. Useful to generate terrain outside
+     * of the normal world generation, as biome generators are not thread
+     * safe.
+     * @param configs        The configs of the world.
+     * @param world          The world.
+     * @param biomeGenerator The biome generator, or null to use the biome
+     *                       generator of the world.
+     */
+    public ChunkProviderTC(ConfigProvider configs, LocalWorld world, BiomeGenerator biomeGenerator)
     {
         this.configProvider = configs;
         this.localWorld = world;
+        this.biomeGenerator = biomeGenerator;
         this.heightCap = world.getHeightCap();
         this.heightScale = world.getHeightScale();
 
@@ -97,7 +142,13 @@ public class ChunkProviderTC
         this.noiseGen5 = new NoiseGeneratorPerlinOctaves(this.random, 10);
         this.noiseGen6 = new NoiseGeneratorPerlinOctaves(this.random, 16);
 
-        this.caveGen = new CavesGen(configs.getWorldConfig(), this.localWorld);
+        if (configs.getWorldConfig().caveMode == WorldConfig.CaveMode.Noise)
+        {
+            this.caveGen = new NoiseCavesGen(configs.getWorldConfig(), this.localWorld);
+        } else
+        {
+            this.caveGen = new CavesGen(configs.getWorldConfig(), this.localWorld);
+        }
         this.canyonGen = new RavinesGen(configs.getWorldConfig(), this.localWorld);
 
         WorldConfig worldConfig = configs.getWorldConfig();
@@ -130,20 +181,112 @@ public class ChunkProviderTC
 
         generateTerrain(chunkBuffer);
 
-        boolean dry = addBiomeBlocksAndCheckWater(chunkBuffer);
+        // From now on, keep track of the highest blocks for the height maps
+        HighestBlockTracker tracker = this.highestBlockTracker;
+        tracker.reset(chunkBuffer, this.terrainColumns);
+
+        GeneratingChunk generatingChunk = createGeneratingChunk(chunkCoord);
+        addBiomeBlocks(generatingChunk, tracker);
+
+        this.caveGen.generate(generatingChunk, tracker);
+        this.canyonGen.generate(generatingChunk, tracker);
 
-        this.caveGen.generate(chunkBuffer);
-        this.canyonGen.generate(chunkBuffer);
+        this.heightMapCache.put(chunkKey(x, z), new ChunkHeightMaps(chunkBuffer, tracker.getHighestBlocks()));
+        tracker.clear();
 
         WorldConfig worldConfig = configProvider.getWorldConfig();
         if (worldConfig.ModeTerrain == WorldConfig.TerrainMode.Normal || worldConfig.ModeTerrain == WorldConfig.TerrainMode.OldGenerator)
         {
-            this.localWorld.prepareDefaultStructures(x, z, dry);
+            this.localWorld.prepareDefaultStructures(x, z, generatingChunk.isDry());
+        }
+
+    }
+
+    /**
+     * Gets the solid and liquid heights of a chunk, as they were when the
+     * chunk was generated by this chunk provider.
+     * @param chunkX X of the chunk.
+     * @param chunkZ Z of the chunk.
+     * @return The heights, or null if they are no longer available.
+     */
+    public ChunkHeightMaps getHeightMaps(int chunkX, int chunkZ)
+    {
+        return this.heightMapCache.get(chunkKey(chunkX, chunkZ));
+    }
+
+    /**
+     * Gets the heights of a chunk, like {@link #getHeightMaps(int, int)}.
+     * If they are no longer available, height maps of which all heights are
+     * unknown are created instead, so that heights found during population
+     * can still be stored.
+     * @param chunkX X of the chunk.
+     * @param chunkZ Z of the chunk.
+     * @return The heights.
+     */
+    ChunkHeightMaps getOrCreateHeightMaps(int chunkX, int chunkZ)
+    {
+        Long key = chunkKey(chunkX, chunkZ);
+        synchronized (this.heightMapCache)
+        {
+            ChunkHeightMaps heightMaps = this.heightMapCache.get(key);
+            if (heightMaps == null)
+            {
+                heightMaps = new ChunkHeightMaps(chunkX, chunkZ);
+                this.heightMapCache.put(key, heightMaps);
+            }
+            return heightMaps;
+        }
+    }
+
+    /**
+     * Removes the heights of a chunk. Should be called when the chunk is
+     * unloaded, or when code outside Terrain Control changes the blocks of
+     * the chunk after it was populated.
+     * @param chunkX X of the chunk.
+     * @param chunkZ Z of the chunk.
+     */
+    public void forgetHeightMaps(int chunkX, int chunkZ)
+    {
+        this.heightMapCache.remove(chunkKey(chunkX, chunkZ));
+    }
+
+    /**
+     * Makes the heights of all columns in the given area unknown. Must be
+     * called after blocks were placed without {@link LocalWorld#setBlock(int,
+     * int, int, LocalMaterialData)}, for example by Minecraft's own tree
+     * generators. The area must include all blocks that may have changed.
+     * @param minX Lowest x in the world, inclusive.
+     * @param minZ Lowest z in the world, inclusive.
+     * @param maxX Highest x in the world, inclusive.
+     * @param maxZ Highest z in the world, inclusive.
+     */
+    public void forgetHeightMaps(int minX, int minZ, int maxX, int maxZ)
+    {
+        for (int chunkX = minX >> 4; chunkX <= maxX >> 4; chunkX++)
+        {
+            for (int chunkZ = minZ >> 4; chunkZ <= maxZ >> 4; chunkZ++)
+            {
+                ChunkHeightMaps heightMaps = getHeightMaps(chunkX, chunkZ);
+                if (heightMaps != null)
+                {
+                    heightMaps.forgetColumns(minX, minZ, maxX, maxZ);
+                }
+            }
         }
+    }
 
+    private static Long chunkKey(int chunkX, int chunkZ)
+    {
+        return ((long) chunkX << 32) | (chunkZ & 0xFFFFFFFFL);
     }
 
-    protected void generateTerrain(ChunkBuffer chunkBuffer)
+    /**
+     * Generates the raw terrain of a chunk: stone, water and air. No biome
+     * blocks, caves or structures are added. This method doesn't touch the
+     * world, so it can be used for previews.
+     * @param chunkBuffer The buffer to place the blocks in.
+     */
+    public void generateTerrain(ChunkBuffer chunkBuffer)
     {
         ChunkCoordinate chunkCoord = chunkBuffer.getChunkCoordinate();
         int chunkX = chunkCoord.getChunkX();
@@ -156,7 +299,7 @@ public class ChunkProviderTC
         final int usedYSections = this.heightScale / 8 + 1;
 
         WorldConfig worldConfig = configProvider.getWorldConfig();
-        BiomeGenerator biomeGenerator = this.localWorld.getBiomeGenerator();
+        BiomeGenerator biomeGenerator = getBiomeGenerator();
         if (worldConfig.improvedRivers)
             this.riverArray = biomeGenerator.getBiomesUnZoomed(this.riverArray, chunkX * 4 - maxSmoothRadius,
                     chunkZ * 4 - maxSmoothRadius, NOISE_MAX_X + maxSmoothDiameter, NOISE_MAX_Z + maxSmoothDiameter,
@@ -174,6 +317,8 @@ public class ChunkProviderTC
         }
 
         generateTerrainNoise(chunkX * four, 0, chunkZ * four, maxYSections, usedYSections);
+        this.terrainColumns.reset(oneEightOfHeight * 8);
+        this.waterColumns = 0;
 
         // Now that the raw terrain is generated, replace raw biome array with
         // fine-tuned one.
@@ -256,9 +401,13 @@ public class ChunkProviderTC
                                 if (d16 > 0.0D)
                                 {
                                     block = biomeConfig.stoneBlock;
+                                } else if (y * 8 + piece_y == biomeConfig.waterLevelMax && block == biomeConfig.waterBlock)
+                                {
+                                    this.waterColumns++;
                                 }
 
                                 chunkBuffer.setBlock(piece_x + x * 4, y * 8 + piece_y, z * 4 + piece_z, block);
+                                this.terrainColumns.add(piece_x + x * 4, y * 8 + piece_y, z * 4 + piece_z, block);
                                 d16 += d17;
                             }
                             d11 += d13;
@@ -277,24 +426,39 @@ public class ChunkProviderTC
     }
 
     /**
-     * Adds the biome blocks like grass, dirt, sand and sandstone. Also adds
-     * bedrock at the bottom of the map.
-     * 
-     * @param chunkBuffer The the chunk to add the blocks to.
-     * @return Whether there is a lot of water in this chunk. If yes, no
-     *         villages will be placed.
+     * Collects the information about the chunk that the later generation
+     * steps need. Must be called after {@link #generateTerrain(ChunkBuffer)}.
+     * @param chunkCoord The chunk that is being generated.
+     * @return The information.
      */
-    protected boolean addBiomeBlocksAndCheckWater(ChunkBuffer chunkBuffer)
+    private GeneratingChunk createGeneratingChunk(ChunkCoordinate chunkCoord)
     {
-        ChunkCoordinate chunkCoord = chunkBuffer.getChunkCoordinate();
-
-        int dryBlocksOnSurface = 256;
-
         final double d1 = 0.03125D;
         this.noise4 = this.noiseGen4.a(this.noise4, chunkCoord.getBlockX(), chunkCoord.getBlockZ(), CHUNK_X_SIZE,
                 CHUNK_Z_SIZE, d1 * 2.0D, d1 * 2.0D, 1.0D);
 
-        GeneratingChunk generatingChunk = new GeneratingChunk(random, waterLevel, noise4, heightCap);
+        // Look up the biomes once, so that the carvers and the surface
+        // generator don't need to go through the biome generator again
+        LocalBiome[] biomes = new LocalBiome[CHUNK_X_SIZE * CHUNK_Z_SIZE];
+        for (int i = 0; i < biomes.length; i++)
+        {
+            biomes[i] = this.configProvider.getBiomeByIdOrNull(this.biomeArray[i]);
+        }
+
+        return new GeneratingChunk(random, waterLevel, noise4, biomes, terrainColumns, waterColumns, localWorld.getSeed(),
+                heightCap);
+    }
+
+    /**
+     * Adds the biome blocks like grass, dirt, sand and sandstone. Also adds
+     * bedrock at the bottom of the map.
+     * 
+     * @param generatingChunk Information about the chunk, like the biomes.
+     * @param chunkBuffer     The the chunk to add the blocks to.
+     */
+    protected void addBiomeBlocks(GeneratingChunk generatingChunk, ChunkBuffer chunkBuffer)
+    {
+        ChunkCoordinate chunkCoord = chunkBuffer.getChunkCoordinate();
 
         for (int x = 0; x < CHUNK_X_SIZE; x++)
         {
@@ -303,22 +467,13 @@ public class ChunkProviderTC
                 // The following code is executed for each column in the chunk
 
                 // Get the current biome config and some properties
-                final BiomeConfig biomeConfig = this.configProvider.getBiomeByIdOrNull(
-                        this.biomeArray[(x + z * CHUNK_X_SIZE)]).getBiomeConfig();
+                final BiomeConfig biomeConfig = generatingChunk.getBiome(x, z).getBiomeConfig();
 
                 biomeConfig.surfaceAndGroundControl.spawn(generatingChunk, chunkBuffer, biomeConfig, chunkCoord.getBlockX() + x, chunkCoord.getBlockZ() + z);
 
-                // Count how many water there is
-                if (chunkBuffer.getBlock(x, biomeConfig.waterLevelMax, z).equals(biomeConfig.waterBlock))
-                {
-                    dryBlocksOnSurface--;
-                }
-
                 // End of code for each column
             }
         }
-
-        return dryBlocksOnSurface > 250;
     }
 
     private void generateTerrainNoise(int xOffset, int yOffset, int zOffset, int maxYSections, int usedYSections)
@@ -457,7 +612,7 @@ public class ChunkProviderTC
 
     private void oldBiomeFactor(int x, int z, int i4, int ySections, double noiseHeight)
     {
-        BiomeGenerator unwrapped = localWorld.getBiomeGenerator().unwrap();
+        BiomeGenerator unwrapped = getBiomeGenerator().unwrap();
         if (unwrapped instanceof OldBiomeGenerator)
         {
             OldBiomeGenerator oldBiomeGenerator = (OldBiomeGenerator) unwrapped;
@@ -618,6 +773,15 @@ public class ChunkProviderTC
         this.riverHeight = ySections * (2.0D + riverHeightSum + noiseHeight * 0.2D) / 4.0D;
     }
 
+    private BiomeGenerator getBiomeGenerator()
+    {
+        if (this.biomeGenerator != null)
+        {
+            return this.biomeGenerator;
+        }
+        return this.localWorld.getBiomeGenerator();
+    }
+
     /**
      * Gets the BiomeConfig with the given id.
      * 
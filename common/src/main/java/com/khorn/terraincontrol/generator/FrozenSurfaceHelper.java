@@ -33,13 +33,43 @@ public class FrozenSurfaceHelper
     {
         int x = chunkCoord.getBlockXCenter();
         int z = chunkCoord.getBlockZCenter();
+
+        // First find the columns that are cold enough for the whole area.
+        // Freezing a column never changes the biome or the height of
+        // another column, so this doesn't need to wait for the freezing.
+        LocalBiome[] biomes = new LocalBiome[ChunkCoordinate.CHUNK_X_SIZE * ChunkCoordinate.CHUNK_Z_SIZE];
+        int[] heights = new int[biomes.length];
+        float[] temperatures = new float[biomes.length];
         for (int i = 0; i < ChunkCoordinate.CHUNK_X_SIZE; i++)
         {
             for (int j = 0; j < ChunkCoordinate.CHUNK_Z_SIZE; j++)
             {
-                int blockToFreezeX = x + i;
-                int blockToFreezeZ = z + j;
-                freezeColumn(blockToFreezeX, blockToFreezeZ);
+                int index = i * ChunkCoordinate.CHUNK_Z_SIZE + j;
+                LocalBiome biome = world.getBiome(x + i, z + j);
+                if (biome == null)
+                {
+                    continue;
+                }
+                int blockToFreezeY = world.getHighestBlockYAt(x + i, z + j);
+                float tempAtBlockToFreeze = biome.getTemperatureAt(x + i, blockToFreezeY, z + j);
+                if (blockToFreezeY > 0 && tempAtBlockToFreeze < WorldStandardValues.SNOW_AND_ICE_MAX_TEMP)
+                {
+                    biomes[index] = biome;
+                    heights[index] = blockToFreezeY;
+                    temperatures[index] = tempAtBlockToFreeze;
+                }
+            }
+        }
+
+        // Then freeze those columns. Frozen lakes may spread to the
+        // neighbouring columns, so this is still done column by column, in
+        // the same order as before.
+        for (int index = 0; index < biomes.length; index++)
+        {
+            if (biomes[index] != null)
+            {
+                freezeColumn(x + index / ChunkCoordinate.CHUNK_Z_SIZE, heights[index], z + index % ChunkCoordinate.CHUNK_Z_SIZE,
+                        biomes[index], temperatures[index]);
             }
         }
     }
@@ -59,17 +89,31 @@ public class FrozenSurfaceHelper
             float tempAtBlockToFreeze = biome.getTemperatureAt(x, blockToFreezeY, z);
             if (blockToFreezeY > 0 && tempAtBlockToFreeze < WorldStandardValues.SNOW_AND_ICE_MAX_TEMP)
             {
-                this.currentPropagationSize = 0;
-                // Start to freeze liquids
-                if (!this.freezeLiquid(x, blockToFreezeY -1, z))
-                {
-                    // Snow has to be placed on an empty space on a block that accepts snow in the world
-                    startSnowFall(x, blockToFreezeY, z, biome);
-                }
+                freezeColumn(x, blockToFreezeY, z, biome, tempAtBlockToFreeze);
             }
         }
     }
 
+    /**
+     * Performs a liquid freeze and lays down a layer of snow on a Chunk
+     * column that is known to be cold enough.
+     * @param x Location X
+     * @param y Highest block of the column
+     * @param z Location Z
+     * @param biome The biome associated with the chunk column
+     * @param temperature Temperature at the highest block
+     */
+    private void freezeColumn(int x, int y, int z, LocalBiome biome, float temperature)
+    {
+        this.currentPropagationSize = 0;
+        // Start to freeze liquids
+        if (!this.freezeLiquid(x, y - 1, z, biome))
+        {
+            // Snow has to be placed on an empty space on a block that accepts snow in the world
+            startSnowFall(x, y, z, biome, temperature);
+        }
+    }
+
     /**
      * Attempts to freeze liquids at the given location
      * @param x Location X
@@ -79,7 +123,19 @@ public class FrozenSurfaceHelper
      */
     private boolean freezeLiquid(int x, int y, int z)
     {
-        LocalBiome biome = world.getBiome(x, z);
+        return freezeLiquid(x, y, z, world.getBiome(x, z));
+    }
+
+    /**
+     * Attempts to freeze liquids at the given location
+     * @param x Location X
+     * @param y Location Y
+     * @param z Location Z
+     * @param biome The biome associated with the chunk column, may be null
+     * @return If a liquid was present at the given location (not necessarily successful in freezing)
+     */
+    private boolean freezeLiquid(int x, int y, int z, LocalBiome biome)
+    {
         if (biome != null)
         {
             LocalMaterialData materialToFreeze = world.getMaterial(x, y, z);
@@ -127,13 +183,13 @@ public class FrozenSurfaceHelper
      * @param y Location Y
      * @param z Location Z
      * @param biome The biome associated with the chunk column
+     * @param tempAtBlockToFreeze The temperature at the given location
      */
-    private void startSnowFall(int x, int y, int z, LocalBiome biome)
+    private void startSnowFall(int x, int y, int z, LocalBiome biome, float tempAtBlockToFreeze)
     {
         decreaseFactor = 0;
         BiomeConfig biomeConfig = biome.getBiomeConfig();
 
-        float tempAtBlockToFreeze = biome.getTemperatureAt(x, y, z);
         int snowHeight = biomeConfig.getSnowHeight(tempAtBlockToFreeze);
         // Decreased snow amounts for leaves
         LocalMaterialData materialToSnowAt = world.getMaterial(x, y, z);
@@ -3,6 +3,7 @@ package com.khorn.terraincontrol.generator;
 import static com.khorn.terraincontrol.util.ChunkCoordinate.CHUNK_X_SIZE;
 import static com.khorn.terraincontrol.util.ChunkCoordinate.CHUNK_Z_SIZE;
 
+import com.khorn.terraincontrol.LocalBiome;
 import com.khorn.terraincontrol.configuration.WorldConfig;
 import com.khorn.terraincontrol.util.ChunkCoordinate;
 
@@ -17,19 +18,81 @@ public final class GeneratingChunk
 
     private static final int BEDROCK_LAYER_HEIGHT = 5;
 
+    /**
+     * Chunks with more than this amount of water columns are not dry.
+     */
+    private static final int MAX_WATER_COLUMNS_WHEN_DRY = 5;
+
     public final int heightCap;
+    public final long worldSeed;
     public final Random random;
     private final byte[] waterLevel;
     private final double[] surfaceNoise;
+    private final LocalBiome[] biomes;
+    private final TerrainColumns terrainColumns;
+    private final int waterColumns;
 
-    GeneratingChunk(Random random, byte[] waterLevel, double[] surfaceNoise, int heightCap)
+    GeneratingChunk(Random random, byte[] waterLevel, double[] surfaceNoise, LocalBiome[] biomes, TerrainColumns terrainColumns,
+            int waterColumns, long worldSeed, int heightCap)
     {
+        this.waterColumns = waterColumns;
+        this.worldSeed = worldSeed;
         this.random = random;
         this.waterLevel = waterLevel;
         this.surfaceNoise = surfaceNoise;
+        this.biomes = biomes;
+        this.terrainColumns = terrainColumns;
         this.heightCap = heightCap;
     }
 
+    /**
+     * Gets the biome at the given position, as calculated by the biome
+     * generator.
+     * 
+     * @param x X position, 0 <= x < {@value ChunkCoordinate#CHUNK_X_SIZE}.
+     * @param z Z position, 0 <= z < {@value ChunkCoordinate#CHUNK_X_SIZE}.
+     * @return The biome.
+     */
+    public LocalBiome getBiome(int x, int z)
+    {
+        return this.biomes[x + z * CHUNK_X_SIZE];
+    }
+
+    /**
+     * Gets the raw terrain of the chunk, as generated before the biome blocks
+     * were placed. Blocks placed afterwards are not reflected.
+     * 
+     * @return The raw terrain.
+     */
+    public TerrainColumns getTerrainColumns()
+    {
+        return this.terrainColumns;
+    }
+
+    /**
+     * Gets the amount of columns where the terrain generator placed the
+     * water block of the biome at the maximum water level of the biome.
+     * Counted while the terrain is generated, so blocks placed afterwards
+     * are not reflected.
+     *
+     * @return The amount of columns, from 0 to 256.
+     */
+    public int getWaterColumns()
+    {
+        return this.waterColumns;
+    }
+
+    /**
+     * Gets whether there is almost no water in this chunk. Villages are
+     * only placed in dry chunks.
+     *
+     * @return True if the chunk is dry, false otherwise.
+     */
+    public boolean isDry()
+    {
+        return this.waterColumns <= MAX_WATER_COLUMNS_WHEN_DRY;
+    }
+
     /**
      * Gets the surface noise value at the given position.
      * 
@@ -100,4 +163,28 @@ public final class GeneratingChunk
         return false;
     }
 
+    /**
+     * Gets the highest position below the given y where
+     * {@link #mustCreateBedrockAt(WorldConfig, int)} can return true or
+     * uses the random number generator. Surface generators can skip all
+     * positions in between without calling that method, as long as they
+     * have nothing else to do there.
+     *
+     * @param worldConfig The worldConfig, for bedrock settings.
+     * @param y           The y position.
+     * @return The position, or -1 if there is no such position.
+     */
+    public int getNextBedrockHeight(WorldConfig worldConfig, int y)
+    {
+        if (worldConfig.ceilingBedrock && y - 1 >= this.heightCap - 2 - BEDROCK_LAYER_HEIGHT)
+        {
+            return y - 1;
+        }
+        if (!worldConfig.disableBedrock)
+        {
+            return Math.min(y - 1, BEDROCK_LAYER_HEIGHT - 1);
+        }
+        return -1;
+    }
+
 }
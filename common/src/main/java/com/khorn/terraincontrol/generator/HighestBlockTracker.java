@@ -0,0 +1,87 @@
+package com.khorn.terraincontrol.generator;
+
+import static com.khorn.terraincontrol.util.ChunkCoordinate.CHUNK_X_SIZE;
+import static com.khorn.terraincontrol.util.ChunkCoordinate.CHUNK_Z_SIZE;
+
+import com.khorn.terraincontrol.LocalMaterialData;
+import com.khorn.terraincontrol.util.ChunkCoordinate;
+
+/**
+ * Chunk buffer that passes all blocks on to another chunk buffer, and
+ * remembers the highest block placed in each column. Used after the raw
+ * terrain is generated, so that the height maps don't need to look at all
+ * the air above the terrain.
+ *
+ */
+final class HighestBlockTracker implements ChunkBuffer
+{
+    private final int[] highestBlocks = new int[CHUNK_X_SIZE * CHUNK_Z_SIZE];
+    private ChunkBuffer chunkBuffer;
+
+    /**
+     * Clears the tracker, so that it can be used for another chunk.
+     * @param chunkBuffer    The buffer to pass the blocks on to.
+     * @param terrainColumns The raw terrain of the chunk.
+     */
+    void reset(ChunkBuffer chunkBuffer, TerrainColumns terrainColumns)
+    {
+        this.chunkBuffer = chunkBuffer;
+        for (int x = 0; x < CHUNK_X_SIZE; x++)
+        {
+            for (int z = 0; z < CHUNK_Z_SIZE; z++)
+            {
+                // Start with the top of the raw terrain
+                int highestBlock = terrainColumns.getHeight() - 1;
+                int run = terrainColumns.getRun(x, highestBlock, z);
+                if (run != -1 && terrainColumns.getRunMaterial(x, z, run).isAir())
+                {
+                    highestBlock = terrainColumns.getRunBottom(x, z, run) - 1;
+                }
+                highestBlocks[x + z * CHUNK_X_SIZE] = highestBlock;
+            }
+        }
+    }
+
+    /**
+     * Gets the highest block that was ever placed in each column, indexed
+     * by x + z * 16. Blocks above may have been removed again, so the block
+     * at this height may be air.
+     * @return The heights.
+     */
+    int[] getHighestBlocks()
+    {
+        return highestBlocks;
+    }
+
+    @Override
+    public ChunkCoordinate getChunkCoordinate()
+    {
+        return chunkBuffer.getChunkCoordinate();
+    }
+
+    @Override
+    public void setBlock(int blockX, int blockY, int blockZ, LocalMaterialData material)
+    {
+        chunkBuffer.setBlock(blockX, blockY, blockZ, material);
+        int column = blockX + blockZ * CHUNK_X_SIZE;
+        if (blockY > highestBlocks[column] && !material.isAir())
+        {
+            highestBlocks[column] = blockY;
+        }
+    }
+
+    @Override
+    public LocalMaterialData getBlock(int blockX, int blockY, int blockZ)
+    {
+        return chunkBuffer.getBlock(blockX, blockY, blockZ);
+    }
+
+    /**
+     * Drops the reference to the chunk buffer, so that it can be garbage
+     * collected.
+     */
+    void clear()
+    {
+        this.chunkBuffer = null;
+    }
+}
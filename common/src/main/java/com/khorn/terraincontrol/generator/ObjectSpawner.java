@@ -4,11 +4,9 @@ import com.khorn.terraincontrol.LocalBiome;
 import com.khorn.terraincontrol.LocalWorld;
 import com.khorn.terraincontrol.TerrainControl;
 import com.khorn.terraincontrol.configuration.BiomeConfig;
-import com.khorn.terraincontrol.configuration.ConfigFunction;
 import com.khorn.terraincontrol.configuration.ConfigProvider;
 import com.khorn.terraincontrol.configuration.WorldConfig;
 import com.khorn.terraincontrol.generator.noise.NoiseGeneratorNewOctaves;
-import com.khorn.terraincontrol.generator.resource.Resource;
 import com.khorn.terraincontrol.logging.LogMarker;
 import com.khorn.terraincontrol.util.ChunkCoordinate;
 
@@ -64,11 +62,7 @@ public class ObjectSpawner
                 chunkCoord);
 
         // Resource sequence
-        for (ConfigFunction<BiomeConfig> res : biomeConfig.resourceSequence)
-        {
-            if (res instanceof Resource)
-                ((Resource) res).process(world, rand, hasVillage, chunkCoord);
-        }
+        biomeConfig.getPopulationPlan().populate(world, rand, hasVillage, chunkCoord);
 
         // Animals
         world.placePopulationMobs(biome, rand, chunkCoord);
@@ -0,0 +1,235 @@
+package com.khorn.terraincontrol.generator;
+
+import com.khorn.terraincontrol.LocalWorld;
+import com.khorn.terraincontrol.util.ChunkCoordinate;
+
+import java.util.BitSet;
+
+/**
+ * The four chunks that are being populated, together with everything that
+ * has to be done once population is finished.
+ *
+ * <p>Blocks are still placed in the chunks directly, so that Minecraft's
+ * own generators and height maps see them. What is staged here are the
+ * side effects of placing those blocks: instead of notifying the clients
+ * for every block, the platforms record which chunk sections were changed
+ * and send each changed section once, in
+ * {@link LocalWorld#endPopulation()}. In the same way, the blocks that need
+ * a light update are collected and relit in one go, so that a block that
+ * is placed multiple times is only relit once.
+ *
+ * @param <C> The chunk type of the platform.
+ */
+public final class PopulationBuffer<C>
+{
+    private static final int SECTION_HEIGHT_BITS = 4;
+
+    private final int chunkX;
+    private final int chunkZ;
+    private final C[] chunks;
+    private final ChunkHeightMaps[] heightMaps = new ChunkHeightMaps[4];
+    private final int[] changedSections = new int[4];
+    // Blocks that need a light update, created when needed
+    private final BitSet[] lightChanges = new BitSet[4];
+
+    /**
+     * Updates the light of single blocks in the world.
+     */
+    public interface LightUpdater
+    {
+        /**
+         * Updates the sky light at the given position and around it.
+         * @param x X in the world.
+         * @param y Y in the world.
+         * @param z Z in the world.
+         */
+        void updateSkyLight(int x, int y, int z);
+
+        /**
+         * Updates the block light at the given position and around it.
+         * @param x X in the world.
+         * @param y Y in the world.
+         * @param z Z in the world.
+         */
+        void updateBlockLight(int x, int y, int z);
+    }
+
+    /**
+     * Creates a new buffer.
+     * @param topLeft       The chunk being populated, which is the top left
+     *                      chunk of the four chunks.
+     * @param chunks        The four chunks, indexed by
+     *                      {@code indexX | (indexZ << 1)}.
+     * @param chunkProvider Used to look up the height maps of the chunks.
+     *                      Chunks without height maps get new, empty ones.
+     */
+    public PopulationBuffer(ChunkCoordinate topLeft, C[] chunks, ChunkProviderTC chunkProvider)
+    {
+        this.chunkX = topLeft.getChunkX();
+        this.chunkZ = topLeft.getChunkZ();
+        this.chunks = chunks;
+        for (int indexX = 0; indexX <= 1; indexX++)
+        {
+            for (int indexZ = 0; indexZ <= 1; indexZ++)
+            {
+                this.heightMaps[indexX | (indexZ << 1)] = chunkProvider.getOrCreateHeightMaps(chunkX + indexX, chunkZ + indexZ);
+            }
+        }
+    }
+
+    /**
+     * Gets whether this buffer was made for the given chunk.
+     * @param topLeft The chunk being populated.
+     * @return True if this buffer was made for the chunk, false otherwise.
+     */
+    public boolean isFor(ChunkCoordinate topLeft)
+    {
+        return topLeft.coordsMatch(this.chunkX, this.chunkZ);
+    }
+
+    /**
+     * Gets the index of the chunk that contains the given column.
+     * @param x X in the world.
+     * @param z Z in the world.
+     * @return The index, or -1 if the column is outside the four chunks.
+     */
+    public int getIndex(int x, int z)
+    {
+        int indexX = (x >> 4) - this.chunkX;
+        int indexZ = (z >> 4) - this.chunkZ;
+        if ((indexX == 0 || indexX == 1) && (indexZ == 0 || indexZ == 1))
+        {
+            return indexX | (indexZ << 1);
+        }
+        return -1;
+    }
+
+    /**
+     * Gets all four chunks.
+     * @return The chunks, indexed like {@link #getIndex(int, int)}. Must not
+     *         be modified.
+     */
+    public C[] getChunks()
+    {
+        return this.chunks;
+    }
+
+    /**
+     * Gets one of the chunks.
+     * @param index Index from {@link #getIndex(int, int)}.
+     * @return The chunk.
+     */
+    public C getChunk(int index)
+    {
+        return this.chunks[index];
+    }
+
+    /**
+     * Gets the height maps of one of the chunks.
+     * @param index Index from {@link #getIndex(int, int)}.
+     * @return The height maps.
+     */
+    public ChunkHeightMaps getHeightMaps(int index)
+    {
+        return this.heightMaps[index];
+    }
+
+    /**
+     * Makes the heights of all columns of the four chunks in the given area
+     * unknown. The area may extend outside the four chunks.
+     * @param minX Lowest x in the world, inclusive.
+     * @param minZ Lowest z in the world, inclusive.
+     * @param maxX Highest x in the world, inclusive.
+     * @param maxZ Highest z in the world, inclusive.
+     */
+    public void forgetColumns(int minX, int minZ, int maxX, int maxZ)
+    {
+        for (ChunkHeightMaps chunkHeightMaps : this.heightMaps)
+        {
+            chunkHeightMaps.forgetColumns(minX, minZ, maxX, maxZ);
+        }
+    }
+
+    /**
+     * Must be called after a block in one of the chunks has been changed.
+     * @param index Index from {@link #getIndex(int, int)}.
+     * @param x     X in the world.
+     * @param y     Y in the world.
+     * @param z     Z in the world.
+     */
+    public void blockChanged(int index, int x, int y, int z)
+    {
+        this.heightMaps[index].blockChanged(x, y, z);
+        this.changedSections[index] |= 1 << (y >> SECTION_HEIGHT_BITS);
+    }
+
+    /**
+     * Must be called after the opacity or the light emission of a block in
+     * one of the chunks has been changed. The light will be updated in
+     * {@link #updateLight(LightUpdater)}.
+     * @param index Index from {@link #getIndex(int, int)}.
+     * @param x     X in the world.
+     * @param y     Y in the world.
+     * @param z     Z in the world.
+     */
+    public void lightChanged(int index, int x, int y, int z)
+    {
+        BitSet chunkLightChanges = this.lightChanges[index];
+        if (chunkLightChanges == null)
+        {
+            chunkLightChanges = this.lightChanges[index] = new BitSet();
+        }
+        chunkLightChanges.set((y << 8) | ((z & 0xf) << 4) | (x & 0xf));
+    }
+
+    /**
+     * Updates the light of all blocks passed to
+     * {@link #lightChanged(int, int, int, int)} since the last call to this
+     * method. Must be called at the end of population, and before the light
+     * is read.
+     *
+     * <p>Each chunk is relit in two passes. The sky light pass goes through
+     * the changed blocks from the top down: a block that shades the blocks
+     * below it is relit before them, so the darkening it spreads already
+     * covers those blocks, and checking them afterwards finds nothing left
+     * to do. Relighting from the bottom up would instead spread the same
+     * change again for every block of a column. After that, the block light
+     * of all changed blocks is updated in a single pass.
+     * @param updater Updates the light of single blocks.
+     */
+    public void updateLight(LightUpdater updater)
+    {
+        for (int index = 0; index < 4; index++)
+        {
+            BitSet chunkLightChanges = this.lightChanges[index];
+            if (chunkLightChanges == null || chunkLightChanges.isEmpty())
+            {
+                continue;
+            }
+            int blockX = (this.chunkX + (index & 1)) << 4;
+            int blockZ = (this.chunkZ + (index >> 1)) << 4;
+
+            // Bits are ordered by y, so going backwards goes down
+            for (int i = chunkLightChanges.length() - 1; i >= 0; i = chunkLightChanges.previousSetBit(i - 1))
+            {
+                updater.updateSkyLight(blockX | (i & 0xf), i >> 8, blockZ | ((i >> 4) & 0xf));
+            }
+            for (int i = chunkLightChanges.nextSetBit(0); i >= 0; i = chunkLightChanges.nextSetBit(i + 1))
+            {
+                updater.updateBlockLight(blockX | (i & 0xf), i >> 8, blockZ | ((i >> 4) & 0xf));
+            }
+            chunkLightChanges.clear();
+        }
+    }
+
+    /**
+     * Gets the sections of one of the chunks that were changed.
+     * @param index Index from {@link #getIndex(int, int)}.
+     * @return Bit mask, bit n is set if the blocks from y = 16 * n to
+     *         16 * n + 15 were changed.
+     */
+    public int getChangedSections(int index)
+    {
+        return this.changedSections[index];
+    }
+}
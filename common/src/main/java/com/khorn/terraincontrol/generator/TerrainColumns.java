@@ -0,0 +1,128 @@
+package com.khorn.terraincontrol.generator;
+
+import static com.khorn.terraincontrol.util.ChunkCoordinate.CHUNK_X_SIZE;
+import static com.khorn.terraincontrol.util.ChunkCoordinate.CHUNK_Z_SIZE;
+
+import com.khorn.terraincontrol.LocalMaterialData;
+import com.khorn.terraincontrol.util.ChunkCoordinate;
+
+import java.util.Arrays;
+
+/**
+ * The raw terrain of a chunk, before any biome blocks are placed. Each
+ * column is stored as a list of runs: stretches of the same block, from the
+ * bottom up. The raw terrain only consists of a few stone, water and air
+ * runs, so the surface generators can use this to skip straight to the
+ * places where the block changes, instead of looking at every block.
+ *
+ */
+public final class TerrainColumns
+{
+    private static final int COLUMNS = CHUNK_X_SIZE * CHUNK_Z_SIZE;
+    private static final int INITIAL_RUNS = 8;
+
+    private final int[] runCounts = new int[COLUMNS];
+    private final int[][] runBottoms = new int[COLUMNS][INITIAL_RUNS];
+    private final LocalMaterialData[][] runMaterials = new LocalMaterialData[COLUMNS][INITIAL_RUNS];
+    private int height;
+
+    /**
+     * Removes all runs, so that another chunk can be stored.
+     * @param height Amount of blocks that will be stored in each column.
+     */
+    void reset(int height)
+    {
+        this.height = height;
+        Arrays.fill(runCounts, 0);
+        for (LocalMaterialData[] materials : runMaterials)
+        {
+            // Don't keep materials of old chunks alive
+            Arrays.fill(materials, null);
+        }
+    }
+
+    /**
+     * Stores a block. Blocks in a column must be stored from the bottom up,
+     * without skipping any height.
+     * @param x        X position in the chunk.
+     * @param y        Y position.
+     * @param z        Z position in the chunk.
+     * @param material The block.
+     */
+    void add(int x, int y, int z, LocalMaterialData material)
+    {
+        int column = x + z * CHUNK_X_SIZE;
+        int runCount = runCounts[column];
+        LocalMaterialData[] materials = runMaterials[column];
+        if (runCount > 0 && materials[runCount - 1] == material)
+        {
+            return;
+        }
+
+        if (runCount == materials.length)
+        {
+            materials = runMaterials[column] = Arrays.copyOf(materials, runCount * 2);
+            runBottoms[column] = Arrays.copyOf(runBottoms[column], runCount * 2);
+        }
+        materials[runCount] = material;
+        runBottoms[column][runCount] = y;
+        runCounts[column] = runCount + 1;
+    }
+
+    /**
+     * Gets the amount of blocks that are stored in each column. Blocks at
+     * or above this height were not placed by the terrain generator.
+     * @return The height.
+     */
+    public int getHeight()
+    {
+        return height;
+    }
+
+    /**
+     * Gets the run at the given position.
+     * @param x X position, 0 <= x < {@value ChunkCoordinate#CHUNK_X_SIZE}.
+     * @param y Y position.
+     * @param z Z position, 0 <= z < {@value ChunkCoordinate#CHUNK_Z_SIZE}.
+     * @return Index of the run, or -1 if there is no run at that height.
+     */
+    public int getRun(int x, int y, int z)
+    {
+        if (y < 0 || y >= height)
+        {
+            return -1;
+        }
+        int column = x + z * CHUNK_X_SIZE;
+        int[] bottoms = runBottoms[column];
+        int run = runCounts[column] - 1;
+        while (run >= 0 && bottoms[run] > y)
+        {
+            run--;
+        }
+        return run;
+    }
+
+    /**
+     * Gets the lowest y of a run.
+     * @param x   X position, 0 <= x < {@value ChunkCoordinate#CHUNK_X_SIZE}.
+     * @param z   Z position, 0 <= z < {@value ChunkCoordinate#CHUNK_Z_SIZE}.
+     * @param run Index of the run, from {@link #getRun(int, int, int)}.
+     * @return The y.
+     */
+    public int getRunBottom(int x, int z, int run)
+    {
+        return runBottoms[x + z * CHUNK_X_SIZE][run];
+    }
+
+    /**
+     * Gets the block of a run.
+     * @param x   X position, 0 <= x < {@value ChunkCoordinate#CHUNK_X_SIZE}.
+     * @param z   Z position, 0 <= z < {@value ChunkCoordinate#CHUNK_Z_SIZE}.
+     * @param run Index of the run, from {@link #getRun(int, int, int)}.
+     * @return The block.
+     */
+    public LocalMaterialData getRunMaterial(int x, int z, int run)
+    {
+        return runMaterials[x + z * CHUNK_X_SIZE][run];
+    }
+}
@@ -1,14 +1,25 @@
 package com.khorn.terraincontrol.generator.biome;
 
+import java.util.ArrayList;
+import java.util.List;
+
 public class ArraysCacheManager
 {
 
-    private static final ArraysCache[] ARRAYS_CACHES = new ArraysCache[4];
+    /**
+     * Maximum amount of caches that are kept. When more threads generate
+     * biomes at the same time, for example when rendering a map in
+     * parallel, the extra caches are dropped on release so that their
+     * arrays can be garbage collected.
+     */
+    private static final int MAX_CACHES = 4 + Runtime.getRuntime().availableProcessors();
+
+    private static final List<ArraysCache> ARRAYS_CACHES = new ArrayList<ArraysCache>();
 
     static
     {
-        for (int i = 0; i < ARRAYS_CACHES.length; i++)
-            ARRAYS_CACHES[i] = new ArraysCache();
+        for (int i = 0; i < 4; i++)
+            ARRAYS_CACHES.add(new ArraysCache());
 
     }
 
@@ -25,8 +36,13 @@ public class ArraysCacheManager
                 }
             }
 
+            // More threads are generating biomes than there are caches,
+            // for example when rendering a map in parallel
+            ArraysCache cache = new ArraysCache();
+            cache.isFree = false;
+            ARRAYS_CACHES.add(cache);
+            return cache;
         }
-        return null; // Exception ??
     }
 
     public static void ReleaseCache(ArraysCache cache)
@@ -34,6 +50,10 @@ public class ArraysCacheManager
         synchronized (ARRAYS_CACHES)
         {
             cache.release();
+            if (ARRAYS_CACHES.size() > MAX_CACHES)
+            {
+                ARRAYS_CACHES.remove(cache);
+            }
         }
     }
 
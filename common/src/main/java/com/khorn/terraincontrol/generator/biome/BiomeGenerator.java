@@ -109,6 +109,17 @@ public abstract class BiomeGenerator
         }
     }
 
+    /**
+     * Removes everything from the cache and releases its memory. Called when
+     * the world is unloaded. The biome generator can still be used
+     * afterwards. Does nothing if this biome generator has no cache of its
+     * own.
+     */
+    public void clearCache()
+    {
+        // No cache to clear
+    }
+
     public boolean canGenerateUnZoomed()
     {
         return false;
@@ -14,6 +14,17 @@ import java.util.Map.Entry;
 public class BiomeModeManager
 {
 
+    /**
+     * Maximum amount of unzoomed cells requested at once when previewing.
+     */
+    private static final int MAX_PREVIEW_STRIP_SIZE = 1 << 20;
+
+    /**
+     * Above this stride (in unzoomed cells) preview samples are generated
+     * one by one instead of row by row.
+     */
+    private static final int MAX_PREVIEW_ROW_STRIDE = 32;
+
     // Stores all biome managers
     private Map<String, Class<? extends BiomeGenerator>> registered = new HashMap<String, Class<? extends BiomeGenerator>>();
 
@@ -92,6 +103,112 @@ public class BiomeModeManager
         return CachedBiomeGenerator.makeCached(create(biomeModeClass, world));
     }
 
+    /**
+     * Gets the distance between two samples that
+     * {@link #getPreviewBiomes(BiomeGenerator, int, int, int, int, int)}
+     * actually uses. When sampling unzoomed biomes, the requested distance
+     * is rounded up to a multiple of four blocks.
+     * @param generator The biome generator that will be sampled.
+     * @param stride    The requested distance in blocks.
+     * @return The distance in blocks.
+     */
+    public int getPreviewStride(BiomeGenerator generator, int stride)
+    {
+        stride = Math.max(1, stride);
+        if (generator.canGenerateUnZoomed())
+        {
+            // One unzoomed cell is 4x4 blocks
+            return (stride + 3) / 4 * 4;
+        }
+        return stride;
+    }
+
+    /**
+     * Samples the biomes of a large area at a low resolution, for previewing
+     * the biome layout of a world without generating any terrain. For biome
+     * modes that support it, only the layers up to the unzoomed resolution of
+     * four blocks are evaluated, and only for the rows (or, for large
+     * strides, the points) that are actually sampled.
+     *
+     * <p>Biome generators are not thread safe, so the caller must make sure
+     * that the given generator is not in use by another thread.
+     * @param generator The biome generator to sample.
+     * @param x         X of the first sample in blocks.
+     * @param z         Z of the first sample in blocks.
+     * @param xSamples  Amount of samples on the x axis.
+     * @param zSamples  Amount of samples on the z axis.
+     * @param stride    Distance between two samples in blocks, rounded as
+     *                  described in
+     *                  {@link #getPreviewStride(BiomeGenerator, int)}.
+     * @return The biome ids, row by row: sample (i, j) is stored at
+     *         {@code i + j * xSamples}.
+     */
+    public int[] getPreviewBiomes(BiomeGenerator generator, int x, int z, int xSamples, int zSamples, int stride)
+    {
+        int[] previewBiomes = new int[xSamples * zSamples];
+        stride = getPreviewStride(generator, stride);
+
+        if (!generator.canGenerateUnZoomed())
+        {
+            // Generate only the sampled rows at full resolution
+            int[] row = null;
+            for (int j = 0; j < zSamples; j++)
+            {
+                row = generator.getBiomes(row, x, z + j * stride, (xSamples - 1) * stride + 1, 1, OutputType.DEFAULT_FOR_WORLD);
+                for (int i = 0; i < xSamples; i++)
+                {
+                    previewBiomes[i + j * xSamples] = row[i * stride];
+                }
+            }
+            return previewBiomes;
+        }
+
+        // One unzoomed cell is 4x4 blocks
+        int cellX = x >> 2;
+        int cellZ = z >> 2;
+        int cellStride = stride / 4;
+
+        if (cellStride == 1)
+        {
+            // Every cell is needed, generate strips of rows in one go
+            int stripRows = Math.max(1, MAX_PREVIEW_STRIP_SIZE / xSamples);
+            for (int j = 0; j < zSamples; j += stripRows)
+            {
+                int rows = Math.min(stripRows, zSamples - j);
+                int[] strip = generator.getBiomesUnZoomed(null, cellX, cellZ + j, xSamples, rows, OutputType.DEFAULT_FOR_WORLD);
+                System.arraycopy(strip, 0, previewBiomes, j * xSamples, xSamples * rows);
+            }
+        } else if (cellStride <= MAX_PREVIEW_ROW_STRIDE)
+        {
+            // Generate only the sampled rows, skipping the cells in between
+            // is cheaper than the overhead of sampling each point on its own
+            int[] row = null;
+            for (int j = 0; j < zSamples; j++)
+            {
+                row = generator.getBiomesUnZoomed(row, cellX, cellZ + j * cellStride, (xSamples - 1) * cellStride + 1, 1,
+                        OutputType.DEFAULT_FOR_WORLD);
+                for (int i = 0; i < xSamples; i++)
+                {
+                    previewBiomes[i + j * xSamples] = row[i * cellStride];
+                }
+            }
+        } else
+        {
+            // Samples are far apart, generate each one on its own
+            int[] point = new int[1];
+            for (int j = 0; j < zSamples; j++)
+            {
+                for (int i = 0; i < xSamples; i++)
+                {
+                    point = generator.getBiomesUnZoomed(point, cellX + i * cellStride, cellZ + j * cellStride, 1, 1,
+                            OutputType.DEFAULT_FOR_WORLD);
+                    previewBiomes[i + j * xSamples] = point[0];
+                }
+            }
+        }
+        return previewBiomes;
+    }
+
     /**
      * Gets the name of the biome generator, based on how it registered
      * itself.
@@ -3,11 +3,6 @@ package com.khorn.terraincontrol.generator.biome;
 import com.khorn.terraincontrol.LocalWorld;
 import com.khorn.terraincontrol.util.ChunkCoordinate;
 
-import java.util.HashMap;
-import java.util.Iterator;
-import java.util.Map;
-import java.util.Map.Entry;
-
 /**
  * Wraps uncached biome generators.
  * @see BiomeModeManager#createCached(Class, LocalWorld)
@@ -15,44 +10,18 @@ import java.util.Map.Entry;
 class CachedBiomeGenerator extends BiomeGenerator
 {
     /**
-     * Caches the biomes of a single chunk.
-     *
+     * Time in milliseconds after which unused chunks are removed.
      */
-    private static class Block
-    {
-        /**
-         * The array of biome types stored in this BiomeCache.Block.
-         */
-        private int[] biomes = new int[ChunkCoordinate.CHUNK_X_SIZE * ChunkCoordinate.CHUNK_Z_SIZE];
-        /**
-         * The last time this BiomeCacheBlock was accessed, in milliseconds.
-         */
-        private long lastAccessTime;
-
-        Block(BiomeGenerator generator, ChunkCoordinate chunkCoord)
-        {
-            biomes = generator.getBiomes(biomes, chunkCoord.getBlockX(), chunkCoord.getBlockZ(), ChunkCoordinate.CHUNK_X_SIZE,
-                    ChunkCoordinate.CHUNK_Z_SIZE, OutputType.DEFAULT_FOR_WORLD);
-        }
-
-        /**
-         * Gets the biome type id of the column at the given location.
-         * @param blockX X location of the column, must fall in this cache
-         *               block.
-         * @param blockZ Z location of the column, must fall in this cache
-         *               block.
-         * @return The biome type id.
-         */
-        int getCalculatedBiomeId(int blockX, int blockZ)
-        {
-            return biomes[blockX & 15 | (blockZ & 15) << 4];
-        }
-    }
+    private static final long MAX_UNUSED_TIME = 30000L;
 
     /**
-     * The map of cached BiomeCacheBlocks.
+     * The cached biomes of all chunks, stored off-heap.
      */
-    private Map<ChunkCoordinate, CachedBiomeGenerator.Block> cacheMap = new HashMap<ChunkCoordinate, Block>();
+    private PackedBiomeCache cache = new PackedBiomeCache(1);
+    /**
+     * Used to generate the biomes of a single chunk.
+     */
+    private final int[] chunkBiomes = new int[ChunkCoordinate.CHUNK_X_SIZE * ChunkCoordinate.CHUNK_Z_SIZE];
     /**
      * The uncached biome generator.
      */
@@ -97,46 +66,58 @@ class CachedBiomeGenerator extends BiomeGenerator
         }
 
         this.lastCleanupTime = currentTime;
+        cache.removeUnused(currentTime, MAX_UNUSED_TIME);
+    }
 
-        for (Iterator<Entry<ChunkCoordinate, CachedBiomeGenerator.Block>> it = cacheMap.entrySet().iterator(); it.hasNext();)
-        {
-            Entry<ChunkCoordinate, CachedBiomeGenerator.Block> entry = it.next();
-            CachedBiomeGenerator.Block block = entry.getValue();
-            long timeSinceLastAccessed = currentTime - block.lastAccessTime;
-
-            if (timeSinceLastAccessed > 30000L || timeSinceLastAccessed < 0L)
-            {
-                it.remove();
-            }
-        }
-
+    @Override
+    public void clearCache()
+    {
+        cache.clear();
     }
 
     @Override
     public int getBiome(int x, int z)
     {
-        ChunkCoordinate chunkCoord = ChunkCoordinate.fromBlockCoords(x, z);
-        CachedBiomeGenerator.Block cacheBlock = getBiomeCacheBlock(chunkCoord);
-        return cacheBlock.getCalculatedBiomeId(x, z);
+        int slot = getBiomeCacheSlot(x >> 4, z >> 4);
+        return cache.getBiome(slot, x & 15 | (z & 15) << 4);
     }
 
     /**
-     * Returns a biome cache block at location specified.
-     * @param chunkCoord The chunk to get the cache entry for.
-     * @return The biome cache block.
+     * Gets the slot in the cache of the given chunk, generating the biomes
+     * of the chunk if they are not yet cached.
+     * @param chunkX X of the chunk.
+     * @param chunkZ Z of the chunk.
+     * @return The slot.
      */
-    private CachedBiomeGenerator.Block getBiomeCacheBlock(ChunkCoordinate chunkCoord)
+    private int getBiomeCacheSlot(int chunkX, int chunkZ)
     {
-        CachedBiomeGenerator.Block block = this.cacheMap.get(chunkCoord);
+        int slot = cache.find(chunkX, chunkZ);
 
-        if (block == null)
+        if (slot == PackedBiomeCache.NO_SLOT)
         {
-            block = new CachedBiomeGenerator.Block(generator, chunkCoord);
-            this.cacheMap.put(chunkCoord, block);
+            int[] biomes = generator.getBiomes(chunkBiomes, chunkX * ChunkCoordinate.CHUNK_X_SIZE, chunkZ * ChunkCoordinate.CHUNK_Z_SIZE,
+                    ChunkCoordinate.CHUNK_X_SIZE, ChunkCoordinate.CHUNK_Z_SIZE, OutputType.DEFAULT_FOR_WORLD);
+            if (getMaxId(biomes) > cache.getMaxBiomeId())
+            {
+                // Start over with a cache that can store larger ids
+                cache.clear();
+                cache = new PackedBiomeCache(2);
+            }
+            slot = cache.add(chunkX, chunkZ, biomes);
         }
 
-        block.lastAccessTime = System.currentTimeMillis();
-        return block;
+        cache.touch(slot, System.currentTimeMillis());
+        return slot;
+    }
+
+    private static int getMaxId(int[] biomes)
+    {
+        int maxId = 0;
+        for (int biome : biomes)
+        {
+            maxId = Math.max(maxId, biome);
+        }
+        return maxId;
     }
 
     @Override
@@ -148,10 +129,9 @@ class CachedBiomeGenerator extends BiomeGenerator
             {
                 biomeArray = new int[xSize * zSize];
             }
-            int[] cachedBiomes = getCachedBiomes(ChunkCoordinate.fromBlockCoords(x, z));
-            // Avoid leaking references to the cached array - Minecraft likes
-            // to change those arrays, corrupting the cache
-            System.arraycopy(cachedBiomes, 0, biomeArray, 0, xSize * zSize);
+            // Biomes are copied out of the cache, so Minecraft can freely
+            // change the returned array
+            cache.getBiomes(getBiomeCacheSlot(x >> 4, z >> 4), biomeArray);
             return biomeArray;
         }
         return generator.getBiomes(biomeArray, x, z, xSize, zSize, type);
@@ -169,17 +149,6 @@ class CachedBiomeGenerator extends BiomeGenerator
         return generator.canGenerateUnZoomed();
     }
 
-    /**
-     * Returns the array of cached biome types in the BiomeCacheBlock at the
-     * given location.
-     * @param chunkCoord The chunk to get cached biomes for.
-     * @return The biomes.
-     */
-    public int[] getCachedBiomes(ChunkCoordinate chunkCoord)
-    {
-        return this.getBiomeCacheBlock(chunkCoord).biomes;
-    }
-
     @Override
     public boolean isCached()
     {
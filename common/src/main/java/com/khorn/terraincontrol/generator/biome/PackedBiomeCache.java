@@ -0,0 +1,336 @@
+package com.khorn.terraincontrol.generator.biome;
+
+import com.khorn.terraincontrol.util.ChunkCoordinate;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Stores the biomes of many chunks outside of the Java heap. Each biome id
+ * takes one byte, or two bytes if larger biome ids must be stored. The
+ * biomes of a chunk are stored in a slot in one of the direct memory pages.
+ * Slots are looked up using an open addressing hash table, with the chunk
+ * coordinates packed in a long as key.
+ *
+ * <p>This class is not thread safe.
+ *
+ */
+final class PackedBiomeCache
+{
+    /**
+     * Value in the hash table for positions that are not in use.
+     */
+    static final int NO_SLOT = -1;
+
+    private static final int CHUNK_COLUMNS = ChunkCoordinate.CHUNK_X_SIZE * ChunkCoordinate.CHUNK_Z_SIZE;
+    private static final int PAGE_SIZE = 1 << 18;
+    private static final int MIN_TABLE_SIZE = 256;
+
+    private final int bytesPerBiome;
+    private final int slotSize;
+    private final int slotsPerPage;
+    private final List<ByteBuffer> pages = new ArrayList<ByteBuffer>();
+
+    /**
+     * Chunk key and last access time of each slot.
+     */
+    private long[] slotKeys = new long[0];
+    private long[] slotAccessTimes = new long[0];
+
+    /**
+     * Slots that were used once, but are now free again.
+     */
+    private int[] freeSlots = new int[16];
+    private int freeSlotCount;
+
+    /**
+     * Amount of slots that were ever handed out. All slots below this
+     * number are either in use or in {@link #freeSlots}.
+     */
+    private int slotCount;
+
+    private long[] tableKeys;
+    private int[] tableSlots;
+    private int size;
+
+    /**
+     * Creates a new, empty cache.
+     * @param bytesPerBiome 1 to store biome ids up to 255, 2 to store biome
+     *                      ids up to 65535.
+     */
+    PackedBiomeCache(int bytesPerBiome)
+    {
+        if (bytesPerBiome != 1 && bytesPerBiome != 2)
+        {
+            throw new IllegalArgumentException("Biomes are stored in 1 or 2 bytes, got " + bytesPerBiome);
+        }
+        this.bytesPerBiome = bytesPerBiome;
+        this.slotSize = CHUNK_COLUMNS * bytesPerBiome;
+        this.slotsPerPage = PAGE_SIZE / slotSize;
+        createTable(MIN_TABLE_SIZE);
+    }
+
+    /**
+     * Gets the highest biome id that can be stored in this cache.
+     * @return The highest biome id.
+     */
+    int getMaxBiomeId()
+    {
+        return bytesPerBiome == 1 ? 0xFF : 0xFFFF;
+    }
+
+    /**
+     * Gets the amount of chunks stored in this cache.
+     * @return The amount of chunks.
+     */
+    int size()
+    {
+        return size;
+    }
+
+    /**
+     * Finds the slot of the given chunk.
+     * @param chunkX X of the chunk.
+     * @param chunkZ Z of the chunk.
+     * @return The slot, or {@link #NO_SLOT} if the chunk is not cached.
+     */
+    int find(int chunkX, int chunkZ)
+    {
+        long key = toKey(chunkX, chunkZ);
+        int mask = tableSlots.length - 1;
+        for (int i = hash(key) & mask;; i = (i + 1) & mask)
+        {
+            int slot = tableSlots[i];
+            if (slot == NO_SLOT || tableKeys[i] == key)
+            {
+                return slot;
+            }
+        }
+    }
+
+    /**
+     * Stores the biomes of a chunk that is not yet in this cache.
+     * @param chunkX X of the chunk.
+     * @param chunkZ Z of the chunk.
+     * @param biomes The biomes, indexed by {@code x | z << 4}. All biome ids
+     *               must be at most {@link #getMaxBiomeId()}.
+     * @return The slot the biomes were stored in.
+     */
+    int add(int chunkX, int chunkZ, int[] biomes)
+    {
+        if ((size + 1) * 2 > tableSlots.length)
+        {
+            rehash(tableSlots.length * 2);
+        }
+
+        int slot = allocateSlot();
+        long key = toKey(chunkX, chunkZ);
+        slotKeys[slot] = key;
+        insert(key, slot);
+        size++;
+
+        ByteBuffer page = pages.get(slot / slotsPerPage);
+        int offset = (slot % slotsPerPage) * slotSize;
+        if (bytesPerBiome == 1)
+        {
+            for (int i = 0; i < CHUNK_COLUMNS; i++)
+            {
+                page.put(offset + i, (byte) biomes[i]);
+            }
+        } else
+        {
+            for (int i = 0; i < CHUNK_COLUMNS; i++)
+            {
+                page.putShort(offset + i * 2, (short) biomes[i]);
+            }
+        }
+        return slot;
+    }
+
+    /**
+     * Marks the slot as accessed at the given time.
+     * @param slot The slot.
+     * @param time The time in milliseconds.
+     */
+    void touch(int slot, long time)
+    {
+        slotAccessTimes[slot] = time;
+    }
+
+    /**
+     * Gets a single biome.
+     * @param slot   The slot of the chunk.
+     * @param column Index of the column, {@code x | z << 4}.
+     * @return The biome id.
+     */
+    int getBiome(int slot, int column)
+    {
+        ByteBuffer page = pages.get(slot / slotsPerPage);
+        int offset = (slot % slotsPerPage) * slotSize;
+        if (bytesPerBiome == 1)
+        {
+            return page.get(offset + column) & 0xFF;
+        }
+        return page.getShort(offset + column * 2) & 0xFFFF;
+    }
+
+    /**
+     * Copies all biomes of a chunk to the given array.
+     * @param slot   The slot of the chunk.
+     * @param biomes The array, must have room for 256 biomes.
+     */
+    void getBiomes(int slot, int[] biomes)
+    {
+        ByteBuffer page = pages.get(slot / slotsPerPage);
+        int offset = (slot % slotsPerPage) * slotSize;
+        if (bytesPerBiome == 1)
+        {
+            for (int i = 0; i < CHUNK_COLUMNS; i++)
+            {
+                biomes[i] = page.get(offset + i) & 0xFF;
+            }
+        } else
+        {
+            for (int i = 0; i < CHUNK_COLUMNS; i++)
+            {
+                biomes[i] = page.getShort(offset + i * 2) & 0xFFFF;
+            }
+        }
+    }
+
+    /**
+     * Removes all chunks and drops the memory pages. The direct memory of
+     * the pages is freed once they are garbage collected. The cache can
+     * still be used afterwards.
+     */
+    void clear()
+    {
+        pages.clear();
+        slotKeys = new long[0];
+        slotAccessTimes = new long[0];
+        freeSlots = new int[16];
+        freeSlotCount = 0;
+        slotCount = 0;
+        size = 0;
+        createTable(MIN_TABLE_SIZE);
+    }
+
+    /**
+     * Removes all chunks that were not accessed recently. Chunks with an
+     * access time in the future are removed too, in case the clock was
+     * turned back.
+     * @param currentTime The current time in milliseconds.
+     * @param maxAge      Maximum time in milliseconds since the last access.
+     */
+    void removeUnused(long currentTime, long maxAge)
+    {
+        int removed = 0;
+        for (int i = 0; i < tableSlots.length; i++)
+        {
+            int slot = tableSlots[i];
+            if (slot == NO_SLOT)
+            {
+                continue;
+            }
+            long timeSinceLastAccessed = currentTime - slotAccessTimes[slot];
+            if (timeSinceLastAccessed > maxAge || timeSinceLastAccessed < 0L)
+            {
+                freeSlot(slot);
+                tableSlots[i] = NO_SLOT;
+                removed++;
+            }
+        }
+
+        if (removed > 0)
+        {
+            size -= removed;
+            if (size == 0)
+            {
+                // Nothing in use, so the pages can go as well
+                clear();
+                return;
+            }
+            // Removing entries breaks the probe sequences, so the table is
+            // rebuilt from the remaining slots
+            int tableSize = MIN_TABLE_SIZE;
+            while (size * 2 > tableSize)
+            {
+                tableSize *= 2;
+            }
+            rehash(tableSize);
+        }
+    }
+
+    private int allocateSlot()
+    {
+        if (freeSlotCount > 0)
+        {
+            freeSlotCount--;
+            return freeSlots[freeSlotCount];
+        }
+
+        int slot = slotCount++;
+        if (slot >= pages.size() * slotsPerPage)
+        {
+            pages.add(ByteBuffer.allocateDirect(PAGE_SIZE));
+            int totalSlots = pages.size() * slotsPerPage;
+            slotKeys = Arrays.copyOf(slotKeys, totalSlots);
+            slotAccessTimes = Arrays.copyOf(slotAccessTimes, totalSlots);
+        }
+        return slot;
+    }
+
+    private void freeSlot(int slot)
+    {
+        if (freeSlotCount == freeSlots.length)
+        {
+            freeSlots = Arrays.copyOf(freeSlots, freeSlotCount * 2);
+        }
+        freeSlots[freeSlotCount++] = slot;
+    }
+
+    private void createTable(int tableSize)
+    {
+        tableKeys = new long[tableSize];
+        tableSlots = new int[tableSize];
+        Arrays.fill(tableSlots, NO_SLOT);
+    }
+
+    private void rehash(int tableSize)
+    {
+        int[] oldSlots = tableSlots;
+        createTable(tableSize);
+        for (int slot : oldSlots)
+        {
+            if (slot != NO_SLOT)
+            {
+                insert(slotKeys[slot], slot);
+            }
+        }
+    }
+
+    private void insert(long key, int slot)
+    {
+        int mask = tableSlots.length - 1;
+        int i = hash(key) & mask;
+        while (tableSlots[i] != NO_SLOT)
+        {
+            i = (i + 1) & mask;
+        }
+        tableKeys[i] = key;
+        tableSlots[i] = slot;
+    }
+
+    static long toKey(int chunkX, int chunkZ)
+    {
+        return ((long) chunkX << 32) | (chunkZ & 0xFFFFFFFFL);
+    }
+
+    static int hash(long key)
+    {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32));
+    }
+}
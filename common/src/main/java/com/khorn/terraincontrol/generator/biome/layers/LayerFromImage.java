@@ -9,6 +9,8 @@ import com.khorn.terraincontrol.logging.LogMarker;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
+import java.util.Map;
+import java.util.WeakHashMap;
 
 import javax.imageio.ImageIO;
 
@@ -16,6 +18,7 @@ public class LayerFromImage extends Layer
 {
 
     private int[] biomeMap;
+    private TiledBiomeImage tiledBiomeMap;
     private int mapHeight;
     private int mapWidth;
     private int fillBiome = 0;
@@ -32,69 +35,11 @@ public class LayerFromImage extends Layer
         this.imageMode = config.imageMode;
         this.fillBiome = world.getBiomeByName(config.imageFillBiome).getIds().getGenerationId();
 
-        // Read from file
-        try
-        {
-            final File image = new File(config.settingsDir, config.imageFile);
-            final BufferedImage map = ImageIO.read(image);
-
-            this.mapWidth = map.getWidth(null);
-            this.mapHeight = map.getHeight(null);
-            int[] colorMap = new int[this.mapHeight * this.mapWidth];
-
-            map.getRGB(0, 0, this.mapWidth, this.mapHeight, colorMap, 0, this.mapWidth);
-
-            // Rotate RGBs if need
-            switch (config.imageOrientation)
-            {
-                case North:
-                    // Default behavior - nothing to rotate
-                    break;
-                case South:
-                    // Rotate picture 180 degrees
-                    int[] colorMap180 = new int[colorMap.length];
-                    for (int y = 0; y < this.mapHeight; y++)
-                        for (int x = 0; x < this.mapWidth; x++)
-                            colorMap180[(this.mapHeight - 1 - y) * this.mapWidth + this.mapWidth - 1 - x] = colorMap[y * this.mapWidth + x];
-                    colorMap = colorMap180;
-                    break;
-                case West:
-                    // Rotate picture CW
-                    int[] colorMapCW = new int[colorMap.length];
-                    for (int y = 0; y < this.mapHeight; y++)
-                        for (int x = 0; x < this.mapWidth; x++)
-                            colorMapCW[x * this.mapHeight + this.mapHeight - 1 - y] = colorMap[y * this.mapWidth + x];
-                    colorMap = colorMapCW;
-                    this.mapWidth = map.getHeight(null);
-                    this.mapHeight = map.getWidth(null);
-                    break;
-                case East:
-                    // Rotate picture CCW
-                    int[] colorMapCCW = new int[colorMap.length];
-                    for (int y = 0; y < this.mapHeight; y++)
-                        for (int x = 0; x < this.mapWidth; x++)
-                            colorMapCCW[(this.mapWidth - 1 - x) * this.mapHeight + y] = colorMap[y * this.mapWidth + x];
-                    colorMap = colorMapCCW;
-                    this.mapWidth = map.getHeight(null);
-                    this.mapHeight = map.getWidth(null);
-                    break;
-            }
-
-            this.biomeMap = new int[colorMap.length];
-
-            for (int nColor = 0; nColor < colorMap.length; nColor++)
-            {
-                int color = colorMap[nColor] & 0x00FFFFFF;
-
-                if (config.biomeColorMap.containsKey(color))
-                    this.biomeMap[nColor] = config.biomeColorMap.get(color);
-                else
-                    this.biomeMap[nColor] = fillBiome;
-            }
-        } catch (IOException ioexception)
-        {
-            TerrainControl.log(LogMarker.FATAL, ioexception.getStackTrace().toString());
-        }
+        BiomeImage image = BiomeImage.get(config, this.fillBiome);
+        this.biomeMap = image.biomeMap;
+        this.tiledBiomeMap = image.tiledBiomeMap;
+        this.mapWidth = image.width;
+        this.mapHeight = image.height;
     }
 
     @Override
@@ -116,7 +61,7 @@ public class LayerFromImage extends Layer
                             Buffer_x += this.mapWidth;
                         if (Buffer_z < 0)
                             Buffer_z += this.mapHeight;
-                        resultBiomes[(xi + zi * xSize)] = this.biomeMap[Buffer_x + Buffer_z * this.mapWidth];
+                        resultBiomes[(xi + zi * xSize)] = getBiome(Buffer_x, Buffer_z);
                     }
                 return resultBiomes;
             case Mirror:
@@ -136,7 +81,7 @@ public class LayerFromImage extends Layer
                             Buffer_x = this.mapWidth - 1 - Buffer_x;
                         if (Buffer_zq >= this.mapHeight)
                             Buffer_z = this.mapHeight - 1 - Buffer_z;
-                        resultBiomes[(xi + zi * xSize)] = this.biomeMap[Buffer_x + Buffer_z * this.mapWidth];
+                        resultBiomes[(xi + zi * xSize)] = getBiome(Buffer_x, Buffer_z);
                     }
                 return resultBiomes;
             case ContinueNormal:
@@ -155,7 +100,7 @@ public class LayerFromImage extends Layer
                             else
                                 resultBiomes[(xi + zi * xSize)] = this.fillBiome;
                         } else
-                            resultBiomes[(xi + zi * xSize)] = this.biomeMap[Buffer_x + Buffer_z * this.mapWidth];
+                            resultBiomes[(xi + zi * xSize)] = getBiome(Buffer_x, Buffer_z);
                     }
                 break;
             case FillEmpty:
@@ -168,11 +113,127 @@ public class LayerFromImage extends Layer
                         if (Buffer_x < 0 || Buffer_x >= this.mapWidth || Buffer_z < 0 || Buffer_z >= this.mapHeight)
                             resultBiomes[(xi + zi * xSize)] = this.fillBiome;
                         else
-                            resultBiomes[(xi + zi * xSize)] = this.biomeMap[Buffer_x + Buffer_z * this.mapWidth];
+                            resultBiomes[(xi + zi * xSize)] = getBiome(Buffer_x, Buffer_z);
                     }
                 break;
         }
         return resultBiomes;
     }
 
+    private int getBiome(int mapX, int mapZ)
+    {
+        if (this.tiledBiomeMap != null)
+            return this.tiledBiomeMap.getBiome(mapX, mapZ);
+        return this.biomeMap[mapX + mapZ * this.mapWidth];
+    }
+
+    /**
+     * The biome ids of the image of a world. Loading the image is slow and
+     * the loaded image is never modified, so it is shared by all layers that
+     * are created for the same world config, for example by the biome
+     * generators of the world and of a map that is being rendered.
+     */
+    private static final class BiomeImage
+    {
+        private static final Map<WorldConfig, BiomeImage> LOADED = new WeakHashMap<WorldConfig, BiomeImage>();
+
+        private int[] biomeMap;
+        private TiledBiomeImage tiledBiomeMap;
+        private int width;
+        private int height;
+
+        private static synchronized BiomeImage get(WorldConfig config, int fillBiome)
+        {
+            BiomeImage image = LOADED.get(config);
+            if (image == null)
+            {
+                image = new BiomeImage(config, fillBiome);
+                LOADED.put(config, image);
+            }
+            return image;
+        }
+
+        private BiomeImage(WorldConfig config, int fillBiome)
+        {
+            if (config.imageTileCache)
+            {
+                try
+                {
+                    this.tiledBiomeMap = new TiledBiomeImage(config, fillBiome);
+                    this.width = this.tiledBiomeMap.getWidth();
+                    this.height = this.tiledBiomeMap.getHeight();
+                    return;
+                } catch (IOException e)
+                {
+                    TerrainControl.log(LogMarker.WARN, "Cannot use tile cache for biome map, loading whole image instead: {}",
+                            e.getMessage());
+                }
+            }
+
+            // Read from file
+            try
+            {
+                final File image = new File(config.settingsDir, config.imageFile);
+                final BufferedImage map = ImageIO.read(image);
+
+                this.width = map.getWidth(null);
+                this.height = map.getHeight(null);
+                int[] colorMap = new int[this.height * this.width];
+
+                map.getRGB(0, 0, this.width, this.height, colorMap, 0, this.width);
+
+                // Rotate RGBs if need
+                switch (config.imageOrientation)
+                {
+                    case North:
+                        // Default behavior - nothing to rotate
+                        break;
+                    case South:
+                        // Rotate picture 180 degrees
+                        int[] colorMap180 = new int[colorMap.length];
+                        for (int y = 0; y < this.height; y++)
+                            for (int x = 0; x < this.width; x++)
+                                colorMap180[(this.height - 1 - y) * this.width + this.width - 1 - x] = colorMap[y * this.width + x];
+                        colorMap = colorMap180;
+                        break;
+                    case West:
+                        // Rotate picture CW
+                        int[] colorMapCW = new int[colorMap.length];
+                        for (int y = 0; y < this.height; y++)
+                            for (int x = 0; x < this.width; x++)
+                                colorMapCW[x * this.height + this.height - 1 - y] = colorMap[y * this.width + x];
+                        colorMap = colorMapCW;
+                        this.width = map.getHeight(null);
+                        this.height = map.getWidth(null);
+                        break;
+                    case East:
+                        // Rotate picture CCW
+                        int[] colorMapCCW = new int[colorMap.length];
+                        for (int y = 0; y < this.height; y++)
+                            for (int x = 0; x < this.width; x++)
+                                colorMapCCW[(this.width - 1 - x) * this.height + y] = colorMap[y * this.width + x];
+                        colorMap = colorMapCCW;
+                        this.width = map.getHeight(null);
+                        this.height = map.getWidth(null);
+                        break;
+                }
+
+                this.biomeMap = new int[colorMap.length];
+
+                for (int nColor = 0; nColor < colorMap.length; nColor++)
+                {
+                    int color = colorMap[nColor] & 0x00FFFFFF;
+
+                    if (config.biomeColorMap.containsKey(color))
+                        this.biomeMap[nColor] = config.biomeColorMap.get(color);
+                    else
+                        this.biomeMap[nColor] = fillBiome;
+                }
+            } catch (IOException ioexception)
+            {
+                TerrainControl.log(LogMarker.FATAL, ioexception.getStackTrace().toString());
+            }
+        }
+    }
+
 }
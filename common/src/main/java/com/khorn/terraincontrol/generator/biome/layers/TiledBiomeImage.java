@@ -0,0 +1,362 @@
+package com.khorn.terraincontrol.generator.biome.layers;
+
+import com.khorn.terraincontrol.configuration.WorldConfig;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+/**
+ * Biome map of a FromImage world, stored on disk as square tiles of one
+ * byte per pixel and memory-mapped, so that only the parts of the image that
+ * are actually generated are paged in.
+ * <p>
+ * The tile file is created next to the image the first time it is needed,
+ * and is recreated whenever the image or the biome colors change. The
+ * pixels are stored unrotated; {@link #getBiome(int, int)} applies the
+ * {@link WorldConfig.ImageOrientation} on lookup.
+ * <p>
+ * Instances are immutable after construction and can be shared between
+ * threads.
+ */
+public final class TiledBiomeImage
+{
+    private static final int MAGIC = 0x54434249; // "TCBI"
+    private static final int VERSION = 1;
+
+    private static final int TILE_BITS = 6;
+    private static final int TILE_SIZE = 1 << TILE_BITS;
+    private static final int TILE_MASK = TILE_SIZE - 1;
+    private static final int TILE_BYTES = TILE_SIZE * TILE_SIZE;
+
+    private static final int MAX_PALETTE_SIZE = 256;
+
+    /**
+     * Magic, version, image length, image modification date, colors hash,
+     * width, height, tile size, palette size and palette.
+     */
+    private static final int HEADER_SIZE = 4 + 4 + 8 + 8 + 4 + 4 + 4 + 4 + 4 + MAX_PALETTE_SIZE * 4;
+
+    /**
+     * Maximum amount of bytes in a single mapped segment of the file.
+     */
+    private static final long MAX_SEGMENT_BYTES = 1 << 30;
+
+    /**
+     * Amount of pixels that are decoded at once when the tile file is
+     * created.
+     */
+    private static final int STRIP_PIXELS = 1 << 24;
+
+    /**
+     * Extension of the tile file, appended to the image file name.
+     */
+    public static final String FILE_EXTENSION = ".tiles";
+
+    private final int sourceWidth;
+    private final int sourceHeight;
+    private final int width;
+    private final int height;
+    private final WorldConfig.ImageOrientation orientation;
+
+    private final int tilesX;
+    private final int tileRowsPerSegment;
+    private final int[] palette;
+    private final MappedByteBuffer[] segments;
+
+    /**
+     * Opens the tile file for the image of the given world config, creating
+     * or recreating it when it is missing or outdated.
+     *
+     * @param config    The world config.
+     * @param fillBiome Biome id used for colors that are not in the
+     *                  {@link WorldConfig#biomeColorMap}.
+     * @throws IOException If the image cannot be read or the tile file
+     *                     cannot be written, or if the image uses more
+     *                     than 256 different biomes.
+     */
+    public TiledBiomeImage(WorldConfig config, int fillBiome) throws IOException
+    {
+        File image = new File(config.settingsDir, config.imageFile);
+        File tileFile = new File(config.settingsDir, config.imageFile + FILE_EXTENSION);
+        int colorsHash = config.biomeColorMap.hashCode() * 31 + fillBiome;
+
+        if (!isUpToDate(tileFile, image, colorsHash))
+        {
+            writeTileFile(image, tileFile, config.biomeColorMap, fillBiome, colorsHash);
+        }
+
+        RandomAccessFile file = new RandomAccessFile(tileFile, "r");
+        try
+        {
+            FileChannel channel = file.getChannel();
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+            header.position(HEADER_SIZE - MAX_PALETTE_SIZE * 4 - 16);
+            this.sourceWidth = header.getInt();
+            this.sourceHeight = header.getInt();
+            header.getInt(); // Tile size, already checked
+            this.palette = new int[header.getInt()];
+            for (int i = 0; i < this.palette.length; i++)
+            {
+                this.palette[i] = header.getInt();
+            }
+
+            this.tilesX = (this.sourceWidth + TILE_MASK) >> TILE_BITS;
+            int tilesZ = (this.sourceHeight + TILE_MASK) >> TILE_BITS;
+            long tileRowBytes = (long) this.tilesX * TILE_BYTES;
+            this.tileRowsPerSegment = (int) Math.max(1, MAX_SEGMENT_BYTES / tileRowBytes);
+
+            int segmentCount = (tilesZ + this.tileRowsPerSegment - 1) / this.tileRowsPerSegment;
+            this.segments = new MappedByteBuffer[segmentCount];
+            for (int i = 0; i < segmentCount; i++)
+            {
+                int tileRows = Math.min(this.tileRowsPerSegment, tilesZ - i * this.tileRowsPerSegment);
+                this.segments[i] = channel.map(FileChannel.MapMode.READ_ONLY,
+                        HEADER_SIZE + i * this.tileRowsPerSegment * tileRowBytes, tileRows * tileRowBytes);
+            }
+        } finally
+        {
+            // The mappings stay valid after the file is closed
+            file.close();
+        }
+
+        this.orientation = config.imageOrientation;
+        if (this.orientation == WorldConfig.ImageOrientation.East || this.orientation == WorldConfig.ImageOrientation.West)
+        {
+            this.width = this.sourceHeight;
+            this.height = this.sourceWidth;
+        } else
+        {
+            this.width = this.sourceWidth;
+            this.height = this.sourceHeight;
+        }
+    }
+
+    /**
+     * Gets the width of the map, after rotation.
+     * @return The width.
+     */
+    public int getWidth()
+    {
+        return this.width;
+    }
+
+    /**
+     * Gets the height (z size) of the map, after rotation.
+     * @return The height.
+     */
+    public int getHeight()
+    {
+        return this.height;
+    }
+
+    /**
+     * Gets the biome at the given position of the rotated map.
+     * @param x X position, from 0 (inclusive) to {@link #getWidth()}
+     *          (exclusive).
+     * @param z Z position, from 0 (inclusive) to {@link #getHeight()}
+     *          (exclusive).
+     * @return The biome generation id.
+     */
+    public int getBiome(int x, int z)
+    {
+        int sourceX;
+        int sourceY;
+        switch (this.orientation)
+        {
+            case South:
+                sourceX = this.sourceWidth - 1 - x;
+                sourceY = this.sourceHeight - 1 - z;
+                break;
+            case West:
+                sourceX = z;
+                sourceY = this.sourceHeight - 1 - x;
+                break;
+            case East:
+                sourceX = this.sourceWidth - 1 - z;
+                sourceY = x;
+                break;
+            default:
+                sourceX = x;
+                sourceY = z;
+                break;
+        }
+
+        int tileRow = sourceY >> TILE_BITS;
+        int segment = tileRow / this.tileRowsPerSegment;
+        int tile = (tileRow - segment * this.tileRowsPerSegment) * this.tilesX + (sourceX >> TILE_BITS);
+        int index = tile * TILE_BYTES + ((sourceY & TILE_MASK) << TILE_BITS) + (sourceX & TILE_MASK);
+        return this.palette[this.segments[segment].get(index) & 0xFF];
+    }
+
+    private static boolean isUpToDate(File tileFile, File image, int colorsHash) throws IOException
+    {
+        if (!tileFile.exists())
+        {
+            return false;
+        }
+
+        RandomAccessFile file = new RandomAccessFile(tileFile, "r");
+        try
+        {
+            if (file.length() < HEADER_SIZE)
+            {
+                return false;
+            }
+            return file.readInt() == MAGIC
+                    && file.readInt() == VERSION
+                    && file.readLong() == image.length()
+                    && file.readLong() == image.lastModified()
+                    && file.readInt() == colorsHash
+                    && file.skipBytes(8) == 8
+                    && file.readInt() == TILE_SIZE;
+        } finally
+        {
+            file.close();
+        }
+    }
+
+    private static void writeTileFile(File image, File tileFile, Map<Integer, Integer> biomeColorMap, int fillBiome,
+            int colorsHash) throws IOException
+    {
+        ImageInputStream input = ImageIO.createImageInputStream(image);
+        if (input == null)
+        {
+            throw new IOException("Cannot open " + image);
+        }
+
+        File tempFile = new File(tileFile.getPath() + ".tmp");
+        RandomAccessFile output = null;
+        try
+        {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext())
+            {
+                throw new IOException("No image reader found for " + image);
+            }
+            ImageReader reader = readers.next();
+            reader.setInput(input, false, true);
+
+            int imageWidth = reader.getWidth(0);
+            int imageHeight = reader.getHeight(0);
+            int tilesX = (imageWidth + TILE_MASK) >> TILE_BITS;
+            int tilesZ = (imageHeight + TILE_MASK) >> TILE_BITS;
+
+            // Decode the image in strips of whole tile rows, so that the full
+            // image never has to be in memory
+            int stripTileRows = Math.max(1, STRIP_PIXELS / (imageWidth * TILE_SIZE));
+            int[] rgb = new int[imageWidth * TILE_SIZE * stripTileRows];
+            byte[] tileRow = new byte[tilesX * TILE_BYTES];
+
+            Map<Integer, Integer> paletteIndexes = new HashMap<Integer, Integer>();
+            int[] palette = new int[MAX_PALETTE_SIZE];
+            int paletteSize = 0;
+
+            output = new RandomAccessFile(tempFile, "rw");
+            output.setLength(0);
+            output.seek(HEADER_SIZE);
+
+            for (int stripStart = 0; stripStart < tilesZ; stripStart += stripTileRows)
+            {
+                int startY = stripStart << TILE_BITS;
+                int rows = Math.min(stripTileRows << TILE_BITS, imageHeight - startY);
+
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceRegion(new Rectangle(0, startY, imageWidth, rows));
+                BufferedImage strip = reader.read(0, param);
+                strip.getRGB(0, 0, imageWidth, rows, rgb, 0, imageWidth);
+
+                for (int tileRowStart = 0; tileRowStart < rows; tileRowStart += TILE_SIZE)
+                {
+                    int tileRowHeight = Math.min(TILE_SIZE, rows - tileRowStart);
+                    for (int y = 0; y < tileRowHeight; y++)
+                    {
+                        int rowOffset = (tileRowStart + y) * imageWidth;
+                        for (int x = 0; x < imageWidth; x++)
+                        {
+                            int color = rgb[rowOffset + x] & 0x00FFFFFF;
+                            Integer paletteIndex = paletteIndexes.get(color);
+                            if (paletteIndex == null)
+                            {
+                                Integer biome = biomeColorMap.get(color);
+                                int biomeId = biome == null ? fillBiome : biome;
+                                int index = indexOf(palette, paletteSize, biomeId);
+                                if (index == -1)
+                                {
+                                    if (paletteSize == palette.length)
+                                    {
+                                        throw new IOException("Image " + image + " uses more than " + palette.length + " biomes");
+                                    }
+                                    index = paletteSize;
+                                    palette[paletteSize++] = biomeId;
+                                }
+                                paletteIndex = index;
+                                paletteIndexes.put(color, paletteIndex);
+                            }
+                            int tile = x >> TILE_BITS;
+                            tileRow[tile * TILE_BYTES + (y << TILE_BITS) + (x & TILE_MASK)] = (byte) paletteIndex.intValue();
+                        }
+                    }
+                    output.write(tileRow);
+                }
+            }
+
+            output.seek(0);
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeLong(image.length());
+            output.writeLong(image.lastModified());
+            output.writeInt(colorsHash);
+            output.writeInt(imageWidth);
+            output.writeInt(imageHeight);
+            output.writeInt(TILE_SIZE);
+            output.writeInt(paletteSize);
+            for (int i = 0; i < paletteSize; i++)
+            {
+                output.writeInt(palette[i]);
+            }
+            reader.dispose();
+        } finally
+        {
+            input.close();
+            if (output != null)
+            {
+                output.close();
+            }
+        }
+
+        if (tileFile.exists() && !tileFile.delete())
+        {
+            throw new IOException("Cannot replace " + tileFile);
+        }
+        if (!tempFile.renameTo(tileFile))
+        {
+            throw new IOException("Cannot rename " + tempFile + " to " + tileFile);
+        }
+    }
+
+    private static int indexOf(int[] array, int length, int value)
+    {
+        for (int i = 0; i < length; i++)
+        {
+            if (array[i] == value)
+            {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
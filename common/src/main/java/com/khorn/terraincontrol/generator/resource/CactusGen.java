@@ -51,7 +51,10 @@ public class CactusGen extends Resource
             // Check foundation
             LocalMaterialData foundationMaterial = world.getMaterial(cactusX, cactusBaseY - 1, cactusZ);
             if (!sourceBlocks.contains(foundationMaterial))
+            {
+                ResourceStats.blockRejected();
                 continue;
+            }
 
             // Check neighbors
             if (!world.isEmpty(cactusX - 1, cactusBaseY, cactusZ))
@@ -137,9 +137,15 @@ public class GrassGen extends Resource
                 int x = centerX + random.nextInt(8) - random.nextInt(8);
                 int y = centerY + random.nextInt(4) - random.nextInt(4);
                 int z = centerZ + random.nextInt(8) - random.nextInt(8);
-                if (world.isEmpty(x, y, z) && this.sourceBlocks.contains(world.getMaterial (x, y - 1, z)))
+                if (world.isEmpty(x, y, z))
                 {
-                    plant.spawn(world, x, y, z);
+                    if (this.sourceBlocks.contains(world.getMaterial(x, y - 1, z)))
+                    {
+                        plant.spawn(world, x, y, z);
+                    } else
+                    {
+                        ResourceStats.blockRejected();
+                    }
                 }
 
             }
@@ -175,8 +181,13 @@ public class GrassGen extends Resource
                     .isMaterial(DefaultMaterial.LEAVES_2)) && (y > 0))
                 y--;
 
-            if ((!world.isEmpty(x, y + 1, z)) || (!sourceBlocks.contains(world.getMaterial(x, y, z))))
+            if (!world.isEmpty(x, y + 1, z))
                 continue;
+            if (!sourceBlocks.contains(world.getMaterial(x, y, z)))
+            {
+                ResourceStats.blockRejected();
+                continue;
+            }
             plant.spawn(world, x, y + 1, z);
         }
     }
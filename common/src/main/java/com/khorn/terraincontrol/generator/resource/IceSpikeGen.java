@@ -101,6 +101,7 @@ public class IceSpikeGen extends Resource
         }
         if (!this.sourceBlocks.contains(world.getMaterial(x, y, z)))
         {
+            ResourceStats.blockRejected();
             return;
         }
         int radius = random.nextInt(2) + 2;
@@ -136,6 +137,7 @@ public class IceSpikeGen extends Resource
 
         if (!sourceBlocks.contains(par1World.getMaterial(x, y, z)))
         {
+            ResourceStats.blockRejected();
             return;
         }
 
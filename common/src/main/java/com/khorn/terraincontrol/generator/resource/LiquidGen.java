@@ -78,13 +78,12 @@ public class LiquidGen extends Resource
     {
         int y = RandomHelper.numberInRange(rand, minAltitude, maxAltitude);
 
-        if (!sourceBlocks.contains(world.getMaterial(x, y + 1, z)))
-            return;
-        if (!sourceBlocks.contains(world.getMaterial(x, y - 1, z)))
-            return;
-
-        if (!world.isEmpty(x, y, z) && (!sourceBlocks.contains(world.getMaterial(x, y, z))))
+        if (!sourceBlocks.contains(world.getMaterial(x, y + 1, z)) || !sourceBlocks.contains(world.getMaterial(x, y - 1, z))
+                || (!world.isEmpty(x, y, z) && !sourceBlocks.contains(world.getMaterial(x, y, z))))
+        {
+            ResourceStats.blockRejected();
             return;
+        }
 
         int i = 0;
         int j = 0;
@@ -0,0 +1,162 @@
+package com.khorn.terraincontrol.generator.resource;
+
+import com.khorn.terraincontrol.LocalMaterialData;
+import com.khorn.terraincontrol.LocalWorld;
+import com.khorn.terraincontrol.util.MaterialSet;
+import com.khorn.terraincontrol.util.helpers.MathHelper;
+
+import java.util.Random;
+
+/**
+ * The shape of a single ore vein: a chain of ellipsoids along a line, as
+ * used by {@link OreGen} and {@link Vein}.
+ *
+ * <p>The ellipsoids overlap a lot, so the shape is first collected in a
+ * bit set, with one bit for each block in the bounding box of the vein.
+ * After that, every block in the vein is checked and placed exactly once.
+ * Placing a block never changes the other blocks of the vein, so the
+ * result is the same as when the blocks are placed ellipsoid by ellipsoid.
+ *
+ */
+final class OreShape
+{
+    private final int minX;
+    private final int minY;
+    private final int minZ;
+    private final int sizeY;
+    private final int sizeZ;
+    private final long[] bits;
+
+    /**
+     * Calculates the shape of an ore vein. Uses the random number generator
+     * in exactly the same way as the original vein code.
+     * @param rand    The random number generator.
+     * @param angle   Angle of the vein.
+     * @param x       Lowest x of the chunk.
+     * @param y       Height of the vein.
+     * @param z       Lowest z of the chunk.
+     * @param maxSize Size of the vein.
+     */
+    OreShape(Random rand, float angle, int x, int y, int z, int maxSize)
+    {
+        double d1 = x + 8 + MathHelper.sin(angle) * maxSize / 8.0F;
+        double d2 = x + 8 - MathHelper.sin(angle) * maxSize / 8.0F;
+        double d3 = z + 8 + MathHelper.cos(angle) * maxSize / 8.0F;
+        double d4 = z + 8 - MathHelper.cos(angle) * maxSize / 8.0F;
+
+        double d5 = y + rand.nextInt(3) - 2;
+        double d6 = y + rand.nextInt(3) - 2;
+
+        // Centers and sizes of the ellipsoids
+        double[] centers = new double[maxSize * 3];
+        double[] sizes = new double[maxSize];
+        int minX = Integer.MAX_VALUE;
+        int minY = Integer.MAX_VALUE;
+        int minZ = Integer.MAX_VALUE;
+        int maxX = Integer.MIN_VALUE;
+        int maxY = Integer.MIN_VALUE;
+        int maxZ = Integer.MIN_VALUE;
+
+        for (int i = 0; i < maxSize; i++)
+        {
+            float iFactor = (float) i / (float) maxSize;
+            double d7 = d1 + (d2 - d1) * iFactor;
+            double d8 = d5 + (d6 - d5) * iFactor;
+            double d9 = d3 + (d4 - d3) * iFactor;
+
+            double d10 = rand.nextDouble() * maxSize / 16.0D;
+            double d11 = (MathHelper.sin((float) Math.PI * iFactor) + 1.0) * d10 + 1.0;
+
+            centers[i * 3] = d7;
+            centers[i * 3 + 1] = d8;
+            centers[i * 3 + 2] = d9;
+            sizes[i] = d11;
+
+            minX = Math.min(minX, MathHelper.floor(d7 - d11 / 2.0D));
+            minY = Math.min(minY, MathHelper.floor(d8 - d11 / 2.0D));
+            minZ = Math.min(minZ, MathHelper.floor(d9 - d11 / 2.0D));
+            maxX = Math.max(maxX, MathHelper.floor(d7 + d11 / 2.0D));
+            maxY = Math.max(maxY, MathHelper.floor(d8 + d11 / 2.0D));
+            maxZ = Math.max(maxZ, MathHelper.floor(d9 + d11 / 2.0D));
+        }
+
+        this.minX = minX;
+        this.minY = minY;
+        this.minZ = minZ;
+        this.sizeY = maxY - minY + 1;
+        this.sizeZ = maxZ - minZ + 1;
+        this.bits = new long[maxSize == 0 ? 0 : ((maxX - minX + 1) * this.sizeY * this.sizeZ + 63) >> 6];
+
+        for (int i = 0; i < maxSize; i++)
+        {
+            addEllipsoid(centers[i * 3], centers[i * 3 + 1], centers[i * 3 + 2], sizes[i]);
+        }
+    }
+
+    private void addEllipsoid(double d7, double d8, double d9, double d11)
+    {
+        int j = MathHelper.floor(d7 - d11 / 2.0D);
+        int k = MathHelper.floor(d8 - d11 / 2.0D);
+        int m = MathHelper.floor(d9 - d11 / 2.0D);
+
+        int n = MathHelper.floor(d7 + d11 / 2.0D);
+        int i1 = MathHelper.floor(d8 + d11 / 2.0D);
+        int i2 = MathHelper.floor(d9 + d11 / 2.0D);
+
+        for (int i3 = j; i3 <= n; i3++)
+        {
+            double d13 = (i3 + 0.5D - d7) / (d11 / 2.0D);
+            if (d13 * d13 < 1.0D)
+            {
+                for (int i4 = k; i4 <= i1; i4++)
+                {
+                    double d14 = (i4 + 0.5D - d8) / (d11 / 2.0D);
+                    if (d13 * d13 + d14 * d14 < 1.0D)
+                    {
+                        for (int i5 = m; i5 <= i2; i5++)
+                        {
+                            double d15 = (i5 + 0.5D - d9) / (d11 / 2.0D);
+                            if (d13 * d13 + d14 * d14 + d15 * d15 < 1.0D)
+                            {
+                                int index = ((i3 - this.minX) * this.sizeY + (i4 - this.minY)) * this.sizeZ + (i5 - this.minZ);
+                                this.bits[index >> 6] |= 1L << index;
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Places the ore in the world, on all positions of the vein that
+     * currently contain one of the source blocks.
+     * @param world        The world.
+     * @param material     The ore.
+     * @param sourceBlocks The blocks the ore may replace.
+     */
+    void place(LocalWorld world, LocalMaterialData material, MaterialSet sourceBlocks)
+    {
+        int sizeYZ = this.sizeY * this.sizeZ;
+        for (int word = 0; word < this.bits.length; word++)
+        {
+            long wordBits = this.bits[word];
+            while (wordBits != 0)
+            {
+                int index = (word << 6) + Long.numberOfTrailingZeros(wordBits);
+                wordBits &= wordBits - 1;
+
+                int x = this.minX + index / sizeYZ;
+                int y = this.minY + (index / this.sizeZ) % this.sizeY;
+                int z = this.minZ + index % this.sizeZ;
+                if (sourceBlocks.contains(world.getMaterial(x, y, z)))
+                {
+                    world.setBlock(x, y, z, material);
+                } else
+                {
+                    ResourceStats.blockRejected();
+                }
+            }
+        }
+    }
+}
@@ -89,8 +89,13 @@ public class PlantGen extends Resource
             int j = x + rand.nextInt(8) - rand.nextInt(8);
             int k = y + rand.nextInt(4) - rand.nextInt(4);
             int m = z + rand.nextInt(8) - rand.nextInt(8);
-            if ((!world.isEmpty(j, k, m)) || (!sourceBlocks.contains(world.getMaterial(j, k - 1, m))))
+            if (!world.isEmpty(j, k, m))
                 continue;
+            if (!sourceBlocks.contains(world.getMaterial(j, k - 1, m)))
+            {
+                ResourceStats.blockRejected();
+                continue;
+            }
 
             plant.spawn(world, j, k, m);
         }
@@ -0,0 +1,123 @@
+package com.khorn.terraincontrol.generator.resource;
+
+import com.khorn.terraincontrol.LocalWorld;
+import com.khorn.terraincontrol.TerrainControl;
+import com.khorn.terraincontrol.configuration.BiomeConfig;
+import com.khorn.terraincontrol.configuration.ConfigFunction;
+import com.khorn.terraincontrol.util.ChunkCoordinate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * The resources of a biome, in the order they are spawned in. Created once
+ * when the biome config is loaded, so that populating a chunk doesn't need
+ * to look through all config functions of the biome.
+ *
+ * <p>The plan also keeps {@link ResourceStats statistics} for each
+ * resource, so that expensive resources can be found.
+ *
+ */
+public final class PopulationPlan
+{
+    private final Resource[] resources;
+    private final ResourceStats[] stats;
+
+    /**
+     * Creates the plan for the given resource sequence. Config functions
+     * that are not resources are left out.
+     * @param resourceSequence The resource sequence of a biome.
+     */
+    public PopulationPlan(List<ConfigFunction<BiomeConfig>> resourceSequence)
+    {
+        List<Resource> resources = new ArrayList<Resource>(resourceSequence.size());
+        for (ConfigFunction<BiomeConfig> function : resourceSequence)
+        {
+            // The order is kept, changing it would change the generated
+            // world
+            if (function instanceof Resource)
+            {
+                resources.add((Resource) function);
+            }
+        }
+        this.resources = resources.toArray(new Resource[resources.size()]);
+        this.stats = new ResourceStats[this.resources.length];
+        for (int i = 0; i < this.stats.length; i++)
+        {
+            this.stats[i] = new ResourceStats();
+        }
+    }
+
+    /**
+     * Spawns all resources in the given chunk. The resource process event
+     * is only fired when there are event handlers.
+     * @param world          The world.
+     * @param random         The random number generator.
+     * @param villageInChunk Whether there is a village in the chunk.
+     * @param chunkCoord     The chunk coordinate.
+     */
+    public void populate(LocalWorld world, Random random, boolean villageInChunk, ChunkCoordinate chunkCoord)
+    {
+        boolean fireEvents = TerrainControl.hasEventHandlers();
+        for (int i = 0; i < this.resources.length; i++)
+        {
+            Resource resource = this.resources[i];
+            ResourceStats previousStats = this.stats[i].start();
+            long start = System.nanoTime();
+            try
+            {
+                if (fireEvents)
+                {
+                    resource.process(world, random, villageInChunk, chunkCoord);
+                } else
+                {
+                    resource.spawnInChunk(world, random, villageInChunk, chunkCoord);
+                }
+            } finally
+            {
+                this.stats[i].end(previousStats, System.nanoTime() - start);
+            }
+        }
+    }
+
+    /**
+     * Gets the number of resources in this plan.
+     * @return The number of resources.
+     */
+    public int size()
+    {
+        return this.resources.length;
+    }
+
+    /**
+     * Gets a resource of this plan.
+     * @param index Index of the resource, from 0 to {@link #size()}.
+     * @return The resource.
+     */
+    public Resource getResource(int index)
+    {
+        return this.resources[index];
+    }
+
+    /**
+     * Gets the statistics of a resource of this plan.
+     * @param index Index of the resource, from 0 to {@link #size()}.
+     * @return The statistics.
+     */
+    public ResourceStats getStats(int index)
+    {
+        return this.stats[index];
+    }
+
+    /**
+     * Sets the statistics of all resources back to zero.
+     */
+    public void resetStats()
+    {
+        for (ResourceStats resourceStats : this.stats)
+        {
+            resourceStats.reset();
+        }
+    }
+}
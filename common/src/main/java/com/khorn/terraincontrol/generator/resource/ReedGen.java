@@ -81,6 +81,7 @@ public class ReedGen extends Resource
         }
         if (!sourceBlocks.contains(world.getMaterial(x, y - 1, z)))
         {
+            ResourceStats.blockRejected();
             return;
         }
 
@@ -0,0 +1,229 @@
+package com.khorn.terraincontrol.generator.resource;
+
+import com.khorn.terraincontrol.LocalBiome;
+import com.khorn.terraincontrol.LocalWorld;
+import com.khorn.terraincontrol.configuration.BiomeConfig;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes the {@link ResourceStats} of all resources of a world to a file, so
+ * that server owners can see which resource lines are expensive. The most
+ * expensive resources come first.
+ *
+ */
+public final class ResourceReport
+{
+    /**
+     * The formats the report can be written in.
+     */
+    public enum Format
+    {
+        CSV,
+        JSON;
+
+        /**
+         * Gets the format with the given name, ignoring case.
+         * @param name The name.
+         * @return The format, or null if not found.
+         */
+        public static Format fromName(String name)
+        {
+            for (Format format : values())
+            {
+                if (format.name().equalsIgnoreCase(name))
+                {
+                    return format;
+                }
+            }
+            return null;
+        }
+    }
+
+    private static final String FILE_NAME = "ResourceReport";
+
+    private static final class Row
+    {
+        final String biomeName;
+        final int index;
+        final Resource resource;
+        final ResourceStats stats;
+
+        Row(String biomeName, int index, Resource resource, ResourceStats stats)
+        {
+            this.biomeName = biomeName;
+            this.index = index;
+            this.resource = resource;
+            this.stats = stats;
+        }
+    }
+
+    private ResourceReport()
+    {
+    }
+
+    /**
+     * Writes the report of a world to the settings folder of that world.
+     * @param world  The world.
+     * @param format Format of the report.
+     * @return The file the report was written to.
+     * @throws IOException If the file could not be written.
+     */
+    public static File write(LocalWorld world, Format format) throws IOException
+    {
+        File file = new File(world.getConfigs().getWorldConfig().settingsDir, FILE_NAME + "." + format.name().toLowerCase());
+        List<Row> rows = getRows(world);
+
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file), Charset.forName("UTF-8"));
+        try
+        {
+            if (format == Format.CSV)
+            {
+                writeCsv(writer, rows);
+            } else
+            {
+                writeJson(writer, rows);
+            }
+        } finally
+        {
+            writer.close();
+        }
+        return file;
+    }
+
+    /**
+     * Sets the statistics of all resources of a world back to zero.
+     * @param world The world.
+     */
+    public static void reset(LocalWorld world)
+    {
+        for (BiomeConfig biomeConfig : getBiomeConfigs(world).keySet())
+        {
+            biomeConfig.getPopulationPlan().resetStats();
+        }
+    }
+
+    private static Map<BiomeConfig, String> getBiomeConfigs(LocalWorld world)
+    {
+        // Multiple biome ids may share the same config
+        Map<BiomeConfig, String> biomeConfigs = new IdentityHashMap<BiomeConfig, String>();
+        for (LocalBiome biome : world.getConfigs().getBiomeArray())
+        {
+            if (biome != null && !biomeConfigs.containsKey(biome.getBiomeConfig()))
+            {
+                biomeConfigs.put(biome.getBiomeConfig(), biome.getName());
+            }
+        }
+        return biomeConfigs;
+    }
+
+    private static List<Row> getRows(LocalWorld world)
+    {
+        List<Row> rows = new ArrayList<Row>();
+        for (Map.Entry<BiomeConfig, String> entry : getBiomeConfigs(world).entrySet())
+        {
+            PopulationPlan plan = entry.getKey().getPopulationPlan();
+            for (int i = 0; i < plan.size(); i++)
+            {
+                rows.add(new Row(entry.getValue(), i, plan.getResource(i), plan.getStats(i)));
+            }
+        }
+
+        Collections.sort(rows, new Comparator<Row>()
+        {
+            @Override
+            public int compare(Row o1, Row o2)
+            {
+                long nanos1 = o1.stats.getNanos();
+                long nanos2 = o2.stats.getNanos();
+                if (nanos1 != nanos2)
+                {
+                    return nanos1 > nanos2 ? -1 : 1;
+                }
+                int compareBiomes = o1.biomeName.compareTo(o2.biomeName);
+                if (compareBiomes != 0)
+                {
+                    return compareBiomes;
+                }
+                return o1.index - o2.index;
+            }
+        });
+        return rows;
+    }
+
+    private static void writeCsv(Writer writer, List<Row> rows) throws IOException
+    {
+        writer.write("Biome,Index,Resource,Invocations,TotalMillis,AverageMicros,BlocksPlaced,BlocksRejected\n");
+        for (Row row : rows)
+        {
+            ResourceStats stats = row.stats;
+            writer.write(csvString(row.biomeName) + "," + row.index + "," + csvString(row.resource.toString()) + ","
+                    + stats.getInvocations() + "," + stats.getNanos() / 1000000 + "," + averageMicros(stats) + ","
+                    + stats.getBlocksPlaced() + "," + stats.getBlocksRejected() + "\n");
+        }
+    }
+
+    private static void writeJson(Writer writer, List<Row> rows) throws IOException
+    {
+        writer.write("[\n");
+        for (int i = 0; i < rows.size(); i++)
+        {
+            Row row = rows.get(i);
+            ResourceStats stats = row.stats;
+            writer.write("  {\"biome\": " + jsonString(row.biomeName) + ", \"index\": " + row.index
+                    + ", \"resource\": " + jsonString(row.resource.toString())
+                    + ", \"invocations\": " + stats.getInvocations() + ", \"totalNanos\": " + stats.getNanos()
+                    + ", \"averageMicros\": " + averageMicros(stats) + ", \"blocksPlaced\": " + stats.getBlocksPlaced()
+                    + ", \"blocksRejected\": " + stats.getBlocksRejected() + "}");
+            writer.write(i == rows.size() - 1 ? "\n" : ",\n");
+        }
+        writer.write("]\n");
+    }
+
+    private static long averageMicros(ResourceStats stats)
+    {
+        if (stats.getInvocations() == 0)
+        {
+            return 0;
+        }
+        return stats.getNanos() / stats.getInvocations() / 1000;
+    }
+
+    private static String csvString(String string)
+    {
+        return "\"" + string.replace("\"", "\"\"") + "\"";
+    }
+
+    private static String jsonString(String string)
+    {
+        StringBuilder builder = new StringBuilder(string.length() + 2);
+        builder.append('"');
+        for (int i = 0; i < string.length(); i++)
+        {
+            char c = string.charAt(i);
+            if (c == '"' || c == '\\')
+            {
+                builder.append('\\').append(c);
+            } else if (c < ' ')
+            {
+                builder.append(String.format("\\u%04x", (int) c));
+            } else
+            {
+                builder.append(c);
+            }
+        }
+        builder.append('"');
+        return builder.toString();
+    }
+}
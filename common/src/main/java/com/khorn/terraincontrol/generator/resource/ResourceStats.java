@@ -0,0 +1,122 @@
+package com.khorn.terraincontrol.generator.resource;
+
+/**
+ * Statistics of a single resource line of a biome: how often it was
+ * processed, how long that took and how many blocks it placed.
+ *
+ * <p>While a resource is processed by a {@link PopulationPlan}, its
+ * statistics are the current statistics. Platforms report every block they
+ * place using {@link #blockPlaced()}, and resources report positions they
+ * skipped because the source block didn't match using
+ * {@link #blockRejected()}. Both methods do nothing when no resource is
+ * being processed. Like the rest of population, this assumes that only one
+ * thread populates at a time; otherwise the numbers are only approximate.
+ *
+ */
+public final class ResourceStats
+{
+    private static ResourceStats current;
+
+    /**
+     * Must be called by the platforms after placing a block in the world.
+     */
+    public static void blockPlaced()
+    {
+        ResourceStats stats = current;
+        if (stats != null)
+        {
+            stats.blocksPlaced++;
+        }
+    }
+
+    /**
+     * Must be called by resources when they don't place a block because the
+     * block in the world is not one of the source blocks.
+     */
+    public static void blockRejected()
+    {
+        ResourceStats stats = current;
+        if (stats != null)
+        {
+            stats.blocksRejected++;
+        }
+    }
+
+    private long invocations;
+    private long nanos;
+    private long blocksPlaced;
+    private long blocksRejected;
+
+    /**
+     * Makes these statistics the current statistics.
+     * @return The previous current statistics, may be null.
+     */
+    ResourceStats start()
+    {
+        ResourceStats previous = current;
+        current = this;
+        return previous;
+    }
+
+    /**
+     * Adds a processed resource to these statistics, and restores the
+     * previous current statistics.
+     * @param previous Value returned by {@link #start()}.
+     * @param nanos    Time the resource took.
+     */
+    void end(ResourceStats previous, long nanos)
+    {
+        current = previous;
+        this.invocations++;
+        this.nanos += nanos;
+    }
+
+    /**
+     * Gets how many times the resource was processed.
+     * @return The number of times.
+     */
+    public long getInvocations()
+    {
+        return this.invocations;
+    }
+
+    /**
+     * Gets the total time spent on the resource, including the time spent by
+     * event handlers of the resource.
+     * @return The time in nanoseconds.
+     */
+    public long getNanos()
+    {
+        return this.nanos;
+    }
+
+    /**
+     * Gets the number of blocks the resource placed.
+     * @return The number of blocks.
+     */
+    public long getBlocksPlaced()
+    {
+        return this.blocksPlaced;
+    }
+
+    /**
+     * Gets the number of blocks the resource didn't place because of its
+     * source blocks.
+     * @return The number of blocks.
+     */
+    public long getBlocksRejected()
+    {
+        return this.blocksRejected;
+    }
+
+    /**
+     * Sets all statistics back to zero.
+     */
+    public void reset()
+    {
+        this.invocations = 0;
+        this.nanos = 0;
+        this.blocksPlaced = 0;
+        this.blocksRejected = 0;
+    }
+}
@@ -130,6 +130,9 @@ public class SurfacePatchGen extends Resource
                 {
                     world.setBlock(x, y + 1, z, decorationAboveReplacements);
                 }
+            } else
+            {
+                ResourceStats.blockRejected();
             }
         }
     }
@@ -139,13 +142,59 @@ public class SurfacePatchGen extends Resource
     {
         int chunkX = chunkCoord.getBlockXCenter();
         int chunkZ = chunkCoord.getBlockZCenter();
-        for (int z0 = 0; z0 < ChunkCoordinate.CHUNK_Z_SIZE; z0++)
+
+        // A patch only changes its own column, so the whole area can be
+        // handled in passes. The noise doesn't depend on the world, so it
+        // is calculated first: the world is only looked at where the noise
+        // allows a patch.
+        int columns = ChunkCoordinate.CHUNK_X_SIZE * ChunkCoordinate.CHUNK_Z_SIZE;
+        double[] noise = new double[columns];
+        for (int index = 0; index < columns; index++)
+        {
+            int x = chunkX + index % ChunkCoordinate.CHUNK_X_SIZE;
+            int z = chunkZ + index / ChunkCoordinate.CHUNK_X_SIZE;
+            noise[index] = noiseGen.getYNoise(x * 0.25D, z * 0.25D);
+        }
+
+        // Find the columns that get a patch
+        int[] heights = new int[columns];
+        for (int index = 0; index < columns; index++)
         {
-            for (int x0 = 0; x0 < ChunkCoordinate.CHUNK_X_SIZE; x0++)
+            heights[index] = -1;
+            if (noise[index] <= 0.0D)
+            {
+                continue;
+            }
+            int x = chunkX + index % ChunkCoordinate.CHUNK_X_SIZE;
+            int z = chunkZ + index / ChunkCoordinate.CHUNK_X_SIZE;
+            int y = world.getHighestBlockYAt(x, z) - 1;
+            if (y < minAltitude || y > maxAltitude)
+            {
+                continue;
+            }
+            if (sourceBlocks.contains(world.getMaterial(x, y, z)))
+            {
+                heights[index] = y;
+            } else
+            {
+                ResourceStats.blockRejected();
+            }
+        }
+
+        // Place all patches
+        for (int index = 0; index < columns; index++)
+        {
+            int y = heights[index];
+            if (y == -1)
+            {
+                continue;
+            }
+            int x = chunkX + index % ChunkCoordinate.CHUNK_X_SIZE;
+            int z = chunkZ + index / ChunkCoordinate.CHUNK_X_SIZE;
+            world.setBlock(x, y, z, material);
+            if (noise[index] < 0.12D)
             {
-                int x = chunkX + x0;
-                int z = chunkZ + z0;
-                spawn(world, random, false, x, z);
+                world.setBlock(x, y + 1, z, decorationAboveReplacements);
             }
         }
     }
@@ -89,6 +89,9 @@ public class UnderWaterOreGen extends Resource
                         if (sourceBlocks.contains(sourceBlock))
                         {
                             world.setBlock(currentX, y, currentZ, material);
+                        } else
+                        {
+                            ResourceStats.blockRejected();
                         }
                     }
                 }
@@ -8,11 +8,18 @@ import com.khorn.terraincontrol.util.ChunkCoordinate;
 import com.khorn.terraincontrol.util.MaterialSet;
 import com.khorn.terraincontrol.util.helpers.RandomHelper;
 
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
 
 public class VeinGen extends Resource
 {
+    /**
+     * Stored in {@link #veinStarts} for chunks without a vein start.
+     */
+    private static final Vein NO_VEIN = new Vein(0, 0, 0, 0);
 
     public int maxAltitude; // Maximum altitude of the vein
     public int maxRadius; // Maximum size of the vein in blocks (inclusive)
@@ -24,6 +31,23 @@ public class VeinGen extends Resource
     public MaterialSet sourceBlocks; // Blocks for the ore to spawn in
     public double veinRarity; // Chance for the vein to spawn in a chunk
 
+    /**
+     * The vein starts of recently searched chunks. Each chunk is searched
+     * for every chunk in the search radius around it, so without this cache
+     * the vein start of a chunk would be rolled again and again. Biome
+     * configs belong to a single world, so the world seed never changes.
+     */
+    private final Map<Long, Vein> veinStarts = Collections.synchronizedMap(new LinkedHashMap<Long, Vein>(256, 0.75f, true)
+    {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Vein> eldest)
+        {
+            return size() > getMaxCachedVeinStarts();
+        }
+    });
+
     public VeinGen(BiomeConfig biomeConfig, List<String> args) throws InvalidConfigException
     {
         super(biomeConfig);
@@ -82,6 +106,29 @@ public class VeinGen extends Resource
      *         starting vein.
      */
     public Vein getVeinStartInChunk(LocalWorld world, int chunkX, int chunkZ)
+    {
+        Long chunkKey = ((long) chunkX << 32) | (chunkZ & 0xFFFFFFFFL);
+        Vein vein = this.veinStarts.get(chunkKey);
+        if (vein == null)
+        {
+            vein = rollVeinStartInChunk(world, chunkX, chunkZ);
+            this.veinStarts.put(chunkKey, vein == null ? NO_VEIN : vein);
+        }
+        return vein == NO_VEIN ? null : vein;
+    }
+
+    /**
+     * Gets how many vein starts are cached: enough for the search areas of
+     * a few chunks next to each other.
+     * @return The number of vein starts.
+     */
+    private int getMaxCachedVeinStarts()
+    {
+        int searchDiameter = (this.maxRadius + 15) / 16 * 2;
+        return Math.max(256, searchDiameter * searchDiameter * 4);
+    }
+
+    private Vein rollVeinStartInChunk(LocalWorld world, int chunkX, int chunkZ)
     {
         // Create a random generator that is constant for this chunk and vein
         Random random = RandomHelper.getRandomForCoords(chunkX, chunkZ, material.hashCode() * (minRadius + maxRadius + 100) + world.getSeed());
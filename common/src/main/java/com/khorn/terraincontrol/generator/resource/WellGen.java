@@ -96,6 +96,7 @@ public class WellGen extends Resource
 
         if (!sourceBlocks.contains(sourceBlock))
         {
+            ResourceStats.blockRejected();
             return;
         }
         int i;
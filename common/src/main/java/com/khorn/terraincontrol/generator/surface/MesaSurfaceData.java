@@ -0,0 +1,185 @@
+package com.khorn.terraincontrol.generator.surface;
+
+import com.khorn.terraincontrol.LocalMaterialData;
+import com.khorn.terraincontrol.TerrainControl;
+import com.khorn.terraincontrol.generator.noise.NoiseGeneratorNewOctaves;
+import com.khorn.terraincontrol.util.minecraftTypes.DefaultMaterial;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * The clay bands and noise generators of the mesa surface generators. They
+ * only depend on the world seed, so they are calculated once per seed and
+ * shared by all mesa biomes. Only the data of the most recently used seeds
+ * is kept; data that was dropped is simply calculated again. Instances are
+ * immutable, so they can be used by multiple threads at once.
+ *
+ */
+final class MesaSurfaceData
+{
+    private static final int BAND_COUNT = 64;
+
+    /**
+     * Maximum amount of seeds of which the data is kept. Each loaded world
+     * with mesa biomes needs one seed.
+     */
+    private static final int MAX_CACHED_SEEDS = 8;
+
+    private static final Map<Long, MesaSurfaceData> BY_SEED = new LinkedHashMap<Long, MesaSurfaceData>(16, 0.75f, true)
+    {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, MesaSurfaceData> eldest)
+        {
+            return size() > MAX_CACHED_SEEDS;
+        }
+    };
+
+    /**
+     * Gets the data for the given world seed, calculating it if needed.
+     * @param seed The world seed.
+     * @return The data.
+     */
+    static synchronized MesaSurfaceData forSeed(long seed)
+    {
+        MesaSurfaceData data = BY_SEED.get(seed);
+        if (data == null)
+        {
+            data = new MesaSurfaceData(seed);
+            BY_SEED.put(seed, data);
+        }
+        return data;
+    }
+
+    final long seed;
+    final NoiseGeneratorNewOctaves noiseGenBryce1;
+    final NoiseGeneratorNewOctaves noiseGenBryce2;
+    private final NoiseGeneratorNewOctaves noiseGenBlockData;
+    private final LocalMaterialData[] blockDataValuesArray;
+
+    private MesaSurfaceData(long seed)
+    {
+        this.seed = seed;
+
+        Random random = new Random(seed);
+        this.noiseGenBlockData = new NoiseGeneratorNewOctaves(random, 1);
+        this.blockDataValuesArray = createBands(random);
+
+        Random bryceRandom = new Random(seed);
+        this.noiseGenBryce1 = new NoiseGeneratorNewOctaves(bryceRandom, 4);
+        this.noiseGenBryce2 = new NoiseGeneratorNewOctaves(bryceRandom, 1);
+    }
+
+    /**
+     * Gets the clay band at the given position.
+     * @param xInWorld X position in the world.
+     * @param y        Y position in the world.
+     * @return The clay block.
+     */
+    LocalMaterialData getBlockData(int xInWorld, int y)
+    {
+        int l = (int) Math.round(this.noiseGenBlockData.a(xInWorld * 1.0D / 512.0D, xInWorld * 1.0D / 512.0D) * 2.0D);
+
+        return this.blockDataValuesArray[(y + l + BAND_COUNT) % BAND_COUNT];
+    }
+
+    private static LocalMaterialData[] createBands(Random random)
+    {
+        LocalMaterialData hardenedClay = TerrainControl.toLocalMaterialData(DefaultMaterial.HARD_CLAY, 0);
+        LocalMaterialData whiteStainedClay = TerrainControl.toLocalMaterialData(DefaultMaterial.STAINED_CLAY, 0);
+        LocalMaterialData orangeStainedClay = TerrainControl.toLocalMaterialData(DefaultMaterial.STAINED_CLAY, 1);
+        LocalMaterialData yellowStainedClay = TerrainControl.toLocalMaterialData(DefaultMaterial.STAINED_CLAY, 4);
+        LocalMaterialData brownStainedClay = TerrainControl.toLocalMaterialData(DefaultMaterial.STAINED_CLAY, 12);
+        LocalMaterialData redStainedClay = TerrainControl.toLocalMaterialData(DefaultMaterial.STAINED_CLAY, 14);
+        LocalMaterialData silverStainedClay = TerrainControl.toLocalMaterialData(DefaultMaterial.STAINED_CLAY, 8);
+
+        LocalMaterialData[] bands = new LocalMaterialData[BAND_COUNT];
+        Arrays.fill(bands, hardenedClay);
+
+        int j;
+
+        for (j = 0; j < 64; ++j)
+        {
+            j += random.nextInt(5) + 1;
+            if (j < 64)
+            {
+                bands[j] = orangeStainedClay;
+            }
+        }
+
+        j = random.nextInt(4) + 2;
+
+        int k;
+        int l;
+        int i1;
+        int j1;
+
+        for (k = 0; k < j; ++k)
+        {
+            l = random.nextInt(3) + 1;
+            i1 = random.nextInt(64);
+
+            for (j1 = 0; i1 + j1 < 64 && j1 < l; ++j1)
+            {
+                bands[i1 + j1] = yellowStainedClay;
+            }
+        }
+
+        k = random.nextInt(4) + 2;
+
+        int k1;
+
+        for (l = 0; l < k; ++l)
+        {
+            i1 = random.nextInt(3) + 2;
+            j1 = random.nextInt(64);
+
+            for (k1 = 0; j1 + k1 < 64 && k1 < i1; ++k1)
+            {
+                bands[j1 + k1] = brownStainedClay;
+            }
+        }
+
+        l = random.nextInt(4) + 2;
+
+        for (i1 = 0; i1 < l; ++i1)
+        {
+            j1 = random.nextInt(3) + 1;
+            k1 = random.nextInt(64);
+
+            for (int l1 = 0; k1 + l1 < 64 && l1 < j1; ++l1)
+            {
+                bands[k1 + l1] = redStainedClay;
+            }
+        }
+
+        i1 = random.nextInt(3) + 3;
+        j1 = 0;
+
+        for (k1 = 0; k1 < i1; ++k1)
+        {
+            byte b0 = 1;
+
+            j1 += random.nextInt(16) + 4;
+
+            for (int i2 = 0; j1 + i2 < 64 && i2 < b0; ++i2)
+            {
+                bands[j1 + i2] = whiteStainedClay;
+                if (j1 + i2 > 1 && random.nextBoolean())
+                {
+                    bands[j1 + i2 - 1] = silverStainedClay;
+                }
+
+                if (j1 + i2 < 63 && random.nextBoolean())
+                {
+                    bands[j1 + i2 + 1] = silverStainedClay;
+                }
+            }
+        }
+        return bands;
+    }
+}
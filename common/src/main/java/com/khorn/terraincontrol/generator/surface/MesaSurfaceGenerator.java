@@ -5,13 +5,10 @@ import com.khorn.terraincontrol.TerrainControl;
 import com.khorn.terraincontrol.configuration.BiomeConfig;
 import com.khorn.terraincontrol.generator.ChunkBuffer;
 import com.khorn.terraincontrol.generator.GeneratingChunk;
-import com.khorn.terraincontrol.generator.noise.NoiseGeneratorNewOctaves;
+import com.khorn.terraincontrol.generator.TerrainColumns;
 import com.khorn.terraincontrol.util.helpers.MathHelper;
 import com.khorn.terraincontrol.util.minecraftTypes.DefaultMaterial;
 
-import java.util.Arrays;
-import java.util.Random;
-
 public class MesaSurfaceGenerator implements SurfaceGenerator
 {
     public static final String NAME_NORMAL = "Mesa";
@@ -43,21 +40,19 @@ public class MesaSurfaceGenerator implements SurfaceGenerator
         return null;
     }
 
-    private LocalMaterialData[] blockDataValuesArray;
-    private boolean isForestMesa;
-    private boolean isBryceMesa;
-    private NoiseGeneratorNewOctaves noiseGenBryce1;
-    private NoiseGeneratorNewOctaves noiseGenBryce2;
-    private NoiseGeneratorNewOctaves noiseGenBlockData;
+    private final boolean isForestMesa;
+    private final boolean isBryceMesa;
+
+    /**
+     * The data of the last used world seed. All mesa biomes of a world share
+     * the same data, see {@link MesaSurfaceData#forSeed(long)}.
+     */
+    private volatile MesaSurfaceData lastData;
 
     private final LocalMaterialData hardenedClay;
     private final LocalMaterialData redSand;
     private final LocalMaterialData whiteStainedClay;
     private final LocalMaterialData orangeStainedClay;
-    private final LocalMaterialData yellowStainedClay;
-    private final LocalMaterialData brownStainedClay;
-    private final LocalMaterialData redStainedClay;
-    private final LocalMaterialData silverStainedClay;
     private final LocalMaterialData coarseDirt;
 
     public MesaSurfaceGenerator(boolean mountainMesa, boolean forestMesa)
@@ -70,106 +65,17 @@ public class MesaSurfaceGenerator implements SurfaceGenerator
         this.coarseDirt = TerrainControl.toLocalMaterialData(DefaultMaterial.DIRT, 1);
         this.whiteStainedClay = TerrainControl.toLocalMaterialData(DefaultMaterial.STAINED_CLAY, 0);
         this.orangeStainedClay = TerrainControl.toLocalMaterialData(DefaultMaterial.STAINED_CLAY, 1);
-        this.yellowStainedClay = TerrainControl.toLocalMaterialData(DefaultMaterial.STAINED_CLAY, 4);
-        this.brownStainedClay = TerrainControl.toLocalMaterialData(DefaultMaterial.STAINED_CLAY, 12);
-        this.redStainedClay = TerrainControl.toLocalMaterialData(DefaultMaterial.STAINED_CLAY, 14);
-        this.silverStainedClay = TerrainControl.toLocalMaterialData(DefaultMaterial.STAINED_CLAY, 8);
-    }
-
-    private LocalMaterialData getBlockData(int i, int j, int k)
-    {
-        int l = (int) Math.round(this.noiseGenBlockData.a(i * 1.0D / 512.0D, i * 1.0D / 512.0D) * 2.0D);
-
-        return this.blockDataValuesArray[(j + l + 64) % 64];
     }
 
-    private void initializeSmallByteArray(Random random)
+    private MesaSurfaceData getData(long seed)
     {
-        this.blockDataValuesArray = new LocalMaterialData[64];
-        Arrays.fill(this.blockDataValuesArray, this.hardenedClay);
-
-        this.noiseGenBlockData = new NoiseGeneratorNewOctaves(random, 1);
-
-        int j;
-
-        for (j = 0; j < 64; ++j)
+        MesaSurfaceData data = this.lastData;
+        if (data == null || data.seed != seed)
         {
-            j += random.nextInt(5) + 1;
-            if (j < 64)
-            {
-                this.blockDataValuesArray[j] = this.orangeStainedClay;
-            }
-        }
-
-        j = random.nextInt(4) + 2;
-
-        int k;
-        int l;
-        int i1;
-        int j1;
-
-        for (k = 0; k < j; ++k)
-        {
-            l = random.nextInt(3) + 1;
-            i1 = random.nextInt(64);
-
-            for (j1 = 0; i1 + j1 < 64 && j1 < l; ++j1)
-            {
-                this.blockDataValuesArray[i1 + j1] = this.yellowStainedClay;
-            }
-        }
-
-        k = random.nextInt(4) + 2;
-
-        int k1;
-
-        for (l = 0; l < k; ++l)
-        {
-            i1 = random.nextInt(3) + 2;
-            j1 = random.nextInt(64);
-
-            for (k1 = 0; j1 + k1 < 64 && k1 < i1; ++k1)
-            {
-                this.blockDataValuesArray[j1 + k1] = this.brownStainedClay;
-            }
-        }
-
-        l = random.nextInt(4) + 2;
-
-        for (i1 = 0; i1 < l; ++i1)
-        {
-            j1 = random.nextInt(3) + 1;
-            k1 = random.nextInt(64);
-
-            for (int l1 = 0; k1 + l1 < 64 && l1 < j1; ++l1)
-            {
-                this.blockDataValuesArray[k1 + l1] = this.redStainedClay;
-            }
-        }
-
-        i1 = random.nextInt(3) + 3;
-        j1 = 0;
-
-        for (k1 = 0; k1 < i1; ++k1)
-        {
-            byte b0 = 1;
-
-            j1 += random.nextInt(16) + 4;
-
-            for (int i2 = 0; j1 + i2 < 64 && i2 < b0; ++i2)
-            {
-                this.blockDataValuesArray[j1 + i2] = this.whiteStainedClay;
-                if (j1 + i2 > 1 && random.nextBoolean())
-                {
-                    this.blockDataValuesArray[j1 + i2 - 1] = this.silverStainedClay;
-                }
-
-                if (j1 + i2 < 63 && random.nextBoolean())
-                {
-                    this.blockDataValuesArray[j1 + i2 + 1] = this.silverStainedClay;
-                }
-            }
+            data = MesaSurfaceData.forSeed(seed);
+            this.lastData = data;
         }
+        return data;
     }
 
     @Override
@@ -178,31 +84,20 @@ public class MesaSurfaceGenerator implements SurfaceGenerator
         int x = xInWorld & 0xf;
         int z = zInWorld & 0xf;
         double noise = generatingChunk.getNoise(x, z);
-        if (this.blockDataValuesArray == null)
-        {
-            this.initializeSmallByteArray(generatingChunk.random);
-        }
+        MesaSurfaceData data = getData(generatingChunk.worldSeed);
 
         // Bryce spike calculations
         double bryceHeight = 0.0D;
         if (this.isBryceMesa)
         {
-            if (this.noiseGenBryce1 == null || this.noiseGenBryce2 == null)
-            {
-                Random newRandom = new Random(generatingChunk.random.nextLong());
-
-                this.noiseGenBryce1 = new NoiseGeneratorNewOctaves(newRandom, 4);
-                this.noiseGenBryce2 = new NoiseGeneratorNewOctaves(newRandom, 1);
-            }
-
             int k = (xInWorld & -16) + (zInWorld & 15);
             int l = (zInWorld & -16) + (xInWorld & 15);
-            double bryceNoiseValue = Math.min(Math.abs(noise), this.noiseGenBryce1.a(k * 0.25D, l * 0.25D));
+            double bryceNoiseValue = Math.min(Math.abs(noise), data.noiseGenBryce1.a(k * 0.25D, l * 0.25D));
 
             if (bryceNoiseValue > 0.0D)
             {
                 double d3 = 0.001953125D;
-                double d4 = Math.abs(this.noiseGenBryce2.a(k * d3, l * d3));
+                double d4 = Math.abs(data.noiseGenBryce2.a(k * d3, l * d3));
 
                 bryceHeight = bryceNoiseValue * bryceNoiseValue * 2.5D;
                 double d5 = Math.ceil(d4 * 50.0D) + 14.0D;
@@ -227,11 +122,19 @@ public class MesaSurfaceGenerator implements SurfaceGenerator
         int maxHeight = generatingChunk.heightCap - 1;
         int minHeight = 0;
 
+        // The raw terrain is read instead of the chunk buffer, so that runs
+        // of the same block can be skipped
+        TerrainColumns terrain = generatingChunk.getTerrainColumns();
+
         for (int y = maxHeight; y >= minHeight; y--)
         {
-            if (chunkBuffer.getBlock(x, y, z).isAir() && y < (int) bryceHeight)
+            int run = terrain.getRun(x, y, z);
+            LocalMaterialData blockAtPosition = run == -1 ? chunkBuffer.getBlock(x, y, z) : terrain.getRunMaterial(x, z, run);
+            boolean bryceSpike = blockAtPosition.isAir() && y < (int) bryceHeight;
+            if (bryceSpike)
             {
                 chunkBuffer.setBlock(x, y, z, biomeConfig.stoneBlock);
+                blockAtPosition = biomeConfig.stoneBlock;
             }
 
             if (generatingChunk.mustCreateBedrockAt(biomeConfig.worldConfig, y))
@@ -239,7 +142,6 @@ public class MesaSurfaceGenerator implements SurfaceGenerator
                 chunkBuffer.setBlock(x, y, z, biomeConfig.worldConfig.bedrockBlock);
             } else
             {
-                LocalMaterialData blockAtPosition = chunkBuffer.getBlock(x, y, z);
 
                 if (blockAtPosition.isAir())
                 {
@@ -287,7 +189,7 @@ public class MesaSurfaceGenerator implements SurfaceGenerator
                                         iblockdata3 = this.hardenedClay;
                                     } else
                                     {
-                                        iblockdata3 = this.getBlockData(xInWorld, y, zInWorld);
+                                        iblockdata3 = data.getBlockData(xInWorld, y);
                                     }
                                 } else
                                 {
@@ -316,11 +218,25 @@ public class MesaSurfaceGenerator implements SurfaceGenerator
                             chunkBuffer.setBlock(x, y, z, this.orangeStainedClay);
                         } else
                         {
-                            iblockdata3 = this.getBlockData(xInWorld, y, zInWorld);
+                            iblockdata3 = data.getBlockData(xInWorld, y);
                             chunkBuffer.setBlock(x, y, z, iblockdata3);
                         }
                     }
                 }
+
+                // The rest of the run is only interesting if more blocks
+                // need to be placed. Air below the top of the spike must
+                // still be replaced.
+                if (run != -1 && !bryceSpike && (blockAtPosition.isAir() || !blockAtPosition.isSolid() || k1 == 0 || k1 < -1))
+                {
+                    int skipTo = Math.max(terrain.getRunBottom(x, z, run),
+                            generatingChunk.getNextBedrockHeight(biomeConfig.worldConfig, y) + 1);
+                    if (blockAtPosition.isAir())
+                    {
+                        skipTo = Math.max(skipTo, (int) bryceHeight);
+                    }
+                    y = skipTo;
+                }
             }
         }
 
@@ -9,6 +9,7 @@ import com.khorn.terraincontrol.configuration.WorldConfig;
 import com.khorn.terraincontrol.configuration.standard.WorldStandardValues;
 import com.khorn.terraincontrol.generator.ChunkBuffer;
 import com.khorn.terraincontrol.generator.GeneratingChunk;
+import com.khorn.terraincontrol.generator.TerrainColumns;
 import com.khorn.terraincontrol.util.minecraftTypes.DefaultMaterial;
 
 /**
@@ -45,6 +46,7 @@ public class SimpleSurfaceGenerator implements SurfaceGenerator
         LocalMaterialData currentGroundBlock = defaultGroundBlock;
         int surfaceBlocksCount = -1;
         final int currentWaterLevel = generatingChunk.getWaterLevel(x, z);
+        final TerrainColumns terrain = generatingChunk.getTerrainColumns();
         for (int y = CHUNK_Y_SIZE - 1; y >= 0; y--)
         {
             if (generatingChunk.mustCreateBedrockAt(worldConfig, y))
@@ -54,7 +56,10 @@ public class SimpleSurfaceGenerator implements SurfaceGenerator
             } else
             {
                 // Surface blocks logic (grass, dirt, sand, sandstone)
-                final LocalMaterialData blockOnCurrentPos = chunkBuffer.getBlock(x, y, z);
+                // The raw terrain is read instead of the chunk buffer, so
+                // that runs of the same block can be skipped
+                final int run = terrain.getRun(x, y, z);
+                final LocalMaterialData blockOnCurrentPos = run == -1 ? chunkBuffer.getBlock(x, y, z) : terrain.getRunMaterial(x, z, run);
 
                 if (blockOnCurrentPos.isAir())
                 {
@@ -112,6 +117,14 @@ public class SimpleSurfaceGenerator implements SurfaceGenerator
                         }
                     }
                 }
+
+                // The rest of the run is only interesting if more surface
+                // or ground blocks need to be placed
+                if (run != -1 && (blockOnCurrentPos.isAir() || !blockOnCurrentPos.equals(biomeConfig.stoneBlock)
+                        || surfaceBlocksCount == 0 || surfaceBlocksCount < -1))
+                {
+                    y = Math.max(terrain.getRunBottom(x, z, run), generatingChunk.getNextBedrockHeight(worldConfig, y) + 1);
+                }
             }
         }
     }
@@ -20,6 +20,12 @@ public interface SurfaceGenerator
 
     /**
      * Spawns this surface layer in the world.
+     * <p />
+     * When this method is called, the column only contains the raw terrain,
+     * which is also available as runs of the same block through
+     * {@link GeneratingChunk#getTerrainColumns()}. Implementations should
+     * use those runs to skip to the places where the block changes, instead
+     * of reading every block of the column from the chunk buffer.
      * @param generatingChunk Information about the chunk being generated.
      * @param chunkBuffer     The chunk buffer.
      * @param biomeConfig     The biome config to use for the settings.
@@ -0,0 +1,198 @@
+package com.khorn.terraincontrol.generator.terrain;
+
+import com.khorn.terraincontrol.LocalWorld;
+import com.khorn.terraincontrol.generator.ChunkBuffer;
+import com.khorn.terraincontrol.generator.GeneratingChunk;
+import com.khorn.terraincontrol.util.ChunkCoordinate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Base class for carvers that walk a random path through the terrain, like
+ * caves and ravines.
+ *
+ * <p>Every chunk is carved by the carvers that started in all chunks up to
+ * {@link #checkAreaSize} chunks away. Instead of walking the same paths
+ * again for every chunk they might reach, the paths of each starting chunk
+ * are walked once and cached. Only the carving itself is done per chunk,
+ * and only for the steps of which the bounds overlap the chunk. The result
+ * is exactly the same as when walking the paths for every chunk.
+ *
+ * <p>Starting chunks that are too far away for any of their carvers to reach
+ * the generated chunk are skipped, see {@link #getMaxReach()}.
+ *
+ */
+public abstract class CarverGenBase extends TerrainGenBase
+{
+    protected static final double SQRT_2 = Math.sqrt(2);
+
+    private static final CarverPath[] NO_PATHS = new CarverPath[0];
+
+    /**
+     * Maximum amount of starting chunks of which the paths are cached. A
+     * single chunk needs the paths of 17x17 starting chunks, neighbouring
+     * chunks share most of those.
+     */
+    private static final int MAX_CACHED_CHUNKS = 2048;
+
+    private final Map<Long, CarverPath[]> pathCache = Collections.synchronizedMap(new LinkedHashMap<Long, CarverPath[]>(256, 0.75f, true)
+    {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, CarverPath[]> eldest)
+        {
+            return size() > MAX_CACHED_CHUNKS;
+        }
+    });
+
+    public CarverGenBase(LocalWorld world)
+    {
+        super(world);
+    }
+
+    /**
+     * Walks the paths of all carvers that start in the given chunk. Only
+     * called if the paths are not cached yet. {@link #random} is already
+     * seeded for the chunk.
+     *
+     * @param currentChunk The chunk the carvers start in.
+     * @param paths        List to add the paths to, in the order in which
+     *                     they must be carved.
+     */
+    protected abstract void walkPaths(ChunkCoordinate currentChunk, List<CarverPath> paths);
+
+    /**
+     * Carves a single step of a path in the chunk that is being generated.
+     *
+     * @param path                  The path the step belongs to.
+     * @param generatingChunk       Information about the chunk that is
+     *                              being generated, like the biomes.
+     * @param generatingChunkBuffer The chunk that is being generated.
+     * @param x                     X of the center of the step.
+     * @param y                     Y of the center of the step.
+     * @param z                     Z of the center of the step.
+     * @param horizontalRadius      Horizontal radius of the step.
+     * @param verticalRadius        Vertical radius of the step.
+     * @return False if the step was skipped because of nearby water, true
+     *         otherwise.
+     */
+    protected abstract boolean carveStep(CarverPath path, GeneratingChunk generatingChunk, ChunkBuffer generatingChunkBuffer,
+            double x, double y, double z, double horizontalRadius, double verticalRadius);
+
+    /**
+     * Gets the maximum horizontal distance between the column a carver
+     * starts in and any column it carves in. Must never be too low, or
+     * carvers will be cut off.
+     *
+     * @return The distance in blocks.
+     */
+    protected abstract double getMaxReach();
+
+    @Override
+    protected boolean canReach(int currentChunkX, int currentChunkZ, ChunkCoordinate generatingChunk)
+    {
+        // Distance between the nearest columns of both chunks, rounded down
+        int gapX = Math.max(0, Math.abs(currentChunkX - generatingChunk.getChunkX()) - 1) * ChunkCoordinate.CHUNK_X_SIZE;
+        int gapZ = Math.max(0, Math.abs(currentChunkZ - generatingChunk.getChunkZ()) - 1) * ChunkCoordinate.CHUNK_Z_SIZE;
+        double maxReach = getMaxReach();
+        return gapX * gapX + gapZ * gapZ <= maxReach * maxReach;
+    }
+
+    @Override
+    protected void generateChunk(ChunkCoordinate currentChunk, GeneratingChunk generatingChunk, ChunkBuffer generatingChunkBuffer)
+    {
+        CarverPath[] paths = getPaths(currentChunk);
+        if (paths.length == 0)
+        {
+            return;
+        }
+
+        ChunkCoordinate chunkCoord = generatingChunkBuffer.getChunkCoordinate();
+        double centerX = chunkCoord.getBlockXCenter();
+        double centerZ = chunkCoord.getBlockZCenter();
+        for (CarverPath path : paths)
+        {
+            carvePath(path, generatingChunk, generatingChunkBuffer, centerX, centerZ);
+        }
+    }
+
+    private CarverPath[] getPaths(ChunkCoordinate currentChunk)
+    {
+        Long key = ((long) currentChunk.getChunkX() << 32) | (currentChunk.getChunkZ() & 0xFFFFFFFFL);
+        CarverPath[] paths = pathCache.get(key);
+        if (paths == null)
+        {
+            List<CarverPath> pathList = new ArrayList<CarverPath>();
+            walkPaths(currentChunk, pathList);
+            if (pathList.isEmpty())
+            {
+                paths = NO_PATHS;
+            } else
+            {
+                paths = pathList.toArray(new CarverPath[pathList.size()]);
+                for (CarverPath path : paths)
+                {
+                    path.finish();
+                }
+            }
+            pathCache.put(key, paths);
+        }
+        return paths;
+    }
+
+    private void carvePath(CarverPath path, GeneratingChunk generatingChunk, ChunkBuffer generatingChunkBuffer, double centerX,
+            double centerZ)
+    {
+        if (!path.mayCarveIncludingBranches(centerX, centerZ))
+        {
+            return;
+        }
+
+        // If the path itself can't reach the chunk, the steps are still
+        // checked to find out whether the branches are reached
+        boolean mayCarve = path.mayCarve(centerX, centerZ);
+        double maxDistance = path.size + 2.0F + 16.0F;
+        for (int step = 0; step < path.getStepCount(); step++)
+        {
+            double x = path.getX(step);
+            double z = path.getZ(step);
+
+            // Stop when the remaining steps cannot reach the chunk anymore
+            double distanceX = x - centerX;
+            double distanceZ = z - centerZ;
+            double remainingSteps = path.getRemainingSteps(step);
+            if (distanceX * distanceX + distanceZ * distanceZ - remainingSteps * remainingSteps > maxDistance * maxDistance)
+            {
+                return;
+            }
+
+            if (!mayCarve)
+            {
+                continue;
+            }
+
+            double horizontalRadius = path.getHorizontalRadius(step);
+            if ((x < centerX - 16.0D - horizontalRadius * 2.0D) || (z < centerZ - 16.0D - horizontalRadius * 2.0D)
+                    || (x > centerX + 16.0D + horizontalRadius * 2.0D) || (z > centerZ + 16.0D + horizontalRadius * 2.0D))
+            {
+                continue;
+            }
+
+            if (carveStep(path, generatingChunk, generatingChunkBuffer, x, path.getY(step), z, horizontalRadius,
+                    path.getVerticalRadius(step)) && path.stopAfterCarving)
+            {
+                return;
+            }
+        }
+
+        for (CarverPath branch : path.getBranches())
+        {
+            carvePath(branch, generatingChunk, generatingChunkBuffer, centerX, centerZ);
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package com.khorn.terraincontrol.generator.terrain;
+
+import java.util.Arrays;
+
+/**
+ * The path of a single cave tunnel or ravine: a list of ellipsoids, followed
+ * by the branches that split off at the end of the path.
+ *
+ * <p>Walking a path only depends on the chunk the carver started in, not on
+ * the chunk that is being generated. So each path is walked once and then
+ * replayed for all chunks it may reach, see {@link CarverGenBase}.
+ *
+ */
+final class CarverPath
+{
+    private static final CarverPath[] NO_BRANCHES = new CarverPath[0];
+
+    /**
+     * x, y, z, horizontal radius, vertical radius and remaining steps.
+     */
+    private static final int STEP_LENGTH = 6;
+
+    /**
+     * Extra space around the bounds, so that rounding errors in the bounds
+     * never cause chunks to be skipped.
+     */
+    private static final double BOUNDS_MARGIN = 1;
+
+    final float size;
+    final boolean stopAfterCarving;
+    final float[] heightMultipliers;
+
+    private double[] steps = new double[16 * STEP_LENGTH];
+    private int stepCount;
+    private CarverPath[] branches = NO_BRANCHES;
+
+    private double minX;
+    private double maxX;
+    private double minZ;
+    private double maxZ;
+    private double branchMinX;
+    private double branchMaxX;
+    private double branchMinZ;
+    private double branchMaxZ;
+
+    /**
+     * Creates a new, empty path.
+     * @param size              The size parameter of the carver, used to
+     *                          calculate how far the carver can reach.
+     * @param stopAfterCarving  Whether the path stops after the first step
+     *                          that carved something.
+     * @param heightMultipliers Shape of the carver at each height, may be
+     *                          null if the carver doesn't use this.
+     */
+    CarverPath(float size, boolean stopAfterCarving, float[] heightMultipliers)
+    {
+        this.size = size;
+        this.stopAfterCarving = stopAfterCarving;
+        this.heightMultipliers = heightMultipliers;
+    }
+
+    /**
+     * Adds a step to this path.
+     * @param x                X of the center of the step.
+     * @param y                Y of the center of the step.
+     * @param z                Z of the center of the step.
+     * @param horizontalRadius Horizontal radius of the step.
+     * @param verticalRadius   Vertical radius of the step.
+     * @param remainingSteps   Amount of steps the carver could still make.
+     */
+    void addStep(double x, double y, double z, double horizontalRadius, double verticalRadius, double remainingSteps)
+    {
+        int index = stepCount * STEP_LENGTH;
+        if (index == steps.length)
+        {
+            steps = Arrays.copyOf(steps, steps.length * 2);
+        }
+        steps[index] = x;
+        steps[index + 1] = y;
+        steps[index + 2] = z;
+        steps[index + 3] = horizontalRadius;
+        steps[index + 4] = verticalRadius;
+        steps[index + 5] = remainingSteps;
+        stepCount++;
+    }
+
+    /**
+     * Sets the paths that split off at the end of this path.
+     * @param branches The branches.
+     */
+    void setBranches(CarverPath... branches)
+    {
+        this.branches = branches;
+    }
+
+    /**
+     * Trims the step array and calculates the bounds of this path and its
+     * branches. Must be called once, after all steps and branches are
+     * added.
+     */
+    void finish()
+    {
+        steps = Arrays.copyOf(steps, stepCount * STEP_LENGTH);
+
+        minX = minZ = Double.POSITIVE_INFINITY;
+        maxX = maxZ = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < stepCount; i++)
+        {
+            // A step is only carved when the center of the chunk is this
+            // close, see CarverGenBase.carvePath
+            double reach = 16.0D + getHorizontalRadius(i) * 2.0D + BOUNDS_MARGIN;
+            minX = Math.min(minX, getX(i) - reach);
+            maxX = Math.max(maxX, getX(i) + reach);
+            minZ = Math.min(minZ, getZ(i) - reach);
+            maxZ = Math.max(maxZ, getZ(i) + reach);
+        }
+
+        branchMinX = minX;
+        branchMaxX = maxX;
+        branchMinZ = minZ;
+        branchMaxZ = maxZ;
+        for (CarverPath branch : branches)
+        {
+            branch.finish();
+            branchMinX = Math.min(branchMinX, branch.branchMinX);
+            branchMaxX = Math.max(branchMaxX, branch.branchMaxX);
+            branchMinZ = Math.min(branchMinZ, branch.branchMinZ);
+            branchMaxZ = Math.max(branchMaxZ, branch.branchMaxZ);
+        }
+    }
+
+    /**
+     * Gets whether this path itself may carve in the chunk with the given
+     * center.
+     * @param centerX X of the center of the chunk.
+     * @param centerZ Z of the center of the chunk.
+     * @return False if this path never carves in the chunk, true if it may.
+     */
+    boolean mayCarve(double centerX, double centerZ)
+    {
+        return centerX >= minX && centerX <= maxX && centerZ >= minZ && centerZ <= maxZ;
+    }
+
+    /**
+     * Gets whether this path or any of its branches may carve in the chunk
+     * with the given center.
+     * @param centerX X of the center of the chunk.
+     * @param centerZ Z of the center of the chunk.
+     * @return False if nothing is ever carved in the chunk, true otherwise.
+     */
+    boolean mayCarveIncludingBranches(double centerX, double centerZ)
+    {
+        return centerX >= branchMinX && centerX <= branchMaxX && centerZ >= branchMinZ && centerZ <= branchMaxZ;
+    }
+
+    int getStepCount()
+    {
+        return stepCount;
+    }
+
+    double getX(int step)
+    {
+        return steps[step * STEP_LENGTH];
+    }
+
+    double getY(int step)
+    {
+        return steps[step * STEP_LENGTH + 1];
+    }
+
+    double getZ(int step)
+    {
+        return steps[step * STEP_LENGTH + 2];
+    }
+
+    double getHorizontalRadius(int step)
+    {
+        return steps[step * STEP_LENGTH + 3];
+    }
+
+    double getVerticalRadius(int step)
+    {
+        return steps[step * STEP_LENGTH + 4];
+    }
+
+    double getRemainingSteps(int step)
+    {
+        return steps[step * STEP_LENGTH + 5];
+    }
+
+    CarverPath[] getBranches()
+    {
+        return branches;
+    }
+}
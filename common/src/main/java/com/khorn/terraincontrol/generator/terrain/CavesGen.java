@@ -6,14 +6,16 @@ import com.khorn.terraincontrol.LocalWorld;
 import com.khorn.terraincontrol.configuration.BiomeConfig;
 import com.khorn.terraincontrol.configuration.WorldConfig;
 import com.khorn.terraincontrol.generator.ChunkBuffer;
+import com.khorn.terraincontrol.generator.GeneratingChunk;
 import com.khorn.terraincontrol.util.ChunkCoordinate;
 import com.khorn.terraincontrol.util.helpers.MathHelper;
 import com.khorn.terraincontrol.util.helpers.RandomHelper;
 import com.khorn.terraincontrol.util.minecraftTypes.DefaultMaterial;
 
+import java.util.List;
 import java.util.Random;
 
-public class CavesGen extends TerrainGenBase
+public class CavesGen extends CarverGenBase
 {
     private WorldConfig worldSettings;
 
@@ -23,18 +25,28 @@ public class CavesGen extends TerrainGenBase
         this.worldSettings = wrk;
     }
 
-    protected void generateLargeCaveNode(long seed, ChunkBuffer generatingChunkBuffer, double x, double y, double z)
+    @Override
+    protected double getMaxReach()
     {
-        generateCaveNode(seed, generatingChunkBuffer, x, y, z, 1.0F + this.random.nextFloat() * 6.0F, 0.0F, 0.0F, -1, -1, 0.5D);
+        // A tunnel moves at most one block horizontally per step, and
+        // carves at most 1.5 + size blocks around each step. Normal tunnels
+        // have a size below 3, large caves have a size below 7 but only
+        // make half of the steps. Branches are smaller and continue the
+        // step count of their parent.
+        int maxSteps = this.checkAreaSize * 16 - 16;
+        double normalReach = maxSteps + SQRT_2 * (1.5 + 3 + 1);
+        double largeReach = maxSteps / 2 + SQRT_2 * (1.5 + 7 + 1);
+        return Math.max(normalReach, largeReach);
     }
 
-    protected void generateCaveNode(long seed, ChunkBuffer generatingChunkBuffer, double x, double y, double z, float paramFloat1,
-            float paramFloat2, float paramFloat3, int angle, int maxAngle, double paramDouble4)
+    protected CarverPath generateLargeCaveNode(long seed, double x, double y, double z)
     {
-        ChunkCoordinate generatingChunk = generatingChunkBuffer.getChunkCoordinate();
-        double real_x = generatingChunk.getBlockXCenter();
-        double real_z = generatingChunk.getBlockZCenter();
+        return generateCaveNode(seed, x, y, z, 1.0F + this.random.nextFloat() * 6.0F, 0.0F, 0.0F, -1, -1, 0.5D);
+    }
 
+    protected CarverPath generateCaveNode(long seed, double x, double y, double z, float paramFloat1, float paramFloat2,
+            float paramFloat3, int angle, int maxAngle, double paramDouble4)
+    {
         float f1 = 0.0F;
         float f2 = 0.0F;
 
@@ -53,6 +65,8 @@ public class CavesGen extends TerrainGenBase
             isLargeCave = true;
         }
 
+        CarverPath path = new CarverPath(paramFloat1, isLargeCave, null);
+
         int j = localRandom.nextInt(maxAngle / 2) + maxAngle / 4;
         int k = localRandom.nextInt(6) == 0 ? 1 : 0;
 
@@ -83,121 +97,119 @@ public class CavesGen extends TerrainGenBase
 
             if ((!isLargeCave) && (angle == j) && (paramFloat1 > 1.0F) && (maxAngle > 0))
             {
-                generateCaveNode(localRandom.nextLong(), generatingChunkBuffer, x, y, z, localRandom.nextFloat() * 0.5F + 0.5F,
+                CarverPath branch1 = generateCaveNode(localRandom.nextLong(), x, y, z, localRandom.nextFloat() * 0.5F + 0.5F,
                         paramFloat2 - 1.570796F, paramFloat3 / 3.0F, angle, maxAngle, 1.0D);
-                generateCaveNode(localRandom.nextLong(), generatingChunkBuffer, x, y, z, localRandom.nextFloat() * 0.5F + 0.5F,
+                CarverPath branch2 = generateCaveNode(localRandom.nextLong(), x, y, z, localRandom.nextFloat() * 0.5F + 0.5F,
                         paramFloat2 + 1.570796F, paramFloat3 / 3.0F, angle, maxAngle, 1.0D);
-                return;
+                path.setBranches(branch1, branch2);
+                return path;
             }
             if ((!isLargeCave) && (localRandom.nextInt(4) == 0))
             {
                 continue;
             }
 
-            // Check if distance to working point (x and z) too larger than working radius (maybe ??)
-            double d5 = x - real_x;
-            double d6 = z - real_z;
-            double d7 = maxAngle - angle;
-            double d8 = paramFloat1 + 2.0F + 16.0F;
-            if (d5 * d5 + d6 * d6 - d7 * d7 > d8 * d8)
-            {
-                return;
-            }
-
-            //Boundaries check.
-            if ((x < real_x - 16.0D - d3 * 2.0D) || (z < real_z - 16.0D - d3 * 2.0D) || (x > real_x + 16.0D + d3 * 2.0D) || (z > real_z + 16.0D + d3 * 2.0D))
-                continue;
+            // Whether this step reaches the chunk being generated is
+            // checked in CarverGenBase
+            path.addStep(x, y, z, d3, d4, maxAngle - angle);
+        }
+        return path;
+    }
 
+    @Override
+    protected boolean carveStep(CarverPath path, GeneratingChunk generatingChunk, ChunkBuffer generatingChunkBuffer, double x,
+            double y, double z, double d3, double d4)
+    {
+        ChunkCoordinate chunkCoord = generatingChunkBuffer.getChunkCoordinate();
 
-            int m = MathHelper.floor(x - d3) - generatingChunk.getBlockX() - 1;
-            int n = MathHelper.floor(x + d3) - generatingChunk.getBlockX() + 1;
+        int m = MathHelper.floor(x - d3) - chunkCoord.getBlockX() - 1;
+        int n = MathHelper.floor(x + d3) - chunkCoord.getBlockX() + 1;
 
-            int i1 = MathHelper.floor(y - d4) - 1;
-            int i2 = MathHelper.floor(y + d4) + 1;
+        int i1 = MathHelper.floor(y - d4) - 1;
+        int i2 = MathHelper.floor(y + d4) + 1;
 
-            int i3 = MathHelper.floor(z - d3) - generatingChunk.getBlockZ() - 1;
-            int i4 = MathHelper.floor(z + d3) - generatingChunk.getBlockZ() + 1;
+        int i3 = MathHelper.floor(z - d3) - chunkCoord.getBlockZ() - 1;
+        int i4 = MathHelper.floor(z + d3) - chunkCoord.getBlockZ() + 1;
 
-            if (m < 0)
-                m = 0;
-            if (n > 16)
-                n = 16;
+        if (m < 0)
+            m = 0;
+        if (n > 16)
+            n = 16;
 
-            if (i1 < 1)
-                i1 = 1;
-            if (i2 > this.worldSettings.worldHeightCap - 8)
-            {
-                i2 = this.worldSettings.worldHeightCap - 8;
-            }
-            if (i3 < 0)
-                i3 = 0;
-            if (i4 > 16)
-                i4 = 16;
-
-            // Search for water
-            boolean waterFound = false;
-            for (int local_x = m; (!waterFound) && (local_x < n); local_x++)
+        if (i1 < 1)
+            i1 = 1;
+        if (i2 > this.worldSettings.worldHeightCap - 8)
+        {
+            i2 = this.worldSettings.worldHeightCap - 8;
+        }
+        if (i3 < 0)
+            i3 = 0;
+        if (i4 > 16)
+            i4 = 16;
+
+        // Search for water
+        boolean waterFound = false;
+        for (int local_x = m; (!waterFound) && (local_x < n); local_x++)
+        {
+            for (int local_z = i3; (!waterFound) && (local_z < i4); local_z++)
             {
-                for (int local_z = i3; (!waterFound) && (local_z < i4); local_z++)
+                for (int local_y = i2 + 1; (!waterFound) && (local_y >= i1 - 1); local_y--)
                 {
-                    for (int local_y = i2 + 1; (!waterFound) && (local_y >= i1 - 1); local_y--)
+                    if (local_y >= 0 && local_y < this.worldSettings.worldHeightCap)
                     {
-                        if (local_y >= 0 && local_y < this.worldSettings.worldHeightCap)
+                        LocalMaterialData material = generatingChunkBuffer.getBlock(local_x, local_y, local_z);
+                        if (material.isMaterial(DefaultMaterial.WATER)
+                                || material.isMaterial(DefaultMaterial.STATIONARY_WATER))
                         {
-                            LocalMaterialData material = generatingChunkBuffer.getBlock(local_x, local_y, local_z);
-                            if (material.isMaterial(DefaultMaterial.WATER)
-                                    || material.isMaterial(DefaultMaterial.STATIONARY_WATER))
-                            {
-                                waterFound = true;
-                            }
-                            if ((local_y != i1 - 1) && (local_x != m) && (local_x != n - 1) && (local_z != i3) && (local_z != i4 - 1))
-                                local_y = i1;
+                            waterFound = true;
                         }
+                        if ((local_y != i1 - 1) && (local_x != m) && (local_x != n - 1) && (local_z != i3) && (local_z != i4 - 1))
+                            local_y = i1;
                     }
                 }
             }
-            if (waterFound)
-                continue;
+        }
+        if (waterFound)
+            return false;
 
-            // Generate cave
-            for (int local_x = m; local_x < n; local_x++)
+        // Generate cave
+        for (int local_x = m; local_x < n; local_x++)
+        {
+            double d9 = (local_x + chunkCoord.getBlockX() + 0.5D - x) / d3;
+            for (int local_z = i3; local_z < i4; local_z++)
             {
-                double d9 = (local_x + generatingChunk.getBlockX() + 0.5D - x) / d3;
-                for (int local_z = i3; local_z < i4; local_z++)
-                {
-                    LocalBiome biome = this.world.getBiome(local_x + generatingChunk.getBlockX(), local_z + generatingChunk.getBlockZ());
-                    double d10 = (local_z + generatingChunk.getBlockZ() + 0.5D - z) / d3;
+                LocalBiome biome = generatingChunk.getBiome(local_x, local_z);
+                double d10 = (local_z + chunkCoord.getBlockZ() + 0.5D - z) / d3;
 
-                    boolean grassFound = false;
-                    if (d9 * d9 + d10 * d10 < 1.0D)
+                boolean grassFound = false;
+                if (d9 * d9 + d10 * d10 < 1.0D)
+                {
+                    for (int local_y = i2; local_y > i1; local_y--)
                     {
-                        for (int local_y = i2; local_y > i1; local_y--)
+                        double d11 = ((local_y - 1) + 0.5D - y) / d4;
+                        if ((d11 > -0.7D) && (d9 * d9 + d11 * d11 + d10 * d10 < 1.0D))
                         {
-                            double d11 = ((local_y - 1) + 0.5D - y) / d4;
-                            if ((d11 > -0.7D) && (d9 * d9 + d11 * d11 + d10 * d10 < 1.0D))
+                            LocalMaterialData material = generatingChunkBuffer.getBlock(local_x, local_y, local_z);
+                            LocalMaterialData materialAbove = generatingChunkBuffer.getBlock(local_x, local_y + 1, local_z);
+                            if (material.isMaterial(DefaultMaterial.GRASS) || material.isMaterial(DefaultMaterial.MYCEL))
+                                grassFound = true;
+                            if (this.isSuitableBlock(material, materialAbove, biome))
                             {
-                                LocalMaterialData material = generatingChunkBuffer.getBlock(local_x, local_y, local_z);
-                                LocalMaterialData materialAbove = generatingChunkBuffer.getBlock(local_x, local_y + 1, local_z);
-                                if (material.isMaterial(DefaultMaterial.GRASS) || material.isMaterial(DefaultMaterial.MYCEL))
-                                    grassFound = true;
-                                if (this.isSuitableBlock(material, materialAbove, biome))
+                                if (local_y - 1 < 10)
                                 {
-                                    if (local_y - 1 < 10)
-                                    {
-                                        generatingChunkBuffer.setBlock(local_x, local_y, local_z, lava);
-                                    } else
+                                    generatingChunkBuffer.setBlock(local_x, local_y, local_z, lava);
+                                } else
+                                {
+                                    generatingChunkBuffer.setBlock(local_x, local_y, local_z, air);
+
+                                    // If grass was just deleted, try to
+                                    // move it down
+                                    if (grassFound
+                                            && (generatingChunkBuffer.getBlock(local_x, local_y - 1, local_z)
+                                                    .isMaterial(DefaultMaterial.DIRT)))
                                     {
-                                        generatingChunkBuffer.setBlock(local_x, local_y, local_z, air);
-
-                                        // If grass was just deleted, try to
-                                        // move it down
-                                        if (grassFound
-                                                && (generatingChunkBuffer.getBlock(local_x, local_y - 1, local_z)
-                                                        .isMaterial(DefaultMaterial.DIRT)))
-                                        {
-                                            generatingChunkBuffer.setBlock(local_x, local_y - 1, local_z,
-                                                    biome.getBiomeConfig().surfaceBlock);
-                                        }
+                                        generatingChunkBuffer.setBlock(local_x, local_y - 1, local_z,
+                                                biome.getBiomeConfig().surfaceBlock);
                                     }
                                 }
                             }
@@ -205,9 +217,8 @@ public class CavesGen extends TerrainGenBase
                     }
                 }
             }
-            if (isLargeCave)
-                break;
         }
+        return true;
     }
 
     protected boolean isSuitableBlock(LocalMaterialData material, LocalMaterialData materialAbove, LocalBiome biome)
@@ -249,7 +260,7 @@ public class CavesGen extends TerrainGenBase
     }
 
     @Override
-    protected void generateChunk(ChunkCoordinate chunkCoord, ChunkBuffer generatingChunkBuffer)
+    protected void walkPaths(ChunkCoordinate chunkCoord, List<CarverPath> paths)
     {
         int i = this.random.nextInt(this.random.nextInt(this.random.nextInt(this.worldSettings.caveFrequency) + 1) + 1);
         if (this.worldSettings.evenCaveDistribution)
@@ -274,7 +285,7 @@ public class CavesGen extends TerrainGenBase
             boolean largeCaveSpawned = false;
             if (this.random.nextInt(100) <= this.worldSettings.individualCaveRarity)
             {
-                generateLargeCaveNode(this.random.nextLong(), generatingChunkBuffer, x, y, z);
+                paths.add(generateLargeCaveNode(this.random.nextLong(), x, y, z));
                 largeCaveSpawned = true;
             }
 
@@ -289,7 +300,7 @@ public class CavesGen extends TerrainGenBase
                 float f2 = (this.random.nextFloat() - 0.5F) * 2.0F / 8.0F;
                 float f3 = this.random.nextFloat() * 2.0F + this.random.nextFloat();
 
-                generateCaveNode(this.random.nextLong(), generatingChunkBuffer, x, y, z, f3, f1, f2, 0, 0, 1.0D);
+                paths.add(generateCaveNode(this.random.nextLong(), x, y, z, f3, f1, f2, 0, 0, 1.0D));
             }
         }
     }
@@ -0,0 +1,204 @@
+package com.khorn.terraincontrol.generator.terrain;
+
+import com.khorn.terraincontrol.LocalMaterialData;
+import com.khorn.terraincontrol.LocalWorld;
+import com.khorn.terraincontrol.configuration.BiomeConfig;
+import com.khorn.terraincontrol.configuration.WorldConfig;
+import com.khorn.terraincontrol.generator.ChunkBuffer;
+import com.khorn.terraincontrol.generator.GeneratingChunk;
+import com.khorn.terraincontrol.generator.noise.NoiseGeneratorPerlinOctaves;
+import com.khorn.terraincontrol.util.ChunkCoordinate;
+import com.khorn.terraincontrol.util.minecraftTypes.DefaultMaterial;
+
+/**
+ * Carves caves out of a three dimensional noise field: everywhere the noise
+ * is above {@link WorldConfig#noiseCaveThreshold}, the terrain is removed.
+ *
+ * <p>The noise is only calculated on the same coarse grid as the terrain
+ * noise (4 blocks horizontally, 8 blocks vertically) and interpolated in
+ * between. Unlike {@link CavesGen}, no neighbouring chunks need to be
+ * searched, so the time needed for a chunk doesn't depend on the amount of
+ * caves, and each chunk can be carved independently.
+ *
+ */
+public class NoiseCavesGen extends TerrainGenBase
+{
+    private static final int OCTAVES = 3;
+
+    /**
+     * The noise of each octave is about -1 to 1, and each octave has twice
+     * the amplitude of the previous one.
+     */
+    private static final double MAX_NOISE = (1 << OCTAVES) - 1;
+
+    private static final int CELL_WIDTH = 4;
+    private static final int CELL_HEIGHT = 8;
+    private static final int CELLS_X = ChunkCoordinate.CHUNK_X_SIZE / CELL_WIDTH;
+    private static final int CELLS_Z = ChunkCoordinate.CHUNK_Z_SIZE / CELL_WIDTH;
+
+    /**
+     * Wavelength of the largest octave in blocks, at a cave size of 1.
+     */
+    private static final double HORIZONTAL_WAVELENGTH = 40;
+    private static final double VERTICAL_WAVELENGTH = 20;
+
+    /**
+     * Lava is placed instead of air at and below this height.
+     */
+    private static final int LAVA_LEVEL = 10;
+
+    private final WorldConfig worldSettings;
+    private final NoiseGeneratorPerlinOctaves caveNoiseGen;
+    private final int ySamples;
+    private final double horizontalScale;
+    private final double verticalScale;
+    private double[] caveNoise;
+
+    public NoiseCavesGen(WorldConfig wrk, LocalWorld world)
+    {
+        super(world);
+        this.worldSettings = wrk;
+        // The noise is continuous over chunk borders, so only the chunk
+        // itself needs to be checked
+        this.checkAreaSize = 0;
+        this.caveNoiseGen = new NoiseGeneratorPerlinOctaves(this.random, OCTAVES);
+
+        this.ySamples = wrk.worldHeightCap / CELL_HEIGHT + 1;
+
+        // Noise3D expects the scale per grid point of the smallest octave
+        int largestOctave = 1 << (OCTAVES - 1);
+        this.horizontalScale = CELL_WIDTH * largestOctave / (HORIZONTAL_WAVELENGTH * wrk.noiseCaveSize);
+        this.verticalScale = CELL_HEIGHT * largestOctave / (VERTICAL_WAVELENGTH * wrk.noiseCaveSize);
+    }
+
+    @Override
+    protected void generateChunk(ChunkCoordinate currentChunk, GeneratingChunk generatingChunk, ChunkBuffer generatingChunkBuffer)
+    {
+        int minY = Math.max(1, this.worldSettings.caveMinAltitude);
+        int maxY = Math.min(this.worldSettings.caveMaxAltitude, this.worldSettings.worldHeightCap - 8);
+        if (minY > maxY)
+        {
+            return;
+        }
+
+        this.caveNoise = this.caveNoiseGen.Noise3D(this.caveNoise, currentChunk.getChunkX() * CELLS_X, 0,
+                currentChunk.getChunkZ() * CELLS_Z, CELLS_X + 1, this.ySamples, CELLS_Z + 1,
+                this.horizontalScale, this.verticalScale, this.horizontalScale);
+
+        double threshold = this.worldSettings.noiseCaveThreshold * MAX_NOISE;
+        int minCellY = minY / CELL_HEIGHT;
+        int maxCellY = Math.min(maxY / CELL_HEIGHT, this.ySamples - 2);
+
+        for (int cellX = 0; cellX < CELLS_X; cellX++)
+        {
+            for (int cellZ = 0; cellZ < CELLS_Z; cellZ++)
+            {
+                int x0z0 = (cellX * (CELLS_Z + 1) + cellZ) * this.ySamples;
+                int x0z1 = x0z0 + this.ySamples;
+                int x1z0 = x0z0 + (CELLS_Z + 1) * this.ySamples;
+                int x1z1 = x1z0 + this.ySamples;
+
+                for (int cellY = minCellY; cellY <= maxCellY; cellY++)
+                {
+                    double n000 = this.caveNoise[x0z0 + cellY];
+                    double n001 = this.caveNoise[x0z1 + cellY];
+                    double n100 = this.caveNoise[x1z0 + cellY];
+                    double n101 = this.caveNoise[x1z1 + cellY];
+                    double n010 = this.caveNoise[x0z0 + cellY + 1];
+                    double n011 = this.caveNoise[x0z1 + cellY + 1];
+                    double n110 = this.caveNoise[x1z0 + cellY + 1];
+                    double n111 = this.caveNoise[x1z1 + cellY + 1];
+
+                    // Interpolated values never exceed the corners, so most
+                    // cells can be skipped without looking at the blocks
+                    double max = Math.max(Math.max(Math.max(n000, n001), Math.max(n100, n101)),
+                            Math.max(Math.max(n010, n011), Math.max(n110, n111)));
+                    if (max <= threshold)
+                    {
+                        continue;
+                    }
+
+                    carveCell(generatingChunk, generatingChunkBuffer, cellX, cellY, cellZ, threshold, minY, maxY,
+                            n000, n001, n100, n101, n010, n011, n110, n111);
+                }
+            }
+        }
+    }
+
+    private void carveCell(GeneratingChunk generatingChunk, ChunkBuffer generatingChunkBuffer, int cellX, int cellY,
+            int cellZ, double threshold, int minY, int maxY, double n000, double n001, double n100, double n101,
+            double n010, double n011, double n110, double n111)
+    {
+        int startY = Math.max(minY, cellY * CELL_HEIGHT);
+        int endY = Math.min(maxY, cellY * CELL_HEIGHT + CELL_HEIGHT - 1);
+
+        // Carve from the top down, so that grass can be moved down
+        for (int dx = 0; dx < CELL_WIDTH; dx++)
+        {
+            double fx = (double) dx / CELL_WIDTH;
+            for (int dz = 0; dz < CELL_WIDTH; dz++)
+            {
+                double fz = (double) dz / CELL_WIDTH;
+                double bottom = lerp(fx, lerp(fz, n000, n001), lerp(fz, n100, n101));
+                double top = lerp(fx, lerp(fz, n010, n011), lerp(fz, n110, n111));
+
+                int x = cellX * CELL_WIDTH + dx;
+                int z = cellZ * CELL_WIDTH + dz;
+                BiomeConfig biomeConfig = generatingChunk.getBiome(x, z).getBiomeConfig();
+                for (int y = endY; y >= startY; y--)
+                {
+                    double noise = lerp((double) (y - cellY * CELL_HEIGHT) / CELL_HEIGHT, bottom, top);
+                    if (noise > threshold)
+                    {
+                        carveBlock(generatingChunkBuffer, biomeConfig, x, y, z);
+                    }
+                }
+            }
+        }
+    }
+
+    private void carveBlock(ChunkBuffer generatingChunkBuffer, BiomeConfig biomeConfig, int x, int y, int z)
+    {
+        LocalMaterialData material = generatingChunkBuffer.getBlock(x, y, z);
+        if (!isSuitableBlock(material, biomeConfig))
+        {
+            return;
+        }
+
+        // Never open up the bottom of oceans and lakes
+        if (generatingChunkBuffer.getBlock(x, y + 1, z).isLiquid())
+        {
+            return;
+        }
+
+        if (y <= LAVA_LEVEL)
+        {
+            generatingChunkBuffer.setBlock(x, y, z, lava);
+            return;
+        }
+
+        generatingChunkBuffer.setBlock(x, y, z, air);
+
+        // If grass was just deleted, try to move it down
+        if ((material.isMaterial(DefaultMaterial.GRASS) || material.isMaterial(DefaultMaterial.MYCEL))
+                && generatingChunkBuffer.getBlock(x, y - 1, z).isMaterial(DefaultMaterial.DIRT))
+        {
+            generatingChunkBuffer.setBlock(x, y - 1, z, biomeConfig.surfaceBlock);
+        }
+    }
+
+    private boolean isSuitableBlock(LocalMaterialData material, BiomeConfig biomeConfig)
+    {
+        return material.equals(biomeConfig.stoneBlock)
+                || material.equals(biomeConfig.groundBlock)
+                || material.equals(biomeConfig.surfaceBlock)
+                || material.isMaterial(DefaultMaterial.HARD_CLAY)
+                || material.isMaterial(DefaultMaterial.SANDSTONE)
+                || material.isMaterial(DefaultMaterial.SNOW);
+    }
+
+    private static double lerp(double factor, double from, double to)
+    {
+        return from + factor * (to - from);
+    }
+}
@@ -6,16 +6,17 @@ import com.khorn.terraincontrol.LocalWorld;
 import com.khorn.terraincontrol.configuration.BiomeConfig;
 import com.khorn.terraincontrol.configuration.WorldConfig;
 import com.khorn.terraincontrol.generator.ChunkBuffer;
+import com.khorn.terraincontrol.generator.GeneratingChunk;
 import com.khorn.terraincontrol.util.ChunkCoordinate;
 import com.khorn.terraincontrol.util.helpers.MathHelper;
 import com.khorn.terraincontrol.util.helpers.RandomHelper;
 import com.khorn.terraincontrol.util.minecraftTypes.DefaultMaterial;
 
+import java.util.List;
 import java.util.Random;
 
-public class RavinesGen extends TerrainGenBase
+public class RavinesGen extends CarverGenBase
 {
-    private float[] a = new float[1024];
     private WorldConfig worldSettings;
 
     public RavinesGen(WorldConfig wrk, LocalWorld world)
@@ -24,14 +25,20 @@ public class RavinesGen extends TerrainGenBase
         this.worldSettings = wrk;
     }
 
-    protected void a(long paramLong, ChunkBuffer generatingChunkBuffer, double paramDouble1, double paramDouble2, double paramDouble3,
-            float paramFloat1, float paramFloat2, float paramFloat3, int size, double paramDouble4)
+    @Override
+    protected double getMaxReach()
     {
-        Random localRandom = new Random(paramLong);
+        // A ravine moves at most one block horizontally per step, and
+        // carves at most 1.5 + 6 blocks around each step
+        int maxSteps = Math.max(this.worldSettings.ravineMinLength, this.worldSettings.ravineMaxLength);
+        return maxSteps + SQRT_2 * (1.5 + 6 + 1);
+    }
 
-        ChunkCoordinate generatingChunk = generatingChunkBuffer.getChunkCoordinate();
-        double d1 = generatingChunk.getBlockXCenter();
-        double d2 = generatingChunk.getBlockZCenter();
+    protected CarverPath a(long paramLong, double paramDouble1, double paramDouble2, double paramDouble3, float paramFloat1,
+            float paramFloat2, float paramFloat3, int size, double paramDouble4)
+    {
+        Random localRandom = new Random(paramLong);
+        float[] a = new float[worldSettings.worldHeightCap];
 
         float f1 = 0.0F;
         float f2 = 0.0F;
@@ -47,8 +54,9 @@ public class RavinesGen extends TerrainGenBase
             {
                 f3 = 1.0F + localRandom.nextFloat() * localRandom.nextFloat() * 1.0F;
             }
-            this.a[j] = (f3 * f3);
+            a[j] = (f3 * f3);
         }
+        CarverPath path = new CarverPath(paramFloat1, false, a);
 
         for (int stepCount = 0; stepCount < size; stepCount++)
         {
@@ -78,102 +86,107 @@ public class RavinesGen extends TerrainGenBase
             {
                 continue;
             }
-            double d5 = paramDouble1 - d1;
-            double d6 = paramDouble3 - d2;
-            double d7 = size - stepCount;
-            double d8 = paramFloat1 + 2.0F + 16.0F;
-            if (d5 * d5 + d6 * d6 - d7 * d7 > d8 * d8)
-            {
-                return;
-            }
 
-            if ((paramDouble1 < d1 - 16.0D - d3 * 2.0D) || (paramDouble3 < d2 - 16.0D - d3 * 2.0D) || (paramDouble1 > d1 + 16.0D + d3 * 2.0D) || (paramDouble3 > d2 + 16.0D + d3 * 2.0D))
-                continue;
-            int k = MathHelper.floor(paramDouble1 - d3) - generatingChunk.getBlockX() - 1;
-            int m = MathHelper.floor(paramDouble1 + d3) - generatingChunk.getBlockX() + 1;
+            // Whether this step reaches the chunk being generated is
+            // checked in CarverGenBase
+            path.addStep(paramDouble1, paramDouble2, paramDouble3, d3, d4, size - stepCount);
+        }
+        return path;
+    }
+
+    @Override
+    protected boolean carveStep(CarverPath path, GeneratingChunk generatingChunk, ChunkBuffer generatingChunkBuffer,
+            double paramDouble1, double paramDouble2, double paramDouble3, double d3, double d4)
+    {
+        ChunkCoordinate chunkCoord = generatingChunkBuffer.getChunkCoordinate();
+        float[] a = path.heightMultipliers;
+
+        int k = MathHelper.floor(paramDouble1 - d3) - chunkCoord.getBlockX() - 1;
+        int m = MathHelper.floor(paramDouble1 + d3) - chunkCoord.getBlockX() + 1;
 
-            int maxY = MathHelper.floor(paramDouble2 - d4) - 1;
-            int minY = MathHelper.floor(paramDouble2 + d4) + 1;
+        int maxY = MathHelper.floor(paramDouble2 - d4) - 1;
+        int minY = MathHelper.floor(paramDouble2 + d4) + 1;
 
-            int i2 = MathHelper.floor(paramDouble3 - d3) - generatingChunk.getBlockZ() - 1;
-            int i3 = MathHelper.floor(paramDouble3 + d3) - generatingChunk.getBlockZ() + 1;
+        int i2 = MathHelper.floor(paramDouble3 - d3) - chunkCoord.getBlockZ() - 1;
+        int i3 = MathHelper.floor(paramDouble3 + d3) - chunkCoord.getBlockZ() + 1;
 
-            if (k < 0)
-                k = 0;
-            if (m > 16)
-                m = 16;
+        if (k < 0)
+            k = 0;
+        if (m > 16)
+            m = 16;
 
-            if (maxY < 1)
-                maxY = 1;
-            if (minY > worldSettings.worldHeightCap - 8)
-                minY = worldSettings.worldHeightCap - 8;
+        if (maxY < 1)
+            maxY = 1;
+        if (minY > worldSettings.worldHeightCap - 8)
+            minY = worldSettings.worldHeightCap - 8;
 
-            if (i2 < 0)
-                i2 = 0;
-            if (i3 > 16)
-                i3 = 16;
+        if (i2 < 0)
+            i2 = 0;
+        if (i3 > 16)
+            i3 = 16;
 
-            int i4 = 0;
-            for (int localX = k; (i4 == 0) && (localX < m); localX++)
+        int i4 = 0;
+        for (int localX = k; (i4 == 0) && (localX < m); localX++)
+        {
+            for (int localZ = i2; (i4 == 0) && (localZ < i3); localZ++)
             {
-                for (int localZ = i2; (i4 == 0) && (localZ < i3); localZ++)
+                for (int localY = minY + 1; (i4 == 0) && (localY >= maxY - 1); localY--)
                 {
-                    for (int localY = minY + 1; (i4 == 0) && (localY >= maxY - 1); localY--)
+                    if (localY < 0)
+                        continue;
+                    if (localY < worldSettings.worldHeightCap)
                     {
-                        if (localY < 0)
-                            continue;
-                        if (localY < worldSettings.worldHeightCap)
+                        LocalMaterialData materialAtPosition = generatingChunkBuffer.getBlock(localX, localY, localZ);
+                        if (materialAtPosition.isMaterial(DefaultMaterial.WATER)
+                                || materialAtPosition.isMaterial(DefaultMaterial.STATIONARY_WATER))
                         {
-                            LocalMaterialData materialAtPosition = generatingChunkBuffer.getBlock(localX, localY, localZ);
-                            if (materialAtPosition.isMaterial(DefaultMaterial.WATER)
-                                    || materialAtPosition.isMaterial(DefaultMaterial.STATIONARY_WATER))
-                            {
-                                i4 = 1;
-                            }
-                            if ((localY != maxY - 1) && (localX != k) && (localX != m - 1) && (localZ != i2) && (localZ != i3 - 1))
-                                localY = maxY;
+                            i4 = 1;
                         }
+                        if ((localY != maxY - 1) && (localX != k) && (localX != m - 1) && (localZ != i2) && (localZ != i3 - 1))
+                            localY = maxY;
                     }
                 }
             }
-            if (i4 != 0)
-            {
-                continue;
-            }
-            for (int localX = k; localX < m; localX++)
+        }
+        if (i4 != 0)
+        {
+            return false;
+        }
+        for (int localX = k; localX < m; localX++)
+        {
+            double d9 = (localX + chunkCoord.getBlockX() + 0.5D - paramDouble1) / d3;
+            for (int localZ = i2; localZ < i3; localZ++)
             {
-                double d9 = (localX + generatingChunk.getBlockX() + 0.5D - paramDouble1) / d3;
-                for (int localZ = i2; localZ < i3; localZ++)
+                // Note the swapped x and z, kept so that existing worlds
+                // don't change
+                LocalBiome biome = generatingChunk.getBiome(localZ, localX);
+                BiomeConfig biomeConfig = biome.getBiomeConfig();
+                double d10 = (localZ + chunkCoord.getBlockZ() + 0.5D - paramDouble3) / d3;
+                boolean grassFound = false;
+                if (d9 * d9 + d10 * d10 < 1.0D)
                 {
-                    LocalBiome biome = world.getBiome(localZ + generatingChunk.getBlockX(), localX + generatingChunk.getBlockZ());
-                    BiomeConfig biomeConfig = biome.getBiomeConfig();
-                    double d10 = (localZ + generatingChunk.getBlockZ() + 0.5D - paramDouble3) / d3;
-                    boolean grassFound = false;
-                    if (d9 * d9 + d10 * d10 < 1.0D)
+                    for (int localY = minY; localY >= maxY; localY--)
                     {
-                        for (int localY = minY; localY >= maxY; localY--)
+                        double d11 = ((localY - 1) + 0.5D - paramDouble2) / d4;
+                        if ((d9 * d9 + d10 * d10) * a[localY - 1] + d11 * d11 / 6.0D < 1.0D)
                         {
-                            double d11 = ((localY - 1) + 0.5D - paramDouble2) / d4;
-                            if ((d9 * d9 + d10 * d10) * this.a[localY - 1] + d11 * d11 / 6.0D < 1.0D)
+                            LocalMaterialData material = generatingChunkBuffer.getBlock(localX, localY, localZ);
+                            if (material.isMaterial(DefaultMaterial.GRASS))
+                                grassFound = true;
+                            if (material.equals(biomeConfig.stoneBlock) || material.isMaterial(DefaultMaterial.DIRT)
+                                    || material.isMaterial(DefaultMaterial.GRASS))
                             {
-                                LocalMaterialData material = generatingChunkBuffer.getBlock(localX, localY, localZ);
-                                if (material.isMaterial(DefaultMaterial.GRASS))
-                                    grassFound = true;
-                                if (material.equals(biomeConfig.stoneBlock) || material.isMaterial(DefaultMaterial.DIRT)
-                                        || material.isMaterial(DefaultMaterial.GRASS))
+                                if (localY - 1 < 10)
                                 {
-                                    if (localY - 1 < 10)
-                                    {
-                                        generatingChunkBuffer.setBlock(localX, localY, localZ, lava);
-                                    } else
+                                    generatingChunkBuffer.setBlock(localX, localY, localZ, lava);
+                                } else
+                                {
+                                    generatingChunkBuffer.setBlock(localX, localY, localZ, air);
+                                    if ((grassFound != false)
+                                            && (generatingChunkBuffer.getBlock(localX, localY - 1, localZ)
+                                                    .isMaterial(DefaultMaterial.DIRT)))
                                     {
-                                        generatingChunkBuffer.setBlock(localX, localY, localZ, air);
-                                        if ((grassFound != false)
-                                                && (generatingChunkBuffer.getBlock(localX, localY - 1, localZ)
-                                                        .isMaterial(DefaultMaterial.DIRT)))
-                                        {
-                                            generatingChunkBuffer.setBlock(localX, localY - 1, localZ, biomeConfig.surfaceBlock);
-                                        }
+                                        generatingChunkBuffer.setBlock(localX, localY - 1, localZ, biomeConfig.surfaceBlock);
                                     }
                                 }
                             }
@@ -181,13 +194,12 @@ public class RavinesGen extends TerrainGenBase
                     }
                 }
             }
-            if (i != 0)
-                break;
         }
+        return true;
     }
 
     @Override
-    protected void generateChunk(ChunkCoordinate currentChunk, ChunkBuffer generatingChunkBuffer)
+    protected void walkPaths(ChunkCoordinate currentChunk, List<CarverPath> paths)
     {
         if (this.random.nextInt(100) >= this.worldSettings.ravineRarity)
             return;
@@ -205,7 +217,7 @@ public class RavinesGen extends TerrainGenBase
 
             int size = RandomHelper.numberInRange(random, this.worldSettings.ravineMinLength, this.worldSettings.ravineMaxLength);
 
-            a(this.random.nextLong(), generatingChunkBuffer, d1, d2, d3, f3, f1, f2, size, this.worldSettings.ravineDepth);
+            paths.add(a(this.random.nextLong(), d1, d2, d3, f3, f1, f2, size, this.worldSettings.ravineDepth));
         }
     }
 }
\ No newline at end of file
@@ -4,6 +4,7 @@ import com.khorn.terraincontrol.LocalMaterialData;
 import com.khorn.terraincontrol.LocalWorld;
 import com.khorn.terraincontrol.TerrainControl;
 import com.khorn.terraincontrol.generator.ChunkBuffer;
+import com.khorn.terraincontrol.generator.GeneratingChunk;
 import com.khorn.terraincontrol.util.ChunkCoordinate;
 import com.khorn.terraincontrol.util.minecraftTypes.DefaultMaterial;
 
@@ -29,7 +30,7 @@ public abstract class TerrainGenBase
         worldLong2 = this.random.nextLong();
     }
 
-    public void generate(ChunkBuffer chunkBuffer)
+    public void generate(GeneratingChunk generatingChunk, ChunkBuffer chunkBuffer)
     {
         int i = this.checkAreaSize;
         ChunkCoordinate chunkCoord = chunkBuffer.getChunkCoordinate();
@@ -39,21 +40,45 @@ public abstract class TerrainGenBase
         for (int x = chunkX - i; x <= chunkX + i; x++)
             for (int z = chunkZ - i; z <= chunkZ + i; z++)
             {
+                if (!canReach(x, z, chunkCoord))
+                {
+                    continue;
+                }
                 long l3 = x * worldLong1;
                 long l4 = z * worldLong2;
                 this.random.setSeed(l3 ^ l4 ^ this.world.getSeed());
-                generateChunk(ChunkCoordinate.fromChunkCoords(x, z), chunkBuffer);
+                generateChunk(ChunkCoordinate.fromChunkCoords(x, z), generatingChunk, chunkBuffer);
             }
     }
 
+    /**
+     * Gets whether the structures of the given chunk can possibly change
+     * the chunk that is being generated. If not, {@link #generateChunk}
+     * is not called for the chunk. The default implementation always
+     * returns true.
+     *
+     * @param currentChunkX   X of the chunk we're searching.
+     * @param currentChunkZ   Z of the chunk we're searching.
+     * @param generatingChunk The chunk that is currently being generated.
+     * @return False if the chunk can be skipped, true otherwise.
+     */
+    protected boolean canReach(int currentChunkX, int currentChunkZ, ChunkCoordinate generatingChunk)
+    {
+        return true;
+    }
+
     /**
      * Generates the structure for the given chunk. The terrain generator
      * calls this method for all chunks not more than {@link #checkAreaSize}
      * chunks away on either axis from the generatingChunk.
      *
      * @param currentChunk          The chunk we're searching.
+     * @param generatingChunk       Information about the chunk that is
+     *                              currently being generated, like the
+     *                              biomes.
      * @param generatingChunkBuffer The chunk that is currently being
      *                              generated.
      */
-    protected abstract void generateChunk(ChunkCoordinate currentChunk, ChunkBuffer generatingChunkBuffer);
+    protected abstract void generateChunk(ChunkCoordinate currentChunk, GeneratingChunk generatingChunk,
+            ChunkBuffer generatingChunkBuffer);
 }
@@ -0,0 +1,333 @@
+package com.khorn.terraincontrol.map;
+
+import com.khorn.terraincontrol.LocalBiome;
+import com.khorn.terraincontrol.LocalWorld;
+import com.khorn.terraincontrol.TerrainControl;
+import com.khorn.terraincontrol.configuration.BiomeConfig;
+import com.khorn.terraincontrol.configuration.WorldConfig;
+import com.khorn.terraincontrol.generator.biome.BiomeGenerator;
+import com.khorn.terraincontrol.generator.biome.BiomeModeManager;
+import com.khorn.terraincontrol.generator.biome.OutputType;
+import com.khorn.terraincontrol.generator.biome.VanillaBiomeGenerator;
+
+import java.awt.Color;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Renders biome and temperature maps of a world, straight from the biome
+ * generator. The area is split in square tiles that are rendered in
+ * parallel, each thread using its own instance of the biome generator.
+ *
+ */
+public class BiomeMapRenderer
+{
+    /**
+     * Clockwise rotation of the rendered map. At {@link #d0}, north is at
+     * the top of the image.
+     */
+    public enum Angle
+    {
+        d0,
+        d90,
+        d180,
+        d270
+    }
+
+    /**
+     * Gets notified each time a tile of the map has been rendered.
+     */
+    public interface ProgressListener
+    {
+        /**
+         * Called on the thread that invoked {@link BiomeMapRenderer#render}.
+         * @param finishedTiles Amount of tiles that have been rendered.
+         * @param totalTiles    Total amount of tiles.
+         */
+        void onProgress(int finishedTiles, int totalTiles);
+    }
+
+    /**
+     * The biome and temperature images of a rendered map.
+     */
+    public static class RenderedMap
+    {
+        public final MapImage biomes;
+        public final MapImage temperatures;
+
+        RenderedMap(MapImage biomes, MapImage temperatures)
+        {
+            this.biomes = biomes;
+            this.temperatures = temperatures;
+        }
+    }
+
+    /**
+     * Size in blocks of the tiles that are rendered in one go.
+     */
+    public static final int TILE_SIZE = 256;
+
+    private final LocalWorld world;
+    private final int[] biomeColors;
+    private final int[] temperatureColors;
+    private final BlockingQueue<BiomeGenerator> biomeGenerators = new LinkedBlockingQueue<BiomeGenerator>();
+
+    /**
+     * Creates a new renderer for the given world.
+     * @param world The world.
+     * @throws IllegalArgumentException If {@link #canRender(LocalWorld)}
+     *                                  returns false for the world.
+     */
+    public BiomeMapRenderer(LocalWorld world) throws IllegalArgumentException
+    {
+        if (!canRender(world))
+        {
+            throw new IllegalArgumentException("Cannot render maps of world " + world.getName());
+        }
+        this.world = world;
+
+        LocalBiome[] biomes = world.getConfigs().getBiomeArray();
+        this.biomeColors = new int[biomes.length];
+        this.temperatureColors = new int[biomes.length];
+        for (LocalBiome biome : biomes)
+        {
+            if (biome != null)
+            {
+                BiomeConfig biomeConfig = biome.getBiomeConfig();
+                int id = biome.getIds().getGenerationId();
+                this.biomeColors[id] = biomeConfig.biomeColor & 0xFFFFFF;
+                this.temperatureColors[id] = getTemperatureColor(biomeConfig.biomeTemperature);
+            }
+        }
+    }
+
+    /**
+     * Gets whether maps of the given world can be rendered. The vanilla
+     * biome generator is tied to the Minecraft world and cannot be used from
+     * other threads, so worlds using that generator are not supported.
+     * @param world The world.
+     * @return True if the world can be rendered, false otherwise.
+     */
+    public static boolean canRender(LocalWorld world)
+    {
+        return !(world.getBiomeGenerator().unwrap() instanceof VanillaBiomeGenerator);
+    }
+
+    /**
+     * Gets the temperature color of a single biome. Starts at blue, goes to
+     * green, red and darker red for increasing temperatures.
+     * @param temperature The temperature of the biome.
+     * @return The temperature color.
+     */
+    public static int getTemperatureColor(float temperature)
+    {
+        // Prevents us from going around the color wheel twice or getting into
+        // the purple colors
+        float cappedTemperature = Math.min(1.0f, temperature);
+
+        return Color.HSBtoRGB(0.7f - cappedTemperature * 0.7f, 0.9f, temperature * 0.7f + 0.3f) & 0xFFFFFF;
+    }
+
+    /**
+     * Renders the given area. Blocks until the whole map is rendered.
+     * @param startX   Lowest x coordinate of the area.
+     * @param startZ   Lowest z coordinate of the area.
+     * @param xSize    Size of the area on the x axis.
+     * @param zSize    Size of the area on the z axis.
+     * @param angle    Rotation of the images.
+     * @param threads  Amount of threads to render with.
+     * @param listener Gets notified of the progress, may be null.
+     * @return The rendered map.
+     * @throws InterruptedException If the thread is interrupted while
+     *                              waiting for the map to be rendered.
+     */
+    public RenderedMap render(int startX, int startZ, int xSize, int zSize, final Angle angle, int threads,
+            ProgressListener listener) throws InterruptedException
+    {
+        boolean rotated = angle == Angle.d90 || angle == Angle.d270;
+        final MapImage biomeImage = rotated ? new MapImage(zSize, xSize) : new MapImage(xSize, zSize);
+        final MapImage temperatureImage = rotated ? new MapImage(zSize, xSize) : new MapImage(xSize, zSize);
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, threads));
+        try
+        {
+            CompletionService<Void> completionService = new ExecutorCompletionService<Void>(executor);
+            int totalTiles = 0;
+            for (int tileX = 0; tileX < xSize; tileX += TILE_SIZE)
+            {
+                for (int tileZ = 0; tileZ < zSize; tileZ += TILE_SIZE)
+                {
+                    final int offsetX = tileX;
+                    final int offsetZ = tileZ;
+                    final int tileXSize = Math.min(TILE_SIZE, xSize - tileX);
+                    final int tileZSize = Math.min(TILE_SIZE, zSize - tileZ);
+                    final int blockX = startX + tileX;
+                    final int blockZ = startZ + tileZ;
+                    completionService.submit(new Callable<Void>()
+                    {
+                        @Override
+                        public Void call()
+                        {
+                            int[] biomes = getBiomes(blockX, blockZ, tileXSize, tileZSize);
+                            drawTile(biomeImage, temperatureImage, angle, biomes, offsetX, offsetZ, tileXSize, tileZSize);
+                            return null;
+                        }
+                    });
+                    totalTiles++;
+                }
+            }
+
+            for (int finishedTiles = 1; finishedTiles <= totalTiles; finishedTiles++)
+            {
+                try
+                {
+                    completionService.take().get();
+                } catch (ExecutionException e)
+                {
+                    throw new RuntimeException("Failed to render map", e.getCause());
+                }
+                if (listener != null)
+                {
+                    listener.onProgress(finishedTiles, totalTiles);
+                }
+            }
+        } finally
+        {
+            executor.shutdownNow();
+        }
+
+        return new RenderedMap(biomeImage, temperatureImage);
+    }
+
+    /**
+     * Renders an area on the calling thread, with north at the top. The
+     * size of the area is the size of the images.
+     * @param blockX           Lowest x coordinate of the area.
+     * @param blockZ           Lowest z coordinate of the area.
+     * @param biomeImage       Image to draw the biome colors on.
+     * @param temperatureImage Image to draw the temperatures on, must have
+     *                         the same size as the biome image.
+     */
+    public void renderArea(int blockX, int blockZ, MapImage biomeImage, MapImage temperatureImage)
+    {
+        int xSize = biomeImage.getWidth();
+        int zSize = biomeImage.getHeight();
+        int[] biomes = getBiomes(blockX, blockZ, xSize, zSize);
+        drawTile(biomeImage, temperatureImage, Angle.d0, biomes, 0, 0, xSize, zSize);
+    }
+
+    /**
+     * Renders a low resolution preview of the biome layout of an area. Each
+     * pixel is a single biome sample, taken every {@code stride} blocks.
+     * No terrain or detailed biomes are generated, so this is fast enough for
+     * areas of many thousands of blocks.
+     * @param startX Lowest x coordinate of the area.
+     * @param startZ Lowest z coordinate of the area.
+     * @param xSize  Size of the area on the x axis.
+     * @param zSize  Size of the area on the z axis.
+     * @param stride Requested distance in blocks between two pixels. May be
+     *               rounded up, see
+     *               {@link com.khorn.terraincontrol.generator.biome.BiomeModeManager#getPreviewStride(BiomeGenerator, int)}.
+     * @param angle  Rotation of the images.
+     * @return The rendered preview.
+     */
+    public RenderedMap renderPreview(int startX, int startZ, int xSize, int zSize, int stride, Angle angle)
+    {
+        BiomeModeManager biomeModeManager = TerrainControl.getBiomeModeManager();
+        BiomeGenerator generator = borrowGenerator();
+        try
+        {
+            stride = biomeModeManager.getPreviewStride(generator, stride);
+            int xSamples = Math.max(1, xSize / stride);
+            int zSamples = Math.max(1, zSize / stride);
+
+            boolean rotated = angle == Angle.d90 || angle == Angle.d270;
+            MapImage biomeImage = rotated ? new MapImage(zSamples, xSamples) : new MapImage(xSamples, zSamples);
+            MapImage temperatureImage = rotated ? new MapImage(zSamples, xSamples) : new MapImage(xSamples, zSamples);
+
+            int[] biomes = biomeModeManager.getPreviewBiomes(generator, startX, startZ, xSamples, zSamples, stride);
+            drawTile(biomeImage, temperatureImage, angle, biomes, 0, 0, xSamples, zSamples);
+            return new RenderedMap(biomeImage, temperatureImage);
+        } finally
+        {
+            biomeGenerators.offer(generator);
+        }
+    }
+
+    private int[] getBiomes(int blockX, int blockZ, int xSize, int zSize)
+    {
+        BiomeGenerator generator = borrowGenerator();
+        try
+        {
+            return generator.getBiomes(null, blockX, blockZ, xSize, zSize, OutputType.DEFAULT_FOR_WORLD);
+        } finally
+        {
+            biomeGenerators.offer(generator);
+        }
+    }
+
+    /**
+     * Takes a biome generator that is not in use by any other thread. Biome
+     * generators are not thread safe, so each thread borrows its own
+     * generator, which must be returned to {@link #biomeGenerators} when the
+     * thread is done with it.
+     * @return The biome generator.
+     */
+    private BiomeGenerator borrowGenerator()
+    {
+        BiomeGenerator generator = biomeGenerators.poll();
+        if (generator == null)
+        {
+            WorldConfig worldConfig = world.getConfigs().getWorldConfig();
+            generator = TerrainControl.getBiomeModeManager().create(worldConfig.biomeMode, world);
+        }
+        return generator;
+    }
+
+    private void drawTile(MapImage biomeImage, MapImage temperatureImage, Angle angle, int[] biomes, int offsetX,
+            int offsetZ, int xSize, int zSize)
+    {
+        int[] biomePixels = biomeImage.getPixels();
+        int[] temperaturePixels = temperatureImage.getPixels();
+        int imageWidth = biomeImage.getWidth();
+        int imageHeight = biomeImage.getHeight();
+
+        for (int z = 0; z < zSize; z++)
+        {
+            for (int x = 0; x < xSize; x++)
+            {
+                int mapX = offsetX + x;
+                int mapZ = offsetZ + z;
+                int pixel;
+                switch (angle)
+                {
+                    case d90:
+                        pixel = mapX * imageWidth + (imageWidth - 1 - mapZ);
+                        break;
+                    case d180:
+                        pixel = (imageHeight - 1 - mapZ) * imageWidth + (imageWidth - 1 - mapX);
+                        break;
+                    case d270:
+                        pixel = (imageHeight - 1 - mapX) * imageWidth + mapZ;
+                        break;
+                    default:
+                        pixel = mapZ * imageWidth + mapX;
+                        break;
+                }
+
+                int biomeId = biomes[x + z * xSize];
+                if (biomeId >= 0 && biomeId < biomeColors.length)
+                {
+                    biomePixels[pixel] = biomeColors[biomeId];
+                    temperaturePixels[pixel] = temperatureColors[biomeId];
+                }
+            }
+        }
+    }
+}
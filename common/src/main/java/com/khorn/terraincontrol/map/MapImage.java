@@ -0,0 +1,95 @@
+package com.khorn.terraincontrol.map;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DirectColorModel;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.io.File;
+import java.io.IOException;
+
+import javax.imageio.ImageIO;
+
+/**
+ * A rendered map: a raster of RGB pixels, stored row by row.
+ *
+ */
+public class MapImage
+{
+    private static final DirectColorModel RGB_MODEL = new DirectColorModel(24, 0xFF0000, 0x00FF00, 0x0000FF);
+
+    private final int width;
+    private final int height;
+    private final int[] pixels;
+
+    /**
+     * Creates a new, black image.
+     * @param width  Width of the image in pixels.
+     * @param height Height of the image in pixels.
+     */
+    public MapImage(int width, int height)
+    {
+        this.width = width;
+        this.height = height;
+        this.pixels = new int[width * height];
+    }
+
+    /**
+     * Reads an image from a file.
+     * @param file The file.
+     * @return The image.
+     * @throws IOException If the file cannot be read.
+     */
+    public static MapImage read(File file) throws IOException
+    {
+        BufferedImage image = ImageIO.read(file);
+        if (image == null)
+        {
+            throw new IOException("Cannot read image " + file);
+        }
+        MapImage mapImage = new MapImage(image.getWidth(), image.getHeight());
+        image.getRGB(0, 0, mapImage.width, mapImage.height, mapImage.pixels, 0, mapImage.width);
+        for (int i = 0; i < mapImage.pixels.length; i++)
+        {
+            mapImage.pixels[i] &= 0xFFFFFF;
+        }
+        return mapImage;
+    }
+
+    public int getWidth()
+    {
+        return width;
+    }
+
+    public int getHeight()
+    {
+        return height;
+    }
+
+    /**
+     * Gets the pixels of this image. Changes to the array are reflected in
+     * this image.
+     * @return The pixels, as RGB integers, row by row.
+     */
+    public int[] getPixels()
+    {
+        return pixels;
+    }
+
+    /**
+     * Writes this image as a PNG file. The pixel array is used directly as
+     * the backing raster, so no copy of the image is made.
+     * @param file The file to write to.
+     * @throws IOException If the file cannot be written.
+     */
+    public void writePng(File file) throws IOException
+    {
+        WritableRaster raster = Raster.createPackedRaster(new DataBufferInt(pixels, pixels.length), width, height, width,
+                RGB_MODEL.getMasks(), null);
+        BufferedImage image = new BufferedImage(RGB_MODEL, raster, false, null);
+        if (!ImageIO.write(image, "png", file))
+        {
+            throw new IOException("No PNG writer available");
+        }
+    }
+}
@@ -0,0 +1,443 @@
+package com.khorn.terraincontrol.map;
+
+import static com.khorn.terraincontrol.util.ChunkCoordinate.CHUNK_X_SIZE;
+import static com.khorn.terraincontrol.util.ChunkCoordinate.CHUNK_Z_SIZE;
+
+import com.khorn.terraincontrol.LocalBiome;
+import com.khorn.terraincontrol.LocalWorld;
+import com.khorn.terraincontrol.TerrainControl;
+import com.khorn.terraincontrol.configuration.ConfigFile;
+import com.khorn.terraincontrol.configuration.WorldConfig;
+import com.khorn.terraincontrol.configuration.io.RawSettingValue;
+import com.khorn.terraincontrol.generator.ChunkProviderTC;
+import com.khorn.terraincontrol.generator.biome.BiomeGenerator;
+import com.khorn.terraincontrol.util.ChunkCoordinate;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Exports a preview of a world as a pyramid of map tiles, as used by web
+ * maps. Three layers are exported: biome colors, temperatures and the
+ * height of the raw terrain, without caves or any population.
+ * <p>
+ * Tiles are written to {@code <layer>/<zoom>/<x>/<z>.png}. Each tile is
+ * {@value #TILE_SIZE} by {@value #TILE_SIZE} pixels. At the highest zoom
+ * level, one pixel is one block; each lower zoom level halves the
+ * resolution. Tile (0, 0) starts at block (0, 0) on all zoom levels.
+ * <p>
+ * The hash of the world and biome configs each tile was rendered with is
+ * remembered, so that exporting the same area again only renders tiles
+ * that are missing or that were rendered with other settings.
+ *
+ */
+public class MapTileExporter
+{
+    /**
+     * Size of a tile in pixels.
+     */
+    public static final int TILE_SIZE = 256;
+    private static final int TILE_BITS = 8;
+    private static final int HALF_TILE_SIZE = TILE_SIZE / 2;
+
+    /**
+     * Increase this when the rendering changes, so that old tiles are
+     * rendered again.
+     */
+    private static final int FORMAT_VERSION = 1;
+
+    private static final String INDEX_FILE_NAME = "tiles.properties";
+    private static final String BIOME_LAYER = "biome";
+    private static final String TEMPERATURE_LAYER = "temperature";
+    private static final String HEIGHT_LAYER = "height";
+    private static final String[] LAYERS = {BIOME_LAYER, TEMPERATURE_LAYER, HEIGHT_LAYER};
+
+    private final LocalWorld world;
+    private final File outputDir;
+    private final BiomeMapRenderer biomeRenderer;
+    private final BlockingQueue<ChunkProviderTC> chunkProviders = new LinkedBlockingQueue<ChunkProviderTC>();
+    private final String configHash;
+    private final Properties index = new Properties();
+
+    /**
+     * Creates a new exporter.
+     * @param world     The world to export.
+     * @param outputDir The directory to write the tiles to.
+     * @throws IllegalArgumentException If
+     *                                  {@link BiomeMapRenderer#canRender(LocalWorld)}
+     *                                  returns false for the world.
+     */
+    public MapTileExporter(LocalWorld world, File outputDir) throws IllegalArgumentException
+    {
+        this.world = world;
+        this.outputDir = outputDir;
+        this.biomeRenderer = new BiomeMapRenderer(world);
+        this.configHash = calculateConfigHash(world);
+    }
+
+    /**
+     * Exports all tiles that overlap the given area. Blocks until all tiles
+     * have been written.
+     * @param minX       Lowest x coordinate of the area.
+     * @param minZ       Lowest z coordinate of the area.
+     * @param maxX       Highest x coordinate of the area.
+     * @param maxZ       Highest z coordinate of the area.
+     * @param zoomLevels Amount of zoom levels below the full resolution.
+     * @param threads    Amount of threads to render with.
+     * @param listener   Gets notified of the progress, may be null.
+     * @return The amount of tiles that were rendered. Tiles that were
+     * already up to date are not counted.
+     * @throws IOException          If reading or writing a tile fails.
+     * @throws InterruptedException If the thread is interrupted while
+     *                              waiting for the tiles to be rendered.
+     */
+    public int export(int minX, int minZ, int maxX, int maxZ, int zoomLevels, int threads,
+            BiomeMapRenderer.ProgressListener listener) throws IOException, InterruptedException
+    {
+        loadIndex();
+
+        // Plan all zoom levels first, so that the total is known
+        List<List<int[]>> plannedTiles = new ArrayList<List<int[]>>();
+        Set<Long> changedTiles = new HashSet<Long>();
+        int totalTiles = 0;
+        for (int shift = 0; shift <= zoomLevels; shift++)
+        {
+            int zoom = zoomLevels - shift;
+            int minTileX = minX >> (TILE_BITS + shift);
+            int minTileZ = minZ >> (TILE_BITS + shift);
+            int maxTileX = maxX >> (TILE_BITS + shift);
+            int maxTileZ = maxZ >> (TILE_BITS + shift);
+
+            List<int[]> tiles = new ArrayList<int[]>();
+            Set<Long> changedParents = new HashSet<Long>();
+            for (int tileX = minTileX; tileX <= maxTileX; tileX++)
+            {
+                for (int tileZ = minTileZ; tileZ <= maxTileZ; tileZ++)
+                {
+                    boolean childChanged = shift > 0 && (changedTiles.contains(toKey(tileX * 2, tileZ * 2))
+                            || changedTiles.contains(toKey(tileX * 2 + 1, tileZ * 2))
+                            || changedTiles.contains(toKey(tileX * 2, tileZ * 2 + 1))
+                            || changedTiles.contains(toKey(tileX * 2 + 1, tileZ * 2 + 1)));
+                    if (childChanged || !isUpToDate(zoom, tileX, tileZ))
+                    {
+                        tiles.add(new int[] {zoom, tileX, tileZ});
+                        changedParents.add(toKey(tileX, tileZ));
+                    }
+                }
+            }
+            plannedTiles.add(tiles);
+            changedTiles = changedParents;
+            totalTiles += tiles.size();
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, threads));
+        try
+        {
+            CompletionService<Void> completionService = new ExecutorCompletionService<Void>(executor);
+            int finishedTiles = 0;
+            for (int shift = 0; shift <= zoomLevels; shift++)
+            {
+                final boolean fullResolution = shift == 0;
+                List<int[]> tiles = plannedTiles.get(shift);
+                for (final int[] tile : tiles)
+                {
+                    completionService.submit(new Callable<Void>()
+                    {
+                        @Override
+                        public Void call() throws IOException
+                        {
+                            if (fullResolution)
+                            {
+                                renderTile(tile[0], tile[1], tile[2]);
+                            } else
+                            {
+                                mergeTile(tile[0], tile[1], tile[2]);
+                            }
+                            index.setProperty(toIndexKey(tile[0], tile[1], tile[2]), configHash);
+                            return null;
+                        }
+                    });
+                }
+
+                // Lower zoom levels are made from the tiles of this level,
+                // so wait for this level to finish
+                for (int i = 0; i < tiles.size(); i++)
+                {
+                    try
+                    {
+                        completionService.take().get();
+                    } catch (ExecutionException e)
+                    {
+                        if (e.getCause() instanceof IOException)
+                        {
+                            throw (IOException) e.getCause();
+                        }
+                        throw new RuntimeException("Failed to render tile", e.getCause());
+                    }
+                    finishedTiles++;
+                    if (listener != null)
+                    {
+                        listener.onProgress(finishedTiles, totalTiles);
+                    }
+                }
+            }
+            return totalTiles;
+        } finally
+        {
+            executor.shutdownNow();
+            saveIndex();
+        }
+    }
+
+    private void renderTile(int zoom, int tileX, int tileZ) throws IOException
+    {
+        int blockX = tileX * TILE_SIZE;
+        int blockZ = tileZ * TILE_SIZE;
+
+        MapImage biomeImage = new MapImage(TILE_SIZE, TILE_SIZE);
+        MapImage temperatureImage = new MapImage(TILE_SIZE, TILE_SIZE);
+        biomeRenderer.renderArea(blockX, blockZ, biomeImage, temperatureImage);
+
+        MapImage heightImage = new MapImage(TILE_SIZE, TILE_SIZE);
+        int[] heightPixels = heightImage.getPixels();
+        int heightCap = world.getHeightCap();
+        TerrainHeightBuffer buffer = new TerrainHeightBuffer();
+
+        // Chunk providers are not thread safe, so each thread borrows its own
+        ChunkProviderTC chunkProvider = chunkProviders.poll();
+        if (chunkProvider == null)
+        {
+            WorldConfig worldConfig = world.getConfigs().getWorldConfig();
+            BiomeGenerator biomeGenerator = TerrainControl.getBiomeModeManager().create(worldConfig.biomeMode, world);
+            chunkProvider = new ChunkProviderTC(world.getConfigs(), world, biomeGenerator);
+        }
+        try
+        {
+            for (int chunkX = 0; chunkX < TILE_SIZE / CHUNK_X_SIZE; chunkX++)
+            {
+                for (int chunkZ = 0; chunkZ < TILE_SIZE / CHUNK_Z_SIZE; chunkZ++)
+                {
+                    buffer.reset(ChunkCoordinate.fromBlockCoords(blockX + chunkX * CHUNK_X_SIZE, blockZ + chunkZ * CHUNK_Z_SIZE));
+                    chunkProvider.generateTerrain(buffer);
+                    for (int x = 0; x < CHUNK_X_SIZE; x++)
+                    {
+                        for (int z = 0; z < CHUNK_Z_SIZE; z++)
+                        {
+                            int pixel = (chunkZ * CHUNK_Z_SIZE + z) * TILE_SIZE + chunkX * CHUNK_X_SIZE + x;
+                            heightPixels[pixel] = getHeightColor(buffer.getSolidHeight(x, z), buffer.getLiquidHeight(x, z), heightCap);
+                        }
+                    }
+                }
+            }
+        } finally
+        {
+            chunkProviders.offer(chunkProvider);
+        }
+
+        biomeImage.writePng(createTileFile(BIOME_LAYER, zoom, tileX, tileZ));
+        temperatureImage.writePng(createTileFile(TEMPERATURE_LAYER, zoom, tileX, tileZ));
+        heightImage.writePng(createTileFile(HEIGHT_LAYER, zoom, tileX, tileZ));
+    }
+
+    private void mergeTile(int zoom, int tileX, int tileZ) throws IOException
+    {
+        for (String layer : LAYERS)
+        {
+            MapImage image = new MapImage(TILE_SIZE, TILE_SIZE);
+            int[] pixels = image.getPixels();
+            for (int childX = 0; childX < 2; childX++)
+            {
+                for (int childZ = 0; childZ < 2; childZ++)
+                {
+                    File childFile = getTileFile(layer, zoom + 1, tileX * 2 + childX, tileZ * 2 + childZ);
+                    if (!childFile.exists())
+                    {
+                        // Outside the exported area
+                        continue;
+                    }
+                    int[] childPixels = MapImage.read(childFile).getPixels();
+                    for (int z = 0; z < HALF_TILE_SIZE; z++)
+                    {
+                        for (int x = 0; x < HALF_TILE_SIZE; x++)
+                        {
+                            pixels[(childZ * HALF_TILE_SIZE + z) * TILE_SIZE + childX * HALF_TILE_SIZE + x] =
+                                    childPixels[z * 2 * TILE_SIZE + x * 2];
+                        }
+                    }
+                }
+            }
+            image.writePng(createTileFile(layer, zoom, tileX, tileZ));
+        }
+    }
+
+    /**
+     * Gets the color of a column on the height layer. Land is gray, brighter
+     * for higher terrain. Water is blue, darker for deeper water.
+     * @param solidHeight  Height of the highest solid block, or -1 if none.
+     * @param liquidHeight Height of the highest liquid block, or -1 if none.
+     * @param heightCap    Maximum height of the terrain.
+     * @return The color.
+     */
+    private static int getHeightColor(int solidHeight, int liquidHeight, int heightCap)
+    {
+        if (liquidHeight > solidHeight)
+        {
+            int depth = Math.min(liquidHeight - solidHeight, 64);
+            return 0x000040 + (0xBF - depth * 2) + ((0x60 - depth * 3 / 2) << 8);
+        }
+        if (solidHeight < 0)
+        {
+            return 0;
+        }
+        int brightness = Math.min(255, 32 + solidHeight * 224 / heightCap);
+        return brightness << 16 | brightness << 8 | brightness;
+    }
+
+    private boolean isUpToDate(int zoom, int tileX, int tileZ)
+    {
+        if (!configHash.equals(index.getProperty(toIndexKey(zoom, tileX, tileZ))))
+        {
+            return false;
+        }
+        for (String layer : LAYERS)
+        {
+            if (!getTileFile(layer, zoom, tileX, tileZ).exists())
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private File getTileFile(String layer, int zoom, int tileX, int tileZ)
+    {
+        return new File(outputDir, layer + File.separator + zoom + File.separator + tileX + File.separator + tileZ + ".png");
+    }
+
+    private File createTileFile(String layer, int zoom, int tileX, int tileZ) throws IOException
+    {
+        File file = getTileFile(layer, zoom, tileX, tileZ);
+        File directory = file.getParentFile();
+        if (!directory.exists() && !directory.mkdirs() && !directory.exists())
+        {
+            throw new IOException("Cannot create " + directory);
+        }
+        return file;
+    }
+
+    private static long toKey(int tileX, int tileZ)
+    {
+        return ((long) tileX << 32) | (tileZ & 0xFFFFFFFFL);
+    }
+
+    private static String toIndexKey(int zoom, int tileX, int tileZ)
+    {
+        return zoom + "/" + tileX + "/" + tileZ;
+    }
+
+    private void loadIndex() throws IOException
+    {
+        File indexFile = new File(outputDir, INDEX_FILE_NAME);
+        if (!indexFile.exists())
+        {
+            return;
+        }
+        InputStream stream = new FileInputStream(indexFile);
+        try
+        {
+            index.load(stream);
+        } finally
+        {
+            stream.close();
+        }
+    }
+
+    private void saveIndex() throws IOException
+    {
+        if (!outputDir.exists() && !outputDir.mkdirs())
+        {
+            throw new IOException("Cannot create " + outputDir);
+        }
+        OutputStream stream = new FileOutputStream(new File(outputDir, INDEX_FILE_NAME));
+        try
+        {
+            index.store(stream, "Config hashes of the rendered tiles");
+        } finally
+        {
+            stream.close();
+        }
+    }
+
+    /**
+     * Calculates a hash of everything that influences the rendered tiles:
+     * the seed and all world and biome settings.
+     * @param world The world.
+     * @return The hash, as a hexadecimal string.
+     */
+    private static String calculateConfigHash(LocalWorld world)
+    {
+        MessageDigest digest;
+        try
+        {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e)
+        {
+            throw new AssertionError(e);
+        }
+        Charset charset = Charset.forName("UTF-8");
+
+        digest.update((FORMAT_VERSION + ";" + world.getSeed() + ";").getBytes(charset));
+
+        WorldConfig worldConfig = world.getConfigs().getWorldConfig();
+        updateDigest(digest, worldConfig, charset);
+        if (worldConfig.biomeMode == TerrainControl.getBiomeModeManager().FROM_IMAGE)
+        {
+            File image = new File(worldConfig.settingsDir, worldConfig.imageFile);
+            digest.update((image.length() + ";" + image.lastModified() + ";").getBytes(charset));
+        }
+        for (LocalBiome biome : world.getConfigs().getBiomeArray())
+        {
+            if (biome != null)
+            {
+                updateDigest(digest, biome.getBiomeConfig(), charset);
+            }
+        }
+
+        StringBuilder hash = new StringBuilder();
+        for (byte b : digest.digest())
+        {
+            hash.append(Character.forDigit((b >> 4) & 0xF, 16));
+            hash.append(Character.forDigit(b & 0xF, 16));
+        }
+        return hash.toString();
+    }
+
+    private static void updateDigest(MessageDigest digest, ConfigFile config, Charset charset)
+    {
+        for (RawSettingValue setting : config.getSettingsAsMap().getRawSettings())
+        {
+            digest.update(setting.getRawValue().getBytes(charset));
+            digest.update((byte) '\n');
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.khorn.terraincontrol.map;
+
+import static com.khorn.terraincontrol.util.ChunkCoordinate.CHUNK_X_SIZE;
+import static com.khorn.terraincontrol.util.ChunkCoordinate.CHUNK_Z_SIZE;
+
+import com.khorn.terraincontrol.LocalMaterialData;
+import com.khorn.terraincontrol.TerrainControl;
+import com.khorn.terraincontrol.generator.ChunkBuffer;
+import com.khorn.terraincontrol.util.ChunkCoordinate;
+import com.khorn.terraincontrol.util.minecraftTypes.DefaultMaterial;
+
+import java.util.Arrays;
+
+/**
+ * Chunk buffer that doesn't store any blocks, it only remembers the highest
+ * solid block and the highest liquid block of each column.
+ *
+ */
+final class TerrainHeightBuffer implements ChunkBuffer
+{
+    private final int[] solidHeights = new int[CHUNK_X_SIZE * CHUNK_Z_SIZE];
+    private final int[] liquidHeights = new int[CHUNK_X_SIZE * CHUNK_Z_SIZE];
+    private final LocalMaterialData stone = TerrainControl.toLocalMaterialData(DefaultMaterial.STONE, 0);
+    private final LocalMaterialData water = TerrainControl.toLocalMaterialData(DefaultMaterial.STATIONARY_WATER, 0);
+    private final LocalMaterialData air = TerrainControl.toLocalMaterialData(DefaultMaterial.AIR, 0);
+    private ChunkCoordinate chunkCoord;
+
+    /**
+     * Clears the buffer, so that it can be used for another chunk.
+     * @param chunkCoord The other chunk.
+     */
+    void reset(ChunkCoordinate chunkCoord)
+    {
+        this.chunkCoord = chunkCoord;
+        Arrays.fill(solidHeights, -1);
+        Arrays.fill(liquidHeights, -1);
+    }
+
+    @Override
+    public ChunkCoordinate getChunkCoordinate()
+    {
+        return chunkCoord;
+    }
+
+    @Override
+    public void setBlock(int blockX, int blockY, int blockZ, LocalMaterialData material)
+    {
+        int column = blockX + blockZ * CHUNK_X_SIZE;
+        if (material.isLiquid())
+        {
+            liquidHeights[column] = Math.max(liquidHeights[column], blockY);
+        } else if (material.isSolid())
+        {
+            solidHeights[column] = Math.max(solidHeights[column], blockY);
+        }
+    }
+
+    /**
+     * Gets a block that matches the stored heights. Only the heights are
+     * stored, so the actual blocks are unknown: stone is returned up to the
+     * highest solid block, water above that up to the highest liquid block
+     * and air for everything higher.
+     * @param blockX X in the chunk, 0 to 15.
+     * @param blockY Y in the world.
+     * @param blockZ Z in the chunk, 0 to 15.
+     * @return The block.
+     */
+    @Override
+    public LocalMaterialData getBlock(int blockX, int blockY, int blockZ)
+    {
+        int column = blockX + blockZ * CHUNK_X_SIZE;
+        if (blockY <= solidHeights[column])
+        {
+            return stone;
+        }
+        if (blockY <= liquidHeights[column])
+        {
+            return water;
+        }
+        return air;
+    }
+
+    /**
+     * Gets the highest solid block in the column.
+     * @param blockX X in the chunk, 0 to 15.
+     * @param blockZ Z in the chunk, 0 to 15.
+     * @return The y of the block, or -1 if there is no solid block.
+     */
+    int getSolidHeight(int blockX, int blockZ)
+    {
+        return solidHeights[blockX + blockZ * CHUNK_X_SIZE];
+    }
+
+    /**
+     * Gets the highest liquid block in the column.
+     * @param blockX X in the chunk, 0 to 15.
+     * @param blockZ Z in the chunk, 0 to 15.
+     * @return The y of the block, or -1 if there is no liquid block.
+     */
+    int getLiquidHeight(int blockX, int blockZ)
+    {
+        return liquidHeights[blockX + blockZ * CHUNK_X_SIZE];
+    }
+}
@@ -5,7 +5,6 @@ import com.khorn.terraincontrol.TerrainControl;
 import com.khorn.terraincontrol.exception.InvalidConfigException;
 import com.khorn.terraincontrol.util.helpers.StringHelper;
 
-import java.util.Arrays;
 import java.util.LinkedHashSet;
 import java.util.Set;
 
@@ -39,9 +38,13 @@ public class MaterialSet
     private boolean allSolidMaterials = false;
     private boolean allNonSolidMaterials = false;
 
-    private int[] materialIntSet = new int[0];
     private Set<MaterialSetEntry> materials = new LinkedHashSet<MaterialSetEntry>();
-    private boolean intSetUpToDate = true;
+
+    /**
+     * Bit set of the hashCodes of {@link #materials}, or null if it needs
+     * to be created again. See {@link #getMaterialBits()}.
+     */
+    private volatile long[] materialBits;
 
     /**
      * Adds the given material to the list.
@@ -140,34 +143,43 @@ public class MaterialSet
      */
     public void add(MaterialSetEntry entry)
     {
-        // Add the appropriate hashCode
-        intSetUpToDate = false;
         materials.add(entry);
+        materialBits = null;
     }
 
     /**
-     * Updates the int (hashCode) set, so that is is up to date again with the
-     * material set.
+     * Gets the bit set with the hashCodes of all materials in this set,
+     * creating it if needed. Bit n is set if a material with
+     * {@link LocalMaterialData#hashCode()} or
+     * {@link LocalMaterialData#hashCodeWithoutBlockData()} n is in this set.
+     * The array is large enough for the highest hashCode in the set.
+     *
+     * @return The bit set.
      */
-    private void updateIntSet()
+    private long[] getMaterialBits()
     {
-        if (intSetUpToDate)
+        long[] bits = this.materialBits;
+        if (bits != null)
         {
-            // Already up to date
-            return;
+            return bits;
         }
 
-        // Update the int set
-        materialIntSet = new int[materials.size()];
-        int i = 0;
+        int maxHashCode = -1;
         for (MaterialSetEntry entry : materials)
         {
-            materialIntSet[i] = entry.hashCode();
-            i++;
+            maxHashCode = Math.max(maxHashCode, entry.hashCode());
         }
-        // Sort int set so that we can use Arrays.binarySearch
-        Arrays.sort(materialIntSet);
-        intSetUpToDate = true;
+        bits = new long[(maxHashCode >> 6) + 1];
+        for (MaterialSetEntry entry : materials)
+        {
+            int hashCode = entry.hashCode();
+            bits[hashCode >> 6] |= 1L << hashCode;
+        }
+
+        // The array is filled before it is published, so other threads
+        // always see a complete array
+        this.materialBits = bits;
+        return bits;
     }
 
     /**
@@ -196,19 +208,15 @@ public class MaterialSet
             return true;
         }
 
-        // Try to update int set
-        updateIntSet();
-
-        // Check if the material is included
-        if (Arrays.binarySearch(materialIntSet, material.hashCodeWithoutBlockData()) >= 0)
-        {
-            return true;
-        }
-        if (Arrays.binarySearch(materialIntSet, material.hashCode()) >= 0)
+        // Check if the material is included, with or without block data
+        long[] bits = getMaterialBits();
+        int hashCode = material.hashCodeWithoutBlockData();
+        if (hashCode >>> 6 < bits.length && (bits[hashCode >>> 6] & (1L << hashCode)) != 0)
         {
             return true;
         }
-        return false;
+        hashCode = material.hashCode();
+        return hashCode >>> 6 < bits.length && (bits[hashCode >>> 6] & (1L << hashCode)) != 0;
     }
 
     /**
@@ -273,7 +281,6 @@ public class MaterialSet
         {
             rotated.allNonSolidMaterials = true;
         }
-        rotated.intSetUpToDate = false;
         for (MaterialSetEntry material : this.materials)
         {
             rotated.materials.add(material.rotate());
@@ -0,0 +1,46 @@
+package com.khorn.terraincontrol;
+
+import com.khorn.terraincontrol.configuration.BiomeConfig;
+
+/**
+ * Biome for tests, which only has settings.
+ */
+public final class TestBiome implements LocalBiome
+{
+    private final BiomeConfig biomeConfig;
+
+    public TestBiome(BiomeConfig biomeConfig)
+    {
+        this.biomeConfig = biomeConfig;
+    }
+
+    @Override
+    public boolean isCustom()
+    {
+        return false;
+    }
+
+    @Override
+    public String getName()
+    {
+        return this.biomeConfig.getName();
+    }
+
+    @Override
+    public BiomeIds getIds()
+    {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public float getTemperatureAt(int x, int y, int z)
+    {
+        return this.biomeConfig.biomeTemperature;
+    }
+
+    @Override
+    public BiomeConfig getBiomeConfig()
+    {
+        return this.biomeConfig;
+    }
+}
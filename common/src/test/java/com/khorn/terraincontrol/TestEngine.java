@@ -0,0 +1,101 @@
+package com.khorn.terraincontrol;
+
+import com.khorn.terraincontrol.exception.InvalidConfigException;
+import com.khorn.terraincontrol.logging.LogMarker;
+import com.khorn.terraincontrol.logging.Logger;
+import com.khorn.terraincontrol.util.minecraftTypes.DefaultMaterial;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+/**
+ * Engine for tests. Materials are {@link TestMaterialData}, based on
+ * {@link DefaultMaterial}. Files are written to a temporary directory.
+ */
+public final class TestEngine extends TerrainControlEngine
+{
+    /**
+     * Makes sure that a test engine is running. Can be called any number of
+     * times.
+     */
+    public static synchronized void install()
+    {
+        if (TerrainControl.getEngine() == null)
+        {
+            TerrainControl.setEngine(new TestEngine());
+        }
+    }
+
+    private final File dataFolder;
+
+    private TestEngine()
+    {
+        super(new Logger()
+        {
+            @Override
+            public void log(LogMarker level, String message, Object... params)
+            {
+                // Tests don't log
+            }
+        });
+        try
+        {
+            this.dataFolder = Files.createTempDirectory("terraincontrol").toFile();
+        } catch (IOException e)
+        {
+            throw new RuntimeException(e);
+        }
+        this.dataFolder.deleteOnExit();
+    }
+
+    @Override
+    public File getGlobalObjectsDirectory()
+    {
+        return new File(this.dataFolder, "GlobalObjects");
+    }
+
+    @Override
+    public File getTCDataFolder()
+    {
+        return this.dataFolder;
+    }
+
+    @Override
+    public LocalWorld getWorld(String name)
+    {
+        return null;
+    }
+
+    @Override
+    public LocalMaterialData readMaterial(String name) throws InvalidConfigException
+    {
+        String blockName = name;
+        int blockData = 0;
+        int colonIndex = name.indexOf(':');
+        if (colonIndex != -1)
+        {
+            blockName = name.substring(0, colonIndex);
+            try
+            {
+                blockData = Integer.parseInt(name.substring(colonIndex + 1));
+            } catch (NumberFormatException e)
+            {
+                throw new InvalidConfigException("Invalid block data in " + name);
+            }
+        }
+
+        DefaultMaterial defaultMaterial = DefaultMaterial.getMaterial(blockName.toUpperCase());
+        if (defaultMaterial == DefaultMaterial.UNKNOWN_BLOCK)
+        {
+            throw new InvalidConfigException("Unknown material: " + name);
+        }
+        return TestMaterialData.of(defaultMaterial, blockData);
+    }
+
+    @Override
+    public LocalMaterialData toLocalMaterialData(DefaultMaterial defaultMaterial, int blockData)
+    {
+        return TestMaterialData.of(defaultMaterial, blockData);
+    }
+}
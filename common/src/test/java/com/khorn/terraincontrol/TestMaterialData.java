@@ -0,0 +1,179 @@
+package com.khorn.terraincontrol;
+
+import com.khorn.terraincontrol.util.helpers.BlockHelper;
+import com.khorn.terraincontrol.util.minecraftTypes.DefaultMaterial;
+
+/**
+ * Material for tests, based on {@link DefaultMaterial}. Uses the same
+ * hashCodes as the platform implementations.
+ */
+public final class TestMaterialData implements LocalMaterialData
+{
+    private static final TestMaterialData[] INSTANCES = new TestMaterialData[TerrainControl.SUPPORTED_BLOCK_IDS * 16];
+
+    /**
+     * Gets the material with the given id and data.
+     * @param id   The block id.
+     * @param data The block data.
+     * @return The material.
+     */
+    public static TestMaterialData of(int id, int data)
+    {
+        int combinedBlockId = id << 4 | data;
+        TestMaterialData material = INSTANCES[combinedBlockId];
+        if (material == null)
+        {
+            material = INSTANCES[combinedBlockId] = new TestMaterialData(combinedBlockId);
+        }
+        return material;
+    }
+
+    /**
+     * Gets the material with the given default material and data.
+     * @param material The default material.
+     * @param data     The block data.
+     * @return The material.
+     */
+    public static TestMaterialData of(DefaultMaterial material, int data)
+    {
+        return of(material.id, data);
+    }
+
+    /**
+     * Gets the material with the given default material and no block data.
+     * @param material The default material.
+     * @return The material.
+     */
+    public static TestMaterialData of(DefaultMaterial material)
+    {
+        return of(material.id, 0);
+    }
+
+    private final int combinedBlockId;
+
+    private TestMaterialData(int combinedBlockId)
+    {
+        this.combinedBlockId = combinedBlockId;
+    }
+
+    @Override
+    public String getName()
+    {
+        String name = toDefaultMaterial().name();
+        if (getBlockData() != 0)
+        {
+            return name + ":" + getBlockData();
+        }
+        return name;
+    }
+
+    @Override
+    public String toString()
+    {
+        return getName();
+    }
+
+    @Override
+    public int getBlockId()
+    {
+        return combinedBlockId >> 4;
+    }
+
+    @Override
+    public byte getBlockData()
+    {
+        return (byte) (combinedBlockId & 15);
+    }
+
+    @Override
+    public boolean isLiquid()
+    {
+        return toDefaultMaterial().isLiquid() || isMaterial(DefaultMaterial.LAVA)
+                || isMaterial(DefaultMaterial.STATIONARY_LAVA);
+    }
+
+    @Override
+    public boolean isSolid()
+    {
+        return toDefaultMaterial().isSolid();
+    }
+
+    @Override
+    public boolean isAir()
+    {
+        return combinedBlockId == 0;
+    }
+
+    @Override
+    public DefaultMaterial toDefaultMaterial()
+    {
+        return DefaultMaterial.getMaterial(getBlockId());
+    }
+
+    @Override
+    public boolean canSnowFallOn()
+    {
+        return toDefaultMaterial().canSnowFallOn();
+    }
+
+    @Override
+    public boolean isMaterial(DefaultMaterial material)
+    {
+        return material.id == getBlockId();
+    }
+
+    @Override
+    public LocalMaterialData withBlockData(int newData)
+    {
+        return of(getBlockId(), newData);
+    }
+
+    @Override
+    public LocalMaterialData withDefaultBlockData()
+    {
+        return of(getBlockId(), 0);
+    }
+
+    @Override
+    public boolean equals(Object other)
+    {
+        if (!(other instanceof TestMaterialData))
+        {
+            return false;
+        }
+        return ((TestMaterialData) other).combinedBlockId == combinedBlockId;
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return TerrainControl.SUPPORTED_BLOCK_IDS + combinedBlockId;
+    }
+
+    @Override
+    public int hashCodeWithoutBlockData()
+    {
+        return getBlockId();
+    }
+
+    @Override
+    public LocalMaterialData rotate()
+    {
+        DefaultMaterial defaultMaterial = toDefaultMaterial();
+        if (defaultMaterial != DefaultMaterial.UNKNOWN_BLOCK)
+        {
+            int newData = BlockHelper.rotateData(defaultMaterial, getBlockData());
+            if (newData != getBlockData())
+            {
+                return of(getBlockId(), newData);
+            }
+        }
+        return this;
+    }
+
+    @Override
+    public boolean canFall()
+    {
+        return isMaterial(DefaultMaterial.SAND) || isMaterial(DefaultMaterial.GRAVEL);
+    }
+}
@@ -0,0 +1,299 @@
+package com.khorn.terraincontrol;
+
+import com.khorn.terraincontrol.configuration.BiomeConfig;
+import com.khorn.terraincontrol.configuration.BiomeLoadInstruction;
+import com.khorn.terraincontrol.configuration.ConfigProvider;
+import com.khorn.terraincontrol.customobjects.CustomObjectStructureCache;
+import com.khorn.terraincontrol.generator.SpawnableObject;
+import com.khorn.terraincontrol.generator.biome.BiomeGenerator;
+import com.khorn.terraincontrol.util.ChunkCoordinate;
+import com.khorn.terraincontrol.util.NamedBinaryTag;
+import com.khorn.terraincontrol.util.minecraftTypes.DefaultMaterial;
+import com.khorn.terraincontrol.util.minecraftTypes.TreeType;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * World for tests that only stores blocks, in memory. Blocks that were
+ * never set get their material from {@link #getInitialMaterial(int, int, int)}.
+ * Everything else is unsupported.
+ */
+public class TestWorld implements LocalWorld
+{
+    private final Map<ChunkCoordinate, Map<Integer, LocalMaterialData>> blocks = new HashMap<ChunkCoordinate, Map<Integer, LocalMaterialData>>();
+    private int setBlockCount;
+
+    /**
+     * Gets the material of a block that was never set. Returns air, override
+     * to fill the world.
+     * @param x X in the world.
+     * @param y Y in the world.
+     * @param z Z in the world.
+     * @return The material.
+     */
+    protected LocalMaterialData getInitialMaterial(int x, int y, int z)
+    {
+        return TestMaterialData.of(DefaultMaterial.AIR);
+    }
+
+    /**
+     * Gets all blocks that were set, by chunk and then by
+     * {@code y << 8 | (z & 15) << 4 | (x & 15)}.
+     * @return The blocks.
+     */
+    public Map<ChunkCoordinate, Map<Integer, LocalMaterialData>> getSetBlocks()
+    {
+        return this.blocks;
+    }
+
+    /**
+     * Gets how many times {@link #setBlock(int, int, int, LocalMaterialData)}
+     * was called.
+     * @return The amount of calls.
+     */
+    public int getSetBlockCount()
+    {
+        return this.setBlockCount;
+    }
+
+    @Override
+    public LocalMaterialData getMaterial(int x, int y, int z)
+    {
+        Map<Integer, LocalMaterialData> chunk = this.blocks.get(ChunkCoordinate.fromBlockCoords(x, z));
+        LocalMaterialData material = chunk == null ? null : chunk.get(y << 8 | (z & 15) << 4 | (x & 15));
+        return material == null ? getInitialMaterial(x, y, z) : material;
+    }
+
+    @Override
+    public boolean isEmpty(int x, int y, int z)
+    {
+        return getMaterial(x, y, z).isAir();
+    }
+
+    @Override
+    public void setBlock(int x, int y, int z, LocalMaterialData material)
+    {
+        ChunkCoordinate chunkCoord = ChunkCoordinate.fromBlockCoords(x, z);
+        Map<Integer, LocalMaterialData> chunk = this.blocks.get(chunkCoord);
+        if (chunk == null)
+        {
+            chunk = new HashMap<Integer, LocalMaterialData>();
+            this.blocks.put(chunkCoord, chunk);
+        }
+        chunk.put(y << 8 | (z & 15) << 4 | (x & 15), material);
+        this.setBlockCount++;
+    }
+
+    @Override
+    public boolean isLoaded(int x, int y, int z)
+    {
+        return y >= TerrainControl.WORLD_DEPTH && y < TerrainControl.WORLD_HEIGHT;
+    }
+
+    @Override
+    public String getName()
+    {
+        return "test";
+    }
+
+    @Override
+    public long getSeed()
+    {
+        return 0;
+    }
+
+    @Override
+    public int getHeightCap()
+    {
+        return TerrainControl.WORLD_HEIGHT;
+    }
+
+    @Override
+    public int getHeightScale()
+    {
+        return TerrainControl.WORLD_HEIGHT;
+    }
+
+    @Override
+    public LocalBiome createBiomeFor(BiomeConfig biomeConfig, BiomeIds requestedBiomeIds)
+    {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public int getMaxBiomesCount()
+    {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public int getMaxSavedBiomesCount()
+    {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public int getFreeBiomeId()
+    {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public LocalBiome getBiomeById(int id)
+    {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public LocalBiome getBiomeByIdOrNull(int id)
+    {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public LocalBiome getBiomeByName(String name)
+    {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Collection<? extends BiomeLoadInstruction> getDefaultBiomes()
+    {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public BiomeGenerator getBiomeGenerator()
+    {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public LocalBiome getBiome(int x, int z)
+    {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public LocalBiome getSavedBiome(int x, int z)
+    {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public LocalBiome getCalculatedBiome(int x, int z)
+    {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void prepareDefaultStructures(int chunkX, int chunkZ, boolean dry)
+    {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean placeDungeon(Random rand, int x, int y, int z)
+    {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean placeFossil(Random rand, ChunkCoordinate chunkCoord)
+    {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean placeTree(TreeType type, Random rand, int x, int y, int z)
+    {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean placeDefaultStructures(Random rand, ChunkCoordinate chunkCoord)
+    {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public SpawnableObject getMojangStructurePart(String name)
+    {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void replaceBlocks(ChunkCoordinate chunkCoord)
+    {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void placePopulationMobs(LocalBiome biome, Random random, ChunkCoordinate chunkCoord)
+    {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void startPopulation(ChunkCoordinate chunkCoord)
+    {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void endPopulation()
+    {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void attachMetadata(int x, int y, int z, NamedBinaryTag tag)
+    {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public NamedBinaryTag getMetadata(int x, int y, int z)
+    {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public int getLiquidHeight(int x, int z)
+    {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public int getSolidHeight(int x, int z)
+    {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public int getHighestBlockYAt(int x, int z)
+    {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public int getLightLevel(int x, int y, int z)
+    {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public ConfigProvider getConfigs()
+    {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public CustomObjectStructureCache getStructureCache()
+    {
+        throw new UnsupportedOperationException();
+    }
+}
@@ -0,0 +1,183 @@
+package com.khorn.terraincontrol.customobjects.bo3;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.khorn.terraincontrol.TestEngine;
+import com.khorn.terraincontrol.TestMaterialData;
+import com.khorn.terraincontrol.customobjects.CustomObject;
+import com.khorn.terraincontrol.exception.InvalidConfigException;
+import com.khorn.terraincontrol.util.minecraftTypes.DefaultMaterial;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+public class BO3CacheTest
+{
+    private File directory;
+    private File bo3File;
+    private Map<String, CustomObject> otherObjects;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        TestEngine.install();
+        this.directory = Files.createTempDirectory("bo3cache").toFile();
+        this.bo3File = new File(this.directory, "Test.bo3");
+        this.otherObjects = new HashMap<String, CustomObject>();
+        this.otherObjects.put("other", new BO3("Other", new File(this.directory, "Other.bo3")));
+
+        writeFile(this.bo3File,
+                "Author: Tester",
+                "Description: Round trip",
+                "Tree: false",
+                "Frequency: 7",
+                "Rarity: 12.5",
+                "Block(0,0,0,STONE)",
+                "Block(1,0,0,WOOL:5)",
+                "Block(0,3,-2,TORCH:3)",
+                "Block(-100,-1000,100,DIRT)",
+                "BlockCheck(0,-1,0,DIRT,GRASS)",
+                "Branch(1,2,3,Other,NORTH,50)");
+    }
+
+    @After
+    public void tearDown()
+    {
+        for (File file : this.directory.listFiles())
+        {
+            file.delete();
+        }
+        this.directory.delete();
+    }
+
+    private static void writeFile(File file, String... lines) throws IOException
+    {
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file, true), "UTF-8");
+        try
+        {
+            for (String line : lines)
+            {
+                writer.write(line);
+                writer.write('\n');
+            }
+        } finally
+        {
+            writer.close();
+        }
+    }
+
+    private BO3 load()
+    {
+        BO3 bo3 = new BO3("Test", this.bo3File);
+        bo3.onEnable(this.otherObjects);
+        return bo3;
+    }
+
+    @Test
+    public void testRoundTrip()
+    {
+        BO3Config parsed = load().getSettings();
+        assertTrue(BO3Cache.getCacheFile(this.bo3File).exists());
+
+        BO3Config cached = load().getSettings();
+        // Blocks are not decoded yet, so the settings came from the cache
+        assertNull(cached.blocks[0]);
+
+        assertEquals("Tester", cached.author);
+        assertEquals("Round trip", cached.description);
+        assertFalse(cached.tree);
+        assertEquals(7, cached.frequency);
+        assertEquals(12.5, cached.rarity, 0);
+        for (int rotation = 0; rotation < 4; rotation++)
+        {
+            assertEquals(Arrays.toString(parsed.bo3Checks[rotation]), Arrays.toString(cached.bo3Checks[rotation]));
+            assertEquals(Arrays.toString(parsed.branches[rotation]), Arrays.toString(cached.branches[rotation]));
+            assertEquals(parsed.boundingBoxes[rotation], cached.boundingBoxes[rotation]);
+            assertEquals(Arrays.toString(parsed.getBlocks(rotation)), Arrays.toString(cached.getBlocks(rotation)));
+        }
+    }
+
+    @Test
+    public void testChangedFile() throws IOException
+    {
+        load();
+        assertNotNull(BO3Cache.open(this.bo3File));
+
+        writeFile(this.bo3File, "Block(0,1,0,STONE)");
+        assertNull(BO3Cache.open(this.bo3File));
+
+        // Cache is replaced by one with the new block
+        BO3Config config = load().getSettings();
+        assertEquals(5, config.getBlocks(0).length);
+        assertNotNull(BO3Cache.open(this.bo3File));
+    }
+
+    @Test
+    public void testPositionLimits() throws InvalidConfigException
+    {
+        BO3Config config = load().getSettings();
+        int[] horizontal = {-127, -1, 0, 1, 127};
+        int[] vertical = {-1023, -1, 0, 1, 1023};
+        BO3PlaceableFunction[] blocks = new BO3PlaceableFunction[horizontal.length * vertical.length * horizontal.length];
+        int i = 0;
+        for (int x : horizontal)
+        {
+            for (int y : vertical)
+            {
+                for (int z : horizontal)
+                {
+                    blocks[i] = new BlockFunction(config, x, y, z, TestMaterialData.of(DefaultMaterial.WOOL, i & 15));
+                    i++;
+                }
+            }
+        }
+        BO3PlaceableFunction[][] rotatedBlocks = new BO3PlaceableFunction[4][];
+        rotatedBlocks[0] = blocks;
+        for (int rotation = 1; rotation < 4; rotation++)
+        {
+            rotatedBlocks[rotation] = new BO3PlaceableFunction[blocks.length];
+            for (int j = 0; j < blocks.length; j++)
+            {
+                rotatedBlocks[rotation][j] = rotatedBlocks[rotation - 1][j].rotate();
+            }
+        }
+        config.blocks = rotatedBlocks;
+
+        BO3Cache.write(this.bo3File, config);
+        BO3Cache cache = BO3Cache.open(this.bo3File);
+        assertNotNull(cache);
+        for (int rotation = 0; rotation < 4; rotation++)
+        {
+            assertEquals(Arrays.toString(rotatedBlocks[rotation]), Arrays.toString(cache.getBlocks(config, rotation)));
+        }
+    }
+
+    @Test
+    public void testOutsidePositionLimits()
+    {
+        BO3Config config = load().getSettings();
+        assertTrue(BO3Cache.getCacheFile(this.bo3File).exists());
+
+        BO3PlaceableFunction block = new BlockFunction(config, 128, 0, 0, TestMaterialData.of(DefaultMaterial.STONE));
+        config.blocks = new BO3PlaceableFunction[][] {{block}, {block}, {block}, {block}};
+
+        // Too far away to pack, so the cache is removed
+        BO3Cache.write(this.bo3File, config);
+        assertFalse(BO3Cache.getCacheFile(this.bo3File).exists());
+        assertNull(BO3Cache.open(this.bo3File));
+    }
+}
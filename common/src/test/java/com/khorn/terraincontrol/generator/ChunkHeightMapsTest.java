@@ -0,0 +1,219 @@
+package com.khorn.terraincontrol.generator;
+
+import static org.junit.Assert.assertEquals;
+
+import com.khorn.terraincontrol.TestMaterialData;
+import com.khorn.terraincontrol.util.ChunkCoordinate;
+import com.khorn.terraincontrol.util.minecraftTypes.DefaultMaterial;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+public class ChunkHeightMapsTest
+{
+    private static final int UNKNOWN = ChunkHeightMaps.UNKNOWN;
+
+    // Chunk 2, -3, so that the tests also cover the world coordinates
+    private static final int CHUNK_X = 2;
+    private static final int CHUNK_Z = -3;
+    private static final int BLOCK_X = CHUNK_X * 16;
+    private static final int BLOCK_Z = CHUNK_Z * 16;
+
+    @Test
+    public void testUnknown()
+    {
+        ChunkHeightMaps heightMaps = new ChunkHeightMaps(CHUNK_X, CHUNK_Z);
+        assertEquals(UNKNOWN, heightMaps.getSolidHeight(BLOCK_X, BLOCK_Z, 255));
+        assertEquals(UNKNOWN, heightMaps.getLiquidHeight(BLOCK_X, BLOCK_Z, 255));
+        assertEquals(UNKNOWN, heightMaps.getHighestBlockY(BLOCK_X, BLOCK_Z));
+    }
+
+    @Test
+    public void testColumnScanned()
+    {
+        ChunkHeightMaps heightMaps = new ChunkHeightMaps(CHUNK_X, CHUNK_Z);
+        // Solid block at 60, water up to 63, scanned from 100
+        heightMaps.columnScanned(BLOCK_X + 3, BLOCK_Z + 4, 100, 60, 63);
+
+        assertEquals(61, heightMaps.getSolidHeight(BLOCK_X + 3, BLOCK_Z + 4, 100));
+        assertEquals(64, heightMaps.getLiquidHeight(BLOCK_X + 3, BLOCK_Z + 4, 100));
+        // Other columns stay unknown
+        assertEquals(UNKNOWN, heightMaps.getSolidHeight(BLOCK_X + 4, BLOCK_Z + 3, 100));
+    }
+
+    @Test
+    public void testNothingFound()
+    {
+        ChunkHeightMaps heightMaps = new ChunkHeightMaps(CHUNK_X, CHUNK_Z);
+        heightMaps.columnScanned(BLOCK_X, BLOCK_Z, 255, -1, -1);
+
+        assertEquals(-1, heightMaps.getSolidHeight(BLOCK_X, BLOCK_Z, 255));
+        assertEquals(-1, heightMaps.getLiquidHeight(BLOCK_X, BLOCK_Z, 255));
+        assertEquals(-1, heightMaps.getSolidHeight(BLOCK_X, BLOCK_Z, 0));
+    }
+
+    @Test
+    public void testScanTops()
+    {
+        ChunkHeightMaps heightMaps = new ChunkHeightMaps(CHUNK_X, CHUNK_Z);
+        heightMaps.columnScanned(BLOCK_X, BLOCK_Z, 100, 60, 63);
+
+        // Scan starting above the scanned part may find other blocks
+        assertEquals(UNKNOWN, heightMaps.getSolidHeight(BLOCK_X, BLOCK_Z, 101));
+        assertEquals(UNKNOWN, heightMaps.getLiquidHeight(BLOCK_X, BLOCK_Z, 101));
+
+        // Scan starting below the liquid doesn't see the liquid top, scan
+        // starting below the solid block doesn't see the solid block
+        assertEquals(61, heightMaps.getSolidHeight(BLOCK_X, BLOCK_Z, 62));
+        assertEquals(UNKNOWN, heightMaps.getLiquidHeight(BLOCK_X, BLOCK_Z, 62));
+        assertEquals(64, heightMaps.getLiquidHeight(BLOCK_X, BLOCK_Z, 63));
+        assertEquals(61, heightMaps.getSolidHeight(BLOCK_X, BLOCK_Z, 60));
+        assertEquals(UNKNOWN, heightMaps.getSolidHeight(BLOCK_X, BLOCK_Z, 59));
+    }
+
+    @Test
+    public void testBlockChangedBelowSolidTop()
+    {
+        ChunkHeightMaps heightMaps = new ChunkHeightMaps(CHUNK_X, CHUNK_Z);
+        heightMaps.columnScanned(BLOCK_X + 15, BLOCK_Z + 15, 100, 60, 63);
+
+        heightMaps.blockChanged(BLOCK_X + 15, 59, BLOCK_Z + 15);
+        assertEquals(61, heightMaps.getSolidHeight(BLOCK_X + 15, BLOCK_Z + 15, 100));
+        assertEquals(64, heightMaps.getLiquidHeight(BLOCK_X + 15, BLOCK_Z + 15, 100));
+
+        // The solid block itself
+        heightMaps.blockChanged(BLOCK_X + 15, 60, BLOCK_Z + 15);
+        assertEquals(UNKNOWN, heightMaps.getSolidHeight(BLOCK_X + 15, BLOCK_Z + 15, 100));
+        assertEquals(UNKNOWN, heightMaps.getLiquidHeight(BLOCK_X + 15, BLOCK_Z + 15, 100));
+    }
+
+    @Test
+    public void testBlockChangedAboveScanTop()
+    {
+        ChunkHeightMaps heightMaps = new ChunkHeightMaps(CHUNK_X, CHUNK_Z);
+        heightMaps.columnScanned(BLOCK_X, BLOCK_Z, 100, 60, 63);
+
+        heightMaps.blockChanged(BLOCK_X, 101, BLOCK_Z);
+        assertEquals(61, heightMaps.getSolidHeight(BLOCK_X, BLOCK_Z, 100));
+
+        // Top of the scanned part
+        heightMaps.blockChanged(BLOCK_X, 100, BLOCK_Z);
+        assertEquals(UNKNOWN, heightMaps.getSolidHeight(BLOCK_X, BLOCK_Z, 100));
+    }
+
+    @Test
+    public void testBlockChangedBetweenSolidAndScanTop()
+    {
+        ChunkHeightMaps heightMaps = new ChunkHeightMaps(CHUNK_X, CHUNK_Z);
+        heightMaps.columnScanned(BLOCK_X, BLOCK_Z, 100, 60, -1);
+
+        heightMaps.blockChanged(BLOCK_X, 80, BLOCK_Z);
+        assertEquals(UNKNOWN, heightMaps.getSolidHeight(BLOCK_X, BLOCK_Z, 100));
+        assertEquals(UNKNOWN, heightMaps.getLiquidHeight(BLOCK_X, BLOCK_Z, 100));
+    }
+
+    @Test
+    public void testBlockChangedWithoutSolidBlock()
+    {
+        ChunkHeightMaps heightMaps = new ChunkHeightMaps(CHUNK_X, CHUNK_Z);
+        heightMaps.columnScanned(BLOCK_X, BLOCK_Z, 100, -1, -1);
+
+        // Even a block at y = 0 may be solid
+        heightMaps.blockChanged(BLOCK_X, 0, BLOCK_Z);
+        assertEquals(UNKNOWN, heightMaps.getSolidHeight(BLOCK_X, BLOCK_Z, 100));
+    }
+
+    @Test
+    public void testHighestBlockY()
+    {
+        ChunkHeightMaps heightMaps = new ChunkHeightMaps(CHUNK_X, CHUNK_Z);
+        heightMaps.setHighestBlockY(BLOCK_X, BLOCK_Z, 70);
+        assertEquals(70, heightMaps.getHighestBlockY(BLOCK_X, BLOCK_Z));
+
+        // More than one block below the highest block
+        heightMaps.blockChanged(BLOCK_X, 68, BLOCK_Z);
+        assertEquals(70, heightMaps.getHighestBlockY(BLOCK_X, BLOCK_Z));
+
+        // Directly below the highest block, may change light opacity
+        heightMaps.blockChanged(BLOCK_X, 69, BLOCK_Z);
+        assertEquals(UNKNOWN, heightMaps.getHighestBlockY(BLOCK_X, BLOCK_Z));
+
+        heightMaps.setHighestBlockY(BLOCK_X, BLOCK_Z, 70);
+        heightMaps.blockChanged(BLOCK_X, 200, BLOCK_Z);
+        assertEquals(UNKNOWN, heightMaps.getHighestBlockY(BLOCK_X, BLOCK_Z));
+    }
+
+    @Test
+    public void testForgetColumns()
+    {
+        ChunkHeightMaps heightMaps = new ChunkHeightMaps(CHUNK_X, CHUNK_Z);
+        for (int x = 0; x < 16; x++)
+        {
+            for (int z = 0; z < 16; z++)
+            {
+                heightMaps.columnScanned(BLOCK_X + x, BLOCK_Z + z, 100, 60, 63);
+                heightMaps.setHighestBlockY(BLOCK_X + x, BLOCK_Z + z, 64);
+            }
+        }
+
+        // Area that starts outside the chunk
+        heightMaps.forgetColumns(BLOCK_X - 10, BLOCK_Z + 2, BLOCK_X + 3, BLOCK_Z + 4);
+        for (int x = 0; x < 16; x++)
+        {
+            for (int z = 0; z < 16; z++)
+            {
+                boolean forgotten = x <= 3 && z >= 2 && z <= 4;
+                String message = "Column " + x + "," + z;
+                assertEquals(message, forgotten ? UNKNOWN : 61, heightMaps.getSolidHeight(BLOCK_X + x, BLOCK_Z + z, 100));
+                assertEquals(message, forgotten ? UNKNOWN : 64, heightMaps.getLiquidHeight(BLOCK_X + x, BLOCK_Z + z, 100));
+                assertEquals(message, forgotten ? UNKNOWN : 64, heightMaps.getHighestBlockY(BLOCK_X + x, BLOCK_Z + z));
+            }
+        }
+
+        // Areas next to the chunk
+        heightMaps.forgetColumns(BLOCK_X + 16, BLOCK_Z, BLOCK_X + 40, BLOCK_Z + 15);
+        heightMaps.forgetColumns(BLOCK_X, BLOCK_Z - 20, BLOCK_X + 15, BLOCK_Z - 1);
+        assertEquals(61, heightMaps.getSolidHeight(BLOCK_X + 15, BLOCK_Z, 100));
+        assertEquals(61, heightMaps.getSolidHeight(BLOCK_X, BLOCK_Z, 100));
+
+        // Area containing the whole chunk
+        heightMaps.forgetColumns(BLOCK_X - 16, BLOCK_Z - 16, BLOCK_X + 31, BLOCK_Z + 31);
+        assertEquals(UNKNOWN, heightMaps.getSolidHeight(BLOCK_X + 15, BLOCK_Z + 15, 100));
+        assertEquals(UNKNOWN, heightMaps.getHighestBlockY(BLOCK_X + 8, BLOCK_Z + 8));
+    }
+
+    @Test
+    public void testFromChunkBuffer()
+    {
+        TestChunkBuffer chunk = new TestChunkBuffer(ChunkCoordinate.fromChunkCoords(CHUNK_X, CHUNK_Z));
+        int[] highestY = new int[16 * 16];
+        Arrays.fill(highestY, 80);
+
+        // Column 0, 0: stone up to 60, water up to 63
+        for (int y = 0; y <= 63; y++)
+        {
+            chunk.setBlock(0, y, 0, TestMaterialData.of(y <= 60 ? DefaultMaterial.STONE : DefaultMaterial.STATIONARY_WATER));
+        }
+        // Column 1, 0: only a solid block at y = 0, which is never looked at
+        chunk.setBlock(1, 0, 0, TestMaterialData.of(DefaultMaterial.BEDROCK));
+        // Column 2, 0: water without solid block
+        chunk.setBlock(2, 5, 0, TestMaterialData.of(DefaultMaterial.STATIONARY_WATER));
+        // Column 3, 0: solid block above highestY is ignored
+        chunk.setBlock(3, 90, 0, TestMaterialData.of(DefaultMaterial.STONE));
+        chunk.setBlock(3, 10, 0, TestMaterialData.of(DefaultMaterial.STONE));
+
+        ChunkHeightMaps heightMaps = new ChunkHeightMaps(chunk, highestY);
+        assertEquals(61, heightMaps.getSolidHeight(BLOCK_X, BLOCK_Z, 255));
+        assertEquals(64, heightMaps.getLiquidHeight(BLOCK_X, BLOCK_Z, 255));
+        assertEquals(-1, heightMaps.getSolidHeight(BLOCK_X + 1, BLOCK_Z, 255));
+        assertEquals(-1, heightMaps.getSolidHeight(BLOCK_X + 2, BLOCK_Z, 255));
+        assertEquals(6, heightMaps.getLiquidHeight(BLOCK_X + 2, BLOCK_Z, 255));
+        assertEquals(11, heightMaps.getSolidHeight(BLOCK_X + 3, BLOCK_Z, 255));
+
+        // Whole column is known, so blocks changed high up still matter
+        heightMaps.blockChanged(BLOCK_X, 250, BLOCK_Z);
+        assertEquals(UNKNOWN, heightMaps.getSolidHeight(BLOCK_X, BLOCK_Z, 255));
+        // Highest block is not known from the generated chunk
+        assertEquals(UNKNOWN, heightMaps.getHighestBlockY(BLOCK_X, BLOCK_Z));
+    }
+}
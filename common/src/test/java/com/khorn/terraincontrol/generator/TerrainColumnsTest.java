@@ -0,0 +1,122 @@
+package com.khorn.terraincontrol.generator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import com.khorn.terraincontrol.LocalMaterialData;
+import com.khorn.terraincontrol.TestMaterialData;
+import com.khorn.terraincontrol.util.minecraftTypes.DefaultMaterial;
+import org.junit.Test;
+
+public class TerrainColumnsTest
+{
+    private static final LocalMaterialData STONE = TestMaterialData.of(DefaultMaterial.STONE);
+    private static final LocalMaterialData WATER = TestMaterialData.of(DefaultMaterial.STATIONARY_WATER);
+    private static final LocalMaterialData AIR = TestMaterialData.of(DefaultMaterial.AIR);
+
+    /**
+     * Stores a column of stone from 0 to 59, water from 60 to 62 and air
+     * from 63 to the top.
+     */
+    private static void addColumn(TerrainColumns columns, int x, int z, int height)
+    {
+        for (int y = 0; y < height; y++)
+        {
+            columns.add(x, y, z, y < 60 ? STONE : y < 63 ? WATER : AIR);
+        }
+    }
+
+    @Test
+    public void testRuns()
+    {
+        TerrainColumns columns = new TerrainColumns();
+        columns.reset(128);
+        addColumn(columns, 3, 5, 128);
+
+        assertEquals(0, columns.getRun(3, 0, 5));
+        assertEquals(0, columns.getRun(3, 59, 5));
+        assertEquals(1, columns.getRun(3, 60, 5));
+        assertEquals(1, columns.getRun(3, 62, 5));
+        assertEquals(2, columns.getRun(3, 63, 5));
+        assertEquals(2, columns.getRun(3, 127, 5));
+
+        assertEquals(0, columns.getRunBottom(3, 5, 0));
+        assertEquals(60, columns.getRunBottom(3, 5, 1));
+        assertEquals(63, columns.getRunBottom(3, 5, 2));
+
+        assertSame(STONE, columns.getRunMaterial(3, 5, 0));
+        assertSame(WATER, columns.getRunMaterial(3, 5, 1));
+        assertSame(AIR, columns.getRunMaterial(3, 5, 2));
+    }
+
+    @Test
+    public void testOutsideStoredHeight()
+    {
+        TerrainColumns columns = new TerrainColumns();
+        columns.reset(128);
+        addColumn(columns, 0, 0, 128);
+
+        assertEquals(128, columns.getHeight());
+        assertEquals(-1, columns.getRun(0, -1, 0));
+        assertEquals(-1, columns.getRun(0, 128, 0));
+        assertEquals(-1, columns.getRun(0, 255, 0));
+    }
+
+    @Test
+    public void testColumnsAreSeparate()
+    {
+        TerrainColumns columns = new TerrainColumns();
+        columns.reset(128);
+        addColumn(columns, 0, 0, 128);
+        for (int y = 0; y < 128; y++)
+        {
+            columns.add(15, y, 15, STONE);
+        }
+
+        assertEquals(2, columns.getRun(0, 100, 0));
+        assertEquals(0, columns.getRun(15, 100, 15));
+        assertEquals(0, columns.getRunBottom(15, 15, 0));
+
+        // Column without blocks
+        assertEquals(-1, columns.getRun(1, 0, 0));
+    }
+
+    @Test
+    public void testManyRuns()
+    {
+        // More runs than initially fit in the arrays
+        TerrainColumns columns = new TerrainColumns();
+        columns.reset(64);
+        for (int y = 0; y < 64; y++)
+        {
+            columns.add(7, y, 8, y % 2 == 0 ? STONE : AIR);
+        }
+
+        for (int y = 0; y < 64; y++)
+        {
+            assertEquals(y, columns.getRun(7, y, 8));
+            assertEquals(y, columns.getRunBottom(7, 8, y));
+            assertSame(y % 2 == 0 ? STONE : AIR, columns.getRunMaterial(7, 8, y));
+        }
+    }
+
+    @Test
+    public void testReset()
+    {
+        TerrainColumns columns = new TerrainColumns();
+        columns.reset(128);
+        addColumn(columns, 2, 2, 128);
+
+        columns.reset(64);
+        assertEquals(64, columns.getHeight());
+        assertEquals(-1, columns.getRun(2, 10, 2));
+
+        for (int y = 0; y < 64; y++)
+        {
+            columns.add(2, y, 2, y < 30 ? WATER : AIR);
+        }
+        assertEquals(0, columns.getRun(2, 10, 2));
+        assertSame(WATER, columns.getRunMaterial(2, 2, 0));
+        assertEquals(30, columns.getRunBottom(2, 2, 1));
+    }
+}
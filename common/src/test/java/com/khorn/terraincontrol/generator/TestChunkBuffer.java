@@ -0,0 +1,57 @@
+package com.khorn.terraincontrol.generator;
+
+import com.khorn.terraincontrol.LocalMaterialData;
+import com.khorn.terraincontrol.TestMaterialData;
+import com.khorn.terraincontrol.util.ChunkCoordinate;
+import com.khorn.terraincontrol.util.minecraftTypes.DefaultMaterial;
+
+import java.util.Arrays;
+
+/**
+ * Chunk buffer for tests, initially filled with air.
+ */
+public final class TestChunkBuffer implements ChunkBuffer
+{
+    private final ChunkCoordinate chunkCoord;
+    private final LocalMaterialData[] blocks = new LocalMaterialData[ChunkCoordinate.CHUNK_X_SIZE * ChunkCoordinate.CHUNK_Y_SIZE
+            * ChunkCoordinate.CHUNK_Z_SIZE];
+
+    public TestChunkBuffer(ChunkCoordinate chunkCoord)
+    {
+        this.chunkCoord = chunkCoord;
+        Arrays.fill(this.blocks, TestMaterialData.of(DefaultMaterial.AIR));
+    }
+
+    @Override
+    public ChunkCoordinate getChunkCoordinate()
+    {
+        return this.chunkCoord;
+    }
+
+    @Override
+    public void setBlock(int blockX, int blockY, int blockZ, LocalMaterialData material)
+    {
+        this.blocks[getIndex(blockX, blockY, blockZ)] = material;
+    }
+
+    @Override
+    public LocalMaterialData getBlock(int blockX, int blockY, int blockZ)
+    {
+        return this.blocks[getIndex(blockX, blockY, blockZ)];
+    }
+
+    private int getIndex(int blockX, int blockY, int blockZ)
+    {
+        return (blockX * ChunkCoordinate.CHUNK_Z_SIZE + blockZ) * ChunkCoordinate.CHUNK_Y_SIZE + blockY;
+    }
+
+    /**
+     * Gets whether all blocks of both chunks are the same.
+     * @param other The other chunk.
+     * @return True if all blocks are the same, false otherwise.
+     */
+    public boolean sameBlocks(TestChunkBuffer other)
+    {
+        return Arrays.equals(this.blocks, other.blocks);
+    }
+}
@@ -0,0 +1,58 @@
+package com.khorn.terraincontrol.generator;
+
+import com.khorn.terraincontrol.LocalBiome;
+import com.khorn.terraincontrol.util.ChunkCoordinate;
+
+import java.util.Random;
+
+/**
+ * Creates {@link GeneratingChunk} instances for tests.
+ */
+public final class TestGeneratingChunk
+{
+    /**
+     * Creates the information about a chunk being generated.
+     * @param random         Random number generator of the chunk.
+     * @param waterLevel     Water level of each column, by x + z * 16.
+     * @param surfaceNoise   Surface noise of each column, by x + z * 16.
+     * @param biomes         Biome of each column, by x + z * 16.
+     * @param terrainColumns Terrain of the columns.
+     * @param worldSeed      Seed of the world.
+     * @param heightCap      Height cap of the world.
+     * @return The information.
+     */
+    public static GeneratingChunk create(Random random, byte[] waterLevel, double[] surfaceNoise, LocalBiome[] biomes,
+            TerrainColumns terrainColumns, long worldSeed, int heightCap)
+    {
+        return new GeneratingChunk(random, waterLevel, surfaceNoise, biomes, terrainColumns, 0, worldSeed, heightCap);
+    }
+
+    /**
+     * Stores the lower part of a chunk as raw terrain, in the same way as
+     * the terrain generator does.
+     * @param chunk  The chunk.
+     * @param height Amount of blocks to store in each column.
+     * @return The raw terrain.
+     */
+    public static TerrainColumns createTerrainColumns(ChunkBuffer chunk, int height)
+    {
+        TerrainColumns terrainColumns = new TerrainColumns();
+        terrainColumns.reset(height);
+        for (int x = 0; x < ChunkCoordinate.CHUNK_X_SIZE; x++)
+        {
+            for (int z = 0; z < ChunkCoordinate.CHUNK_Z_SIZE; z++)
+            {
+                for (int y = 0; y < height; y++)
+                {
+                    terrainColumns.add(x, y, z, chunk.getBlock(x, y, z));
+                }
+            }
+        }
+        return terrainColumns;
+    }
+
+    private TestGeneratingChunk()
+    {
+        // No instances
+    }
+}
@@ -0,0 +1,212 @@
+package com.khorn.terraincontrol.generator.biome;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class PackedBiomeCacheTest
+{
+    /**
+     * Size of the hash table of an empty cache.
+     */
+    private static final int MIN_TABLE_SIZE = 256;
+
+    private static int[] createBiomes(int chunkX, int chunkZ, int maxBiomeId)
+    {
+        int[] biomes = new int[256];
+        for (int i = 0; i < biomes.length; i++)
+        {
+            biomes[i] = Math.abs(chunkX * 31 + chunkZ * 17 + i) % (maxBiomeId + 1);
+        }
+        return biomes;
+    }
+
+    private static void add(PackedBiomeCache cache, int chunkX, int chunkZ)
+    {
+        cache.add(chunkX, chunkZ, createBiomes(chunkX, chunkZ, cache.getMaxBiomeId()));
+    }
+
+    private static void assertCached(PackedBiomeCache cache, int chunkX, int chunkZ)
+    {
+        String message = "Chunk " + chunkX + "," + chunkZ;
+        int slot = cache.find(chunkX, chunkZ);
+        assertTrue(message, slot != PackedBiomeCache.NO_SLOT);
+
+        int[] expected = createBiomes(chunkX, chunkZ, cache.getMaxBiomeId());
+        int[] biomes = new int[256];
+        cache.getBiomes(slot, biomes);
+        assertArrayEquals(message, expected, biomes);
+        assertEquals(message, expected[37], cache.getBiome(slot, 37));
+    }
+
+    /**
+     * Finds chunks that all start probing at the same position in the hash
+     * table of an empty cache.
+     */
+    private static List<int[]> findCollidingChunks(int amount)
+    {
+        List<int[]> chunks = new ArrayList<int[]>();
+        int position = PackedBiomeCache.hash(PackedBiomeCache.toKey(0, 0)) & (MIN_TABLE_SIZE - 1);
+        for (int chunkX = 0; chunks.size() < amount; chunkX++)
+        {
+            for (int chunkZ = -50; chunkZ < 50 && chunks.size() < amount; chunkZ++)
+            {
+                if ((PackedBiomeCache.hash(PackedBiomeCache.toKey(chunkX, chunkZ)) & (MIN_TABLE_SIZE - 1)) == position)
+                {
+                    chunks.add(new int[] {chunkX, chunkZ});
+                }
+            }
+        }
+        return chunks;
+    }
+
+    @Test
+    public void testMissing()
+    {
+        PackedBiomeCache cache = new PackedBiomeCache(1);
+        assertEquals(PackedBiomeCache.NO_SLOT, cache.find(0, 0));
+
+        add(cache, 0, 0);
+        assertEquals(1, cache.size());
+        assertEquals(PackedBiomeCache.NO_SLOT, cache.find(0, 1));
+        assertEquals(PackedBiomeCache.NO_SLOT, cache.find(1, 0));
+        assertEquals(PackedBiomeCache.NO_SLOT, cache.find(-1, -1));
+    }
+
+    @Test
+    public void testCollisions()
+    {
+        List<int[]> chunks = findCollidingChunks(6);
+        PackedBiomeCache cache = new PackedBiomeCache(1);
+        for (int[] chunk : chunks.subList(0, 5))
+        {
+            add(cache, chunk[0], chunk[1]);
+        }
+
+        for (int[] chunk : chunks.subList(0, 5))
+        {
+            assertCached(cache, chunk[0], chunk[1]);
+        }
+        // Probes past all colliding chunks
+        int[] missing = chunks.get(5);
+        assertEquals(PackedBiomeCache.NO_SLOT, cache.find(missing[0], missing[1]));
+    }
+
+    @Test
+    public void testGrow()
+    {
+        // Table grows several times, and more than one page is needed
+        PackedBiomeCache cache = new PackedBiomeCache(1);
+        for (int chunkX = -30; chunkX < 30; chunkX++)
+        {
+            for (int chunkZ = -30; chunkZ < 30; chunkZ++)
+            {
+                add(cache, chunkX, chunkZ);
+            }
+        }
+
+        assertEquals(3600, cache.size());
+        for (int chunkX = -30; chunkX < 30; chunkX++)
+        {
+            for (int chunkZ = -30; chunkZ < 30; chunkZ++)
+            {
+                assertCached(cache, chunkX, chunkZ);
+            }
+        }
+        assertEquals(PackedBiomeCache.NO_SLOT, cache.find(30, 0));
+        assertEquals(PackedBiomeCache.NO_SLOT, cache.find(0, -31));
+    }
+
+    @Test
+    public void testTwoBytes()
+    {
+        PackedBiomeCache cache = new PackedBiomeCache(2);
+        assertEquals(0xFFFF, cache.getMaxBiomeId());
+
+        int[] biomes = createBiomes(3, 4, 0xFFFF);
+        biomes[0] = 0xFFFF;
+        biomes[1] = 256;
+        int slot = cache.add(3, 4, biomes);
+
+        int[] cached = new int[256];
+        cache.getBiomes(cache.find(3, 4), cached);
+        assertArrayEquals(biomes, cached);
+        assertEquals(0xFFFF, cache.getBiome(slot, 0));
+        assertEquals(256, cache.getBiome(slot, 1));
+    }
+
+    @Test
+    public void testRemoveUnused()
+    {
+        List<int[]> chunks = findCollidingChunks(6);
+        PackedBiomeCache cache = new PackedBiomeCache(1);
+        for (int i = 0; i < chunks.size(); i++)
+        {
+            int[] chunk = chunks.get(i);
+            add(cache, chunk[0], chunk[1]);
+            // Every other chunk is old
+            cache.touch(cache.find(chunk[0], chunk[1]), i % 2 == 0 ? 0 : 1000);
+        }
+
+        cache.removeUnused(1000, 500);
+
+        assertEquals(3, cache.size());
+        for (int i = 0; i < chunks.size(); i++)
+        {
+            int[] chunk = chunks.get(i);
+            if (i % 2 == 0)
+            {
+                assertEquals(PackedBiomeCache.NO_SLOT, cache.find(chunk[0], chunk[1]));
+            } else
+            {
+                // Still found behind the removed chunks
+                assertCached(cache, chunk[0], chunk[1]);
+            }
+        }
+
+        // Slots are reused
+        add(cache, 100, 100);
+        assertCached(cache, 100, 100);
+        assertEquals(4, cache.size());
+    }
+
+    @Test
+    public void testRemoveAll()
+    {
+        PackedBiomeCache cache = new PackedBiomeCache(1);
+        add(cache, 1, 2);
+        cache.touch(cache.find(1, 2), 0);
+
+        cache.removeUnused(1000, 500);
+        assertEquals(0, cache.size());
+        assertEquals(PackedBiomeCache.NO_SLOT, cache.find(1, 2));
+
+        add(cache, 1, 2);
+        assertCached(cache, 1, 2);
+    }
+
+    @Test
+    public void testClear()
+    {
+        PackedBiomeCache cache = new PackedBiomeCache(1);
+        for (int chunkX = 0; chunkX < 40; chunkX++)
+        {
+            add(cache, chunkX, 0);
+        }
+
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertEquals(PackedBiomeCache.NO_SLOT, cache.find(0, 0));
+        assertEquals(PackedBiomeCache.NO_SLOT, cache.find(39, 0));
+
+        // Still usable
+        add(cache, 5, 5);
+        assertCached(cache, 5, 5);
+        assertEquals(1, cache.size());
+    }
+}
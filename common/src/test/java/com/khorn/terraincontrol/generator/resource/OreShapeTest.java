@@ -0,0 +1,161 @@
+package com.khorn.terraincontrol.generator.resource;
+
+import static org.junit.Assert.assertEquals;
+
+import com.khorn.terraincontrol.LocalMaterialData;
+import com.khorn.terraincontrol.LocalWorld;
+import com.khorn.terraincontrol.TestMaterialData;
+import com.khorn.terraincontrol.TestWorld;
+import com.khorn.terraincontrol.util.MaterialSet;
+import com.khorn.terraincontrol.util.MaterialSetEntry;
+import com.khorn.terraincontrol.util.helpers.MathHelper;
+import com.khorn.terraincontrol.util.minecraftTypes.DefaultMaterial;
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.Random;
+
+public class OreShapeTest
+{
+    private static final LocalMaterialData ORE = TestMaterialData.of(DefaultMaterial.DIAMOND_ORE);
+
+    /**
+     * World with a mix of stone, dirt and air.
+     */
+    private static class MixedWorld extends TestWorld
+    {
+        @Override
+        protected LocalMaterialData getInitialMaterial(int x, int y, int z)
+        {
+            switch ((x * 31 + y * 7 + z * 13) & 3)
+            {
+                case 0:
+                    return TestMaterialData.of(DefaultMaterial.AIR);
+                case 1:
+                    return TestMaterialData.of(DefaultMaterial.DIRT);
+                default:
+                    return TestMaterialData.of(DefaultMaterial.STONE);
+            }
+        }
+    }
+
+    /**
+     * The code that was used before {@link OreShape} existed, which places
+     * the ore ellipsoid by ellipsoid.
+     */
+    private static void placeEllipsoids(LocalWorld world, Random rand, float angle, int x, int y, int z, int maxSize,
+            MaterialSet sourceBlocks)
+    {
+        double d1 = x + 8 + MathHelper.sin(angle) * maxSize / 8.0F;
+        double d2 = x + 8 - MathHelper.sin(angle) * maxSize / 8.0F;
+        double d3 = z + 8 + MathHelper.cos(angle) * maxSize / 8.0F;
+        double d4 = z + 8 - MathHelper.cos(angle) * maxSize / 8.0F;
+
+        double d5 = y + rand.nextInt(3) - 2;
+        double d6 = y + rand.nextInt(3) - 2;
+
+        for (int i = 0; i < maxSize; i++)
+        {
+            float iFactor = (float) i / (float) maxSize;
+            double d7 = d1 + (d2 - d1) * iFactor;
+            double d8 = d5 + (d6 - d5) * iFactor;
+            double d9 = d3 + (d4 - d3) * iFactor;
+
+            double d10 = rand.nextDouble() * maxSize / 16.0D;
+            double d11 = (MathHelper.sin((float) Math.PI * iFactor) + 1.0) * d10 + 1.0;
+            double d12 = (MathHelper.sin((float) Math.PI * iFactor) + 1.0) * d10 + 1.0;
+
+            int j = MathHelper.floor(d7 - d11 / 2.0D);
+            int k = MathHelper.floor(d8 - d12 / 2.0D);
+            int m = MathHelper.floor(d9 - d11 / 2.0D);
+
+            int n = MathHelper.floor(d7 + d11 / 2.0D);
+            int i1 = MathHelper.floor(d8 + d12 / 2.0D);
+            int i2 = MathHelper.floor(d9 + d11 / 2.0D);
+
+            for (int i3 = j; i3 <= n; i3++)
+            {
+                double d13 = (i3 + 0.5D - d7) / (d11 / 2.0D);
+                if (d13 * d13 < 1.0D)
+                {
+                    for (int i4 = k; i4 <= i1; i4++)
+                    {
+                        double d14 = (i4 + 0.5D - d8) / (d12 / 2.0D);
+                        if (d13 * d13 + d14 * d14 < 1.0D)
+                        {
+                            for (int i5 = m; i5 <= i2; i5++)
+                            {
+                                double d15 = (i5 + 0.5D - d9) / (d11 / 2.0D);
+                                if (d13 * d13 + d14 * d14 + d15 * d15 < 1.0D)
+                                {
+                                    if (sourceBlocks.contains(world.getMaterial(i3, i4, i5)))
+                                    {
+                                        world.setBlock(i3, i4, i5, ORE);
+                                    }
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private static void assertSameOre(MaterialSet sourceBlocks)
+    {
+        for (int maxSize : new int[] {0, 1, 2, 3, 8, 17, 32, 64, 128})
+        {
+            for (int seed = 0; seed < 50; seed++)
+            {
+                Random oldRandom = new Random(seed);
+                Random newRandom = new Random(seed);
+                float oldAngle = oldRandom.nextFloat() * (float) Math.PI;
+                float newAngle = newRandom.nextFloat() * (float) Math.PI;
+                int x = seed * 16 - 400;
+                int y = 10 + seed * 2;
+                int z = -seed * 16;
+
+                TestWorld oldWorld = new MixedWorld();
+                TestWorld newWorld = new MixedWorld();
+                placeEllipsoids(oldWorld, oldRandom, oldAngle, x, y, z, maxSize, sourceBlocks);
+                new OreShape(newRandom, newAngle, x, y, z, maxSize).place(newWorld, ORE, sourceBlocks);
+
+                String vein = "vein " + maxSize + "/" + seed;
+                assertEquals(vein, oldWorld.getSetBlocks(), newWorld.getSetBlocks());
+                // Random number generator must be left in the same state
+                assertEquals(vein, oldRandom.nextLong(), newRandom.nextLong());
+                // Every block is placed only once
+                assertEquals(vein, countBlocks(newWorld.getSetBlocks()), newWorld.getSetBlockCount());
+            }
+        }
+    }
+
+    private static int countBlocks(Map<?, ? extends Map<?, ?>> blocks)
+    {
+        int count = 0;
+        for (Map<?, ?> chunk : blocks.values())
+        {
+            count += chunk.size();
+        }
+        return count;
+    }
+
+    @Test
+    public void testSameAsEllipsoidsForStone()
+    {
+        MaterialSet sourceBlocks = new MaterialSet();
+        sourceBlocks.add(new MaterialSetEntry(TestMaterialData.of(DefaultMaterial.STONE), false));
+        assertSameOre(sourceBlocks);
+    }
+
+    @Test
+    public void testSameAsEllipsoidsForOre()
+    {
+        // Ore may replace itself, so placing a block changes what is found
+        // at that position by the next ellipsoid
+        MaterialSet sourceBlocks = new MaterialSet();
+        sourceBlocks.add(new MaterialSetEntry(TestMaterialData.of(DefaultMaterial.DIRT), false));
+        sourceBlocks.add(new MaterialSetEntry(ORE, false));
+        assertSameOre(sourceBlocks);
+    }
+}
@@ -0,0 +1,183 @@
+package com.khorn.terraincontrol.generator.surface;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.khorn.terraincontrol.LocalBiome;
+import com.khorn.terraincontrol.LocalMaterialData;
+import com.khorn.terraincontrol.TestBiome;
+import com.khorn.terraincontrol.TestEngine;
+import com.khorn.terraincontrol.TestMaterialData;
+import com.khorn.terraincontrol.TestWorld;
+import com.khorn.terraincontrol.configuration.BiomeConfig;
+import com.khorn.terraincontrol.configuration.BiomeLoadInstruction;
+import com.khorn.terraincontrol.configuration.WorldConfig;
+import com.khorn.terraincontrol.configuration.io.SimpleSettingsMap;
+import com.khorn.terraincontrol.configuration.standard.StandardBiomeTemplate;
+import com.khorn.terraincontrol.customobjects.CustomObjectCollection;
+import com.khorn.terraincontrol.generator.GeneratingChunk;
+import com.khorn.terraincontrol.generator.TerrainColumns;
+import com.khorn.terraincontrol.generator.TestChunkBuffer;
+import com.khorn.terraincontrol.generator.TestGeneratingChunk;
+import com.khorn.terraincontrol.util.ChunkCoordinate;
+import com.khorn.terraincontrol.util.minecraftTypes.DefaultMaterial;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Random;
+
+/**
+ * Tests that the surface generators place exactly the same blocks when they
+ * skip over the runs of the raw terrain as when they look at every block.
+ * Without raw terrain, {@link TerrainColumns#getRun(int, int, int)} never
+ * finds a run, so the generators read every block from the chunk and never
+ * skip.
+ */
+public class SurfaceGeneratorTest
+{
+    private WorldConfig worldConfig;
+    private BiomeConfig biomeConfig;
+
+    @Before
+    public void setUp()
+    {
+        TestEngine.install();
+        this.worldConfig = new WorldConfig(new File("."), new SimpleSettingsMap("test", false), new TestWorld(),
+                new CustomObjectCollection());
+        this.biomeConfig = new BiomeConfig(new BiomeLoadInstruction("Test", 0, new StandardBiomeTemplate(
+                this.worldConfig.worldHeightScale)), new SimpleSettingsMap("Test", false), this.worldConfig);
+    }
+
+    /**
+     * Creates a chunk with layers of stone, water and air of random
+     * thicknesses. Layers near the bottom are thin, so that they are mixed
+     * with the bedrock.
+     */
+    private TestChunkBuffer createTerrain(Random random, int height)
+    {
+        LocalMaterialData[] layerMaterials = {this.biomeConfig.stoneBlock, this.biomeConfig.waterBlock,
+                TestMaterialData.of(DefaultMaterial.AIR)};
+        TestChunkBuffer chunk = new TestChunkBuffer(ChunkCoordinate.fromChunkCoords(random.nextInt(100), random.nextInt(100)));
+        for (int x = 0; x < ChunkCoordinate.CHUNK_X_SIZE; x++)
+        {
+            for (int z = 0; z < ChunkCoordinate.CHUNK_Z_SIZE; z++)
+            {
+                int y = 0;
+                while (y < height)
+                {
+                    LocalMaterialData material = layerMaterials[random.nextInt(layerMaterials.length)];
+                    int thickness = 1 + random.nextInt(y < 8 ? 3 : 40);
+                    for (int layerEnd = Math.min(height, y + thickness); y < layerEnd; y++)
+                    {
+                        chunk.setBlock(x, y, z, material);
+                    }
+                }
+            }
+        }
+        return chunk;
+    }
+
+    private GeneratingChunk createGeneratingChunk(long seed, TerrainColumns terrainColumns, int heightCap)
+    {
+        Random random = new Random(seed);
+        byte[] waterLevel = new byte[16 * 16];
+        double[] surfaceNoise = new double[16 * 16];
+        for (int i = 0; i < 16 * 16; i++)
+        {
+            waterLevel[i] = (byte) random.nextInt(heightCap);
+            surfaceNoise[i] = random.nextGaussian() * 6;
+        }
+        LocalBiome[] biomes = new LocalBiome[16 * 16];
+        for (int i = 0; i < biomes.length; i++)
+        {
+            biomes[i] = new TestBiome(this.biomeConfig);
+        }
+        return TestGeneratingChunk.create(random, waterLevel, surfaceNoise, biomes, terrainColumns, seed, heightCap);
+    }
+
+    private void assertSameWithoutSkipping(SurfaceGenerator generator)
+    {
+        for (int bedrockSettings = 0; bedrockSettings < 8; bedrockSettings++)
+        {
+            this.worldConfig.disableBedrock = (bedrockSettings & 1) != 0;
+            this.worldConfig.flatBedrock = (bedrockSettings & 2) != 0;
+            this.worldConfig.ceilingBedrock = (bedrockSettings & 4) != 0;
+            for (int heightCap : new int[] {128, 256})
+            {
+                for (long seed = 0; seed < 4; seed++)
+                {
+                    // With a height cap of 128 the upper half of the chunk
+                    // stays outside of the stored terrain
+                    TestChunkBuffer terrain = createTerrain(new Random(seed), heightCap);
+                    TestChunkBuffer skippingChunk = createTerrain(new Random(seed), heightCap);
+                    TestChunkBuffer chunk = createTerrain(new Random(seed), heightCap);
+
+                    // Odd seeds only store the lower part of the terrain
+                    int storedHeight = seed % 2 == 0 ? heightCap : heightCap * 3 / 4;
+                    GeneratingChunk skipping = createGeneratingChunk(seed,
+                            TestGeneratingChunk.createTerrainColumns(terrain, storedHeight), heightCap);
+                    GeneratingChunk notSkipping = createGeneratingChunk(seed, new TerrainColumns(), heightCap);
+                    int blockX = skippingChunk.getChunkCoordinate().getBlockX();
+                    int blockZ = skippingChunk.getChunkCoordinate().getBlockZ();
+                    for (int x = 0; x < 16; x++)
+                    {
+                        for (int z = 0; z < 16; z++)
+                        {
+                            generator.spawn(skipping, skippingChunk, this.biomeConfig, blockX + x, blockZ + z);
+                            generator.spawn(notSkipping, chunk, this.biomeConfig, blockX + x, blockZ + z);
+                        }
+                    }
+
+                    String message = generator + ", bedrock " + bedrockSettings + ", height cap " + heightCap + ", seed " + seed;
+                    assertTrue(message, chunk.sameBlocks(skippingChunk));
+                    // Random number generator must be used in the same way
+                    assertEquals(message, notSkipping.random.nextLong(), skipping.random.nextLong());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testSimple()
+    {
+        assertSameWithoutSkipping(new SimpleSurfaceGenerator());
+    }
+
+    @Test
+    public void testSimpleSand()
+    {
+        // Sandstone is placed below sand, using the random number generator
+        this.biomeConfig.surfaceBlock = TestMaterialData.of(DefaultMaterial.SAND);
+        this.biomeConfig.groundBlock = TestMaterialData.of(DefaultMaterial.SAND);
+        assertSameWithoutSkipping(new SimpleSurfaceGenerator());
+    }
+
+    @Test
+    public void testSimpleCold()
+    {
+        // Ice on top of water
+        this.biomeConfig.biomeTemperature = 0;
+        this.worldConfig.removeSurfaceStone = true;
+        assertSameWithoutSkipping(new SimpleSurfaceGenerator());
+    }
+
+    @Test
+    public void testMesa()
+    {
+        assertSameWithoutSkipping(new MesaSurfaceGenerator(false, false));
+    }
+
+    @Test
+    public void testMesaForest()
+    {
+        assertSameWithoutSkipping(new MesaSurfaceGenerator(false, true));
+    }
+
+    @Test
+    public void testMesaBryce()
+    {
+        // Spikes replace the air below them
+        assertSameWithoutSkipping(new MesaSurfaceGenerator(true, false));
+    }
+}
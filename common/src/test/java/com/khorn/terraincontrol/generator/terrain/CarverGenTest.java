@@ -0,0 +1,202 @@
+package com.khorn.terraincontrol.generator.terrain;
+
+import static org.junit.Assert.assertTrue;
+
+import com.khorn.terraincontrol.LocalBiome;
+import com.khorn.terraincontrol.LocalMaterialData;
+import com.khorn.terraincontrol.TestBiome;
+import com.khorn.terraincontrol.TestEngine;
+import com.khorn.terraincontrol.TestMaterialData;
+import com.khorn.terraincontrol.TestWorld;
+import com.khorn.terraincontrol.configuration.BiomeConfig;
+import com.khorn.terraincontrol.configuration.BiomeLoadInstruction;
+import com.khorn.terraincontrol.configuration.WorldConfig;
+import com.khorn.terraincontrol.configuration.io.SimpleSettingsMap;
+import com.khorn.terraincontrol.configuration.standard.StandardBiomeTemplate;
+import com.khorn.terraincontrol.customobjects.CustomObjectCollection;
+import com.khorn.terraincontrol.generator.GeneratingChunk;
+import com.khorn.terraincontrol.generator.TerrainColumns;
+import com.khorn.terraincontrol.generator.TestChunkBuffer;
+import com.khorn.terraincontrol.generator.TestGeneratingChunk;
+import com.khorn.terraincontrol.util.ChunkCoordinate;
+import com.khorn.terraincontrol.util.minecraftTypes.DefaultMaterial;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Tests that the caves and ravines carved from the cached paths are exactly
+ * the same as those of the old generators, which walked the paths again for
+ * every chunk.
+ */
+public class CarverGenTest
+{
+    private static final int CHUNK_RADIUS = 6;
+
+    private LocalBiome[] biomes;
+
+    /**
+     * World with a few biomes in a fixed pattern.
+     */
+    private class CarverTestWorld extends TestWorld
+    {
+        private final long seed;
+
+        CarverTestWorld(long seed)
+        {
+            this.seed = seed;
+        }
+
+        @Override
+        public long getSeed()
+        {
+            return this.seed;
+        }
+
+        @Override
+        public LocalBiome getBiome(int x, int z)
+        {
+            return biomes[((x >> 5) * 31 + (z >> 5) * 17 & Integer.MAX_VALUE) % biomes.length];
+        }
+    }
+
+    @Before
+    public void setUp()
+    {
+        TestEngine.install();
+    }
+
+    private WorldConfig createWorldConfig(TestWorld world)
+    {
+        WorldConfig worldConfig = new WorldConfig(new File("."), new SimpleSettingsMap("test", false), world,
+                new CustomObjectCollection());
+        worldConfig.caveRarity = 60;
+        worldConfig.caveFrequency = 40;
+        worldConfig.individualCaveRarity = 25;
+        worldConfig.caveSystemPocketMaxSize = 4;
+        worldConfig.ravineRarity = 40;
+
+        // Biomes with different surface and ground blocks
+        this.biomes = new LocalBiome[3];
+        for (int i = 0; i < this.biomes.length; i++)
+        {
+            BiomeConfig biomeConfig = new BiomeConfig(new BiomeLoadInstruction("Test" + i, i, new StandardBiomeTemplate(
+                    worldConfig.worldHeightScale)), new SimpleSettingsMap("Test" + i, false), worldConfig);
+            this.biomes[i] = new TestBiome(biomeConfig);
+        }
+        this.biomes[1].getBiomeConfig().groundBlock = TestMaterialData.of(DefaultMaterial.SAND);
+        this.biomes[2].getBiomeConfig().surfaceBlock = TestMaterialData.of(DefaultMaterial.MYCEL);
+        return worldConfig;
+    }
+
+    /**
+     * Creates some hilly terrain with sand, and small lakes that stop the
+     * carvers.
+     */
+    private static TestChunkBuffer createTerrain(ChunkCoordinate chunkCoord, long seed)
+    {
+        TestChunkBuffer chunk = new TestChunkBuffer(chunkCoord);
+        Random random = new Random(chunkCoord.getChunkX() * 341873128712L + chunkCoord.getChunkZ() * 132897987541L + seed);
+        for (int x = 0; x < 16; x++)
+        {
+            for (int z = 0; z < 16; z++)
+            {
+                int height = 55 + random.nextInt(20);
+                boolean water = random.nextInt(12) == 0;
+                boolean sand = random.nextInt(5) == 0;
+                for (int y = 0; y < height + 3; y++)
+                {
+                    LocalMaterialData material;
+                    if (y < height - 4)
+                    {
+                        material = TestMaterialData.of(DefaultMaterial.STONE);
+                    } else if (y < height - 1)
+                    {
+                        material = TestMaterialData.of(sand ? DefaultMaterial.SAND : DefaultMaterial.DIRT);
+                    } else if (y == height - 1)
+                    {
+                        material = TestMaterialData.of(sand ? DefaultMaterial.SAND : DefaultMaterial.GRASS);
+                    } else if (water)
+                    {
+                        material = TestMaterialData.of(DefaultMaterial.STATIONARY_WATER);
+                    } else
+                    {
+                        break;
+                    }
+                    chunk.setBlock(x, y, z, material);
+                }
+            }
+        }
+        return chunk;
+    }
+
+    private GeneratingChunk createGeneratingChunk(TestWorld world, ChunkCoordinate chunkCoord)
+    {
+        LocalBiome[] chunkBiomes = new LocalBiome[16 * 16];
+        for (int x = 0; x < 16; x++)
+        {
+            for (int z = 0; z < 16; z++)
+            {
+                chunkBiomes[x + z * 16] = world.getBiome(chunkCoord.getBlockX() + x, chunkCoord.getBlockZ() + z);
+            }
+        }
+        return TestGeneratingChunk.create(new Random(), new byte[16 * 16], new double[16 * 16], chunkBiomes, new TerrainColumns(),
+                world.getSeed(), world.getHeightCap());
+    }
+
+    private void assertSameAsLegacy(long seed)
+    {
+        TestWorld world = new CarverTestWorld(seed);
+        WorldConfig worldConfig = createWorldConfig(world);
+        LegacyCavesGen legacyCaves = new LegacyCavesGen(worldConfig, world);
+        LegacyRavinesGen legacyRavines = new LegacyRavinesGen(worldConfig, world);
+        CavesGen caves = new CavesGen(worldConfig, world);
+        RavinesGen ravines = new RavinesGen(worldConfig, world);
+
+        // Random order, so that the cache is used for chunks all around
+        List<ChunkCoordinate> chunks = new ArrayList<ChunkCoordinate>();
+        for (int chunkX = -CHUNK_RADIUS; chunkX < CHUNK_RADIUS; chunkX++)
+        {
+            for (int chunkZ = -CHUNK_RADIUS; chunkZ < CHUNK_RADIUS; chunkZ++)
+            {
+                chunks.add(ChunkCoordinate.fromChunkCoords(chunkX, chunkZ));
+            }
+        }
+        Collections.shuffle(chunks, new Random(seed));
+
+        int carvedChunks = 0;
+        for (ChunkCoordinate chunkCoord : chunks)
+        {
+            TestChunkBuffer legacyChunk = createTerrain(chunkCoord, seed);
+            TestChunkBuffer chunk = createTerrain(chunkCoord, seed);
+            TestChunkBuffer originalChunk = createTerrain(chunkCoord, seed);
+
+            GeneratingChunk generatingChunk = createGeneratingChunk(world, chunkCoord);
+            legacyCaves.generate(generatingChunk, legacyChunk);
+            legacyRavines.generate(generatingChunk, legacyChunk);
+            caves.generate(generatingChunk, chunk);
+            ravines.generate(generatingChunk, chunk);
+
+            assertTrue("Chunk " + chunkCoord + " with seed " + seed, legacyChunk.sameBlocks(chunk));
+            if (!chunk.sameBlocks(originalChunk))
+            {
+                carvedChunks++;
+            }
+        }
+
+        // Make sure that the test actually tests something
+        assertTrue(carvedChunks > chunks.size() / 4);
+    }
+
+    @Test
+    public void testSameAsLegacy()
+    {
+        assertSameAsLegacy(12345L);
+        assertSameAsLegacy(-987654321L);
+    }
+}
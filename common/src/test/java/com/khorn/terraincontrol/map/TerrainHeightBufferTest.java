@@ -0,0 +1,67 @@
+package com.khorn.terraincontrol.map;
+
+import static org.junit.Assert.assertEquals;
+
+import com.khorn.terraincontrol.TestEngine;
+import com.khorn.terraincontrol.TestMaterialData;
+import com.khorn.terraincontrol.util.ChunkCoordinate;
+import com.khorn.terraincontrol.util.minecraftTypes.DefaultMaterial;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TerrainHeightBufferTest
+{
+    private TerrainHeightBuffer buffer;
+
+    @Before
+    public void setUp()
+    {
+        TestEngine.install();
+        this.buffer = new TerrainHeightBuffer();
+        this.buffer.reset(ChunkCoordinate.fromChunkCoords(0, 0));
+    }
+
+    @Test
+    public void testHeights()
+    {
+        this.buffer.setBlock(3, 40, 5, TestMaterialData.of(DefaultMaterial.STONE));
+        this.buffer.setBlock(3, 60, 5, TestMaterialData.of(DefaultMaterial.STATIONARY_WATER));
+        this.buffer.setBlock(3, 50, 5, TestMaterialData.of(DefaultMaterial.DIRT));
+        this.buffer.setBlock(3, 70, 5, TestMaterialData.of(DefaultMaterial.AIR));
+
+        assertEquals(50, this.buffer.getSolidHeight(3, 5));
+        assertEquals(60, this.buffer.getLiquidHeight(3, 5));
+        assertEquals(-1, this.buffer.getSolidHeight(5, 3));
+        assertEquals(-1, this.buffer.getLiquidHeight(5, 3));
+    }
+
+    @Test
+    public void testBlocksMatchHeights()
+    {
+        this.buffer.setBlock(3, 50, 5, TestMaterialData.of(DefaultMaterial.DIRT));
+        this.buffer.setBlock(3, 60, 5, TestMaterialData.of(DefaultMaterial.STATIONARY_WATER));
+        this.buffer.setBlock(4, 50, 5, TestMaterialData.of(DefaultMaterial.DIRT));
+
+        assertEquals(TestMaterialData.of(DefaultMaterial.STONE), this.buffer.getBlock(3, 0, 5));
+        assertEquals(TestMaterialData.of(DefaultMaterial.STONE), this.buffer.getBlock(3, 50, 5));
+        assertEquals(TestMaterialData.of(DefaultMaterial.STATIONARY_WATER), this.buffer.getBlock(3, 51, 5));
+        assertEquals(TestMaterialData.of(DefaultMaterial.STATIONARY_WATER), this.buffer.getBlock(3, 60, 5));
+        assertEquals(TestMaterialData.of(DefaultMaterial.AIR), this.buffer.getBlock(3, 61, 5));
+
+        // No liquid in this column
+        assertEquals(TestMaterialData.of(DefaultMaterial.AIR), this.buffer.getBlock(4, 51, 5));
+
+        // Empty column
+        assertEquals(TestMaterialData.of(DefaultMaterial.AIR), this.buffer.getBlock(0, 0, 0));
+    }
+
+    @Test
+    public void testReset()
+    {
+        this.buffer.setBlock(3, 50, 5, TestMaterialData.of(DefaultMaterial.DIRT));
+        this.buffer.reset(ChunkCoordinate.fromChunkCoords(1, 0));
+
+        assertEquals(-1, this.buffer.getSolidHeight(3, 5));
+        assertEquals(TestMaterialData.of(DefaultMaterial.AIR), this.buffer.getBlock(3, 50, 5));
+    }
+}
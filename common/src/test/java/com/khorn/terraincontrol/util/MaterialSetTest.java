@@ -0,0 +1,153 @@
+package com.khorn.terraincontrol.util;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.khorn.terraincontrol.TestEngine;
+import com.khorn.terraincontrol.TestMaterialData;
+import com.khorn.terraincontrol.exception.InvalidConfigException;
+import com.khorn.terraincontrol.util.minecraftTypes.DefaultMaterial;
+import org.junit.Before;
+import org.junit.Test;
+
+public class MaterialSetTest
+{
+
+    @Before
+    public void setUp()
+    {
+        TestEngine.install();
+    }
+
+    @Test
+    public void testWithoutBlockData() throws InvalidConfigException
+    {
+        MaterialSet set = new MaterialSet();
+        set.parseAndAdd("WOOL");
+
+        assertTrue(set.contains(TestMaterialData.of(DefaultMaterial.WOOL)));
+        assertTrue(set.contains(TestMaterialData.of(DefaultMaterial.WOOL, 5)));
+        assertTrue(set.contains(TestMaterialData.of(DefaultMaterial.WOOL, 15)));
+        assertFalse(set.contains(TestMaterialData.of(DefaultMaterial.STONE)));
+        assertFalse(set.contains(null));
+    }
+
+    @Test
+    public void testWithBlockData() throws InvalidConfigException
+    {
+        MaterialSet set = new MaterialSet();
+        set.parseAndAdd("WOOL:5");
+        set.parseAndAdd("STONE:0");
+
+        assertTrue(set.contains(TestMaterialData.of(DefaultMaterial.WOOL, 5)));
+        assertFalse(set.contains(TestMaterialData.of(DefaultMaterial.WOOL)));
+        assertFalse(set.contains(TestMaterialData.of(DefaultMaterial.WOOL, 6)));
+        assertTrue(set.contains(TestMaterialData.of(DefaultMaterial.STONE)));
+        assertFalse(set.contains(TestMaterialData.of(DefaultMaterial.STONE, 1)));
+    }
+
+    @Test
+    public void testWithAndWithoutBlockData()
+    {
+        MaterialSet set = new MaterialSet();
+        set.add(new MaterialSetEntry(TestMaterialData.of(DefaultMaterial.WOOL, 5), true));
+        set.add(new MaterialSetEntry(TestMaterialData.of(DefaultMaterial.WOOL, 5), false));
+
+        assertTrue(set.contains(TestMaterialData.of(DefaultMaterial.WOOL, 5)));
+        assertTrue(set.contains(TestMaterialData.of(DefaultMaterial.WOOL, 6)));
+    }
+
+    @Test
+    public void testAllMaterials() throws InvalidConfigException
+    {
+        MaterialSet set = new MaterialSet();
+        set.parseAndAdd(MaterialSet.ALL_MATERIALS);
+
+        assertTrue(set.contains(TestMaterialData.of(DefaultMaterial.STONE)));
+        assertTrue(set.contains(TestMaterialData.of(DefaultMaterial.STATIONARY_WATER)));
+        assertTrue(set.contains(TestMaterialData.of(DefaultMaterial.WOOL, 3)));
+        // Air is never included
+        assertFalse(set.contains(TestMaterialData.of(DefaultMaterial.AIR)));
+    }
+
+    @Test
+    public void testSolidMaterials() throws InvalidConfigException
+    {
+        MaterialSet set = new MaterialSet();
+        set.parseAndAdd(MaterialSet.SOLID_MATERIALS);
+
+        assertTrue(set.contains(TestMaterialData.of(DefaultMaterial.STONE)));
+        assertFalse(set.contains(TestMaterialData.of(DefaultMaterial.STATIONARY_WATER)));
+        assertFalse(set.contains(TestMaterialData.of(DefaultMaterial.AIR)));
+    }
+
+    @Test
+    public void testNonSolidMaterials() throws InvalidConfigException
+    {
+        MaterialSet set = new MaterialSet();
+        set.parseAndAdd(MaterialSet.NON_SOLID_MATERIALS);
+        set.parseAndAdd("STONE");
+
+        assertTrue(set.contains(TestMaterialData.of(DefaultMaterial.STATIONARY_WATER)));
+        assertTrue(set.contains(TestMaterialData.of(DefaultMaterial.AIR)));
+        assertTrue(set.contains(TestMaterialData.of(DefaultMaterial.STONE)));
+        assertFalse(set.contains(TestMaterialData.of(DefaultMaterial.DIRT)));
+    }
+
+    @Test
+    public void testAddAfterLookup()
+    {
+        MaterialSet set = new MaterialSet();
+        set.add(new MaterialSetEntry(TestMaterialData.of(DefaultMaterial.STONE), false));
+        assertTrue(set.contains(TestMaterialData.of(DefaultMaterial.STONE)));
+        assertFalse(set.contains(TestMaterialData.of(DefaultMaterial.DIRT)));
+
+        // Lower id than the materials already in the set
+        set.add(new MaterialSetEntry(TestMaterialData.of(DefaultMaterial.GRASS), false));
+        assertTrue(set.contains(TestMaterialData.of(DefaultMaterial.GRASS)));
+
+        // Higher hashCode, so the bits must grow
+        set.add(new MaterialSetEntry(TestMaterialData.of(DefaultMaterial.WOOL, 14), true));
+        assertTrue(set.contains(TestMaterialData.of(DefaultMaterial.WOOL, 14)));
+        assertFalse(set.contains(TestMaterialData.of(DefaultMaterial.WOOL, 13)));
+        assertTrue(set.contains(TestMaterialData.of(DefaultMaterial.STONE)));
+    }
+
+    @Test
+    public void testEmpty()
+    {
+        MaterialSet set = new MaterialSet();
+        assertFalse(set.contains(TestMaterialData.of(DefaultMaterial.AIR)));
+        assertFalse(set.contains(TestMaterialData.of(DefaultMaterial.STONE)));
+    }
+
+    @Test
+    public void testRotate() throws InvalidConfigException
+    {
+        MaterialSet set = new MaterialSet();
+        set.parseAndAdd("TORCH:3");
+        set.parseAndAdd("STONE");
+        // Rotate after a lookup, so that the bits of the original set exist
+        assertTrue(set.contains(TestMaterialData.of(DefaultMaterial.TORCH, 3)));
+
+        MaterialSet rotated = set.rotate();
+        assertTrue(rotated.contains(TestMaterialData.of(DefaultMaterial.TORCH, 1)));
+        assertFalse(rotated.contains(TestMaterialData.of(DefaultMaterial.TORCH, 3)));
+        assertTrue(rotated.contains(TestMaterialData.of(DefaultMaterial.STONE, 2)));
+
+        // Original set is unchanged
+        assertTrue(set.contains(TestMaterialData.of(DefaultMaterial.TORCH, 3)));
+        assertFalse(set.contains(TestMaterialData.of(DefaultMaterial.TORCH, 1)));
+    }
+
+    @Test
+    public void testRotateKeywords() throws InvalidConfigException
+    {
+        MaterialSet set = new MaterialSet();
+        set.parseAndAdd(MaterialSet.SOLID_MATERIALS);
+
+        MaterialSet rotated = set.rotate();
+        assertTrue(rotated.contains(TestMaterialData.of(DefaultMaterial.STONE)));
+        assertFalse(rotated.contains(TestMaterialData.of(DefaultMaterial.STATIONARY_WATER)));
+    }
+}
@@ -16,13 +16,33 @@ public final class BukkitMaterialData implements LocalMaterialData
 {
 
     /**
-     * Gets a {@code BukkitMaterialData} of the given id and data.
+     * All possible instances, indexed by {@link #combinedBlockId}. Materials
+     * are requested for almost every block during terrain generation and
+     * population, so they are created only once.
+     */
+    private static final BukkitMaterialData[] INSTANCES = new BukkitMaterialData[TerrainControl.SUPPORTED_BLOCK_IDS * 16];
+
+    static
+    {
+        for (int i = 0; i < INSTANCES.length; i++)
+        {
+            INSTANCES[i] = new BukkitMaterialData(i >> 4, i & 15);
+        }
+    }
+
+    /**
+     * Gets a {@code BukkitMaterialData} of the given id and data. For
+     * valid ids and data, always the same instance is returned.
      * @param id   The block id.
      * @param data The block data.
      * @return The {@code BukkitMateialData} instance.
      */
     public static BukkitMaterialData ofIds(int id, int data)
     {
+        if (id >= 0 && id < TerrainControl.SUPPORTED_BLOCK_IDS && data >= 0 && data < 16)
+        {
+            return INSTANCES[id << 4 | data];
+        }
         return new BukkitMaterialData(id, data);
     }
 
@@ -56,7 +76,7 @@ public final class BukkitMaterialData implements LocalMaterialData
     public static BukkitMaterialData ofMinecraftBlockData(IBlockData blockData)
     {
         Block block = blockData.getBlock();
-        return new BukkitMaterialData(Block.getId(block), block.toLegacyData(blockData));
+        return ofIds(Block.getId(block), block.toLegacyData(blockData));
     }
 
     /**
@@ -11,8 +11,11 @@ import com.khorn.terraincontrol.configuration.*;
 import com.khorn.terraincontrol.configuration.standard.PluginStandardValues;
 import com.khorn.terraincontrol.customobjects.CustomObjectStructureCache;
 import com.khorn.terraincontrol.exception.BiomeNotFoundException;
+import com.khorn.terraincontrol.generator.ChunkHeightMaps;
+import com.khorn.terraincontrol.generator.PopulationBuffer;
 import com.khorn.terraincontrol.generator.SpawnableObject;
 import com.khorn.terraincontrol.generator.biome.BiomeGenerator;
+import com.khorn.terraincontrol.generator.resource.ResourceStats;
 import com.khorn.terraincontrol.logging.LogMarker;
 import com.khorn.terraincontrol.util.ChunkCoordinate;
 import com.khorn.terraincontrol.util.NamedBinaryTag;
@@ -74,7 +77,8 @@ public class BukkitWorld implements LocalWorld
     private WorldGenTaiga1 taigaTree1;
     private WorldGenTaiga2 taigaTree2;
 
-    private Chunk[] chunkCache;
+    // The chunks being populated, null outside population
+    private PopulationBuffer<Chunk> populationBuffer;
 
     public BukkitWorld(String _name)
     {
@@ -184,18 +188,24 @@ public class BukkitWorld implements LocalWorld
     @Override
     public boolean placeDungeon(Random rand, int x, int y, int z)
     {
+        forgetHeightMaps(x - 8, z - 8, x + 8, z + 8);
         return dungeon.generate(world, rand, new BlockPosition(x, y, z));
     }
 
     @Override
     public boolean placeFossil(Random rand, ChunkCoordinate chunkCoord)
     {
+        forgetPopulationHeightMaps(chunkCoord);
         return fossil.generate(world, rand, new BlockPosition(chunkCoord.getBlockX(), 0, chunkCoord.getBlockZ()));
     }
 
     @Override
     public boolean placeTree(TreeType type, Random rand, int x, int y, int z)
     {
+        // Minecraft's tree generators don't use setBlock, and the largest
+        // trees are about 16 blocks wide
+        forgetHeightMaps(x - 16, z - 16, x + 16, z + 16);
+
         BlockPosition blockPos = new BlockPosition(x, y, z);
         switch (type)
         {
@@ -251,21 +261,27 @@ public class BukkitWorld implements LocalWorld
         ChunkCoordIntPair chunkIntPair = new ChunkCoordIntPair(chunkCoord.getChunkX(), chunkCoord.getChunkZ());
         WorldConfig worldConfig = this.settings.getWorldConfig();
         boolean villageGenerated = false;
+        boolean structureGenerated = false;
 
         if (worldConfig.strongholdsEnabled)
-            this.strongholdGen.a(this.world, random, chunkIntPair);
+            structureGenerated |= this.strongholdGen.a(this.world, random, chunkIntPair);
         if (worldConfig.mineshaftsEnabled)
-            this.mineshaftGen.a(this.world, random, chunkIntPair);
+            structureGenerated |= this.mineshaftGen.a(this.world, random, chunkIntPair);
         if (worldConfig.villagesEnabled)
-            villageGenerated = this.villageGen.a(this.world, random, chunkIntPair);
+            structureGenerated |= villageGenerated = this.villageGen.a(this.world, random, chunkIntPair);
         if (worldConfig.rareBuildingsEnabled)
-            this.rareBuildingGen.a(this.world, random, chunkIntPair);
+            structureGenerated |= this.rareBuildingGen.a(this.world, random, chunkIntPair);
         if (worldConfig.netherFortressesEnabled)
-            this.netherFortressGen.a(this.world, random, chunkIntPair);
+            structureGenerated |= this.netherFortressGen.a(this.world, random, chunkIntPair);
         if (worldConfig.oceanMonumentsEnabled)
-            this.oceanMonumentGen.a(this.world, random, chunkIntPair);
+            structureGenerated |= this.oceanMonumentGen.a(this.world, random, chunkIntPair);
         if (worldConfig.mansionsEnabled)
-            this.mansionGen.a(this.world, random, chunkIntPair);
+            structureGenerated |= this.mansionGen.a(this.world, random, chunkIntPair);
+
+        if (structureGenerated)
+        {
+            forgetPopulationHeightMaps(chunkCoord);
+        }
 
         return villageGenerated;
     }
@@ -286,6 +302,9 @@ public class BukkitWorld implements LocalWorld
         for(int i = 0; i < 4; i++) {
             replaceBlocks(cache[i], 0, 0, 16);
         }
+
+        // Blocks were replaced without setBlock
+        forgetPopulationHeightMaps(chunkCoord);
     }
 
     private void replaceBlocks(Chunk rawChunk, int startXInChunk, int startZInChunk, int size)
@@ -336,6 +355,8 @@ public class BukkitWorld implements LocalWorld
     @Override
     public void placePopulationMobs(LocalBiome biome, Random random, ChunkCoordinate chunkCoord)
     {
+        // Mobs look at the light
+        updatePopulationLight();
         SpawnerCreature.a(this.world, ((BukkitBiome) biome).getHandle(), chunkCoord.getChunkX() * 16 + 8, chunkCoord.getChunkZ() * 16 + 8, 16, 16, random);
     }
 
@@ -347,7 +368,7 @@ public class BukkitWorld implements LocalWorld
         int chunkX = x >> 4;
         int chunkZ = z >> 4;
 
-        if (this.chunkCache == null)
+        if (this.populationBuffer == null)
         {
             // Blocks requested outside population step
             // (Tree growing, /tc spawn, etc.)
@@ -355,12 +376,10 @@ public class BukkitWorld implements LocalWorld
         }
 
         // Restrict to chunks we are currently populating
-        Chunk topLeftCachedChunk = this.chunkCache[0];
-        int indexX = (chunkX - topLeftCachedChunk.locX);
-        int indexZ = (chunkZ - topLeftCachedChunk.locZ);
-        if ((indexX == 0 || indexX == 1) && (indexZ == 0 || indexZ == 1))
+        int index = this.populationBuffer.getIndex(x, z);
+        if (index != -1)
         {
-            return this.chunkCache[indexX | (indexZ << 1)];
+            return this.populationBuffer.getChunk(index);
         } else
         {
             // Outside area
@@ -376,10 +395,83 @@ public class BukkitWorld implements LocalWorld
         }
     }
 
+    /**
+     * Gets the height maps for the given column, if it is in one of the
+     * chunks that are being populated.
+     * @param x X in the world.
+     * @param z Z in the world.
+     * @return The height maps, or null if not available.
+     */
+    private ChunkHeightMaps getHeightMaps(int x, int z)
+    {
+        if (this.populationBuffer == null)
+        {
+            return null;
+        }
+        int index = this.populationBuffer.getIndex(x, z);
+        return index == -1 ? null : this.populationBuffer.getHeightMaps(index);
+    }
+
+    /**
+     * Makes the height maps of the given area unknown. Must be called
+     * whenever Minecraft places blocks without {@link #setBlock(int, int,
+     * int, LocalMaterialData)}.
+     * @param minX Lowest x in the world, inclusive.
+     * @param minZ Lowest z in the world, inclusive.
+     * @param maxX Highest x in the world, inclusive.
+     * @param maxZ Highest z in the world, inclusive.
+     */
+    private void forgetHeightMaps(int minX, int minZ, int maxX, int maxZ)
+    {
+        this.generator.getChunkProvider().forgetHeightMaps(minX, minZ, maxX, maxZ);
+        if (this.populationBuffer != null)
+        {
+            this.populationBuffer.forgetColumns(minX, minZ, maxX, maxZ);
+        }
+    }
+
+    /**
+     * Makes the height maps of the chunks that are being populated, and a
+     * chunk around them, unknown.
+     * @param chunkCoord The chunk being populated.
+     */
+    private void forgetPopulationHeightMaps(ChunkCoordinate chunkCoord)
+    {
+        forgetHeightMaps(chunkCoord.getBlockX() - 16, chunkCoord.getBlockZ() - 16,
+                chunkCoord.getBlockX() + 47, chunkCoord.getBlockZ() + 47);
+    }
+
+    /**
+     * Makes the height maps of a single chunk unknown. Must be called when
+     * the chunk is unloaded, or when its blocks are changed outside
+     * population, for example by a player.
+     * @param chunkX X of the chunk.
+     * @param chunkZ Z of the chunk.
+     */
+    public void forgetChunkHeightMaps(int chunkX, int chunkZ)
+    {
+        if (this.generator != null)
+        {
+            this.generator.getChunkProvider().forgetHeightMaps(chunkX, chunkZ);
+        }
+    }
+
     @Override
     public int getLiquidHeight(int x, int z)
     {
-        for (int y = getHighestBlockYAt(x, z) - 1; y > 0; y--)
+        int highestBlockY = getHighestBlockYAt(x, z);
+
+        ChunkHeightMaps heightMaps = getHeightMaps(x, z);
+        if (heightMaps != null)
+        {
+            int liquidHeight = heightMaps.getLiquidHeight(x, z, highestBlockY - 1);
+            if (liquidHeight != ChunkHeightMaps.UNKNOWN)
+            {
+                return liquidHeight;
+            }
+        }
+
+        for (int y = highestBlockY - 1; y > 0; y--)
         {
             LocalMaterialData material = getMaterial(x, y, z);
             if (material.isLiquid())
@@ -388,24 +480,55 @@ public class BukkitWorld implements LocalWorld
             } else if (material.isSolid())
             {
                 // Failed to find a liquid
+                if (heightMaps != null)
+                {
+                    heightMaps.columnScanned(x, z, highestBlockY - 1, y, -1);
+                }
                 return -1;
             }
         }
+        if (heightMaps != null)
+        {
+            heightMaps.columnScanned(x, z, highestBlockY - 1, -1, -1);
+        }
         return -1;
     }
 
     @Override
     public int getSolidHeight(int x, int z)
     {
-        for (int y = getHighestBlockYAt(x, z) - 1; y > 0; y--)
+        int highestBlockY = getHighestBlockYAt(x, z);
+
+        ChunkHeightMaps heightMaps = getHeightMaps(x, z);
+        if (heightMaps != null)
+        {
+            int solidHeight = heightMaps.getSolidHeight(x, z, highestBlockY - 1);
+            if (solidHeight != ChunkHeightMaps.UNKNOWN)
+            {
+                return solidHeight;
+            }
+        }
+
+        int liquidY = -1;
+        int solidY = -1;
+        for (int y = highestBlockY - 1; y > 0; y--)
         {
             LocalMaterialData material = getMaterial(x, y, z);
             if (material.isSolid())
             {
-                return y + 1;
+                solidY = y;
+                break;
+            }
+            if (liquidY == -1 && material.isLiquid())
+            {
+                liquidY = y;
             }
         }
-        return -1;
+        if (heightMaps != null)
+        {
+            heightMaps.columnScanned(x, z, highestBlockY - 1, solidY, liquidY);
+        }
+        return solidY == -1 ? -1 : solidY + 1;
     }
 
     @Override
@@ -471,9 +594,16 @@ public class BukkitWorld implements LocalWorld
                 return;
             }
 
+            ResourceStats.blockPlaced();
+            int index = this.populationBuffer == null ? -1 : this.populationBuffer.getIndex(x, z);
+
             if (blockData.c() != oldBlockData.c() || blockData.d() != oldBlockData.d())
             {
-                if (isSafeForLightUpdates(chunk, x, z))
+                if (index != -1)
+                {
+                    // Relit in one go, see updatePopulationLight
+                    this.populationBuffer.lightChanged(index, x, y, z);
+                } else if (isSafeForLightUpdates(chunk, x, z))
                 {
                     // Relight
                     world.methodProfiler.a("checkLight");
@@ -482,12 +612,21 @@ public class BukkitWorld implements LocalWorld
                 }
             }
 
-            // Notify world: (2 | 16) == update client, don't update observers
-            world.notifyAndUpdatePhysics(blockPos, chunk, oldBlockData, blockData, 2 | 16);
+            if (index != -1)
+            {
+                // Clients are updated in endPopulation
+                this.populationBuffer.blockChanged(index, x, y, z);
+            } else
+            {
+                blockChangedInHeightMaps(x, y, z);
+
+                // Notify world: (2 | 16) == update client, don't update observers
+                world.notifyAndUpdatePhysics(blockPos, chunk, oldBlockData, blockData, 2 | 16);
+            }
         } catch (Throwable t)
         {
-            String populatingChunkInfo = this.chunkCache == null? "(no chunk)" :
-                    this.chunkCache[0].locX + "," + this.chunkCache[0].locZ;
+            String populatingChunkInfo = this.populationBuffer == null? "(no chunk)" :
+                    this.populationBuffer.getChunk(0).locX + "," + this.populationBuffer.getChunk(0).locZ;
             // Add location info to error
             RuntimeException runtimeException = new RuntimeException("Error setting "
                     + material + " block at " + x + "," + y + "," + z
@@ -497,6 +636,22 @@ public class BukkitWorld implements LocalWorld
         }
     }
 
+    /**
+     * Updates the height maps after a block outside the chunks being
+     * populated was placed.
+     * @param x X in the world.
+     * @param y Y in the world.
+     * @param z Z in the world.
+     */
+    private void blockChangedInHeightMaps(int x, int y, int z)
+    {
+        ChunkHeightMaps heightMaps = this.generator.getChunkProvider().getHeightMaps(x >> 4, z >> 4);
+        if (heightMaps != null)
+        {
+            heightMaps.blockChanged(x, y, z);
+        }
+    }
+
     /**
      * When a light update hits an unloaded chunk, Minecraft unfortunately
      * attempts to generate this chunk. When this happens, two chunks will be
@@ -530,6 +685,16 @@ public class BukkitWorld implements LocalWorld
             return -1;
         }
 
+        ChunkHeightMaps heightMaps = getHeightMaps(x, z);
+        if (heightMaps != null)
+        {
+            int highestBlockY = heightMaps.getHighestBlockY(x, z);
+            if (highestBlockY != ChunkHeightMaps.UNKNOWN)
+            {
+                return highestBlockY;
+            }
+        }
+
         int y = chunk.b(x & 0xf, z & 0xf);
 
         // Fix for incorrect light map
@@ -545,13 +710,17 @@ public class BukkitWorld implements LocalWorld
             world.w(new BlockPosition(x, y, z)); // world.relight
         }
 
+        if (heightMaps != null)
+        {
+            heightMaps.setHighestBlockY(x, z, y);
+        }
         return y;
     }
 
     @Override
     public void startPopulation(ChunkCoordinate chunkCoord)
     {
-        if (this.chunkCache != null && settings.getWorldConfig().populationBoundsCheck)
+        if (this.populationBuffer != null && settings.getWorldConfig().populationBoundsCheck)
         {
             throw new IllegalStateException("Chunk is already being populated."
                     + " This may be a bug in " + PluginStandardValues.PLUGIN_NAME + ", but it may also be"
@@ -560,27 +729,32 @@ public class BukkitWorld implements LocalWorld
                     + " disable this error.");
         }
 
+        // Another chunk is still being populated: finish its buffered
+        // updates now, that population continues unbuffered
+        flushPopulationBuffer();
+
         // Initialize cache
-        this.chunkCache = loadFourChunks(chunkCoord);
+        this.populationBuffer = new PopulationBuffer<Chunk>(chunkCoord, loadFourChunks(chunkCoord),
+                this.generator.getChunkProvider());
     }
 
     private Chunk[] getChunkCache(ChunkCoordinate topLeft)
     {
-        if (this.chunkCache == null || !topLeft.coordsMatch(this.chunkCache[0].locX, this.chunkCache[0].locZ))
+        if (this.populationBuffer == null || !this.populationBuffer.isFor(topLeft))
         {
             // Cache is invalid, most likely because two chunks are being populated at once
             if (this.settings.getWorldConfig().populationBoundsCheck)
             {
                 // ... but this can never happen, as startPopulation() checks for this if populationBoundsCheck is set
                 // to true. So we must have a bug.
-                throw new IllegalStateException("chunkCache is null! You've got a bug!");
+                throw new IllegalStateException("populationBuffer is null! You've got a bug!");
             } else
             {
                 // Use a temporary cache, best we can do
                 return this.loadFourChunks(topLeft);
             }
         }
-        return this.chunkCache;
+        return this.populationBuffer.getChunks();
     }
 
     private Chunk[] loadFourChunks(ChunkCoordinate topLeft)
@@ -602,7 +776,7 @@ public class BukkitWorld implements LocalWorld
     @Override
     public void endPopulation()
     {
-        if (this.chunkCache == null && settings.getWorldConfig().populationBoundsCheck)
+        if (this.populationBuffer == null && settings.getWorldConfig().populationBoundsCheck)
         {
             throw new IllegalStateException("Chunk is not being populated."
                     + " This may be a bug in Terrain Control, but it may also be"
@@ -610,12 +784,99 @@ public class BukkitWorld implements LocalWorld
                     + " PopulationBoundsCheck to false in the WorldConfig to"
                     + " disable this error.");
         }
-        this.chunkCache = null;
+
+        flushPopulationBuffer();
+    }
+
+    /**
+     * Relights the blocks and sends the chunk sections that were changed
+     * during population, and stops buffering these updates. Does nothing
+     * outside population.
+     */
+    private void flushPopulationBuffer()
+    {
+        if (this.populationBuffer == null)
+        {
+            return;
+        }
+
+        updatePopulationLight();
+        for (int index = 0; index < 4; index++)
+        {
+            Chunk chunk = this.populationBuffer.getChunk(index);
+            sendChangedSections(chunk, this.populationBuffer.getChangedSections(index));
+        }
+        this.populationBuffer = null;
+    }
+
+    /**
+     * Updates the light of all blocks placed during population of which the
+     * light update was postponed. Does nothing outside population.
+     */
+    private void updatePopulationLight()
+    {
+        final PopulationBuffer<Chunk> populationBuffer = this.populationBuffer;
+        if (populationBuffer == null)
+        {
+            return;
+        }
+
+        final boolean hasSkyLight = world.worldProvider.m(); // worldProvider.hasSkyLight
+
+        world.methodProfiler.a("checkLight");
+        populationBuffer.updateLight(new PopulationBuffer.LightUpdater()
+        {
+            @Override
+            public void updateSkyLight(int x, int y, int z)
+            {
+                if (hasSkyLight)
+                {
+                    updateLight(EnumSkyBlock.SKY, x, y, z);
+                }
+            }
+
+            @Override
+            public void updateBlockLight(int x, int y, int z)
+            {
+                updateLight(EnumSkyBlock.BLOCK, x, y, z);
+            }
+
+            private void updateLight(EnumSkyBlock lightType, int x, int y, int z)
+            {
+                Chunk chunk = populationBuffer.getChunk(populationBuffer.getIndex(x, z));
+                if (isSafeForLightUpdates(chunk, x, z))
+                {
+                    world.c(lightType, new BlockPosition(x, y, z)); // world.checkLightFor
+                }
+            }
+        });
+        world.methodProfiler.b();
+    }
+
+    /**
+     * Sends the given sections of a chunk to the players that can see the
+     * chunk. Does nothing if the chunk was not sent to the players yet, they
+     * will get the whole chunk later.
+     * @param chunk    The chunk.
+     * @param sections Bit mask of the sections, bit n is section n.
+     */
+    private void sendChangedSections(Chunk chunk, int sections)
+    {
+        if (sections == 0)
+        {
+            return;
+        }
+        PlayerChunk playerChunk = this.world.getPlayerChunkMap().getChunk(chunk.locX, chunk.locZ);
+        if (playerChunk != null && playerChunk.e()) // playerChunk.isSentToPlayers()
+        {
+            playerChunk.a(new PacketPlayOutMapChunk(chunk, sections)); // playerChunk.sendPacket
+        }
     }
 
     @Override
     public int getLightLevel(int x, int y, int z)
     {
+        updatePopulationLight();
         return world.j(new BlockPosition(x, y, z)); // world.getBlockAndSkyLightAsItWereDay
     }
 
@@ -812,6 +1073,11 @@ public class BukkitWorld implements LocalWorld
     {
         // Restore vanilla chunk generator
         this.injectInternalChunkGenerator(new CustomChunkGenerator(world, getSeed(), generator));
+
+        if (this.biomeGenerator != null)
+        {
+            this.biomeGenerator.clearCache();
+        }
     }
 
     public void setChunkGenerator(TXChunkGenerator _generator)
@@ -7,6 +7,7 @@ public enum TCPerm
     CMD_HELP("cmd.help"),
     CMD_LIST("cmd.list"),
     CMD_MAP("cmd.map"),
+    CMD_PROFILE("cmd.profile"),
     CMD_RELOAD("cmd.reload"),
     CMD_SPAWN("cmd.spawn");
 
@@ -1,8 +1,13 @@
 package com.khorn.terraincontrol.bukkit.commands;
 
+import com.khorn.terraincontrol.LocalWorld;
 import com.khorn.terraincontrol.bukkit.TCPerm;
 import com.khorn.terraincontrol.bukkit.TXPlugin;
+import com.khorn.terraincontrol.bukkit.commands.runnable.MapTileWriter;
 import com.khorn.terraincontrol.bukkit.commands.runnable.MapWriter;
+import com.khorn.terraincontrol.bukkit.util.WorldHelper;
+import com.khorn.terraincontrol.map.BiomeMapRenderer;
+import com.khorn.terraincontrol.map.BiomeMapRenderer.Angle;
 import org.bukkit.Bukkit;
 import org.bukkit.command.CommandSender;
 import org.bukkit.command.ConsoleCommandSender;
@@ -18,7 +23,7 @@ public class MapCommand extends BaseCommand
         super(_plugin);
         name = "map";
         perm = TCPerm.CMD_MAP.node;
-        usage = "map [World] [-s size] [-r rotate_angle] [-o offsetX offsetZ] [-l (add coordinate label to filename)]";
+        usage = "map [World] [-s size] [-r rotate_angle] [-o offsetX offsetZ] [-l (add coordinate label to filename)] [-t zoom_levels (export web map tiles)] [-p stride (biome preview, one pixel per stride blocks)]";
         workOnConsole = true;
     }
 
@@ -29,8 +34,10 @@ public class MapCommand extends BaseCommand
         int size = 200;
         int offsetX = 0;
         int offsetZ = 0;
-        MapWriter.Angle angle = MapWriter.Angle.d0;
+        Angle angle = Angle.d0;
         String label = "";
+        int zoomLevels = -1;
+        int previewStride = 0;
 
         if (!args.isEmpty() && !args.get(0).startsWith("-"))
         {
@@ -84,13 +91,13 @@ public class MapCommand extends BaseCommand
                         switch (degrees)
                         {
                             case 90:
-                                angle = MapWriter.Angle.d90;
+                                angle = Angle.d90;
                                 break;
                             case 180:
-                                angle = MapWriter.Angle.d180;
+                                angle = Angle.d180;
                                 break;
                             case 270:
-                                angle = MapWriter.Angle.d270;
+                                angle = Angle.d270;
                                 break;
                         }
                     } else
@@ -106,12 +113,57 @@ public class MapCommand extends BaseCommand
             {
                 label = "[" + offsetX + "_" + offsetZ + "]";
             }
+            if (args.get(i).equals("-t"))
+            {
+                try
+                {
+                    zoomLevels = Integer.parseInt(args.get(i + 1));
+                } catch (Exception e)
+                {
+                    sender.sendMessage(ERROR_COLOR + "Wrong zoom levels " + args.get(i + 1));
+                }
+            }
+            if (args.get(i).equals("-p"))
+            {
+                try
+                {
+                    previewStride = Integer.parseInt(args.get(i + 1));
+                } catch (Exception e)
+                {
+                    sender.sendMessage(ERROR_COLOR + "Wrong stride " + args.get(i + 1));
+                }
+            }
         }
 
+        if (zoomLevels >= 0)
+        {
+            LocalWorld localWorld = WorldHelper.toLocalWorld(world);
+            if (localWorld == null || !BiomeMapRenderer.canRender(localWorld))
+            {
+                sender.sendMessage(ERROR_COLOR + "Map tiles can only be exported for Terrain Control worlds without BiomeMode: Default");
+                return true;
+            }
+            MapTileWriter tileWriter = new MapTileWriter(this.plugin, localWorld, size, zoomLevels, sender, offsetX, offsetZ);
+            this.plugin.getServer().getScheduler().runTaskAsynchronously(this.plugin, tileWriter);
+            return true;
+        }
 
-        MapWriter map = new MapWriter(world.getHandle(), size, angle, sender, offsetX, offsetZ, label);
 
-        this.plugin.getServer().getScheduler().runTask(this.plugin, map);
+        if (previewStride > 0 && !MapWriter.canRenderAsync(world.getHandle()))
+        {
+            sender.sendMessage(ERROR_COLOR + "Biome previews can only be rendered for Terrain Control worlds without BiomeMode: Default");
+            return true;
+        }
+
+        MapWriter map = new MapWriter(this.plugin, world.getHandle(), size, angle, sender, offsetX, offsetZ, label, previewStride);
+
+        if (MapWriter.canRenderAsync(world.getHandle()))
+        {
+            this.plugin.getServer().getScheduler().runTaskAsynchronously(this.plugin, map);
+        } else
+        {
+            this.plugin.getServer().getScheduler().runTask(this.plugin, map);
+        }
 
         return true;
     }
@@ -0,0 +1,67 @@
+package com.khorn.terraincontrol.bukkit.commands;
+
+import com.khorn.terraincontrol.LocalWorld;
+import com.khorn.terraincontrol.TerrainControl;
+import com.khorn.terraincontrol.bukkit.TCPerm;
+import com.khorn.terraincontrol.bukkit.TXPlugin;
+import com.khorn.terraincontrol.generator.resource.ResourceReport;
+import com.khorn.terraincontrol.logging.LogMarker;
+import org.bukkit.command.CommandSender;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+public class ProfileCommand extends BaseCommand
+{
+    public ProfileCommand(TXPlugin _plugin)
+    {
+        super(_plugin);
+        name = "profile";
+        perm = TCPerm.CMD_PROFILE.node;
+        usage = "profile <csv|json|reset> [World]";
+        workOnConsole = true;
+    }
+
+    @Override
+    public boolean onCommand(CommandSender sender, List<String> args)
+    {
+        if (args.isEmpty())
+        {
+            sender.sendMessage(ERROR_COLOR + "Usage: /tc " + usage);
+            return true;
+        }
+
+        LocalWorld world = this.getWorld(sender, args.size() > 1 ? args.get(1) : "");
+        if (world == null)
+        {
+            sender.sendMessage(ERROR_COLOR + "World not found. Either you are not in a world with Terrain Control, or you are the console.");
+            return true;
+        }
+
+        if (args.get(0).equalsIgnoreCase("reset"))
+        {
+            ResourceReport.reset(world);
+            sender.sendMessage(MESSAGE_COLOR + "Resource statistics of world '" + world.getName() + "' reset");
+            return true;
+        }
+
+        ResourceReport.Format format = ResourceReport.Format.fromName(args.get(0));
+        if (format == null)
+        {
+            sender.sendMessage(ERROR_COLOR + "Unknown format " + args.get(0) + ", use csv or json");
+            return true;
+        }
+
+        try
+        {
+            File file = ResourceReport.write(world, format);
+            sender.sendMessage(MESSAGE_COLOR + "Resource report written to " + VALUE_COLOR + file.getPath());
+        } catch (IOException e)
+        {
+            sender.sendMessage(ERROR_COLOR + "Could not write the resource report: " + e.getMessage());
+            TerrainControl.printStackTrace(LogMarker.WARN, e);
+        }
+        return true;
+    }
+}
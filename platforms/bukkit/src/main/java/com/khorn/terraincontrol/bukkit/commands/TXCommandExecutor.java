@@ -53,6 +53,7 @@ public class TXCommandExecutor implements CommandExecutor
         this.AddCommand(new BiomeCommand(plugin));
         this.AddCommand(new SpawnCommand(plugin));
         this.AddCommand(new MapCommand(plugin));
+        this.AddCommand(new ProfileCommand(plugin));
         this.AddCommand(this.helpCommand);
     }
 
@@ -0,0 +1,39 @@
+package com.khorn.terraincontrol.bukkit.commands.runnable;
+
+import org.bukkit.Bukkit;
+import org.bukkit.command.CommandSender;
+import org.bukkit.plugin.Plugin;
+
+/**
+ * Sends messages to a command sender from any thread. Command senders may
+ * only be used on the main thread, so messages from other threads are
+ * handed to the scheduler, which delivers them in order.
+ */
+class MainThreadSender
+{
+    private final Plugin plugin;
+    private final CommandSender sender;
+
+    MainThreadSender(Plugin plugin, CommandSender sender)
+    {
+        this.plugin = plugin;
+        this.sender = sender;
+    }
+
+    void sendMessage(final String message)
+    {
+        if (Bukkit.isPrimaryThread())
+        {
+            sender.sendMessage(message);
+            return;
+        }
+        Bukkit.getScheduler().runTask(plugin, new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                sender.sendMessage(message);
+            }
+        });
+    }
+}
@@ -0,0 +1,77 @@
+package com.khorn.terraincontrol.bukkit.commands.runnable;
+
+import com.khorn.terraincontrol.LocalWorld;
+import com.khorn.terraincontrol.TerrainControl;
+import com.khorn.terraincontrol.bukkit.commands.BaseCommand;
+import com.khorn.terraincontrol.logging.LogMarker;
+import com.khorn.terraincontrol.map.BiomeMapRenderer;
+import com.khorn.terraincontrol.map.MapTileExporter;
+import org.bukkit.command.CommandSender;
+import org.bukkit.plugin.Plugin;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Exports the biome, temperature and height tiles of a world for use in a
+ * web map. Meant to be run asynchronously; messages to the sender are
+ * delivered on the main thread.
+ */
+public class MapTileWriter implements Runnable
+{
+    private final LocalWorld world;
+    private final int size;
+    private final int zoomLevels;
+    private final MainThreadSender sender;
+    private final int offsetX;
+    private final int offsetZ;
+
+    public MapTileWriter(Plugin plugin, LocalWorld world, int size, int zoomLevels, CommandSender sender, int offsetX, int offsetZ)
+    {
+        this.world = world;
+        this.size = size;
+        this.zoomLevels = zoomLevels;
+        this.sender = new MainThreadSender(plugin, sender);
+        this.offsetX = offsetX;
+        this.offsetZ = offsetZ;
+    }
+
+    @Override
+    public void run()
+    {
+        File outputDir = new File(world.getName() + "_tiles");
+        sender.sendMessage(BaseCommand.MESSAGE_COLOR + "Exporting map tiles to " + outputDir + "...");
+
+        int minX = offsetX - (size / 2) * 16;
+        int minZ = offsetZ - (size / 2) * 16;
+        try
+        {
+            int renderedTiles = new MapTileExporter(world, outputDir).export(minX, minZ, minX + size * 16 - 1, minZ + size * 16 - 1,
+                    zoomLevels, Runtime.getRuntime().availableProcessors(), new BiomeMapRenderer.ProgressListener()
+                    {
+                        private long lastMessageTime = System.currentTimeMillis();
+
+                        @Override
+                        public void onProgress(int finishedTiles, int totalTiles)
+                        {
+                            long time = System.currentTimeMillis();
+                            if (time > lastMessageTime + 2000L || time < lastMessageTime)
+                            {
+                                sender.sendMessage(BaseCommand.MESSAGE_COLOR + (finishedTiles * 100 / totalTiles) + "%");
+                                lastMessageTime = time;
+                            }
+                        }
+                    });
+            sender.sendMessage(BaseCommand.MESSAGE_COLOR + "Done, " + renderedTiles + " tiles were updated");
+        } catch (InterruptedException e)
+        {
+            sender.sendMessage(BaseCommand.ERROR_COLOR + "Map export was interrupted");
+            Thread.currentThread().interrupt();
+        } catch (IOException e)
+        {
+            sender.sendMessage(BaseCommand.ERROR_COLOR + "Exception while writing tiles: " + e.getLocalizedMessage());
+            TerrainControl.log(LogMarker.ERROR, "Failed to write map tiles.");
+            TerrainControl.printStackTrace(LogMarker.ERROR, e);
+        }
+    }
+}
@@ -7,9 +7,12 @@ import com.khorn.terraincontrol.bukkit.commands.BaseCommand;
 import com.khorn.terraincontrol.bukkit.util.WorldHelper;
 import com.khorn.terraincontrol.configuration.BiomeConfig;
 import com.khorn.terraincontrol.logging.LogMarker;
+import com.khorn.terraincontrol.map.BiomeMapRenderer;
+import com.khorn.terraincontrol.map.BiomeMapRenderer.Angle;
 import net.minecraft.server.v1_12_R1.BiomeBase;
 import net.minecraft.server.v1_12_R1.World;
 import org.bukkit.command.CommandSender;
+import org.bukkit.plugin.Plugin;
 
 import java.awt.Color;
 import java.awt.image.BufferedImage;
@@ -23,33 +26,56 @@ public class MapWriter implements Runnable
     public static final int[] defaultColors = {0x3333FF, 0x999900, 0xFFCC33, 0x333300, 0x00FF00, 0x007700, 0x99cc66, 0x00CCCC, 0, 0,
             0xFFFFFF, 0x66FFFF, 0xCCCCCC, 0xCC9966, 0xFF33cc, 0xff9999, 0xFFFF00, 0x996600, 0x009900, 0x003300, 0x666600};
 
-    public static boolean isWorking = false;
-
     private World world;
     private int size;
-    private CommandSender sender;
+    private MainThreadSender sender;
     private Angle angle;
     private int offsetX;
     private int offsetZ;
     private String label;
+    private int previewStride;
 
-    public enum Angle
+    public MapWriter(Plugin _plugin, World _world, int _size, Angle _angle, CommandSender _sender, int _offsetX, int _offsetZ,
+            String _label)
     {
-        d0,
-        d90,
-        d180,
-        d270
+        this(_plugin, _world, _size, _angle, _sender, _offsetX, _offsetZ, _label, 0);
     }
 
-    public MapWriter(World _world, int _size, Angle _angle, CommandSender _sender, int _offsetX, int _offsetZ, String _label)
+    /**
+     * Creates a new map writer.
+     *
+     * @param _plugin Plugin used to send messages to the sender on the main
+     *            thread.
+     * @param _previewStride When larger than zero, only a preview of the
+     *            biome layout is rendered, with one pixel for every so many
+     *            blocks. Only supported when {@link #canRenderAsync(World)}
+     *            returns true.
+     */
+    public MapWriter(Plugin _plugin, World _world, int _size, Angle _angle, CommandSender _sender, int _offsetX, int _offsetZ,
+            String _label, int _previewStride)
     {
         this.world = _world;
         this.size = _size;
-        this.sender = _sender;
+        this.sender = new MainThreadSender(_plugin, _sender);
         this.angle = _angle;
         this.offsetX = _offsetX;
         this.offsetZ = _offsetZ;
         this.label = _label;
+        this.previewStride = _previewStride;
+    }
+
+    /**
+     * Gets whether the map of the given world can be rendered off the main
+     * thread. This is the case for worlds managed by Terrain Control that
+     * don't use the vanilla biome generator.
+     *
+     * @param world The world.
+     * @return True if the map can be rendered asynchronously.
+     */
+    public static boolean canRenderAsync(World world)
+    {
+        LocalWorld localWorld = WorldHelper.toLocalWorld(world);
+        return localWorld != null && BiomeMapRenderer.canRender(localWorld);
     }
 
     /**
@@ -89,16 +115,20 @@ public class MapWriter implements Runnable
     @Override
     public void run()
     {
-        if (MapWriter.isWorking)
+        LocalWorld localWorld = WorldHelper.toLocalWorld(world);
+        if (localWorld != null && BiomeMapRenderer.canRender(localWorld))
         {
-            sender.sendMessage(BaseCommand.ERROR_COLOR + "Another instance of map writer is running");
+            if (previewStride > 0)
+            {
+                renderPreview(localWorld);
+                return;
+            }
+            renderUsingBiomeGenerator(localWorld);
             return;
         }
 
-        MapWriter.isWorking = true;
         int height = size;
         int width = size;
-        LocalWorld localWorld = WorldHelper.toLocalWorld(world);
 
         int[] colors = this.getColors(world);
 
@@ -181,20 +211,116 @@ public class MapWriter implements Runnable
         try
         {
             // Write biome colors
-            ImageIO.write(biomeImage, "png", new File(label + world.worldData.getName() + "_biome.png"));
+            ImageIO.write(biomeImage, "png", getBiomeFile());
 
             // Write temperatures
-            ImageIO.write(temperatureImage, "png", new File(label + world.worldData.getName() + "_temperature.png"));
+            ImageIO.write(temperatureImage, "png", getTemperatureFile());
 
             sender.sendMessage(BaseCommand.MESSAGE_COLOR + "Done");
         } catch (IOException e)
         {
-            sender.sendMessage(BaseCommand.ERROR_COLOR + "Exception while writing images: " + e.getLocalizedMessage());
-            TerrainControl.log(LogMarker.ERROR, "Failed to write image.");
-            TerrainControl.printStackTrace(LogMarker.ERROR, e);
+            onWriteFailed(e);
         }
+    }
+
+    /**
+     * Renders the map using the Terrain Control biome generator, in parallel
+     * and without involving the Minecraft world. Safe to call off the main
+     * thread.
+     *
+     * @param localWorld The world to render.
+     */
+    private void renderUsingBiomeGenerator(LocalWorld localWorld)
+    {
+        sender.sendMessage(BaseCommand.MESSAGE_COLOR + "Generating map...");
+
+        int startX = offsetX - (size / 2) * 16;
+        int startZ = offsetZ - (size / 2) * 16;
+        BiomeMapRenderer.RenderedMap map;
+        try
+        {
+            map = new BiomeMapRenderer(localWorld).render(startX, startZ, size * 16, size * 16, angle,
+                    Runtime.getRuntime().availableProcessors(), new BiomeMapRenderer.ProgressListener()
+                    {
+                        private long lastMessageTime = System.currentTimeMillis();
+
+                        @Override
+                        public void onProgress(int finishedTiles, int totalTiles)
+                        {
+                            long time = System.currentTimeMillis();
+                            if (time > lastMessageTime + 2000L || time < lastMessageTime)
+                            {
+                                sender.sendMessage(BaseCommand.MESSAGE_COLOR + (finishedTiles * 100 / totalTiles) + "%");
+                                lastMessageTime = time;
+                            }
+                        }
+                    });
+        } catch (InterruptedException e)
+        {
+            sender.sendMessage(BaseCommand.ERROR_COLOR + "Map generation was interrupted");
+            Thread.currentThread().interrupt();
+            return;
+        }
+
+        sender.sendMessage(BaseCommand.MESSAGE_COLOR + "Writing images...");
 
-        MapWriter.isWorking = false;
+        try
+        {
+            map.biomes.writePng(getBiomeFile());
+            map.temperatures.writePng(getTemperatureFile());
+
+            sender.sendMessage(BaseCommand.MESSAGE_COLOR + "Done");
+        } catch (IOException e)
+        {
+            onWriteFailed(e);
+        }
+    }
+
+    /**
+     * Renders a preview of the biome layout, sampling the biome generator
+     * every {@link #previewStride} blocks. Safe to call off the main thread.
+     *
+     * @param localWorld The world to render.
+     */
+    private void renderPreview(LocalWorld localWorld)
+    {
+        sender.sendMessage(BaseCommand.MESSAGE_COLOR + "Generating preview...");
+
+        int startX = offsetX - (size / 2) * 16;
+        int startZ = offsetZ - (size / 2) * 16;
+        long startTime = System.currentTimeMillis();
+        BiomeMapRenderer.RenderedMap map = new BiomeMapRenderer(localWorld).renderPreview(startX, startZ, size * 16, size * 16,
+                previewStride, angle);
+        sender.sendMessage(BaseCommand.MESSAGE_COLOR + "Sampled " + map.biomes.getWidth() + "x" + map.biomes.getHeight()
+                + " biomes in " + (System.currentTimeMillis() - startTime) + " ms, writing images...");
+
+        try
+        {
+            map.biomes.writePng(getBiomeFile());
+            map.temperatures.writePng(getTemperatureFile());
+
+            sender.sendMessage(BaseCommand.MESSAGE_COLOR + "Done");
+        } catch (IOException e)
+        {
+            onWriteFailed(e);
+        }
+    }
+
+    private File getBiomeFile()
+    {
+        return new File(label + world.worldData.getName() + "_biome.png");
+    }
+
+    private File getTemperatureFile()
+    {
+        return new File(label + world.worldData.getName() + "_temperature.png");
+    }
+
+    private void onWriteFailed(IOException e)
+    {
+        sender.sendMessage(BaseCommand.ERROR_COLOR + "Exception while writing images: " + e.getLocalizedMessage());
+        TerrainControl.log(LogMarker.ERROR, "Failed to write image.");
+        TerrainControl.printStackTrace(LogMarker.ERROR, e);
     }
 
     /**
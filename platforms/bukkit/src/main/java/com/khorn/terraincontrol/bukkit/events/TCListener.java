@@ -1,14 +1,23 @@
 package com.khorn.terraincontrol.bukkit.events;
 
+import com.khorn.terraincontrol.LocalWorld;
+import com.khorn.terraincontrol.bukkit.BukkitWorld;
 import com.khorn.terraincontrol.bukkit.TXPlugin;
+import com.khorn.terraincontrol.bukkit.util.WorldHelper;
 import com.khorn.terraincontrol.configuration.standard.PluginStandardValues;
 import org.bukkit.Bukkit;
+import org.bukkit.Chunk;
+import org.bukkit.World;
+import org.bukkit.block.Block;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
+import org.bukkit.event.block.BlockBreakEvent;
+import org.bukkit.event.block.BlockPlaceEvent;
 import org.bukkit.event.player.PlayerChangedWorldEvent;
 import org.bukkit.event.player.PlayerRegisterChannelEvent;
+import org.bukkit.event.world.ChunkUnloadEvent;
 import org.bukkit.event.world.StructureGrowEvent;
 import org.bukkit.event.world.WorldInitEvent;
 import org.bukkit.event.world.WorldUnloadEvent;
@@ -45,6 +54,43 @@ public class TCListener implements Listener
         saplingListener.onStructureGrow(event);
     }
 
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onChunkUnload(ChunkUnloadEvent event)
+    {
+        Chunk chunk = event.getChunk();
+        forgetHeightMaps(chunk.getWorld(), chunk.getX(), chunk.getZ());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockPlace(BlockPlaceEvent event)
+    {
+        Block block = event.getBlock();
+        forgetHeightMaps(block.getWorld(), block.getX() >> 4, block.getZ() >> 4);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockBreak(BlockBreakEvent event)
+    {
+        Block block = event.getBlock();
+        forgetHeightMaps(block.getWorld(), block.getX() >> 4, block.getZ() >> 4);
+    }
+
+    /**
+     * Makes the height maps of a chunk unknown, as its blocks were changed
+     * outside population.
+     * @param world  The world of the chunk.
+     * @param chunkX X of the chunk.
+     * @param chunkZ Z of the chunk.
+     */
+    private void forgetHeightMaps(World world, int chunkX, int chunkZ)
+    {
+        LocalWorld localWorld = WorldHelper.toLocalWorld(world);
+        if (localWorld instanceof BukkitWorld)
+        {
+            ((BukkitWorld) localWorld).forgetChunkHeightMaps(chunkX, chunkZ);
+        }
+    }
+
 
     @EventHandler
     public void onPlayerRegisterChannel(PlayerRegisterChannelEvent event)
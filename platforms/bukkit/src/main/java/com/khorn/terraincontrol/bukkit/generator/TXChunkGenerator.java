@@ -60,6 +60,16 @@ public class TXChunkGenerator extends ChunkGenerator
             this.NotGenerate = true;
     }
 
+    /**
+     * Gets the Terrain Control chunk generator.
+     * @return The chunk generator, or null if the world is not initialized
+     *         yet.
+     */
+    public ChunkProviderTC getChunkProvider()
+    {
+        return this.chunkProviderTC;
+    }
+
     @Override
     public List<BlockPopulator> getDefaultPopulators(World world)
     {
@@ -9,6 +9,11 @@ import net.minecraft.block.Block;
 import net.minecraft.block.BlockFalling;
 import net.minecraft.block.material.Material;
 import net.minecraft.block.state.IBlockState;
+import net.minecraftforge.common.property.IExtendedBlockState;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /**
  * Implementation of LocalMaterial that wraps one of Minecraft's Blocks.
@@ -17,6 +22,25 @@ import net.minecraft.block.state.IBlockState;
 public class ForgeMaterialData implements LocalMaterialData
 {
 
+    /**
+     * Instances that were created before, indexed by
+     * {@code blockId << 4 | blockData}. Materials are requested for almost
+     * every block during terrain generation and population, so they are
+     * reused. A slot only holds the block state that its id and data stand
+     * for; block ids can change when a world is loaded, so the state of an
+     * instance is always checked.
+     */
+    private static final AtomicReferenceArray<ForgeMaterialData> INSTANCES = new AtomicReferenceArray<ForgeMaterialData>(TerrainControl.SUPPORTED_BLOCK_IDS * 16);
+
+    /**
+     * Instances of the block states that don't fit in {@link #INSTANCES}:
+     * states with properties that are not stored in the block data, and
+     * states of blocks with an id that is too high. Together with
+     * {@link #INSTANCES} this makes sure that every block state has only a
+     * single instance, like on Bukkit.
+     */
+    private static final ConcurrentMap<IBlockState, ForgeMaterialData> OTHER_INSTANCES = new ConcurrentHashMap<IBlockState, ForgeMaterialData>();
+
     public static ForgeMaterialData ofString(String input) throws InvalidConfigException
     {
         // Try parsing as an internal Minecraft name
@@ -135,7 +159,51 @@ public class ForgeMaterialData implements LocalMaterialData
      */
     public static ForgeMaterialData ofMinecraftBlockState(IBlockState blockData)
     {
-        return new ForgeMaterialData(blockData);
+        Block block = blockData.getBlock();
+        int data = block.getMetaFromState(blockData);
+        int index = Block.getIdFromBlock(block) << 4 | data;
+        if (index < 0 || index >= INSTANCES.length())
+        {
+            return ofOtherBlockState(blockData);
+        }
+
+        ForgeMaterialData material = INSTANCES.get(index);
+        if (material != null && material.blockData == blockData)
+        {
+            return material;
+        }
+
+        if (block.getStateFromMeta(data) != blockData)
+        {
+            // Another state with the same block data already owns the slot
+            return ofOtherBlockState(blockData);
+        }
+
+        // Create a new instance, unless another thread was faster
+        ForgeMaterialData newMaterial = new ForgeMaterialData(blockData);
+        if (INSTANCES.compareAndSet(index, material, newMaterial))
+        {
+            return newMaterial;
+        }
+        material = INSTANCES.get(index);
+        return material.blockData == blockData ? material : ofOtherBlockState(blockData);
+    }
+
+    private static ForgeMaterialData ofOtherBlockState(IBlockState blockData)
+    {
+        if (blockData instanceof IExtendedBlockState)
+        {
+            // Created again for every request, so they would never be reused
+            return new ForgeMaterialData(blockData);
+        }
+        ForgeMaterialData material = OTHER_INSTANCES.get(blockData);
+        if (material != null)
+        {
+            return material;
+        }
+        ForgeMaterialData newMaterial = new ForgeMaterialData(blockData);
+        material = OTHER_INSTANCES.putIfAbsent(blockData, newMaterial);
+        return material == null ? newMaterial : material;
     }
 
     private final IBlockState blockData;
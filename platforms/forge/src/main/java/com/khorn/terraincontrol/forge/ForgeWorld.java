@@ -9,8 +9,11 @@ import com.khorn.terraincontrol.forge.generator.TXBiome;
 import com.khorn.terraincontrol.forge.generator.TXChunkGenerator;
 import com.khorn.terraincontrol.forge.generator.structure.*;
 import com.khorn.terraincontrol.forge.util.NBTHelper;
+import com.khorn.terraincontrol.generator.ChunkHeightMaps;
+import com.khorn.terraincontrol.generator.PopulationBuffer;
 import com.khorn.terraincontrol.generator.SpawnableObject;
 import com.khorn.terraincontrol.generator.biome.BiomeGenerator;
+import com.khorn.terraincontrol.generator.resource.ResourceStats;
 import com.khorn.terraincontrol.logging.LogMarker;
 import com.khorn.terraincontrol.util.ChunkCoordinate;
 import com.khorn.terraincontrol.util.NamedBinaryTag;
@@ -22,6 +25,8 @@ import net.minecraft.block.state.IBlockState;
 import net.minecraft.client.multiplayer.WorldClient;
 import net.minecraft.init.Blocks;
 import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.network.play.server.SPacketChunkData;
+import net.minecraft.server.management.PlayerChunkMapEntry;
 import net.minecraft.tileentity.TileEntity;
 import net.minecraft.util.ResourceLocation;
 import net.minecraft.util.datafix.DataFixer;
@@ -29,6 +34,7 @@ import net.minecraft.util.datafix.DataFixesManager;
 import net.minecraft.util.datafix.FixTypes;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.util.math.ChunkPos;
+import net.minecraft.world.EnumSkyBlock;
 import net.minecraft.world.World;
 import net.minecraft.world.WorldEntitySpawner;
 import net.minecraft.world.WorldServer;
@@ -93,7 +99,8 @@ public class ForgeWorld implements LocalWorld
     private WorldGenTaiga1 taigaTree1;
     private WorldGenTaiga2 taigaTree2;
 
-    private Chunk[] chunkCache;
+    // The chunks being populated, null outside population
+    private PopulationBuffer<Chunk> populationBuffer;
 
     public ForgeWorld(String _name)
     {
@@ -211,18 +218,24 @@ public class ForgeWorld implements LocalWorld
     @Override
     public boolean placeDungeon(Random rand, int x, int y, int z)
     {
+        forgetHeightMaps(x - 8, z - 8, x + 8, z + 8);
         return this.dungeonGen.generate(this.world, rand, new BlockPos(x, y, z));
     }
 
     @Override
     public boolean placeFossil(Random rand, ChunkCoordinate chunkCoord)
     {
+        forgetPopulationHeightMaps(chunkCoord);
         return this.fossilGen.generate(this.world, rand, new BlockPos(chunkCoord.getBlockX(), 0, chunkCoord.getBlockZ()));
     }
 
     @Override
     public boolean placeTree(TreeType type, Random rand, int x, int y, int z)
     {
+        // Minecraft's tree generators don't use setBlock, and the largest
+        // trees are about 16 blocks wide
+        forgetHeightMaps(x - 16, z - 16, x + 16, z + 16);
+
         BlockPos blockPos = new BlockPos(x, y, z);
         switch (type)
         {
@@ -279,18 +292,24 @@ public class ForgeWorld implements LocalWorld
         WorldConfig worldConfig = this.settings.getWorldConfig();
 
         boolean isVillagePlaced = false;
+        boolean isStructurePlaced = false;
         if (worldConfig.strongholdsEnabled)
-            this.strongholdGen.generateStructure(this.world, rand, chunkCoordIntPair);
+            isStructurePlaced |= this.strongholdGen.generateStructure(this.world, rand, chunkCoordIntPair);
         if (worldConfig.mineshaftsEnabled)
-            this.mineshaftGen.generateStructure(this.world, rand, chunkCoordIntPair);
+            isStructurePlaced |= this.mineshaftGen.generateStructure(this.world, rand, chunkCoordIntPair);
         if (worldConfig.villagesEnabled)
-            isVillagePlaced = this.villageGen.generateStructure(this.world, rand, chunkCoordIntPair);
+            isStructurePlaced |= isVillagePlaced = this.villageGen.generateStructure(this.world, rand, chunkCoordIntPair);
         if (worldConfig.rareBuildingsEnabled)
-            this.rareBuildingGen.generateStructure(this.world, rand, chunkCoordIntPair);
+            isStructurePlaced |= this.rareBuildingGen.generateStructure(this.world, rand, chunkCoordIntPair);
         if (worldConfig.netherFortressesEnabled)
-            this.netherFortressGen.generateStructure(this.world, rand, chunkCoordIntPair);
+            isStructurePlaced |= this.netherFortressGen.generateStructure(this.world, rand, chunkCoordIntPair);
         if (worldConfig.oceanMonumentsEnabled)
-            this.oceanMonumentGen.generateStructure(this.world, rand, chunkCoordIntPair);
+            isStructurePlaced |= this.oceanMonumentGen.generateStructure(this.world, rand, chunkCoordIntPair);
+
+        if (isStructurePlaced)
+        {
+            forgetPopulationHeightMaps(chunkCoord);
+        }
 
         return isVillagePlaced;
     }
@@ -312,6 +331,9 @@ public class ForgeWorld implements LocalWorld
         {
             replaceBlocks(cache[i], 0, 0, 16);
         }
+
+        // Blocks were replaced without setBlock
+        forgetPopulationHeightMaps(chunkCoord);
     }
 
     private void replaceBlocks(Chunk rawChunk, int startXInChunk, int startZInChunk, int size)
@@ -362,6 +384,8 @@ public class ForgeWorld implements LocalWorld
     @Override
     public void placePopulationMobs(LocalBiome biome, Random random, ChunkCoordinate chunkCoord)
     {
+        // Mobs look at the light
+        updatePopulationLight();
         WorldEntitySpawner.performWorldGenSpawning(this.getWorld(), ((ForgeBiome) biome).getHandle(),
                 chunkCoord.getBlockXCenter(), chunkCoord.getBlockZCenter(),
                 ChunkCoordinate.CHUNK_X_SIZE, ChunkCoordinate.CHUNK_Z_SIZE, random);
@@ -375,7 +399,7 @@ public class ForgeWorld implements LocalWorld
         int chunkX = x >> 4;
         int chunkZ = z >> 4;
 
-        if (this.chunkCache == null)
+        if (this.populationBuffer == null)
         {
             // Blocks requested outside population step
             // (Tree growing, /tc spawn, etc.)
@@ -383,12 +407,10 @@ public class ForgeWorld implements LocalWorld
         }
 
         // Restrict to chunks we are currently populating
-        Chunk topLeftCachedChunk = this.chunkCache[0];
-        int indexX = (chunkX - topLeftCachedChunk.xPosition);
-        int indexZ = (chunkZ - topLeftCachedChunk.zPosition);
-        if ((indexX == 0 || indexX == 1) && (indexZ == 0 || indexZ == 1))
+        int index = this.populationBuffer.getIndex(x, z);
+        if (index != -1)
         {
-            return this.chunkCache[indexX | (indexZ << 1)];
+            return this.populationBuffer.getChunk(index);
         } else
         {
             // Outside area
@@ -401,10 +423,84 @@ public class ForgeWorld implements LocalWorld
         }
     }
 
+    /**
+     * Gets the height maps for the given column, if it is in one of the
+     * chunks that are being populated.
+     * @param x X in the world.
+     * @param z Z in the world.
+     * @return The height maps, or null if not available.
+     */
+    private ChunkHeightMaps getHeightMaps(int x, int z)
+    {
+        if (this.populationBuffer == null)
+        {
+            return null;
+        }
+        int index = this.populationBuffer.getIndex(x, z);
+        return index == -1 ? null : this.populationBuffer.getHeightMaps(index);
+    }
+
+    /**
+     * Makes the height maps of the given area unknown. Must be called
+     * whenever Minecraft or another mod places blocks without
+     * {@link #setBlock(int, int, int, LocalMaterialData)}.
+     * @param minX Lowest x in the world, inclusive.
+     * @param minZ Lowest z in the world, inclusive.
+     * @param maxX Highest x in the world, inclusive.
+     * @param maxZ Highest z in the world, inclusive.
+     */
+    private void forgetHeightMaps(int minX, int minZ, int maxX, int maxZ)
+    {
+        this.generator.getChunkProvider().forgetHeightMaps(minX, minZ, maxX, maxZ);
+        if (this.populationBuffer != null)
+        {
+            this.populationBuffer.forgetColumns(minX, minZ, maxX, maxZ);
+        }
+    }
+
+    /**
+     * Makes the height maps of the chunks that are being populated, and a
+     * chunk around them, unknown. Must be called after other mods had the
+     * chance to place blocks.
+     * @param chunkCoord The chunk being populated.
+     */
+    public void forgetPopulationHeightMaps(ChunkCoordinate chunkCoord)
+    {
+        forgetHeightMaps(chunkCoord.getBlockX() - 16, chunkCoord.getBlockZ() - 16,
+                chunkCoord.getBlockX() + 47, chunkCoord.getBlockZ() + 47);
+    }
+
+    /**
+     * Makes the height maps of a single chunk unknown. Must be called when
+     * the chunk is unloaded, or when its blocks are changed outside
+     * population, for example by a player.
+     * @param chunkX X of the chunk.
+     * @param chunkZ Z of the chunk.
+     */
+    public void forgetChunkHeightMaps(int chunkX, int chunkZ)
+    {
+        if (this.generator != null)
+        {
+            this.generator.getChunkProvider().forgetHeightMaps(chunkX, chunkZ);
+        }
+    }
+
     @Override
     public int getLiquidHeight(int x, int z)
     {
-        for (int y = getHighestBlockYAt(x, z) - 1; y > 0; y--)
+        int highestBlockY = getHighestBlockYAt(x, z);
+
+        ChunkHeightMaps heightMaps = getHeightMaps(x, z);
+        if (heightMaps != null)
+        {
+            int liquidHeight = heightMaps.getLiquidHeight(x, z, highestBlockY - 1);
+            if (liquidHeight != ChunkHeightMaps.UNKNOWN)
+            {
+                return liquidHeight;
+            }
+        }
+
+        for (int y = highestBlockY - 1; y > 0; y--)
         {
             LocalMaterialData material = getMaterial(x, y, z);
             if (material.isLiquid())
@@ -413,24 +509,55 @@ public class ForgeWorld implements LocalWorld
             } else if (material.isSolid())
             {
                 // Failed to find a liquid
+                if (heightMaps != null)
+                {
+                    heightMaps.columnScanned(x, z, highestBlockY - 1, y, -1);
+                }
                 return -1;
             }
         }
+        if (heightMaps != null)
+        {
+            heightMaps.columnScanned(x, z, highestBlockY - 1, -1, -1);
+        }
         return -1;
     }
 
     @Override
     public int getSolidHeight(int x, int z)
     {
-        for (int y = getHighestBlockYAt(x, z) - 1; y > 0; y--)
+        int highestBlockY = getHighestBlockYAt(x, z);
+
+        ChunkHeightMaps heightMaps = getHeightMaps(x, z);
+        if (heightMaps != null)
+        {
+            int solidHeight = heightMaps.getSolidHeight(x, z, highestBlockY - 1);
+            if (solidHeight != ChunkHeightMaps.UNKNOWN)
+            {
+                return solidHeight;
+            }
+        }
+
+        int liquidY = -1;
+        int solidY = -1;
+        for (int y = highestBlockY - 1; y > 0; y--)
         {
             LocalMaterialData material = getMaterial(x, y, z);
             if (material.isSolid())
             {
-                return y + 1;
+                solidY = y;
+                break;
+            }
+            if (liquidY == -1 && material.isLiquid())
+            {
+                liquidY = y;
             }
         }
-        return -1;
+        if (heightMaps != null)
+        {
+            heightMaps.columnScanned(x, z, highestBlockY - 1, solidY, liquidY);
+        }
+        return solidY == -1 ? -1 : solidY + 1;
     }
 
     @Override
@@ -506,16 +633,51 @@ public class ForgeWorld implements LocalWorld
             return;
         }
 
+        ResourceStats.blockPlaced();
+        int index = this.populationBuffer == null ? -1 : this.populationBuffer.getIndex(x, z);
+
         // Relight and update players
         if (newState.getLightOpacity(this.world, pos) != oldOpacity || newState.getLightValue(this.world, pos) != oldLight)
         {
-            this.world.theProfiler.startSection("checkLight");
-            this.world.checkLight(pos);
-            this.world.theProfiler.endSection();
+            if (index != -1)
+            {
+                // Relit in one go, see updatePopulationLight
+                this.populationBuffer.lightChanged(index, x, y, z);
+            } else
+            {
+                this.world.theProfiler.startSection("checkLight");
+                this.world.checkLight(pos);
+                this.world.theProfiler.endSection();
+            }
         }
 
-        // Notify world: (2 | 16) == update client, don't update observers
-        this.world.markAndNotifyBlock(pos, chunk, iblockstate, newState, 2 | 16);
+        if (index != -1)
+        {
+            // Clients are updated in endPopulation
+            this.populationBuffer.blockChanged(index, x, y, z);
+        } else
+        {
+            blockChangedInHeightMaps(x, y, z);
+
+            // Notify world: (2 | 16) == update client, don't update observers
+            this.world.markAndNotifyBlock(pos, chunk, iblockstate, newState, 2 | 16);
+        }
+    }
+
+    /**
+     * Updates the height maps after a block outside the chunks being
+     * populated was placed.
+     * @param x X in the world.
+     * @param y Y in the world.
+     * @param z Z in the world.
+     */
+    private void blockChangedInHeightMaps(int x, int y, int z)
+    {
+        ChunkHeightMaps heightMaps = this.generator.getChunkProvider().getHeightMaps(x >> 4, z >> 4);
+        if (heightMaps != null)
+        {
+            heightMaps.blockChanged(x, y, z);
+        }
     }
 
     @Override
@@ -527,6 +689,16 @@ public class ForgeWorld implements LocalWorld
             return -1;
         }
 
+        ChunkHeightMaps heightMaps = getHeightMaps(x, z);
+        if (heightMaps != null)
+        {
+            int highestBlockY = heightMaps.getHighestBlockY(x, z);
+            if (highestBlockY != ChunkHeightMaps.UNKNOWN)
+            {
+                return highestBlockY;
+            }
+        }
+
         int y = chunk.getHeightValue(x & 0xf, z & 0xf);
 
         // Fix for incorrect light map
@@ -542,13 +714,17 @@ public class ForgeWorld implements LocalWorld
             this.world.checkLight(new BlockPos(x, y, z));
         }
 
+        if (heightMaps != null)
+        {
+            heightMaps.setHighestBlockY(x, z, y);
+        }
         return y;
     }
 
     @Override
     public void startPopulation(ChunkCoordinate chunkCoord)
     {
-        if (this.chunkCache != null && this.settings.getWorldConfig().populationBoundsCheck)
+        if (this.populationBuffer != null && this.settings.getWorldConfig().populationBoundsCheck)
         {
             throw new IllegalStateException("Chunk is already being populated."
                     + " This may be a bug in Terrain Control, but it may also be"
@@ -557,27 +733,32 @@ public class ForgeWorld implements LocalWorld
                     + " disable this error.");
         }
 
+        // Another chunk is still being populated: finish its buffered
+        // updates now, that population continues unbuffered
+        flushPopulationBuffer();
+
         // Initialize cache
-        this.chunkCache = loadFourChunks(chunkCoord);
+        this.populationBuffer = new PopulationBuffer<Chunk>(chunkCoord, loadFourChunks(chunkCoord),
+                this.generator.getChunkProvider());
     }
 
     private Chunk[] getChunkCache(ChunkCoordinate topLeft)
     {
-        if (this.chunkCache == null || !topLeft.coordsMatch(this.chunkCache[0].xPosition, this.chunkCache[0].zPosition))
+        if (this.populationBuffer == null || !this.populationBuffer.isFor(topLeft))
         {
             // Cache is invalid, most likely because two chunks are being populated at once
             if (this.settings.getWorldConfig().populationBoundsCheck)
             {
                 // ... but this can never happen, as startPopulation() checks for this if populationBoundsCheck is set
                 // to true. So we must have a bug.
-                throw new IllegalStateException("chunkCache is null! You've got a bug!");
+                throw new IllegalStateException("populationBuffer is null! You've got a bug!");
             } else
             {
                 // Use a temporary cache, best we can do
                 return this.loadFourChunks(topLeft);
             }
         }
-        return this.chunkCache;
+        return this.populationBuffer.getChunks();
     }
 
     private Chunk[] loadFourChunks(ChunkCoordinate topLeft)
@@ -599,7 +780,7 @@ public class ForgeWorld implements LocalWorld
     @Override
     public void endPopulation()
     {
-        if (this.chunkCache == null && this.settings.getWorldConfig().populationBoundsCheck)
+        if (this.populationBuffer == null && this.settings.getWorldConfig().populationBoundsCheck)
         {
             throw new IllegalStateException("Chunk is not being populated."
                     + " This may be a bug in Terrain Control, but it may also be"
@@ -607,12 +788,90 @@ public class ForgeWorld implements LocalWorld
                     + " PopulationBoundsCheck to false in the WorldConfig to"
                     + " disable this error.");
         }
-        this.chunkCache = null;
+
+        flushPopulationBuffer();
+    }
+
+    /**
+     * Relights the blocks and sends the chunk sections that were changed
+     * during population, and stops buffering these updates. Does nothing
+     * outside population.
+     */
+    private void flushPopulationBuffer()
+    {
+        if (this.populationBuffer == null)
+        {
+            return;
+        }
+
+        updatePopulationLight();
+        for (int index = 0; index < 4; index++)
+        {
+            Chunk chunk = this.populationBuffer.getChunk(index);
+            sendChangedSections(chunk, this.populationBuffer.getChangedSections(index));
+        }
+        this.populationBuffer = null;
+    }
+
+    /**
+     * Updates the light of all blocks placed during population of which the
+     * light update was postponed. Does nothing outside population.
+     */
+    private void updatePopulationLight()
+    {
+        PopulationBuffer<Chunk> populationBuffer = this.populationBuffer;
+        if (populationBuffer == null)
+        {
+            return;
+        }
+
+        final boolean hasSkyLight = !this.world.provider.hasNoSky();
+
+        this.world.theProfiler.startSection("checkLight");
+        populationBuffer.updateLight(new PopulationBuffer.LightUpdater()
+        {
+            @Override
+            public void updateSkyLight(int x, int y, int z)
+            {
+                if (hasSkyLight)
+                {
+                    ForgeWorld.this.world.checkLightFor(EnumSkyBlock.SKY, new BlockPos(x, y, z));
+                }
+            }
+
+            @Override
+            public void updateBlockLight(int x, int y, int z)
+            {
+                ForgeWorld.this.world.checkLightFor(EnumSkyBlock.BLOCK, new BlockPos(x, y, z));
+            }
+        });
+        this.world.theProfiler.endSection();
+    }
+
+    /**
+     * Sends the given sections of a chunk to the players that can see the
+     * chunk. Does nothing if the chunk was not sent to the players yet, they
+     * will get the whole chunk later.
+     * @param chunk    The chunk.
+     * @param sections Bit mask of the sections, bit n is section n.
+     */
+    private void sendChangedSections(Chunk chunk, int sections)
+    {
+        if (sections == 0 || !(this.world instanceof WorldServer))
+        {
+            return;
+        }
+        PlayerChunkMapEntry entry = ((WorldServer) this.world).getPlayerChunkMap().getEntry(chunk.xPosition, chunk.zPosition);
+        if (entry != null && entry.isSentToPlayers())
+        {
+            entry.sendPacket(new SPacketChunkData(chunk, sections));
+        }
     }
 
     @Override
     public int getLightLevel(int x, int y, int z)
     {
+        updatePopulationLight();
         // Actually, this calculates the block and skylight as it were day.
         return this.world.getLight(new BlockPos(x, y, z));
     }
@@ -1,5 +1,7 @@
 package com.khorn.terraincontrol.forge;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
@@ -8,10 +10,13 @@ import com.google.common.base.Preconditions;
 import com.khorn.terraincontrol.BiomeIds;
 import com.khorn.terraincontrol.LocalBiome;
 import com.khorn.terraincontrol.LocalWorld;
+import com.khorn.terraincontrol.TerrainControl;
 import com.khorn.terraincontrol.configuration.WorldConfig;
 import com.khorn.terraincontrol.configuration.standard.PluginStandardValues;
 import com.khorn.terraincontrol.exception.BiomeNotFoundException;
 import com.khorn.terraincontrol.forge.util.CommandHelper;
+import com.khorn.terraincontrol.generator.resource.ResourceReport;
+import com.khorn.terraincontrol.logging.LogMarker;
 
 import net.minecraft.command.ICommand;
 import net.minecraft.command.ICommandSender;
@@ -66,6 +71,7 @@ final class TXCommandHandler implements ICommand
                 sender.sendMessage(new TextComponentString("Commands:"));
                 sender.sendMessage(new TextComponentString("/tc worldinfo - Show author and description information for this world."));
                 sender.sendMessage(new TextComponentString("/tc biome - Show biome information for any biome at the player's coordinates."));
+                sender.sendMessage(new TextComponentString("/tc profile <csv|json|reset> - Export or reset the resource statistics of this world."));
             } else if (argString[0].equals("worldinfo"))
             {
                 LocalWorld localWorld = this.worldLoader.getWorld(sender.getEntityWorld());
@@ -123,6 +129,39 @@ final class TXCommandHandler implements ICommand
                 }
 
                 return;
+            } else if (argString[0].equals("profile"))
+            {
+                LocalWorld world = CommandHelper.getWorld(sender, "");
+                if (world == null)
+                {
+                    sender.sendMessage(
+                            new TextComponentTranslation(ERROR_COLOR + "TerrainControl is not enabled for this world."));
+                    return;
+                }
+
+                if (argString.length > 1 && argString[1].equalsIgnoreCase("reset"))
+                {
+                    ResourceReport.reset(world);
+                    sender.sendMessage(new TextComponentTranslation(MESSAGE_COLOR + "Resource statistics of this world reset"));
+                    return;
+                }
+
+                ResourceReport.Format format = argString.length > 1 ? ResourceReport.Format.fromName(argString[1]) : null;
+                if (format == null)
+                {
+                    sender.sendMessage(new TextComponentTranslation(ERROR_COLOR + "Usage: /tc profile <csv|json|reset>"));
+                    return;
+                }
+
+                try
+                {
+                    File file = ResourceReport.write(world, format);
+                    sender.sendMessage(new TextComponentTranslation(MESSAGE_COLOR + "Resource report written to " + VALUE_COLOR + file.getPath()));
+                } catch (IOException e)
+                {
+                    sender.sendMessage(new TextComponentTranslation(ERROR_COLOR + "Could not write the resource report: " + e.getMessage()));
+                    TerrainControl.printStackTrace(LogMarker.WARN, e);
+                }
             } else
             {
                 sender.sendMessage(new TextComponentString("Unknown command. Type /tc for a list of commands."));
@@ -10,6 +10,7 @@ import com.khorn.terraincontrol.configuration.ConfigProvider;
 import com.khorn.terraincontrol.configuration.ServerConfigProvider;
 import com.khorn.terraincontrol.forge.generator.TXBiome;
 import com.khorn.terraincontrol.forge.util.WorldHelper;
+import com.khorn.terraincontrol.generator.biome.BiomeGenerator;
 import com.khorn.terraincontrol.logging.LogMarker;
 import com.khorn.terraincontrol.util.helpers.ReflectionHelper;
 
@@ -115,6 +116,7 @@ public final class WorldLoader
             if (world != null)
             {
                 TerrainControl.log(LogMarker.INFO, "Unloading world \"{}\"...", world.getName());
+                clearCaches(world);
                 this.configMap.remove(world.getName());
                 this.worlds.remove(world.getName());
             }
@@ -124,9 +126,23 @@ public final class WorldLoader
     public void unloadWorld(ForgeWorld world)
     {
         TerrainControl.log(LogMarker.INFO, "Unloading world \"{}\"...", world.getName());
+        clearCaches(world);
         this.worlds.remove(world.getName());
     }
 
+    /**
+     * Releases the memory held by the caches of a world that is unloaded.
+     * @param world The world.
+     */
+    private void clearCaches(ForgeWorld world)
+    {
+        BiomeGenerator biomeGenerator = world.getBiomeGenerator();
+        if (biomeGenerator != null)
+        {
+            biomeGenerator.clearCache();
+        }
+    }
+
     public void addWorldConfig(String worldName, ServerConfigProvider config)
     {
         this.configMap.put(worldName, config);
@@ -210,6 +226,7 @@ public final class WorldLoader
             if (world != null)
             {
                 TerrainControl.log(LogMarker.INFO, "Unloading world \"{}\"...", world.getName());
+                clearCaches(world);
                 markBiomeIdsAsFree(world);
                 this.configMap.remove(world.getName());
                 this.worlds.remove(world.getName());
@@ -221,6 +238,7 @@ public final class WorldLoader
     public void unloadClientWorld(ForgeWorld world)
     {
         TerrainControl.log(LogMarker.INFO, "Unloading world \"{}\"...", world.getName());
+        clearCaches(world);
         this.worlds.remove(world.getName());
         markBiomeIdsAsFree(world);
     }
@@ -8,6 +8,7 @@ import com.khorn.terraincontrol.LocalWorld;
 import com.khorn.terraincontrol.events.EventHandler;
 import com.khorn.terraincontrol.forge.ForgeWorld;
 import com.khorn.terraincontrol.generator.resource.*;
+import com.khorn.terraincontrol.util.ChunkCoordinate;
 import com.khorn.terraincontrol.util.minecraftTypes.DefaultMaterial;
 import net.minecraft.util.math.BlockPos;
 import net.minecraftforge.common.MinecraftForge;
@@ -17,7 +18,9 @@ import net.minecraftforge.event.terraingen.OreGenEvent;
 import net.minecraftforge.event.terraingen.OreGenEvent.GenerateMinable;
 import net.minecraftforge.event.terraingen.PopulateChunkEvent;
 import net.minecraftforge.event.terraingen.PopulateChunkEvent.Populate;
-import net.minecraftforge.event.terraingen.TerrainGen;
+import net.minecraftforge.fml.common.eventhandler.Event;
+import net.minecraftforge.fml.common.eventhandler.Event.Result;
+import net.minecraftforge.fml.common.eventhandler.EventBus;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -55,6 +58,8 @@ public class TCToForgeEventConverter extends EventHandler
         BlockPos blockPos = new BlockPos(blockX, 0, blockZ);
 
         // Convert to Forge event and fire
+        Event event;
+        EventBus bus;
         if (resource instanceof DungeonGen ||
                 resource instanceof SmallLakeGen ||
                 resource instanceof UndergroundLakeGen ||
@@ -63,8 +68,8 @@ public class TCToForgeEventConverter extends EventHandler
         {
             // Fire population event
             Populate.EventType forgeEvent = getPopulateEventType(resource.getMaterial());
-            return TerrainGen.populate(world.getChunkGenerator(), world.getWorld(), random, blockX, blockZ,
-                    villageInChunk, forgeEvent);
+            event = new Populate(world.getChunkGenerator(), world.getWorld(), random, blockX, blockZ, villageInChunk, forgeEvent);
+            bus = MinecraftForge.TERRAIN_GEN_BUS;
         } else if (resource instanceof OreGen || resource instanceof VeinGen)
         {
             if (!hasOreGenerationBegun(world))
@@ -72,23 +77,38 @@ public class TCToForgeEventConverter extends EventHandler
                 // Fire ore generation start event
                 MinecraftForge.ORE_GEN_BUS
                         .post(new OreGenEvent.Pre(world.getWorld(), random, blockPos));
+                world.forgetPopulationHeightMaps(ChunkCoordinate.fromChunkCoords(chunkX, chunkZ));
                 setOreGenerationBegun(world, true);
             }
             // Fire ore generation event
             GenerateMinable.EventType forgeEvent = getOreEventType(resource.getMaterial());
-            return TerrainGen.generateOre(world.getWorld(), random, null, blockPos, forgeEvent);
+            event = new GenerateMinable(world.getWorld(), random, null, blockPos, forgeEvent);
+            bus = MinecraftForge.ORE_GEN_BUS;
         } else
         {
             if (!hasDecorationBegun(world))
             {
                 // Fire decoration start event
                 MinecraftForge.EVENT_BUS.post(new DecorateBiomeEvent.Pre(world.getWorld(), random, blockPos));
+                world.forgetPopulationHeightMaps(ChunkCoordinate.fromChunkCoords(chunkX, chunkZ));
                 setDecorationBegun(world, true);
             }
             // Fire decoration event
             Decorate.EventType forgeEvent = getDecorateEventType(resource.getMaterial());
-            return TerrainGen.decorate(world.getWorld(), random, blockPos, forgeEvent);
+            event = new Decorate(world.getWorld(), random, blockPos, forgeEvent);
+            bus = MinecraftForge.TERRAIN_GEN_BUS;
         }
+
+        // Same as the methods in TerrainGen, but the height maps must be
+        // forgotten if a mod may have placed blocks during the event. The
+        // bus sets the phase of the event before it calls the listeners of
+        // that phase, so the phase is still null if nobody listened.
+        bus.post(event);
+        if (event.getPhase() != null)
+        {
+            world.forgetPopulationHeightMaps(ChunkCoordinate.fromChunkCoords(chunkX, chunkZ));
+        }
+        return event.getResult() != Result.DENY;
     }
 
     @Override
@@ -104,6 +124,9 @@ public class TCToForgeEventConverter extends EventHandler
         PopulateChunkEvent forgeEvent = new PopulateChunkEvent.Pre(world.getChunkGenerator(), world.getWorld(), random, chunkX, chunkZ,
                 villageInChunk);
         MinecraftForge.EVENT_BUS.post(forgeEvent);
+
+        // Mods may have placed blocks without going through ForgeWorld
+        world.forgetPopulationHeightMaps(ChunkCoordinate.fromChunkCoords(chunkX, chunkZ));
     }
 
     @Override
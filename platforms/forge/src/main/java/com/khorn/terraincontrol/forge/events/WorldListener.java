@@ -5,8 +5,13 @@ import com.khorn.terraincontrol.forge.ForgeWorld;
 import com.khorn.terraincontrol.forge.WorldLoader;
 import com.khorn.terraincontrol.forge.util.WorldHelper;
 import com.khorn.terraincontrol.logging.LogMarker;
+import net.minecraft.util.math.BlockPos;
 import net.minecraft.world.World;
+import net.minecraft.world.chunk.Chunk;
+import net.minecraftforge.event.world.BlockEvent;
+import net.minecraftforge.event.world.ChunkEvent;
 import net.minecraftforge.event.world.WorldEvent;
+import net.minecraftforge.fml.common.eventhandler.EventPriority;
 import net.minecraftforge.fml.common.eventhandler.SubscribeEvent;
 
 public class WorldListener
@@ -32,4 +37,41 @@ public class WorldListener
         //this.worldLoader.unloadWorld(forgeWorld);
         TerrainControl.log(LogMarker.INFO, "Why would we need to unload world \"{}\"?", forgeWorld.getName());
     }
+
+    @SubscribeEvent(priority = EventPriority.LOWEST)
+    public void onChunkUnload(ChunkEvent.Unload event)
+    {
+        Chunk chunk = event.getChunk();
+        forgetHeightMaps(event.getWorld(), chunk.xPosition, chunk.zPosition);
+    }
+
+    @SubscribeEvent(priority = EventPriority.LOWEST)
+    public void onBlockPlace(BlockEvent.PlaceEvent event)
+    {
+        BlockPos pos = event.getPos();
+        forgetHeightMaps(event.getWorld(), pos.getX() >> 4, pos.getZ() >> 4);
+    }
+
+    @SubscribeEvent(priority = EventPriority.LOWEST)
+    public void onBlockBreak(BlockEvent.BreakEvent event)
+    {
+        BlockPos pos = event.getPos();
+        forgetHeightMaps(event.getWorld(), pos.getX() >> 4, pos.getZ() >> 4);
+    }
+
+    /**
+     * Makes the height maps of a chunk unknown, as its blocks were changed
+     * outside population.
+     * @param mcWorld The world of the chunk.
+     * @param chunkX  X of the chunk.
+     * @param chunkZ  Z of the chunk.
+     */
+    private void forgetHeightMaps(World mcWorld, int chunkX, int chunkZ)
+    {
+        ForgeWorld forgeWorld = this.worldLoader.getWorld(WorldHelper.getName(mcWorld));
+        if (forgeWorld != null)
+        {
+            forgeWorld.forgetChunkHeightMaps(chunkX, chunkZ);
+        }
+    }
 }
@@ -50,6 +50,15 @@ public class TXChunkGenerator implements IChunkGenerator
 
     }
 
+    /**
+     * Gets the Terrain Control chunk generator.
+     * @return The chunk generator.
+     */
+    public ChunkProviderTC getChunkProvider()
+    {
+        return this.generator;
+    }
+
     @Override
     public Chunk provideChunk(int chunkX, int chunkZ)
     {